@@ -1,11 +1,20 @@
 package com.bookingmx.reservations;
 
+import com.bookingmx.reservations.importer.ImportCommand;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class BookingMxApplication {
     public static void main(String[] args) {
+        if (args.length > 0 && ImportCommand.NAME.equals(args[0])) {
+            System.exit(ImportCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SpringApplication.run(BookingMxApplication.class, args);
     }
 }
@@ -0,0 +1,218 @@
+package com.bookingmx.reservations.capacity;
+
+import com.bookingmx.reservations.exception.ConflictException;
+import com.bookingmx.reservations.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Room capacity of each hotel and the number of rooms taken on each night.
+ *
+ * <p>Occupancy is kept per hotel in {@link AtomicIntegerArray} pages of {@value #PAGE_DAYS}
+ * nights, indexed by epoch day and created on first use, so checking a stay costs one
+ * counter per night rather than a scan of the hotel's bookings. A night is taken with a
+ * compare-and-set that fails once the counter has reached the hotel's capacity; a stay takes
+ * its nights in order and gives back the ones it took if a later night is full, so it gets
+ * all of them or none. Two stays competing for the last room may both be turned away while
+ * each holds a night the other needs, but a hotel is never overbooked.</p>
+ *
+ * <p>Hotels with a capacity of {@link #UNLIMITED} are not counted at all. Capacities are fixed
+ * when the registry is created; counters are rebuilt from the stored reservations with
+ * {@link #rebuild(Spliterator, LocalDate)} at startup. That only counts nights from the day it
+ * is given on, and from then on {@link #reserve} and {@link #release} leave earlier nights
+ * alone too, so changing a stay that began before the rebuild never pushes a counter below
+ * what was counted.</p>
+ */
+public class HotelCapacity {
+
+    /** Capacity of a hotel that takes any number of bookings. */
+    public static final int UNLIMITED = 0;
+
+    private static final int PAGE_BITS = 9;
+
+    /** Nights per counter page. */
+    static final int PAGE_DAYS = 1 << PAGE_BITS;
+
+    private final int defaultRooms;
+    private final Map<String, Integer> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Occupancy> occupancy = new ConcurrentHashMap<>();
+
+    /** First night counted, as an epoch day; set by {@link #rebuild}. */
+    private volatile int firstDay = Integer.MIN_VALUE;
+
+    /** Creates a registry in which every hotel is unlimited. */
+    public HotelCapacity() {
+        this(UNLIMITED, Map.of());
+    }
+
+    /**
+     * @param defaultRooms rooms of a hotel not listed in {@code hotels}, or {@link #UNLIMITED}
+     * @param hotels       rooms by hotel name
+     */
+    public HotelCapacity(int defaultRooms, Map<String, Integer> hotels) {
+        if (defaultRooms < 0) {
+            throw new IllegalArgumentException("defaultRooms cannot be negative");
+        }
+        this.defaultRooms = defaultRooms;
+        hotels.forEach((name, count) -> {
+            if (count == null || count < 0) {
+                throw new IllegalArgumentException("Capacity of " + name + " cannot be negative");
+            }
+            rooms.put(name, count);
+        });
+    }
+
+    /** @return whether any hotel has a limited number of rooms */
+    public boolean isLimited() {
+        return defaultRooms != UNLIMITED || rooms.values().stream().anyMatch(count -> count != UNLIMITED);
+    }
+
+    /**
+     * @param hotel the hotel name
+     * @return the hotel's rooms, or {@link #UNLIMITED}
+     */
+    public int capacity(String hotel) {
+        return rooms.getOrDefault(hotel, defaultRooms);
+    }
+
+    /**
+     * @param hotel the hotel name
+     * @param day   the night, as an epoch day
+     * @return the rooms taken that night
+     */
+    public int occupied(String hotel, int day) {
+        Occupancy o = occupancy.get(hotel);
+        return o == null ? 0 : o.get(day);
+    }
+
+    /**
+     * Takes the nights {@code next} holds and {@code previous} does not, all of them or none.
+     * A reservation holds the nights of its stay while it is active.
+     *
+     * @param previous the reservation before the change, or {@code null} for a new one
+     * @param next     the reservation after the change
+     * @throws ConflictException if one of the nights is full
+     */
+    public void reserve(Reservation previous, Reservation next) {
+        String hotel = next.getHotelName();
+        int rooms = capacity(hotel);
+        if (!holdsNights(next) || rooms == UNLIMITED) {
+            return;
+        }
+        Occupancy o = occupancy.computeIfAbsent(hotel, h -> new Occupancy());
+        int from = Math.max(firstDay, next.getCheckInDay());
+        for (int day = from; day < next.getCheckOutDay(); day++) {
+            if (holds(previous, hotel, day)) {
+                continue;
+            }
+            if (!o.tryIncrement(day, rooms)) {
+                for (int taken = from; taken < day; taken++) {
+                    if (!holds(previous, hotel, taken)) {
+                        o.decrement(taken);
+                    }
+                }
+                throw new ConflictException(next.getHotelName() + " is fully booked on " + LocalDate.ofEpochDay(day));
+            }
+        }
+    }
+
+    /**
+     * Gives back the nights {@code previous} holds and {@code next} does not. Together with
+     * {@link #reserve}, moves a reservation's nights when it changes; {@code release(next,
+     * previous)} undoes a {@code reserve(previous, next)} whose change was not stored.
+     *
+     * @param previous the reservation before the change
+     * @param next     the reservation after the change, or {@code null} if it was deleted
+     */
+    public void release(Reservation previous, Reservation next) {
+        String hotel = previous.getHotelName();
+        if (!holdsNights(previous) || capacity(hotel) == UNLIMITED) {
+            return;
+        }
+        Occupancy o = occupancy.get(hotel);
+        if (o == null) {
+            return;
+        }
+        for (int day = Math.max(firstDay, previous.getCheckInDay()); day < previous.getCheckOutDay(); day++) {
+            if (!holds(next, hotel, day)) {
+                o.decrement(day);
+            }
+        }
+    }
+
+    /**
+     * Counts the nights from {@code today} on of every active reservation, without checking
+     * capacity: stored bookings are kept even if capacities have been lowered since. Earlier
+     * nights are not counted from now on.
+     *
+     * @param reservations the stored reservations
+     * @param today        the first night to count
+     */
+    public void rebuild(Spliterator<Reservation> reservations, LocalDate today) {
+        occupancy.clear();
+        int first = Math.toIntExact(today.toEpochDay());
+        firstDay = first;
+        reservations.forEachRemaining(r -> {
+            String hotel = r.getHotelName();
+            if (!holdsNights(r) || capacity(hotel) == UNLIMITED || r.getCheckOutDay() <= first) {
+                return;
+            }
+            Occupancy o = occupancy.computeIfAbsent(hotel, h -> new Occupancy());
+            for (int day = Math.max(first, r.getCheckInDay()); day < r.getCheckOutDay(); day++) {
+                o.increment(day);
+            }
+        });
+    }
+
+    private static boolean holdsNights(Reservation r) {
+        return r.isActive() && r.getHotelName() != null
+                && r.getCheckInDay() != Reservation.NO_DATE && r.getCheckOutDay() != Reservation.NO_DATE;
+    }
+
+    /** @return whether {@code r} holds the night {@code day} at {@code hotel} */
+    private static boolean holds(Reservation r, String hotel, int day) {
+        return r != null && holdsNights(r) && hotel.equals(r.getHotelName())
+                && day >= r.getCheckInDay() && day < r.getCheckOutDay();
+    }
+
+    /** Nightly counters of one hotel, in pages created on first use. */
+    private static final class Occupancy {
+
+        private final Map<Integer, AtomicIntegerArray> pages = new ConcurrentHashMap<>();
+
+        int get(int day) {
+            AtomicIntegerArray page = pages.get(day >> PAGE_BITS);
+            return page == null ? 0 : page.get(day & (PAGE_DAYS - 1));
+        }
+
+        boolean tryIncrement(int day, int limit) {
+            AtomicIntegerArray page = page(day);
+            int i = day & (PAGE_DAYS - 1);
+            while (true) {
+                int taken = page.get(i);
+                if (taken >= limit) {
+                    return false;
+                }
+                if (page.compareAndSet(i, taken, taken + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void increment(int day) {
+            page(day).incrementAndGet(day & (PAGE_DAYS - 1));
+        }
+
+        void decrement(int day) {
+            page(day).decrementAndGet(day & (PAGE_DAYS - 1));
+        }
+
+        private AtomicIntegerArray page(int day) {
+            return pages.computeIfAbsent(day >> PAGE_BITS, p -> new AtomicIntegerArray(PAGE_DAYS));
+        }
+    }
+}
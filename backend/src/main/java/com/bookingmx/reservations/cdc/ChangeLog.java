@@ -0,0 +1,190 @@
+package com.bookingmx.reservations.cdc;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process, append-only log of the changes made to the repository, numbered by a gapless
+ * sequence starting at 1.
+ *
+ * <p>The repository appends a record for every save and delete while it still holds the
+ * lock of the reservation's ID, so the records of one reservation appear in the order its
+ * writes were applied, and the sequence orders all writes. Search indexes, caches and other
+ * derived views consume the log through {@link #subscribe(String, long, Consumer)}, each on a
+ * thread of its own, instead of rescanning the repository: a new consumer builds its state
+ * from a {@link com.bookingmx.reservations.repo.ReadView} or a full scan, then subscribes
+ * from the sequence that was current when it started.</p>
+ *
+ * <p>The most recent {@code capacity} records are retained in a ring; older ones are
+ * overwritten, so a consumer may fall behind by at most that many records. One that falls
+ * further behind stops in the {@link ChangeSubscription.State#OVERRUN} state and has to rebuild.
+ * Appends are serialized by the log's monitor and never wait for consumers.</p>
+ */
+public class ChangeLog implements Closeable {
+
+    /** Default number of records retained. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final ChangeRecord[] ring;
+    private final int mask;
+    private final List<ChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /** Sequence of the last record appended, 0 while the log is empty. */
+    private volatile long last;
+
+    /** Number of consumers waiting for records; guarded by {@code this}. */
+    private int waiting;
+
+    private volatile boolean closed;
+
+    /** Creates a log retaining {@link #DEFAULT_CAPACITY} records. */
+    public ChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of records retained, rounded up to a power of two
+     */
+    public ChangeLog(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new ChangeRecord[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Publishes a save. Reservations are immutable, so the record shares {@code r}.
+     *
+     * @param r the reservation as saved
+     * @return the record's sequence
+     */
+    public long appendPut(Reservation r) {
+        return append(ChangeRecord.Type.PUT, r.getIdAsLong(), r);
+    }
+
+    /**
+     * Publishes a delete.
+     *
+     * @param id the ID of the deleted reservation
+     * @return the record's sequence
+     */
+    public long appendDelete(long id) {
+        return append(ChangeRecord.Type.DELETE, id, null);
+    }
+
+    /** @return the sequence of the last record, 0 if there is none */
+    public long lastSequence() {
+        return last;
+    }
+
+    /** @return the sequence of the oldest record still retained, or of the next one if none is */
+    public long firstSequence() {
+        return Math.max(1L, last - ring.length + 1);
+    }
+
+    /** @return the number of records retained at most */
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Starts delivering records to {@code consumer} on a new thread, beginning with
+     * {@code fromSequence}. Use {@code lastSequence() + 1} to receive only records appended
+     * from now on.
+     *
+     * @param name         names the consumer in lag reports and its thread
+     * @param fromSequence the first sequence to deliver
+     * @param consumer     receives the records in sequence order; a runtime exception stops the
+     *                     subscription at the record that caused it
+     * @return the running subscription
+     * @throws IllegalArgumentException if {@code fromSequence} is no longer retained or not
+     *                                  yet written
+     */
+    public ChangeSubscription subscribe(String name, long fromSequence, Consumer<? super ChangeRecord> consumer) {
+        if (closed) {
+            throw new IllegalStateException("Change log is closed");
+        }
+        long next = last + 1;
+        if (fromSequence > next) {
+            throw new IllegalArgumentException("Sequence " + fromSequence + " is beyond the next one, " + next);
+        }
+        if (fromSequence < firstSequence()) {
+            throw new IllegalArgumentException("Sequence " + fromSequence
+                    + " is no longer retained; the oldest is " + firstSequence());
+        }
+        ChangeSubscription subscription = new ChangeSubscription(name, this, fromSequence, consumer);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /** @return the subscriptions started on this log, including stopped ones */
+    public List<ChangeSubscription> subscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    /** Stops every subscription; records can no longer be consumed. */
+    @Override
+    public void close() {
+        closed = true;
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    private synchronized long append(ChangeRecord.Type type, long id, Reservation r) {
+        long sequence = last + 1;
+        ring[(int) (sequence & mask)] = new ChangeRecord(sequence, type, id, r, System.currentTimeMillis());
+        last = sequence;
+        if (waiting > 0) {
+            notifyAll();
+        }
+        return sequence;
+    }
+
+    /**
+     * Copies the records from {@code from} on into {@code out}, as many as are written and fit.
+     *
+     * @return the number copied, or -1 if {@code from} has already been overwritten
+     */
+    int read(long from, ChangeRecord[] out) {
+        long upTo = Math.min(last, from + out.length - 1);
+        int n = 0;
+        for (long s = from; s <= upTo; s++) {
+            ChangeRecord r = ring[(int) (s & mask)];
+            // A slot at or below `last` holds s or, once the ring has wrapped, a later record.
+            if (r == null || r.sequence() != s) {
+                return -1;
+            }
+            out[n++] = r;
+        }
+        return n;
+    }
+
+    /** Waits until a record after {@code sequence - 1} exists, the log closes or time runs out. */
+    synchronized void awaitRecord(long sequence, long timeoutMillis) throws InterruptedException {
+        if (last >= sequence || closed) {
+            return;
+        }
+        waiting++;
+        try {
+            wait(timeoutMillis);
+        } finally {
+            waiting--;
+        }
+    }
+
+    /** Wakes every waiting consumer, so a closing subscription notices promptly. */
+    synchronized void wakeAll() {
+        notifyAll();
+    }
+}
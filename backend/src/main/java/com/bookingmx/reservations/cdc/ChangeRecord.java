@@ -0,0 +1,55 @@
+package com.bookingmx.reservations.cdc;
+
+import com.bookingmx.reservations.model.Reservation;
+
+/**
+ * One committed change to the repository, as published to the {@link ChangeLog}.
+ *
+ * <p>Records are immutable. A {@link Type#PUT} carries the reservation as it was saved; a {@link Type#DELETE} carries the ID only.</p>
+ */
+public final class ChangeRecord {
+
+    /** Kind of change. */
+    public enum Type {
+        /** A reservation was created or replaced. */
+        PUT,
+        /** A reservation was deleted. */
+        DELETE
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long id;
+    private final Reservation reservation;
+    private final long timestampMillis;
+
+    ChangeRecord(long sequence, Type type, long id, Reservation reservation, long timestampMillis) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.reservation = reservation;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /** @return the record's position in the log, starting at 1 */
+    public long sequence() { return sequence; }
+
+    /** @return the kind of change */
+    public Type type() { return type; }
+
+    /** @return the ID of the changed reservation */
+    public long id() { return id; }
+
+    /**
+     * @return the saved reservation, or {@code null} for a delete
+     */
+    public Reservation reservation() { return reservation; }
+
+    /** @return when the change was published, in epoch milliseconds */
+    public long timestampMillis() { return timestampMillis; }
+
+    @Override
+    public String toString() {
+        return "ChangeRecord{" + sequence + " " + type + " " + id + "}";
+    }
+}
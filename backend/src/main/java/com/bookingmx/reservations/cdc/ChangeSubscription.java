@@ -0,0 +1,127 @@
+package com.bookingmx.reservations.cdc;
+
+import java.util.function.Consumer;
+
+/**
+ * A consumer of the {@link ChangeLog}, fed on a daemon thread of its own.
+ *
+ * <p>The thread copies records out of the log in batches and hands them to the consumer one
+ * at a time, in sequence order. {@link #position()} is the next sequence to deliver, so
+ * after the subscription stops, a replacement can {@link ChangeLog#subscribe subscribe} from
+ * it and continue where this one left off. {@link #lag()} reports how far the consumer is
+ * behind the log; it can never exceed the log's capacity, because a consumer that falls that
+ * far behind stops in the {@link State#OVERRUN} state.</p>
+ */
+public final class ChangeSubscription implements AutoCloseable {
+
+    /** Lifecycle of a subscription. */
+    public enum State {
+        /** Delivering records or waiting for new ones. */
+        RUNNING,
+        /** Stopped by {@link #close()}. */
+        CLOSED,
+        /** Stopped because the consumer threw; see {@link #failure()}. */
+        FAILED,
+        /** Stopped because the records at {@link #position()} were overwritten before delivery. */
+        OVERRUN
+    }
+
+    /** Records copied out of the log per read. */
+    private static final int BATCH = 256;
+
+    /** Longest wait for new records before re-checking the state. */
+    private static final long IDLE_WAIT_MILLIS = 1_000;
+
+    private final String name;
+    private final ChangeLog log;
+    private final Consumer<? super ChangeRecord> consumer;
+    private final Thread thread;
+
+    private volatile long position;
+    private volatile State state = State.RUNNING;
+    private volatile RuntimeException failure;
+
+    ChangeSubscription(String name, ChangeLog log, long fromSequence, Consumer<? super ChangeRecord> consumer) {
+        this.name = name;
+        this.log = log;
+        this.consumer = consumer;
+        this.position = fromSequence;
+        this.thread = new Thread(this::run, "cdc-" + name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** @return the consumer's name */
+    public String name() {
+        return name;
+    }
+
+    /** @return the sequence of the next record to deliver */
+    public long position() {
+        return position;
+    }
+
+    /** @return the number of records appended but not yet delivered */
+    public long lag() {
+        return Math.max(0L, log.lastSequence() - position + 1);
+    }
+
+    /** @return the subscription's state */
+    public State state() {
+        return state;
+    }
+
+    /** @return what the consumer threw, if the subscription {@link State#FAILED} */
+    public RuntimeException failure() {
+        return failure;
+    }
+
+    /**
+     * Stops delivery after the record being delivered, if any, and waits briefly for the
+     * thread to finish.
+     */
+    @Override
+    public void close() {
+        if (state == State.RUNNING) {
+            state = State.CLOSED;
+        }
+        log.wakeAll();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(IDLE_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        ChangeRecord[] batch = new ChangeRecord[BATCH];
+        try {
+            while (state == State.RUNNING) {
+                int n = log.read(position, batch);
+                if (n < 0) {
+                    state = State.OVERRUN;
+                    return;
+                }
+                if (n == 0) {
+                    log.awaitRecord(position, IDLE_WAIT_MILLIS);
+                    continue;
+                }
+                for (int i = 0; i < n && state == State.RUNNING; i++) {
+                    consumer.accept(batch[i]);
+                    position = batch[i].sequence() + 1;
+                    batch[i] = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            state = State.FAILED;
+        } catch (InterruptedException e) {
+            state = State.CLOSED;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.repo.ReservationRepository;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDate;
+
+/**
+ * Creates the {@link HotelCapacity} bean from {@link CapacityProperties}.
+ *
+ * <p>Its nightly counters are rebuilt at startup from the active reservations in the
+ * {@link ReservationRepository}, from today on; with every hotel unlimited, the default,
+ * nothing is counted and the repository is not read.</p>
+ */
+@Configuration
+@EnableConfigurationProperties(CapacityProperties.class)
+public class CapacityConfiguration {
+
+    @Bean
+    public HotelCapacity hotelCapacity(CapacityProperties properties, ReservationRepository repo) {
+        HotelCapacity capacity = new HotelCapacity(properties.getDefaultRooms(), properties.getHotels());
+        if (capacity.isLimited()) {
+            capacity.rebuild(repo.cursor(), LocalDate.now());
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,41 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hotel capacity settings bound from the {@code bookingmx.capacity.*} keys in
+ * {@code application.properties}.
+ *
+ * <p>Example:
+ * <pre>
+ * bookingmx.capacity.default-rooms=50
+ * bookingmx.capacity.hotels[Hotel Centro]=40
+ * bookingmx.capacity.hotels[Casa Azul]=12
+ * </pre>
+ * Hotel names go in brackets so that spaces and case are kept.</p>
+ */
+@ConfigurationProperties(prefix = "bookingmx.capacity")
+public class CapacityProperties {
+
+    /** Rooms of a hotel not listed in {@link #hotels}; {@link HotelCapacity#UNLIMITED} means no limit. */
+    private int defaultRooms = HotelCapacity.UNLIMITED;
+
+    /** Rooms by hotel name. */
+    private Map<String, Integer> hotels = new LinkedHashMap<>();
+
+    /** @return rooms of a hotel not listed in {@link #getHotels()} */
+    public int getDefaultRooms() { return defaultRooms; }
+
+    /** @param defaultRooms sets the rooms of a hotel not listed in {@link #getHotels()} */
+    public void setDefaultRooms(int defaultRooms) { this.defaultRooms = defaultRooms; }
+
+    /** @return rooms by hotel name */
+    public Map<String, Integer> getHotels() { return hotels; }
+
+    /** @param hotels sets the rooms by hotel name */
+    public void setHotels(Map<String, Integer> hotels) { this.hotels = hotels; }
+}
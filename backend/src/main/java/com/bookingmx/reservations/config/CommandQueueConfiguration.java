@@ -0,0 +1,26 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link HotelCommandQueues} bean from {@link CommandQueueProperties}; disabled,
+ * the default, every change runs on its request's thread. The queue threads are stopped when
+ * the context closes.
+ */
+@Configuration
+@EnableConfigurationProperties(CommandQueueProperties.class)
+public class CommandQueueConfiguration {
+
+    @Bean
+    public HotelCommandQueues hotelCommandQueues(CommandQueueProperties properties) {
+        if (!properties.isEnabled()) {
+            return new HotelCommandQueues();
+        }
+        return new HotelCommandQueues(properties.getTimeout(), properties.getMaxDepth(),
+                properties.getMaxQueues(), properties.getIdleTimeout());
+    }
+}
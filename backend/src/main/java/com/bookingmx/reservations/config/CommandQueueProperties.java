@@ -0,0 +1,69 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Per-hotel command queue settings bound from the {@code bookingmx.queues.*} keys in
+ * {@code application.properties}.
+ *
+ * <p>Example:
+ * <pre>
+ * bookingmx.queues.enabled=true
+ * bookingmx.queues.timeout=PT2S
+ * bookingmx.queues.max-depth=5000
+ * bookingmx.queues.max-queues=1024
+ * bookingmx.queues.idle-timeout=PT30S
+ * </pre></p>
+ */
+@ConfigurationProperties(prefix = "bookingmx.queues")
+public class CommandQueueProperties {
+
+    /** Whether each hotel's changes run on its own single-writer queue. */
+    private boolean enabled = false;
+
+    /** How long a request waits for its change to run. */
+    private Duration timeout = Duration.ofSeconds(5);
+
+    /** Most changes waiting in one hotel's queue; further ones are turned away. */
+    private int maxDepth = 10_000;
+
+    /** Most hotels with a queue at once; changes for further hotels are turned away. */
+    private int maxQueues = HotelCommandQueues.DEFAULT_MAX_QUEUES;
+
+    /** How long a hotel's queue waits for work before it is retired. */
+    private Duration idleTimeout = HotelCommandQueues.DEFAULT_IDLE_TIMEOUT;
+
+    /** @return whether each hotel's changes run on its own single-writer queue */
+    public boolean isEnabled() { return enabled; }
+
+    /** @param enabled sets whether each hotel's changes run on its own single-writer queue */
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /** @return how long a request waits for its change to run */
+    public Duration getTimeout() { return timeout; }
+
+    /** @param timeout sets how long a request waits for its change to run */
+    public void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+    /** @return most changes waiting in one hotel's queue */
+    public int getMaxDepth() { return maxDepth; }
+
+    /** @param maxDepth sets the most changes waiting in one hotel's queue */
+    public void setMaxDepth(int maxDepth) { this.maxDepth = maxDepth; }
+
+    /** @return most hotels with a queue at once */
+    public int getMaxQueues() { return maxQueues; }
+
+    /** @param maxQueues sets the most hotels with a queue at once */
+    public void setMaxQueues(int maxQueues) { this.maxQueues = maxQueues; }
+
+    /** @return how long a hotel's queue waits for work before it is retired */
+    public Duration getIdleTimeout() { return idleTimeout; }
+
+    /** @param idleTimeout sets how long a hotel's queue waits for work before it is retired */
+    public void setIdleTimeout(Duration idleTimeout) { this.idleTimeout = idleTimeout; }
+}
@@ -0,0 +1,55 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.replication.ReadOnlyReservationRepository;
+import com.bookingmx.reservations.replication.ReplicationFollower;
+import com.bookingmx.reservations.replication.ReplicationServer;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Creates the replication beans selected by {@code bookingmx.storage.replication.role}.
+ *
+ * <p>A {@code primary} listens on {@code bind-address:port} with a {@link ReplicationServer}
+ * fed from the {@link ChangeLog} of its in-memory repository. A {@code follower} keeps its own
+ * in-memory repository in step with the primary at {@code primary-host:primary-port} through
+ * a {@link ReplicationFollower}, and hands the service layer a
+ * {@link ReadOnlyReservationRepository} over it, so reads are served locally and writes are
+ * rejected. Storage settings such as the engine and shard count apply to each process on its
+ * own; they need not match.</p>
+ */
+@Configuration
+public class ReplicationConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookingmx.storage.replication", name = "role", havingValue = "primary")
+    public ReplicationServer replicationServer(StorageProperties storage, InMemoryReservationRepository repo,
+                                               ChangeLog changes) {
+        StorageProperties.Replication replication = storage.getReplication();
+        ReplicationServer server = new ReplicationServer(repo, changes, replication.getBindAddress(),
+                replication.getPort(), replication.getHeartbeatInterval());
+        server.start();
+        return server;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookingmx.storage.replication", name = "role", havingValue = "follower")
+    public ReplicationFollower replicationFollower(StorageProperties storage, InMemoryReservationRepository repo) {
+        StorageProperties.Replication replication = storage.getReplication();
+        ReplicationFollower follower = new ReplicationFollower(repo, replication.getPrimaryHost(),
+                replication.getPrimaryPort(), replication.getTimeout(), replication.getReconnectDelay());
+        follower.start();
+        return follower;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "bookingmx.storage.replication", name = "role", havingValue = "follower")
+    public ReadOnlyReservationRepository readOnlyReservationRepository(InMemoryReservationRepository repo) {
+        return new ReadOnlyReservationRepository(repo);
+    }
+}
@@ -0,0 +1,143 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.replication.ReplicationRole;
+import com.bookingmx.reservations.repo.ColumnarReservationStore;
+import com.bookingmx.reservations.repo.HeapReservationStore;
+import com.bookingmx.reservations.repo.IdAllocator;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.JdbcReservationRepository;
+import com.bookingmx.reservations.repo.MvccReservationStore;
+import com.bookingmx.reservations.repo.NameDictionary;
+import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.repo.ReservationStore;
+import com.bookingmx.reservations.repo.SnapshotFile;
+import com.bookingmx.reservations.repo.TieredReservationStore;
+import com.bookingmx.reservations.repo.WriteAheadLog;
+import com.bookingmx.reservations.repo.lsm.LsmReservationStore;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Creates the {@link ReservationRepository} bean selected by {@code bookingmx.storage.repository}.
+ *
+ * <p>With {@code jdbc}, a {@link JdbcReservationRepository} on {@code bookingmx.storage.jdbc.url}.
+ * With {@code memory} (the default), an {@link InMemoryReservationRepository} with the storage
+ * engine selected in {@link StorageProperties} and, when enabled, a {@link WriteAheadLog} and a
+ * {@link SnapshotFile} under {@code bookingmx.storage.data-directory}. With the log enabled
+ * the {@link IdAllocator} persists its high-water mark there as well. The LSM engine keeps its
+ * segment files in the {@code lsm} subdirectory.</p>
+ *
+ * <p>The in-memory repository is split into {@code bookingmx.storage.shards} hotel shards, each with
+ * its own store and allocator. With tiering enabled, each store gets an LSM cold tier in
+ * {@code cold}. Shard 0 uses the unsharded file names ({@code ids.hwm}, {@code lsm},
+ * {@code cold}); shard {@code k} appends {@code -k} to them.</p>
+ *
+ * <p>With {@code bookingmx.storage.cdc.enabled}, a {@link ChangeLog} bean receives every save
+ * and delete of the in-memory repository; consumers inject it and subscribe. A replication
+ * primary ({@code bookingmx.storage.replication.role=primary}) gets one as well, since its
+ * followers are fed from it.</p>
+ *
+ * <p>The in-memory repository keeps the names of its reservations in the {@link NameDictionary}
+ * bean injected into it, which shares guest names as well with
+ * {@code bookingmx.storage.encode-guest-names}.</p>
+ */
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+public class RepositoryConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookingmx.storage", name = "repository", havingValue = "memory",
+                           matchIfMissing = true)
+    public InMemoryReservationRepository reservationRepository(StorageProperties storage, NameDictionary names,
+                                                               ObjectProvider<ChangeLog> changes) {
+        Path dataDirectory = Path.of(storage.getDataDirectory());
+        int shards = storage.getShards();
+        WriteAheadLog wal = null;
+        if (storage.getWal().isEnabled()) {
+            wal = new WriteAheadLog(dataDirectory.resolve("wal"),
+                    storage.getWal().getGroupCommitWindow(),
+                    storage.getWal().isFsync());
+        }
+        SnapshotFile snapshot = null;
+        if (storage.getSnapshot().isEnabled()) {
+            snapshot = new SnapshotFile(dataDirectory.resolve("reservations.snapshot"));
+        }
+        boolean persistIds = wal != null;
+        InMemoryReservationRepository repo = new InMemoryReservationRepository(shards,
+                shard -> tiered(storage, shard, reservationStore(storage, shard)),
+                shard -> new IdAllocator(storage.getIdBlockSize(),
+                        persistIds ? dataDirectory.resolve(shardFile("ids", shard) + ".hwm") : null),
+                storage.isSingleWriter(), wal, snapshot, names);
+        repo.setChangeLog(changes.getIfAvailable());
+        return repo;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookingmx.storage", name = "repository", havingValue = "jdbc")
+    public JdbcReservationRepository jdbcReservationRepository(StorageProperties storage,
+                                                               ObjectProvider<ChangeLog> changes) {
+        if (changes.getIfAvailable() != null) {
+            throw new IllegalStateException("bookingmx.storage.cdc needs the in-memory repository");
+        }
+        if (storage.getReplication().getRole() != ReplicationRole.STANDALONE) {
+            throw new IllegalStateException("bookingmx.storage.replication needs the in-memory repository");
+        }
+        StorageProperties.Jdbc jdbc = storage.getJdbc();
+        return new JdbcReservationRepository(jdbc.getUrl(), jdbc.getUsername(), jdbc.getPassword(),
+                jdbc.getPoolSize(), jdbc.getBatchSize(), jdbc.getPageSize());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookingmx.storage", name = "repository", havingValue = "memory",
+                           matchIfMissing = true)
+    public NameDictionary nameDictionary(StorageProperties storage) {
+        return new NameDictionary(storage.isEncodeGuestNames());
+    }
+
+    @Bean
+    @ConditionalOnExpression("${bookingmx.storage.cdc.enabled:false}"
+            + " or '${bookingmx.storage.replication.role:standalone}'.equalsIgnoreCase('primary')")
+    public ChangeLog changeLog(StorageProperties storage) {
+        return new ChangeLog(storage.getCdc().getCapacity());
+    }
+
+    /** Creates the store of one shard; shards share the configured capacity. */
+    private static ReservationStore reservationStore(StorageProperties storage, int shard) {
+        switch (storage.getEngine()) {
+            case COLUMNAR:
+                int capacity = (storage.getInitialCapacity() + storage.getShards() - 1) / storage.getShards();
+                return new ColumnarReservationStore(Math.max(1, capacity));
+            case HEAP:
+                return new HeapReservationStore();
+            case LSM:
+                return new LsmReservationStore(Path.of(storage.getDataDirectory()).resolve(shardFile("lsm", shard)),
+                        storage.getLsm().getMemtableBytes(),
+                        storage.getLsm().getCompactionFanout());
+            case MVCC:
+            default:
+                return new MvccReservationStore();
+        }
+    }
+
+    /** Puts an on-disk cold tier behind the shard's store when tiering is enabled. */
+    private static ReservationStore tiered(StorageProperties storage, int shard, ReservationStore hot) {
+        if (!storage.getTiering().isEnabled()) {
+            return hot;
+        }
+        Path coldDirectory = Path.of(storage.getDataDirectory()).resolve(shardFile("cold", shard));
+        return new TieredReservationStore(hot, new LsmReservationStore(coldDirectory));
+    }
+
+    /** Shard 0 keeps the unsharded file name, so changing the shard count keeps its data. */
+    private static String shardFile(String name, int shard) {
+        return shard == 0 ? name : name + "-" + shard;
+    }
+}
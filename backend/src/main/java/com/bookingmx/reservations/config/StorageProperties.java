@@ -0,0 +1,544 @@
+package com.bookingmx.reservations.config;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.replication.ReplicationRole;
+import com.bookingmx.reservations.repo.IdAllocator;
+import com.bookingmx.reservations.repo.JdbcReservationRepository;
+import com.bookingmx.reservations.repo.RepositoryType;
+import com.bookingmx.reservations.repo.StorageEngine;
+import com.bookingmx.reservations.repo.lsm.LsmReservationStore;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Storage settings bound from the {@code bookingmx.storage.*} keys in
+ * {@code application.properties}.
+ *
+ * <p>Example:
+ * <pre>
+ * bookingmx.storage.repository=memory
+ * bookingmx.storage.engine=columnar
+ * bookingmx.storage.initial-capacity=1000000
+ * bookingmx.storage.shards=8
+ * bookingmx.storage.single-writer=true
+ * bookingmx.storage.encode-guest-names=true
+ * bookingmx.storage.data-directory=data
+ * bookingmx.storage.wal.enabled=true
+ * bookingmx.storage.wal.group-commit-window=2ms
+ * bookingmx.storage.snapshot.enabled=true
+ * bookingmx.storage.snapshot.interval=PT5M
+ * bookingmx.storage.tiering.enabled=true
+ * bookingmx.storage.tiering.interval=PT10M
+ * bookingmx.storage.tiering.batch-size=10000
+ * bookingmx.storage.cdc.enabled=true
+ * bookingmx.storage.cdc.capacity=65536
+ * bookingmx.storage.replication.role=follower
+ * bookingmx.storage.replication.primary-host=10.0.0.5
+ * bookingmx.storage.retention.enabled=true
+ * bookingmx.storage.retention.mode=archive
+ * bookingmx.storage.retention.canceled-days=30
+ * bookingmx.storage.retention.completed-days=365
+ * bookingmx.storage.lsm.memtable-bytes=4194304
+ * bookingmx.storage.lsm.compaction-fanout=4
+ * bookingmx.storage.jdbc.url=jdbc:h2:file:./data/reservations
+ * bookingmx.storage.jdbc.batch-size=500
+ * </pre>
+ * </p>
+ */
+@ConfigurationProperties(prefix = "bookingmx.storage")
+public class StorageProperties {
+
+    /** Repository implementation; the remaining settings except {@link #jdbc} apply to {@code memory}. */
+    private RepositoryType repository = RepositoryType.MEMORY;
+
+    /** Storage engine used by the reservation repository. */
+    private StorageEngine engine = StorageEngine.MVCC;
+
+    /** Number of rows preallocated by engines that size their memory up front. */
+    private int initialCapacity = 1024;
+
+    /** Number of hotel shards the repository is split into. */
+    private int shards = 4;
+
+    /** Whether each shard runs its writes on one dedicated thread. */
+    private boolean singleWriter = false;
+
+    /** Whether the in-memory repository shares guest names through its dictionary, like hotel names. */
+    private boolean encodeGuestNames = false;
+
+    /** Directory holding the write-ahead log and snapshot files. */
+    private String dataDirectory = "data";
+
+    /** Number of IDs each thread reserves at a time when creating reservations. */
+    private int idBlockSize = IdAllocator.DEFAULT_BLOCK_SIZE;
+
+    /** Write-ahead log settings. */
+    private final Wal wal = new Wal();
+
+    /** Snapshot settings. */
+    private final Snapshot snapshot = new Snapshot();
+
+    /** Hot/cold tiering settings. */
+    private final Tiering tiering = new Tiering();
+
+    /** Retention settings. */
+    private final Retention retention = new Retention();
+
+    /** Change-data-capture settings. */
+    private final Cdc cdc = new Cdc();
+
+    /** LSM engine settings. */
+    private final Lsm lsm = new Lsm();
+
+    /** JDBC repository settings. */
+    private final Jdbc jdbc = new Jdbc();
+
+    /** Log-shipping replication settings. */
+    private final Replication replication = new Replication();
+
+    /** @return the repository implementation */
+    public RepositoryType getRepository() { return repository; }
+
+    /** @param repository sets the repository implementation */
+    public void setRepository(RepositoryType repository) { this.repository = repository; }
+
+    /** @return the configured storage engine */
+    public StorageEngine getEngine() { return engine; }
+
+    /** @param engine sets the storage engine */
+    public void setEngine(StorageEngine engine) { this.engine = engine; }
+
+    /** @return the number of rows to preallocate */
+    public int getInitialCapacity() { return initialCapacity; }
+
+    /** @param initialCapacity sets the number of rows to preallocate */
+    public void setInitialCapacity(int initialCapacity) { this.initialCapacity = initialCapacity; }
+
+    /** @return the number of hotel shards */
+    public int getShards() { return shards; }
+
+    /** @param shards sets the number of hotel shards */
+    public void setShards(int shards) { this.shards = shards; }
+
+    /** @return whether each shard has a single writer thread */
+    public boolean isSingleWriter() { return singleWriter; }
+
+    /** @param singleWriter sets whether each shard has a single writer thread */
+    public void setSingleWriter(boolean singleWriter) { this.singleWriter = singleWriter; }
+
+    /** @return whether stored guest names are shared through the name dictionary */
+    public boolean isEncodeGuestNames() { return encodeGuestNames; }
+
+    /** @param encodeGuestNames sets whether stored guest names are shared through the name dictionary */
+    public void setEncodeGuestNames(boolean encodeGuestNames) { this.encodeGuestNames = encodeGuestNames; }
+
+    /** @return the directory for durable files */
+    public String getDataDirectory() { return dataDirectory; }
+
+    /** @param dataDirectory sets the directory for durable files */
+    public void setDataDirectory(String dataDirectory) { this.dataDirectory = dataDirectory; }
+
+    /** @return the number of IDs reserved per thread at a time */
+    public int getIdBlockSize() { return idBlockSize; }
+
+    /** @param idBlockSize sets the number of IDs reserved per thread at a time */
+    public void setIdBlockSize(int idBlockSize) { this.idBlockSize = idBlockSize; }
+
+    /** @return the write-ahead log settings */
+    public Wal getWal() { return wal; }
+
+    /** @return the snapshot settings */
+    public Snapshot getSnapshot() { return snapshot; }
+
+    /** @return the hot/cold tiering settings */
+    public Tiering getTiering() { return tiering; }
+
+    /** @return the retention settings */
+    public Retention getRetention() { return retention; }
+
+    /** @return the LSM engine settings */
+    public Lsm getLsm() { return lsm; }
+
+    /** @return the JDBC repository settings */
+    public Jdbc getJdbc() { return jdbc; }
+
+    /** @return the change-data-capture settings */
+    public Cdc getCdc() { return cdc; }
+
+    /** @return the replication settings */
+    public Replication getReplication() { return replication; }
+
+    /** Settings bound from {@code bookingmx.storage.wal.*}. */
+    public static class Wal {
+
+        /** Whether repository mutations are logged and replayed on startup. */
+        private boolean enabled = false;
+
+        /** How long the flusher waits for more writers before syncing a batch. */
+        private Duration groupCommitWindow = Duration.ofMillis(2);
+
+        /** Whether each batch is forced to disk; disable only for tests and benchmarks. */
+        private boolean fsync = true;
+
+        /** @return whether the log is enabled */
+        public boolean isEnabled() { return enabled; }
+
+        /** @param enabled sets whether the log is enabled */
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** @return the group-commit window */
+        public Duration getGroupCommitWindow() { return groupCommitWindow; }
+
+        /** @param groupCommitWindow sets the group-commit window */
+        public void setGroupCommitWindow(Duration groupCommitWindow) { this.groupCommitWindow = groupCommitWindow; }
+
+        /** @return whether batches are forced to disk */
+        public boolean isFsync() { return fsync; }
+
+        /** @param fsync sets whether batches are forced to disk */
+        public void setFsync(boolean fsync) { this.fsync = fsync; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.snapshot.*}. */
+    public static class Snapshot {
+
+        /** Whether the repository is restored from and periodically written to a snapshot. */
+        private boolean enabled = false;
+
+        /** Delay between the end of one snapshot and the start of the next. */
+        private Duration interval = Duration.ofMinutes(5);
+
+        /** @return whether snapshots are enabled */
+        public boolean isEnabled() { return enabled; }
+
+        /** @param enabled sets whether snapshots are enabled */
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** @return the delay between snapshots */
+        public Duration getInterval() { return interval; }
+
+        /** @param interval sets the delay between snapshots */
+        public void setInterval(Duration interval) { this.interval = interval; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.tiering.*}. */
+    public static class Tiering {
+
+        /** Whether finished and canceled reservations are moved to an on-disk cold tier. */
+        private boolean enabled = false;
+
+        /** Delay between the end of one tiering run and the start of the next. */
+        private Duration interval = Duration.ofMinutes(10);
+
+        /** Most reservations moved by one run. */
+        private int batchSize = 10_000;
+
+        /** @return whether tiering is enabled */
+        public boolean isEnabled() { return enabled; }
+
+        /** @param enabled sets whether tiering is enabled */
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** @return the delay between runs */
+        public Duration getInterval() { return interval; }
+
+        /** @param interval sets the delay between runs */
+        public void setInterval(Duration interval) { this.interval = interval; }
+
+        /** @return the most reservations moved per run */
+        public int getBatchSize() { return batchSize; }
+
+        /** @param batchSize sets the most reservations moved per run */
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.cdc.*}. */
+    public static class Cdc {
+
+        /** Whether saves and deletes are published to a {@link ChangeLog}. */
+        private boolean enabled = false;
+
+        /** Number of change records retained for consumers that fall behind. */
+        private int capacity = ChangeLog.DEFAULT_CAPACITY;
+
+        /** Consumer lag, in records, above which the lag report warns. */
+        private long maxLag = 10_000;
+
+        /** Delay between lag reports. */
+        private Duration reportInterval = Duration.ofMinutes(1);
+
+        /** @return whether change data capture is enabled */
+        public boolean isEnabled() { return enabled; }
+
+        /** @param enabled sets whether change data capture is enabled */
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** @return the number of records retained */
+        public int getCapacity() { return capacity; }
+
+        /** @param capacity sets the number of records retained */
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+
+        /** @return the lag that triggers a warning */
+        public long getMaxLag() { return maxLag; }
+
+        /** @param maxLag sets the lag that triggers a warning */
+        public void setMaxLag(long maxLag) { this.maxLag = maxLag; }
+
+        /** @return the delay between lag reports */
+        public Duration getReportInterval() { return reportInterval; }
+
+        /** @param reportInterval sets the delay between lag reports */
+        public void setReportInterval(Duration reportInterval) { this.reportInterval = reportInterval; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.retention.*}. */
+    public static class Retention {
+
+        /** What happens to expired reservations. */
+        public enum Mode {
+            /** Delete them. */
+            PURGE,
+            /** Append them to {@code reservations.archive} in the data directory, then delete them. */
+            ARCHIVE
+        }
+
+        /** Whether expired reservations are removed on a schedule. */
+        private boolean enabled = false;
+
+        /** Whether expired reservations are purged or archived. */
+        private Mode mode = Mode.PURGE;
+
+        /** Days after check-out a canceled reservation is kept. */
+        private int canceledDays = 30;
+
+        /** Days after check-out a completed stay is kept. */
+        private int completedDays = 365;
+
+        /** Reservations archived and deleted together. */
+        private int batchSize = 500;
+
+        /** Most reservations removed by one run. */
+        private int maxPerRun = 10_000;
+
+        /** Delay between the end of one run and the start of the next. */
+        private Duration interval = Duration.ofMinutes(15);
+
+        /** @return whether retention is enabled */
+        public boolean isEnabled() { return enabled; }
+
+        /** @param enabled sets whether retention is enabled */
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        /** @return whether expired reservations are purged or archived */
+        public Mode getMode() { return mode; }
+
+        /** @param mode sets whether expired reservations are purged or archived */
+        public void setMode(Mode mode) { this.mode = mode; }
+
+        /** @return days a canceled reservation is kept after check-out */
+        public int getCanceledDays() { return canceledDays; }
+
+        /** @param canceledDays sets the days a canceled reservation is kept after check-out */
+        public void setCanceledDays(int canceledDays) { this.canceledDays = canceledDays; }
+
+        /** @return days a completed stay is kept after check-out */
+        public int getCompletedDays() { return completedDays; }
+
+        /** @param completedDays sets the days a completed stay is kept after check-out */
+        public void setCompletedDays(int completedDays) { this.completedDays = completedDays; }
+
+        /** @return the reservations removed per batch */
+        public int getBatchSize() { return batchSize; }
+
+        /** @param batchSize sets the reservations removed per batch */
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        /** @return the most reservations removed per run */
+        public int getMaxPerRun() { return maxPerRun; }
+
+        /** @param maxPerRun sets the most reservations removed per run */
+        public void setMaxPerRun(int maxPerRun) { this.maxPerRun = maxPerRun; }
+
+        /** @return the delay between runs */
+        public Duration getInterval() { return interval; }
+
+        /** @param interval sets the delay between runs */
+        public void setInterval(Duration interval) { this.interval = interval; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.lsm.*}. */
+    public static class Lsm {
+
+        /** Estimated memtable size in bytes that triggers a flush to a segment file. */
+        private long memtableBytes = LsmReservationStore.DEFAULT_MEMTABLE_BYTES;
+
+        /** Number of same-size segments merged by one compaction. */
+        private int compactionFanout = LsmReservationStore.DEFAULT_FANOUT;
+
+        /** @return the memtable flush threshold in bytes */
+        public long getMemtableBytes() { return memtableBytes; }
+
+        /** @param memtableBytes sets the memtable flush threshold in bytes */
+        public void setMemtableBytes(long memtableBytes) { this.memtableBytes = memtableBytes; }
+
+        /** @return the number of segments merged per compaction */
+        public int getCompactionFanout() { return compactionFanout; }
+
+        /** @param compactionFanout sets the number of segments merged per compaction */
+        public void setCompactionFanout(int compactionFanout) { this.compactionFanout = compactionFanout; }
+    }
+
+    /** Settings of the JDBC repository, used when {@code repository=jdbc}. */
+    public static class Jdbc {
+
+        /** JDBC URL of the database; the driver must be on the classpath. */
+        private String url = "jdbc:h2:file:./data/reservations";
+
+        /** Database user, or none. */
+        private String username;
+
+        /** Database password, or none. */
+        private String password;
+
+        /** Number of connections kept open. */
+        private int poolSize = JdbcReservationRepository.DEFAULT_POOL_SIZE;
+
+        /** Rows written per JDBC batch. */
+        private int batchSize = JdbcReservationRepository.DEFAULT_BATCH_SIZE;
+
+        /** Rows fetched per keyset page. */
+        private int pageSize = JdbcReservationRepository.DEFAULT_PAGE_SIZE;
+
+        /** @return the JDBC URL */
+        public String getUrl() { return url; }
+
+        /** @param url sets the JDBC URL */
+        public void setUrl(String url) { this.url = url; }
+
+        /** @return the database user */
+        public String getUsername() { return username; }
+
+        /** @param username sets the database user */
+        public void setUsername(String username) { this.username = username; }
+
+        /** @return the database password */
+        public String getPassword() { return password; }
+
+        /** @param password sets the database password */
+        public void setPassword(String password) { this.password = password; }
+
+        /** @return the number of pooled connections */
+        public int getPoolSize() { return poolSize; }
+
+        /** @param poolSize sets the number of pooled connections */
+        public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+
+        /** @return the rows per JDBC batch */
+        public int getBatchSize() { return batchSize; }
+
+        /** @param batchSize sets the rows per JDBC batch */
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        /** @return the rows per keyset page */
+        public int getPageSize() { return pageSize; }
+
+        /** @param pageSize sets the rows per keyset page */
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    }
+
+    /** Settings bound from {@code bookingmx.storage.replication.*}. */
+    public static class Replication {
+
+        /** Whether this process is standalone, a primary or a follower. */
+        private ReplicationRole role = ReplicationRole.STANDALONE;
+
+        /** Address a primary listens on for followers. */
+        private String bindAddress = "127.0.0.1";
+
+        /** Port a primary listens on for followers. */
+        private int port = 7070;
+
+        /** Host of the primary a follower connects to. */
+        private String primaryHost = "127.0.0.1";
+
+        /** Port of the primary a follower connects to. */
+        private int primaryPort = 7070;
+
+        /** How often a primary tells each follower its position. */
+        private Duration heartbeatInterval = Duration.ofSeconds(1);
+
+        /** How long a follower waits for the primary before reconnecting. */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        /** Pause before a follower reconnects. */
+        private Duration reconnectDelay = Duration.ofSeconds(2);
+
+        /** Follower lag, in records, above which the lag report warns. */
+        private long maxLag = 10_000;
+
+        /** Delay between lag reports. */
+        private Duration reportInterval = Duration.ofMinutes(1);
+
+        /** @return the replication role */
+        public ReplicationRole getRole() { return role; }
+
+        /** @param role sets the replication role */
+        public void setRole(ReplicationRole role) { this.role = role; }
+
+        /** @return the address a primary listens on */
+        public String getBindAddress() { return bindAddress; }
+
+        /** @param bindAddress sets the address a primary listens on */
+        public void setBindAddress(String bindAddress) { this.bindAddress = bindAddress; }
+
+        /** @return the port a primary listens on */
+        public int getPort() { return port; }
+
+        /** @param port sets the port a primary listens on */
+        public void setPort(int port) { this.port = port; }
+
+        /** @return the host of the primary */
+        public String getPrimaryHost() { return primaryHost; }
+
+        /** @param primaryHost sets the host of the primary */
+        public void setPrimaryHost(String primaryHost) { this.primaryHost = primaryHost; }
+
+        /** @return the port of the primary */
+        public int getPrimaryPort() { return primaryPort; }
+
+        /** @param primaryPort sets the port of the primary */
+        public void setPrimaryPort(int primaryPort) { this.primaryPort = primaryPort; }
+
+        /** @return the heartbeat interval */
+        public Duration getHeartbeatInterval() { return heartbeatInterval; }
+
+        /** @param heartbeatInterval sets the heartbeat interval */
+        public void setHeartbeatInterval(Duration heartbeatInterval) { this.heartbeatInterval = heartbeatInterval; }
+
+        /** @return how long a follower waits for the primary */
+        public Duration getTimeout() { return timeout; }
+
+        /** @param timeout sets how long a follower waits for the primary */
+        public void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+        /** @return the pause before reconnecting */
+        public Duration getReconnectDelay() { return reconnectDelay; }
+
+        /** @param reconnectDelay sets the pause before reconnecting */
+        public void setReconnectDelay(Duration reconnectDelay) { this.reconnectDelay = reconnectDelay; }
+
+        /** @return the lag that triggers a warning */
+        public long getMaxLag() { return maxLag; }
+
+        /** @param maxLag sets the lag that triggers a warning */
+        public void setMaxLag(long maxLag) { this.maxLag = maxLag; }
+
+        /** @return the delay between lag reports */
+        public Duration getReportInterval() { return reportInterval; }
+
+        /** @param reportInterval sets the delay between lag reports */
+        public void setReportInterval(Duration reportInterval) { this.reportInterval = reportInterval; }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bookingmx.reservations.controller;
+
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the per-hotel command queues: for each hotel that has had a change since its queue
+ * was created, the changes waiting now and at most, and how many were run, in how many
+ * batches, and how many were turned away, timed out or abandoned while running, and how often
+ * a change of two hotels paused the queue. Deepest queues first. Queues retired for being idle are only counted.
+ */
+@RestController
+@CrossOrigin(origins = {"http://localhost:5173", "http://127.0.0.1:5173", "*"})
+@RequestMapping(value = "/api/queues", produces = MediaType.APPLICATION_JSON_VALUE)
+public class CommandQueueController {
+
+    private final HotelCommandQueues queues;
+
+    public CommandQueueController(HotelCommandQueues queues) {
+        this.queues = queues;
+    }
+
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", queues.isEnabled());
+        status.put("retired", queues.retired());
+        // Depths move while they are read: sort on the values reported, not live ones.
+        List<Map<String, Object>> hotels = queues.queues().stream()
+                .map(queue -> {
+                    Map<String, Object> q = new LinkedHashMap<>();
+                    q.put("hotel", queue.hotelName());
+                    q.put("depth", queue.depth());
+                    q.put("peakDepth", queue.peakDepth());
+                    q.put("processed", queue.processed());
+                    q.put("batches", queue.batches());
+                    q.put("rejected", queue.rejected());
+                    q.put("timedOut", queue.timedOut());
+                    q.put("abandoned", queue.abandoned());
+                    q.put("paused", queue.paused());
+                    return q;
+                })
+                .sorted(Comparator.comparingInt((Map<String, Object> q) -> (Integer) q.get("depth")).reversed())
+                .toList();
+        status.put("queues", hotels);
+        return status;
+    }
+}
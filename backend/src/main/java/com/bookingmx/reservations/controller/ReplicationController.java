@@ -0,0 +1,64 @@
+package com.bookingmx.reservations.controller;
+
+import com.bookingmx.reservations.replication.ReplicationFollower;
+import com.bookingmx.reservations.replication.ReplicationRole;
+import com.bookingmx.reservations.replication.ReplicationServer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports this process's replication role and lag.
+ *
+ * <p>A follower reports the sequence it has applied, the primary's last known sequence and
+ * the lag between them, in records and in milliseconds; a primary reports its last sequence
+ * and the lag of each connected follower.</p>
+ */
+@RestController
+@CrossOrigin(origins = {"http://localhost:5173", "http://127.0.0.1:5173", "*"})
+@RequestMapping(value = "/api/replication", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ReplicationController {
+
+    private final ReplicationServer server;
+    private final ReplicationFollower follower;
+
+    public ReplicationController(ObjectProvider<ReplicationServer> server, ObjectProvider<ReplicationFollower> follower) {
+        this.server = server.getIfAvailable();
+        this.follower = follower.getIfAvailable();
+    }
+
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (follower != null) {
+            status.put("role", ReplicationRole.FOLLOWER);
+            status.put("connected", follower.isConnected());
+            status.put("appliedSequence", follower.appliedSequence());
+            status.put("primarySequence", follower.primarySequence());
+            status.put("lagRecords", follower.lag());
+            status.put("lagMillis", follower.lagMillis());
+            status.put("copies", follower.copies());
+        } else if (server != null) {
+            status.put("role", ReplicationRole.PRIMARY);
+            status.put("lastSequence", server.lastSequence());
+            status.put("copies", server.copies());
+            List<Map<String, Object>> followers = server.followers().stream().map(link -> {
+                Map<String, Object> f = new LinkedHashMap<>();
+                f.put("address", link.address());
+                f.put("copying", link.copying());
+                f.put("position", link.position());
+                f.put("lagRecords", link.lag());
+                return f;
+            }).toList();
+            status.put("followers", followers);
+        } else {
+            status.put("role", ReplicationRole.STANDALONE);
+        }
+        return status;
+    }
+}
@@ -2,51 +2,219 @@ package com.bookingmx.reservations.controller;
 
 import com.bookingmx.reservations.dto.ReservationRequest;
 import com.bookingmx.reservations.dto.ReservationResponse;
+import com.bookingmx.reservations.exception.BadRequestException;
+import com.bookingmx.reservations.exception.PreconditionFailedException;
+import com.bookingmx.reservations.importer.ImportFormat;
+import com.bookingmx.reservations.importer.ImportResult;
+import com.bookingmx.reservations.importer.ReservationImporter;
 import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.ReadView;
 import com.bookingmx.reservations.service.ReservationService;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
+import java.util.Spliterator;
 
+/**
+ * REST endpoints for reservations.
+ *
+ * <p>A single reservation is sent with its version as a strong {@code ETag}, e.g.
+ * {@code "3"}. {@code PUT} and {@code DELETE} honour {@code If-Match}: the change is only
+ * made if the reservation is still at that version, and otherwise fails with
+ * {@code 412 Precondition Failed}, so a client cannot overwrite a change it has not seen.
+ * Without {@code If-Match} the change applies to whatever version is current.</p>
+ */
 @RestController
 @CrossOrigin(origins = {"http://localhost:5173", "http://127.0.0.1:5173", "*"})
 @RequestMapping(value = "/api/reservations", produces = MediaType.APPLICATION_JSON_VALUE)
 public class ReservationController {
 
     private final ReservationService service;
+    private final ReservationImporter importer;
+    private final ObjectMapper objectMapper;
+    /** Writes one element; flushing is left to the generator's buffer. */
+    private final ObjectWriter elementWriter;
 
-    public ReservationController(ReservationService service) {
+    public ReservationController(ReservationService service, ReservationImporter importer,
+                                 ObjectMapper objectMapper) {
         this.service = service;
+        this.importer = importer;
+        this.objectMapper = objectMapper;
+        this.elementWriter = objectMapper.writerFor(ReservationResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @GetMapping
-    public List<ReservationResponse> list() {
-        return service.list().stream()
+    public void list(
+            @RequestParam(value = "hotel", required = false) String hotel,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        ReservationStatus wanted = parseStatus(status);
+        Spliterator<Reservation> reservations;
+        if (from != null || to != null) {
+            if (hotel == null) {
+                throw new BadRequestException("Date filters require a hotel");
+            }
+            if (from == null) {
+                throw new BadRequestException("'to' requires 'from'");
+            }
+            if (wanted != null && wanted != ReservationStatus.ACTIVE) {
+                throw new BadRequestException("Date filters only cover ACTIVE reservations");
+            }
+            reservations = service.listOverlapping(hotel, from, to).spliterator();
+        } else if (hotel != null) {
+            reservations = (wanted == null ? service.listByHotel(hotel) : service.listByHotel(hotel, wanted)).spliterator();
+        } else if (wanted != null) {
+            reservations = service.listByStatus(wanted).spliterator();
+        } else {
+            // Unfiltered listing walks a consistent snapshot in place instead of copying it.
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            try (ReadView snapshot = service.snapshot()) {
+                writeJsonArray(snapshot.spliterator(), response.getOutputStream());
+            }
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        writeJsonArray(reservations, response.getOutputStream());
+    }
+
+    @GetMapping("/search")
+    public List<ReservationResponse> search(
+            @RequestParam("guest") String guest,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return service.searchByGuest(guest, limit).stream()
                 .map(this::toResponse)
                 .toList();
     }
 
+    /** Sends the reservation with its {@code ETag}, or {@code 304} if it matches {@code If-None-Match}. */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReservationResponse> get(@PathVariable("id") Long id, WebRequest request) {
+        Reservation r = service.get(id);
+        if (request.checkNotModified(eTag(r))) {
+            return null;
+        }
+        return withETag(r);
+    }
+
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ReservationResponse create(@Valid @RequestBody ReservationRequest req) {
-        return toResponse(service.create(req));
+    public ResponseEntity<ReservationResponse> create(@Valid @RequestBody ReservationRequest req) {
+        return withETag(service.create(req));
+    }
+
+    /**
+     * Imports a whole NDJSON ({@code application/x-ndjson}) or CSV ({@code text/csv}) body,
+     * streamed rather than buffered; rejected rows are listed in the result, not fatal.
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ImportResult importReservations(HttpServletRequest request) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(request.getContentType());
+        return importer.importFrom(request.getReader(), format);
     }
 
     @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ReservationResponse update(@PathVariable("id") Long id, @Valid @RequestBody ReservationRequest req) {
-        return toResponse(service.update(id, req));
+    public ResponseEntity<ReservationResponse> update(
+            @PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody ReservationRequest req) {
+        return withETag(service.update(id, req, expectedVersion(ifMatch)));
     }
 
     @DeleteMapping("/{id}")
-    public ReservationResponse cancel(@PathVariable("id") Long id) {
-        return toResponse(service.cancel(id));
+    public ResponseEntity<ReservationResponse> cancel(
+            @PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withETag(service.cancel(id, expectedVersion(ifMatch)));
+    }
+
+    /**
+     * Serializes reservations one at a time as a JSON array, so the response never holds more
+     * than one {@link ReservationResponse} in memory.
+     */
+    private void writeJsonArray(Spliterator<Reservation> reservations, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            reservations.forEachRemaining(r -> {
+                try {
+                    elementWriter.writeValue(json, toResponse(r));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ReservationStatus parseStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return ReservationStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown status: " + status);
+        }
+    }
+
+    /**
+     * @return the version named by an {@code If-Match} header, or {@code null} if there is none
+     *         or it is {@code *}
+     * @throws PreconditionFailedException for a weak or malformed tag, which never matches
+     * @throws BadRequestException for a list of tags
+     */
+    static Integer expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.strip();
+        if (tag.indexOf(',') >= 0) {
+            throw new BadRequestException("If-Match must name a single ETag");
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Integer.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // falls through: not one of our tags
+            }
+        }
+        throw new PreconditionFailedException("If-Match " + tag + " does not match any version");
+    }
+
+    private static String eTag(Reservation r) {
+        return "\"" + r.getVersion() + "\"";
+    }
+
+    private ResponseEntity<ReservationResponse> withETag(Reservation r) {
+        return ResponseEntity.ok().eTag(eTag(r)).body(toResponse(r));
     }
 
     private ReservationResponse toResponse(Reservation r) {
         return new ReservationResponse(
-                r.getId(), r.getGuestName(), r.getHotelName(), r.getCheckIn(), r.getCheckOut(), r.getStatus()
+                r.getId(), r.getGuestName(), r.getHotelName(), r.getCheckIn(), r.getCheckOut(), r.getStatus(),
+                r.getVersion()
         );
     }
 }
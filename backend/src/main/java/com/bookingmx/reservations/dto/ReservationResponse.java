@@ -33,6 +33,9 @@ public class ReservationResponse {
     /** Current status of the reservation (ACTIVE or CANCELED). */
     private ReservationStatus status;
 
+    /** Version of the reservation, also sent as its {@code ETag}. */
+    private int version;
+
     /**
      * Constructs a new response DTO containing reservation data.
      *
@@ -42,15 +45,17 @@ public class ReservationResponse {
      * @param checkIn   check-in date
      * @param checkOut  check-out date
      * @param status    current reservation status
+     * @param version   the reservation's version
      */
     public ReservationResponse(Long id, String guestName, String hotelName,
-                               LocalDate checkIn, LocalDate checkOut, ReservationStatus status) {
+                               LocalDate checkIn, LocalDate checkOut, ReservationStatus status, int version) {
         this.id = id;
         this.guestName = guestName;
         this.hotelName = hotelName;
         this.checkIn = checkIn;
         this.checkOut = checkOut;
         this.status = status;
+        this.version = version;
     }
 
     /** @return the reservation ID */
@@ -70,4 +75,7 @@ public class ReservationResponse {
 
     /** @return the current reservation status */
     public ReservationStatus getStatus() { return status; }
+
+    /** @return the reservation's version */
+    public int getVersion() { return version; }
 }
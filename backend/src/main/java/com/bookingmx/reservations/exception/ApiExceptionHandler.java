@@ -3,6 +3,7 @@ package com.bookingmx.reservations.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.Instant;
 import java.util.Map;
@@ -15,11 +16,37 @@ public class ApiExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorBody(ex.getMessage(), 400));
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<?> typeMismatch(MethodArgumentTypeMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(errorBody("Invalid value for '" + ex.getName() + "'", 400));
+    }
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<?> notFound(NotFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorBody(ex.getMessage(), 404));
     }
 
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<?> conflict(ConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorBody(ex.getMessage(), 409));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> serviceUnavailable(ServiceUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorBody(ex.getMessage(), 503));
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<?> preconditionFailed(PreconditionFailedException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(errorBody(ex.getMessage(), 412));
+    }
+
+    @ExceptionHandler(ReadOnlyReplicaException.class)
+    public ResponseEntity<?> readOnly(ReadOnlyReplicaException ex) {
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).body(errorBody(ex.getMessage(), 405));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> generic(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorBody("Unexpected error", 500));
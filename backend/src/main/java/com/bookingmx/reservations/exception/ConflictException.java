@@ -0,0 +1,24 @@
+package com.bookingmx.reservations.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a request is valid but clashes with the current state of the
+ * reservations, such as a stay at a hotel that is fully booked on one of its nights.
+ *
+ * <p>Spring returns an HTTP <strong>409 Conflict</strong> response when this exception is
+ * thrown.</p>
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+
+    /**
+     * Constructs a new ConflictException with a descriptive message.
+     *
+     * @param message a human-readable explanation of the error
+     */
+    public ConflictException(String message) {
+        super(message);
+    }
+}
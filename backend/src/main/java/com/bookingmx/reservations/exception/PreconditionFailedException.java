@@ -0,0 +1,25 @@
+package com.bookingmx.reservations.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a conditional change was made from a version of the reservation
+ * that is no longer the stored one, because another change was saved in between.
+ *
+ * <p>Spring returns an HTTP <strong>412 Precondition Failed</strong> response when this
+ * exception is thrown; clients should fetch the reservation again and reapply their
+ * change.</p>
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+
+    /**
+     * Constructs a new PreconditionFailedException with a descriptive message.
+     *
+     * @param message a human-readable explanation of the error
+     */
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
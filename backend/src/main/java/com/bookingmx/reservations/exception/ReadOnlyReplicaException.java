@@ -0,0 +1,23 @@
+package com.bookingmx.reservations.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a write reaches a follower replica, which only serves reads.
+ *
+ * <p>Spring returns an HTTP <strong>405 Method Not Allowed</strong> response when this
+ * exception is thrown; clients should send writes to the primary instead.</p>
+ */
+@ResponseStatus(HttpStatus.METHOD_NOT_ALLOWED)
+public class ReadOnlyReplicaException extends RuntimeException {
+
+    /**
+     * Constructs a new ReadOnlyReplicaException with a descriptive message.
+     *
+     * @param message a human-readable explanation of the error
+     */
+    public ReadOnlyReplicaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.bookingmx.reservations.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a change cannot be carried out in time, such as when a hotel's
+ * command queue is full or the change did not run within the wait allowed for it.
+ *
+ * <p>Spring returns an HTTP <strong>503 Service Unavailable</strong> response when this
+ * exception is thrown; the client may retry.</p>
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+
+    /**
+     * Constructs a new ServiceUnavailableException with a descriptive message.
+     *
+     * @param message a human-readable explanation of the error
+     */
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
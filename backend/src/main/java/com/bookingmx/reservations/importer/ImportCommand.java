@@ -0,0 +1,99 @@
+package com.bookingmx.reservations.importer;
+
+import com.bookingmx.reservations.BookingMxApplication;
+import com.bookingmx.reservations.config.StorageProperties;
+import com.bookingmx.reservations.repo.RepositoryType;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command-line bulk import, run through the application's main class:
+ *
+ * <pre>
+ * java -jar bookingmx.jar import reservations.csv [--format=csv|ndjson] [--bookingmx.storage.*=...]
+ * </pre>
+ *
+ * <p>Starts the application without its web server, so rows go to the repository the usual
+ * properties configure, imports the file with {@link ReservationImporter} and prints the
+ * result. The format follows the file extension ({@code .csv}, {@code .ndjson} or
+ * {@code .jsonl}) unless {@code --format} is given. With the in-memory repository, enable the
+ * write-ahead log so the imported reservations outlive the command.</p>
+ */
+public final class ImportCommand {
+
+    /** First argument that selects this command. */
+    public static final String NAME = "import";
+
+    private ImportCommand() {
+    }
+
+    /**
+     * @param args the file, then options and application properties
+     * @return the process exit status: 0 if every row was imported, 2 if some were rejected,
+     *         1 if the import could not run
+     */
+    public static int run(String[] args) {
+        Path file = null;
+        ImportFormat format = null;
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                String name = arg.substring("--format=".length()).toUpperCase(Locale.ROOT);
+                if (!name.equals("CSV") && !name.equals("NDJSON")) {
+                    System.err.println("Unknown format " + name + "; use csv or ndjson");
+                    return 1;
+                }
+                format = ImportFormat.valueOf(name);
+            } else if (arg.startsWith("--")) {
+                properties.add(arg);
+            } else if (file == null) {
+                file = Path.of(arg);
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: import <file> [--format=csv|ndjson] [--property=value...]");
+            return 1;
+        }
+        if (format == null) {
+            format = ImportFormat.fromFileName(file.getFileName().toString());
+        }
+        if (format == null) {
+            System.err.println("Cannot tell the format of " + file + "; pass --format=csv or --format=ndjson");
+            return 1;
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BookingMxApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(properties.toArray(String[]::new));
+             Reader input = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            StorageProperties storage = context.getBean(StorageProperties.class);
+            if (storage.getRepository() == RepositoryType.MEMORY && !storage.getWal().isEnabled()) {
+                System.err.println("Warning: the in-memory repository without a write-ahead log keeps nothing"
+                        + " after this command; set --bookingmx.storage.wal.enabled=true");
+            }
+            ImportResult result = context.getBean(ReservationImporter.class).importFrom(input, format);
+            System.out.printf("Imported %,d of %,d rows in %,d ms; %,d rejected%n",
+                    result.getImported(), result.getRows(), result.getMillis(), result.getFailed());
+            for (ImportResult.RowError error : result.getErrors()) {
+                System.out.printf("  line %d: %s%n", error.getLine(), error.getMessage());
+            }
+            if (result.getErrors().size() < result.getFailed()) {
+                System.out.printf("  ... and %,d more%n", result.getFailed() - result.getErrors().size());
+            }
+            return result.getFailed() == 0 ? 0 : 2;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            return 1;
+        }
+    }
+}
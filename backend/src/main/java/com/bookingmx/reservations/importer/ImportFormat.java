@@ -0,0 +1,58 @@
+package com.bookingmx.reservations.importer;
+
+import java.util.Locale;
+
+/**
+ * File formats accepted by {@link ReservationImporter}.
+ */
+public enum ImportFormat {
+
+    /**
+     * One JSON object per line, with the fields of a
+     * {@link com.bookingmx.reservations.dto.ReservationRequest}.
+     */
+    NDJSON,
+
+    /**
+     * Comma-separated values, one reservation per line, with an optional header naming the
+     * columns {@code guestName}, {@code hotelName}, {@code checkIn} and {@code checkOut}; without
+     * a header the columns are expected in that order. Fields may be quoted, but a quoted field
+     * cannot span lines.
+     */
+    CSV;
+
+    /**
+     * @param contentType a request's content type, possibly with parameters
+     * @return the matching format, or {@code null} if none matches
+     */
+    public static ImportFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String type = contentType.split(";", 2)[0].strip().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "application/x-ndjson":
+            case "application/jsonl":
+                return NDJSON;
+            case "text/csv":
+                return CSV;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param fileName a file name
+     * @return the format its extension suggests, or {@code null} if it suggests none
+     */
+    public static ImportFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        return null;
+    }
+}
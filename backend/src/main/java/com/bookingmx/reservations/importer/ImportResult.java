@@ -0,0 +1,57 @@
+package com.bookingmx.reservations.importer;
+
+import java.util.List;
+
+/**
+ * What one {@link ReservationImporter} run loaded, returned as the body of
+ * {@code POST /api/reservations/import}.
+ */
+public class ImportResult {
+
+    /** A row that was not imported. */
+    public static class RowError {
+
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /** @return the row's line number in the input, starting at 1 */
+        public long getLine() { return line; }
+
+        /** @return why the row was rejected */
+        public String getMessage() { return message; }
+    }
+
+    private final long rows;
+    private final long imported;
+    private final long failed;
+    private final List<RowError> errors;
+    private final long millis;
+
+    ImportResult(long rows, long imported, long failed, List<RowError> errors, long millis) {
+        this.rows = rows;
+        this.imported = imported;
+        this.failed = failed;
+        this.errors = List.copyOf(errors);
+        this.millis = millis;
+    }
+
+    /** @return the rows read, not counting blank lines and the CSV header */
+    public long getRows() { return rows; }
+
+    /** @return the reservations saved */
+    public long getImported() { return imported; }
+
+    /** @return the rows rejected */
+    public long getFailed() { return failed; }
+
+    /** @return the first rejected rows, in input order; at most the importer's error limit */
+    public List<RowError> getErrors() { return errors; }
+
+    /** @return how long the import took */
+    public long getMillis() { return millis; }
+}
@@ -0,0 +1,460 @@
+package com.bookingmx.reservations.importer;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.dto.ReservationRequest;
+import com.bookingmx.reservations.exception.BadRequestException;
+import com.bookingmx.reservations.exception.ConflictException;
+import com.bookingmx.reservations.exception.ServiceUnavailableException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.CommitGroup;
+import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+import com.bookingmx.reservations.service.ReservationService;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads reservations in bulk from an NDJSON or CSV stream.
+ *
+ * <p>The input is read in chunks of {@code chunkSize} lines, which are parsed and validated
+ * on {@code parallelism} worker threads while the next chunks are read. Each row gets the
+ * checks of a single create: guest and hotel names must not be blank and the dates must pass
+ * {@link ReservationService#validateDates}. The valid rows of each chunk then take their nights
+ * from the {@link HotelCapacity}, in input order, and those that fit are saved with one
+ * {@link ReservationRepository#saveAll} call, so IDs follow the order of the file. A rejected
+ * row is reported with its line number and does not stop the import; at most
+ * {@code maxErrors} of them are kept in the {@link ImportResult}, though all are counted.</p>
+ *
+ * <p>With {@link HotelCommandQueues} enabled, the valid rows of a chunk are grouped by hotel
+ * instead, and each group is booked and saved on its hotel's queue, like any other change to
+ * that hotel; IDs then follow the order of the file within each hotel. The rows of a group the
+ * queue turns away, or does not run in time, are reported as rejected with the queue's reason
+ * and the import goes on with the next group; rows of a group that had already started may
+ * still be saved, as the reason says.</p>
+ *
+ * <p>At most two chunks per worker are held in memory at a time, so inputs of any size stream
+ * through. A failure of the repository itself, unlike a bad row, ends the import; the chunks
+ * saved before it stay saved.</p>
+ */
+@Service
+public class ReservationImporter {
+
+    /** Lines parsed and saved together. */
+    public static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    /** Rejected rows reported in detail. */
+    public static final int DEFAULT_MAX_ERRORS = 1_000;
+
+    private static final String[] COLUMNS = {"guestname", "hotelname", "checkin", "checkout"};
+
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final ReservationRepository repo;
+    private final HotelCapacity capacity;
+    private final HotelCommandQueues queues;
+    private final ObjectReader requestReader;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    /**
+     * Creates an importer with the default chunk size and error limit and one worker per
+     * available processor.
+     *
+     * @param repo         where imported reservations are saved
+     * @param capacity     the hotels' capacity, shared with the service
+     * @param queues       the hotels' command queues, shared with the service
+     * @param objectMapper parses NDJSON rows
+     */
+    @Autowired
+    public ReservationImporter(ReservationRepository repo, HotelCapacity capacity, HotelCommandQueues queues,
+                               ObjectMapper objectMapper) {
+        this(repo, capacity, queues, objectMapper, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_CHUNK_SIZE, DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Creates an importer with no limit on bookings.
+     *
+     * @param repo         where imported reservations are saved
+     * @param objectMapper parses NDJSON rows
+     * @param parallelism  worker threads parsing and validating chunks
+     * @param chunkSize    lines per chunk, and reservations per {@code saveAll}
+     * @param maxErrors    rejected rows reported in detail
+     */
+    public ReservationImporter(ReservationRepository repo, ObjectMapper objectMapper, int parallelism,
+                               int chunkSize, int maxErrors) {
+        this(repo, new HotelCapacity(), objectMapper, parallelism, chunkSize, maxErrors);
+    }
+
+    /**
+     * Creates an importer that saves on the calling thread, without command queues.
+     *
+     * @param repo         where imported reservations are saved
+     * @param capacity     the hotels' capacity, shared with the service
+     * @param objectMapper parses NDJSON rows
+     * @param parallelism  worker threads parsing and validating chunks
+     * @param chunkSize    lines per chunk, and reservations per {@code saveAll}
+     * @param maxErrors    rejected rows reported in detail
+     */
+    public ReservationImporter(ReservationRepository repo, HotelCapacity capacity, ObjectMapper objectMapper,
+                               int parallelism, int chunkSize, int maxErrors) {
+        this(repo, capacity, new HotelCommandQueues(), objectMapper, parallelism, chunkSize, maxErrors);
+    }
+
+    /**
+     * @param repo         where imported reservations are saved
+     * @param capacity     the hotels' capacity, shared with the service
+     * @param queues       the hotels' command queues, shared with the service
+     * @param objectMapper parses NDJSON rows
+     * @param parallelism  worker threads parsing and validating chunks
+     * @param chunkSize    lines per chunk, and reservations per {@code saveAll}
+     * @param maxErrors    rejected rows reported in detail
+     */
+    public ReservationImporter(ReservationRepository repo, HotelCapacity capacity, HotelCommandQueues queues,
+                               ObjectMapper objectMapper, int parallelism, int chunkSize, int maxErrors) {
+        if (parallelism < 1 || chunkSize < 1 || maxErrors < 0) {
+            throw new IllegalArgumentException("parallelism and chunkSize must be positive, maxErrors not negative");
+        }
+        this.repo = repo;
+        this.capacity = capacity;
+        this.queues = queues;
+        this.requestReader = objectMapper.readerFor(ReservationRequest.class);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports every row of {@code input}.
+     *
+     * @param input  the rows; read to the end but not closed
+     * @param format how the rows are written
+     * @return what was imported and which rows were rejected
+     * @throws IOException         if {@code input} cannot be read
+     * @throws BadRequestException if a CSV header does not name the required columns
+     */
+    public ImportResult importFrom(Reader input, ImportFormat format) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader lines = input instanceof BufferedReader b ? b : new BufferedReader(input, 1 << 16);
+        Progress progress = new Progress();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, daemonThreads());
+        try {
+            long lineNumber = 0;
+            int[] columns = {0, 1, 2, 3};
+            String line;
+            if (format == ImportFormat.CSV) {
+                // The first non-blank line is a header if it names the columns.
+                while ((line = lines.readLine()) != null && line.isBlank()) {
+                    lineNumber++;
+                }
+                if (line != null) {
+                    lineNumber++;
+                    int[] named = csvHeader(line);
+                    if (named != null) {
+                        columns = named;
+                        line = null;
+                    }
+                }
+            } else {
+                line = null;
+            }
+            int[] csvColumns = columns;
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            List<String> rows = new ArrayList<>(chunkSize);
+            // Line number before the first row of the chunk being filled.
+            long firstLine = lineNumber;
+            if (line != null) {
+                rows.add(line);
+                firstLine--;
+            }
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                rows.add(line);
+                if (rows.size() == chunkSize) {
+                    Chunk chunk = new Chunk(firstLine + 1, rows);
+                    pending.add(workers.submit(() -> parse(chunk, format, csvColumns)));
+                    rows = new ArrayList<>(chunkSize);
+                    firstLine = lineNumber;
+                    if (pending.size() >= 2 * parallelism) {
+                        save(pending.poll(), progress);
+                    }
+                }
+            }
+            if (!rows.isEmpty()) {
+                Chunk chunk = new Chunk(firstLine + 1, rows);
+                pending.add(workers.submit(() -> parse(chunk, format, csvColumns)));
+            }
+            while (!pending.isEmpty()) {
+                save(pending.poll(), progress);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new ImportResult(progress.rows, progress.imported, progress.failed, progress.errors,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Waits for a parsed chunk and saves its valid rows that fit in their hotels. */
+    private void save(Future<Chunk> parsed, Progress progress) {
+        Chunk chunk;
+        try {
+            chunk = parsed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException r ? r : new IllegalStateException(e.getCause());
+        }
+        int parseErrors = chunk.errors.size();
+        // Each hotel's rows are booked on its queue; without queues the chunk is one group.
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.valid.size(); i++) {
+            String hotel = queues.isEnabled() ? chunk.valid.get(i).getHotelName() : null;
+            groups.computeIfAbsent(hotel, h -> new ArrayList<>()).add(i);
+        }
+        int imported = 0;
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            // A group the queue gave up on may still be running: it must not touch the chunk.
+            List<ImportResult.RowError> conflicts = new ArrayList<>();
+            try {
+                imported += queues.call(group.getKey(), () -> book(chunk, group.getValue(), conflicts));
+            } catch (ServiceUnavailableException e) {
+                for (int i : group.getValue()) {
+                    chunk.errors.add(new ImportResult.RowError(chunk.firstLine + chunk.validAt[i], e.getMessage()));
+                }
+                continue;
+            }
+            chunk.errors.addAll(conflicts);
+        }
+        if (chunk.errors.size() > parseErrors) {
+            // Capacity conflicts were appended after the parse errors; report rows in order.
+            chunk.errors.sort(Comparator.comparingLong(ImportResult.RowError::getLine));
+        }
+        progress.rows += chunk.rows;
+        progress.imported += imported;
+        progress.failed += chunk.errors.size();
+        for (ImportResult.RowError error : chunk.errors) {
+            if (progress.errors.size() >= maxErrors) {
+                break;
+            }
+            progress.errors.add(error);
+        }
+    }
+
+    /**
+     * Takes the nights of the given valid rows of {@code chunk}, in order, and saves those that
+     * fit with one {@code saveAll}; the others are added to {@code conflicts}.
+     *
+     * @return the reservations saved
+     */
+    private int book(Chunk chunk, List<Integer> rows, List<ImportResult.RowError> conflicts) {
+        List<Reservation> accepted = new ArrayList<>(rows.size());
+        for (int i : rows) {
+            Reservation r = chunk.valid.get(i);
+            try {
+                capacity.reserve(null, r);
+                accepted.add(r);
+            } catch (ConflictException e) {
+                conflicts.add(new ImportResult.RowError(chunk.firstLine + chunk.validAt[i], e.getMessage()));
+            }
+        }
+        if (!accepted.isEmpty()) {
+            try {
+                repo.saveAll(accepted);
+            } catch (RuntimeException e) {
+                release(accepted);
+                throw e;
+            }
+            CommitGroup.afterCommit(() -> { }, () -> release(accepted));
+        }
+        return accepted.size();
+    }
+
+    /** Gives back the nights taken for reservations that were not saved. */
+    private void release(List<Reservation> reservations) {
+        for (Reservation r : reservations) {
+            capacity.release(r, null);
+        }
+    }
+
+    /** Parses and validates one chunk; runs on a worker. */
+    private Chunk parse(Chunk chunk, ImportFormat format, int[] columns) {
+        List<String> lines = chunk.lines;
+        chunk.validAt = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.rows++;
+            long lineNumber = chunk.firstLine + i;
+            try {
+                chunk.valid.add(format == ImportFormat.CSV ? fromCsv(line, columns) : fromJson(line));
+                chunk.validAt[chunk.valid.size() - 1] = i;
+            } catch (BadRequestException e) {
+                chunk.errors.add(new ImportResult.RowError(lineNumber, e.getMessage()));
+            }
+        }
+        chunk.lines = null;
+        return chunk;
+    }
+
+    private Reservation fromJson(String line) {
+        ReservationRequest req;
+        try {
+            req = requestReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (req == null) {
+            throw new BadRequestException("Expected a JSON object");
+        }
+        return validated(req.getGuestName(), req.getHotelName(), req.getCheckIn(), req.getCheckOut());
+    }
+
+    private static Reservation fromCsv(String line, int[] columns) {
+        List<String> fields = csvFields(line);
+        if (fields.size() < 4) {
+            throw new BadRequestException("Expected 4 fields but found " + fields.size());
+        }
+        return validated(fields.get(columns[0]), fields.get(columns[1]),
+                date(fields.get(columns[2]), "checkIn"), date(fields.get(columns[3]), "checkOut"));
+    }
+
+    /** Applies the checks of a single create. */
+    private static Reservation validated(String guestName, String hotelName, LocalDate checkIn, LocalDate checkOut) {
+        if (guestName == null || guestName.isBlank()) {
+            throw new BadRequestException("guestName must not be blank");
+        }
+        if (hotelName == null || hotelName.isBlank()) {
+            throw new BadRequestException("hotelName must not be blank");
+        }
+        ReservationService.validateDates(checkIn, checkOut);
+        return new Reservation(null, guestName, hotelName, checkIn, checkOut);
+    }
+
+    private static LocalDate date(String value, String field) {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.strip());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(field + " is not an ISO date: " + value);
+        }
+    }
+
+    /**
+     * @return the positions of the required columns if {@code line} names them, or
+     *         {@code null} if it is not a header
+     * @throws BadRequestException if it is a header that lacks one of them
+     */
+    private static int[] csvHeader(String line) {
+        List<String> names = csvFields(line);
+        List<String> normalized = new ArrayList<>(names.size());
+        for (String name : names) {
+            normalized.add(name.strip().replace("_", "").toLowerCase(Locale.ROOT));
+        }
+        if (!normalized.contains(COLUMNS[0])) {
+            return null;
+        }
+        int[] columns = new int[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            columns[c] = normalized.indexOf(COLUMNS[c]);
+            if (columns[c] < 0) {
+                throw new BadRequestException("CSV header must name guestName, hotelName, checkIn and checkOut");
+            }
+        }
+        return columns;
+    }
+
+    /** Splits one CSV line; fields may be quoted, with {@code ""} for a quote inside them. */
+    static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new BadRequestException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        int pool = POOLS.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "import-" + pool + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Lines read together, and what parsing them produced. */
+    private static final class Chunk {
+        final long firstLine;
+        List<String> lines;
+        int rows;
+        final List<Reservation> valid = new ArrayList<>();
+        /** Offset from {@link #firstLine} of each valid row. */
+        int[] validAt;
+        final List<ImportResult.RowError> errors = new ArrayList<>();
+
+        Chunk(long firstLine, List<String> lines) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+
+    /** Totals of the chunks saved so far; only touched by the importing thread. */
+    private static final class Progress {
+        long rows;
+        long imported;
+        long failed;
+        final List<ImportResult.RowError> errors = new ArrayList<>();
+    }
+}
@@ -0,0 +1,53 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.cdc.ChangeSubscription;
+import com.bookingmx.reservations.config.StorageProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically reports how far each consumer of the {@link ChangeLog} is behind.
+ *
+ * <p>Active when {@code bookingmx.storage.cdc.enabled=true}; runs every
+ * {@code bookingmx.storage.cdc.report-interval}. Lag is logged at debug level, and as a
+ * warning once it exceeds {@code bookingmx.storage.cdc.max-lag} records or the subscription
+ * has stopped for any reason other than being closed.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "bookingmx.storage.cdc", name = "enabled", havingValue = "true")
+public class ChangeLagJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLagJob.class);
+
+    private final ChangeLog changes;
+    private final long maxLag;
+
+    public ChangeLagJob(ChangeLog changes, StorageProperties storage) {
+        this.changes = changes;
+        this.maxLag = storage.getCdc().getMaxLag();
+    }
+
+    /** Logs the lag of every subscription. */
+    @Scheduled(fixedDelayString = "${bookingmx.storage.cdc.report-interval}",
+               initialDelayString = "${bookingmx.storage.cdc.report-interval}")
+    public void run() {
+        for (ChangeSubscription s : changes.subscriptions()) {
+            ChangeSubscription.State state = s.state();
+            if (state == ChangeSubscription.State.FAILED || state == ChangeSubscription.State.OVERRUN) {
+                log.warn("Change consumer {} stopped ({}) at sequence {}, {} records behind",
+                        s.name(), state, s.position(), s.lag(), s.failure());
+            } else if (state == ChangeSubscription.State.RUNNING && s.lag() > maxLag) {
+                log.warn("Change consumer {} is {} records behind (limit {}, log retains {})",
+                        s.name(), s.lag(), maxLag, changes.capacity());
+            } else {
+                log.debug("Change consumer {} {} at sequence {}, {} records behind",
+                        s.name(), state, s.position(), s.lag());
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.config.StorageProperties;
+import com.bookingmx.reservations.replication.ReplicationFollower;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically reports how far a follower replica is behind its primary.
+ *
+ * <p>Active when {@code bookingmx.storage.replication.role=follower}; runs every
+ * {@code bookingmx.storage.replication.report-interval}. Lag is logged at debug level, and as
+ * a warning once it exceeds {@code bookingmx.storage.replication.max-lag} records or the
+ * follower is disconnected from the primary.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "bookingmx.storage.replication", name = "role", havingValue = "follower")
+public class ReplicationLagJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationLagJob.class);
+
+    private final ReplicationFollower follower;
+    private final long maxLag;
+
+    public ReplicationLagJob(ReplicationFollower follower, StorageProperties storage) {
+        this.follower = follower;
+        this.maxLag = storage.getReplication().getMaxLag();
+    }
+
+    /** Logs the follower's lag. */
+    @Scheduled(fixedDelayString = "${bookingmx.storage.replication.report-interval}",
+               initialDelayString = "${bookingmx.storage.replication.report-interval}")
+    public void run() {
+        if (!follower.isConnected()) {
+            Exception failure = follower.lastFailure();
+            log.warn("Replica is disconnected from the primary at sequence {}: {}",
+                    follower.appliedSequence(), failure == null ? "not connected yet" : failure.toString());
+        } else if (follower.lag() > maxLag) {
+            log.warn("Replica is {} records ({} ms) behind the primary (limit {})",
+                    follower.lag(), follower.lagMillis(), maxLag);
+        } else {
+            log.debug("Replica at sequence {}, {} records ({} ms) behind the primary",
+                    follower.appliedSequence(), follower.lag(), follower.lagMillis());
+        }
+    }
+}
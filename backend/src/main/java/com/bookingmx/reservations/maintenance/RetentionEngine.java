@@ -0,0 +1,269 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.exception.ServiceUnavailableException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.CommitGroup;
+import com.bookingmx.reservations.repo.ReservationArchive;
+import com.bookingmx.reservations.repo.ReservationCodec;
+import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes reservations that are past their retention period from the repository, in
+ * bounded batches.
+ *
+ * <p>A canceled reservation expires {@code canceledDays} after its check-out date, and a
+ * completed stay {@code completedDays} after it; the model records no cancellation time, so
+ * the check-out date is the age reference for both. Each {@link #runOnce(LocalDate)} walks the
+ * repository cursor, collects up to {@code batchSize} expired reservations, archives them if
+ * an archive is configured and deletes them, and repeats until the cursor is exhausted or
+ * {@code maxPerRun} reservations are gone. Every delete re-checks the reservation under the
+ * repository's lock, so one changed since it was collected is kept; request threads only
+ * ever wait for a single delete.</p>
+ *
+ * <p>The expired reservations of each hotel in a batch are deleted on that hotel's
+ * {@link HotelCommandQueues queue}, like any other change to it, and the nights they still
+ * hold in the {@link HotelCapacity} (those of a completed stay; a canceled one holds none) are
+ * given back once the deletes have committed, so no counter keeps a booking that is gone. A
+ * reservation moved to another hotel since it was collected is kept for the next run, as are
+ * those of a hotel whose queue turns the deletes away.</p>
+ *
+ * <p>Archived batches are forced to disk before they are deleted, so a crash can leave a
+ * reservation both archived and live, but never lost.</p>
+ */
+public class RetentionEngine {
+
+    /** What one run reclaimed. */
+    public static final class Result {
+        private final long scanned;
+        private final long canceledRemoved;
+        private final long completedRemoved;
+        private final long archivedBytes;
+        private final long reclaimedBytes;
+        private final boolean complete;
+        private final long millis;
+
+        Result(long scanned, long canceledRemoved, long completedRemoved, long archivedBytes,
+               long reclaimedBytes, boolean complete, long millis) {
+            this.scanned = scanned;
+            this.canceledRemoved = canceledRemoved;
+            this.completedRemoved = completedRemoved;
+            this.archivedBytes = archivedBytes;
+            this.reclaimedBytes = reclaimedBytes;
+            this.complete = complete;
+            this.millis = millis;
+        }
+
+        /** @return reservations examined */
+        public long scanned() { return scanned; }
+
+        /** @return canceled reservations removed */
+        public long canceledRemoved() { return canceledRemoved; }
+
+        /** @return completed stays removed */
+        public long completedRemoved() { return completedRemoved; }
+
+        /** @return all reservations removed */
+        public long removed() { return canceledRemoved + completedRemoved; }
+
+        /** @return bytes appended to the archive */
+        public long archivedBytes() { return archivedBytes; }
+
+        /** @return encoded size of the removed reservations, an estimate of the storage freed */
+        public long reclaimedBytes() { return reclaimedBytes; }
+
+        /** @return whether the run reached the end of the repository rather than its limit */
+        public boolean complete() { return complete; }
+
+        /** @return how long the run took */
+        public long millis() { return millis; }
+    }
+
+    private final ReservationRepository repo;
+    private final HotelCapacity capacity;
+    private final HotelCommandQueues queues;
+    private final ReservationArchive archive;
+    private final int canceledDays;
+    private final int completedDays;
+    private final int batchSize;
+    private final int maxPerRun;
+
+    private final AtomicLong totalRemoved = new AtomicLong();
+    private final AtomicLong totalReclaimedBytes = new AtomicLong();
+    private volatile Result lastRun;
+
+    /**
+     * Creates an engine for a repository whose hotels have no limit on bookings and no command
+     * queues.
+     *
+     * @param repo          the repository to clean
+     * @param archive       where removed reservations are kept, or {@code null} to purge them
+     * @param canceledDays  days after check-out a canceled reservation is kept
+     * @param completedDays days after check-out a completed stay is kept
+     * @param batchSize     reservations archived and deleted together
+     * @param maxPerRun     most reservations removed by one run
+     */
+    public RetentionEngine(ReservationRepository repo, ReservationArchive archive, int canceledDays,
+                           int completedDays, int batchSize, int maxPerRun) {
+        this(repo, new HotelCapacity(), new HotelCommandQueues(), archive, canceledDays, completedDays,
+                batchSize, maxPerRun);
+    }
+
+    /**
+     * @param repo          the repository to clean
+     * @param capacity      the hotels' capacity, with counters matching {@code repo}
+     * @param queues        the hotels' command queues
+     * @param archive       where removed reservations are kept, or {@code null} to purge them
+     * @param canceledDays  days after check-out a canceled reservation is kept
+     * @param completedDays days after check-out a completed stay is kept
+     * @param batchSize     reservations archived and deleted together
+     * @param maxPerRun     most reservations removed by one run
+     */
+    public RetentionEngine(ReservationRepository repo, HotelCapacity capacity, HotelCommandQueues queues,
+                           ReservationArchive archive, int canceledDays, int completedDays, int batchSize,
+                           int maxPerRun) {
+        if (canceledDays < 0 || completedDays < 0) {
+            throw new IllegalArgumentException("Retention periods cannot be negative");
+        }
+        if (batchSize < 1 || maxPerRun < 1) {
+            throw new IllegalArgumentException("batchSize and maxPerRun must be positive");
+        }
+        this.repo = repo;
+        this.capacity = capacity;
+        this.queues = queues;
+        this.archive = archive;
+        this.canceledDays = canceledDays;
+        this.completedDays = completedDays;
+        this.batchSize = batchSize;
+        this.maxPerRun = maxPerRun;
+    }
+
+    /**
+     * @param r     the reservation
+     * @param today the current date
+     * @return whether {@code r} is past its retention period
+     */
+    public boolean isExpired(Reservation r, LocalDate today) {
+        int checkOut = r.getCheckOutDay();
+        if (checkOut == Reservation.NO_DATE) {
+            return false;
+        }
+        int days = r.getStatus() == ReservationStatus.CANCELED ? canceledDays : completedDays;
+        return (long) checkOut + days < today.toEpochDay();
+    }
+
+    /**
+     * Removes expired reservations, at most {@code maxPerRun} of them.
+     *
+     * @param today the current date
+     * @return what the run reclaimed
+     */
+    public Result runOnce(LocalDate today) {
+        long start = System.nanoTime();
+        Spliterator<Reservation> cursor = repo.cursor();
+        long[] scanned = {0};
+        long canceled = 0;
+        long completed = 0;
+        long archivedBytes = 0;
+        long reclaimed = 0;
+        boolean complete = false;
+        List<Reservation> batch = new ArrayList<>(Math.min(batchSize, maxPerRun));
+        while (canceled + completed < maxPerRun) {
+            batch.clear();
+            int want = (int) Math.min(batchSize, maxPerRun - canceled - completed);
+            while (batch.size() < want && cursor.tryAdvance(r -> {
+                scanned[0]++;
+                if (isExpired(r, today)) {
+                    batch.add(r);
+                }
+            })) {
+                // keep scanning
+            }
+            if (batch.isEmpty()) {
+                complete = true;
+                break;
+            }
+            if (archive != null) {
+                archivedBytes += archive.append(batch);
+            }
+            Map<String, List<Reservation>> byHotel = new LinkedHashMap<>();
+            for (Reservation r : batch) {
+                byHotel.computeIfAbsent(r.getHotelName(), h -> new ArrayList<>()).add(r);
+            }
+            for (Map.Entry<String, List<Reservation>> group : byHotel.entrySet()) {
+                List<Reservation> removed;
+                try {
+                    removed = queues.call(group.getKey(), () -> delete(group.getValue(), today));
+                } catch (ServiceUnavailableException e) {
+                    continue; // the hotel is busy; its reservations wait for the next run
+                }
+                for (Reservation r : removed) {
+                    if (r.getStatus() == ReservationStatus.CANCELED) {
+                        canceled++;
+                    } else {
+                        completed++;
+                    }
+                    reclaimed += ReservationCodec.encode(r).length;
+                }
+            }
+            if (batch.size() < want) {
+                complete = true;
+                break;
+            }
+        }
+        Result result = new Result(scanned[0], canceled, completed, archivedBytes, reclaimed, complete,
+                (System.nanoTime() - start) / 1_000_000);
+        totalRemoved.addAndGet(result.removed());
+        totalReclaimedBytes.addAndGet(reclaimed);
+        lastRun = result;
+        return result;
+    }
+
+    /**
+     * Deletes those of one hotel's {@code reservations} that are still expired and still at
+     * that hotel, and gives back the nights they hold once the deletes have committed.
+     *
+     * @return the reservations deleted, as they were stored
+     */
+    private List<Reservation> delete(List<Reservation> reservations, LocalDate today) {
+        List<Reservation> removed = new ArrayList<>(reservations.size());
+        for (Reservation r : reservations) {
+            Reservation[] stored = {null};
+            boolean deleted = repo.deleteIf(r.getId(), current -> {
+                stored[0] = current;
+                return isExpired(current, today) && Objects.equals(current.getHotelName(), r.getHotelName());
+            });
+            if (deleted) {
+                removed.add(stored[0]);
+            }
+        }
+        CommitGroup.afterCommit(() -> removed.forEach(r -> capacity.release(r, null)), () -> { });
+        return removed;
+    }
+
+    /** @return the result of the last run, or {@code null} before the first */
+    public Result lastRun() {
+        return lastRun;
+    }
+
+    /** @return reservations removed by all runs so far */
+    public long totalRemoved() {
+        return totalRemoved.get();
+    }
+
+    /** @return encoded bytes of all reservations removed so far */
+    public long totalReclaimedBytes() {
+        return totalReclaimedBytes.get();
+    }
+}
@@ -0,0 +1,64 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.config.StorageProperties;
+import com.bookingmx.reservations.repo.ReservationArchive;
+import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Periodically runs the {@link RetentionEngine}, purging or archiving canceled reservations
+ * and completed stays past their retention period.
+ *
+ * <p>Active when {@code bookingmx.storage.retention.enabled=true}; see
+ * {@link StorageProperties.Retention} for the periods, batch sizes and mode. Each run logs
+ * what it reclaimed.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "bookingmx.storage.retention", name = "enabled", havingValue = "true")
+public class RetentionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionJob.class);
+
+    private final RetentionEngine engine;
+
+    public RetentionJob(ReservationRepository repo, HotelCapacity capacity, HotelCommandQueues queues,
+                        StorageProperties storage) {
+        StorageProperties.Retention retention = storage.getRetention();
+        ReservationArchive archive = null;
+        if (retention.getMode() == StorageProperties.Retention.Mode.ARCHIVE) {
+            archive = new ReservationArchive(Path.of(storage.getDataDirectory()).resolve("reservations.archive"));
+        }
+        this.engine = new RetentionEngine(repo, capacity, queues, archive, retention.getCanceledDays(),
+                retention.getCompletedDays(), retention.getBatchSize(), retention.getMaxPerRun());
+    }
+
+    /** @return the engine, for its reclaim counters */
+    public RetentionEngine engine() {
+        return engine;
+    }
+
+    /** Runs one retention pass; failures are logged and retried on the next run. */
+    @Scheduled(fixedDelayString = "${bookingmx.storage.retention.interval}",
+               initialDelayString = "${bookingmx.storage.retention.interval}")
+    public void run() {
+        try {
+            RetentionEngine.Result r = engine.runOnce(LocalDate.now());
+            log.info("Retention removed {} canceled and {} completed reservations ({} bytes, {} archived) "
+                            + "after scanning {} in {} ms{}",
+                    r.canceledRemoved(), r.completedRemoved(), r.reclaimedBytes(), r.archivedBytes(),
+                    r.scanned(), r.millis(), r.complete() ? "" : "; more remain");
+        } catch (RuntimeException e) {
+            log.warn("Retention run failed", e);
+        }
+    }
+}
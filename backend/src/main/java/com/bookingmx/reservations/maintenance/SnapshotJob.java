@@ -0,0 +1,44 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.SnapshotFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically snapshots the repository so that a restart only has to replay the
+ * write-ahead log written since the last run.
+ *
+ * <p>Active when {@code bookingmx.storage.snapshot.enabled=true}; the delay between runs is
+ * {@code bookingmx.storage.snapshot.interval}. Needs the in-memory repository.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "bookingmx.storage.snapshot", name = "enabled", havingValue = "true")
+public class SnapshotJob {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotJob.class);
+
+    private final InMemoryReservationRepository repo;
+
+    public SnapshotJob(InMemoryReservationRepository repo) {
+        this.repo = repo;
+    }
+
+    /** Writes one snapshot; failures are logged and retried on the next run. */
+    @Scheduled(fixedDelayString = "${bookingmx.storage.snapshot.interval}",
+               initialDelayString = "${bookingmx.storage.snapshot.interval}")
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            SnapshotFile.Info info = repo.snapshot();
+            log.info("Snapshot of {} reservations at LSN {} written in {} ms",
+                    info.count(), info.lsn(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Snapshot failed", e);
+        }
+    }
+}
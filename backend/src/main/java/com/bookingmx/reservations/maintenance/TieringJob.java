@@ -0,0 +1,49 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.config.StorageProperties;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Periodically moves checked-out and canceled reservations out of memory into the
+ * repository's on-disk cold tier, so the heap only holds current and future stays.
+ *
+ * <p>Active when {@code bookingmx.storage.tiering.enabled=true}; the delay between runs is
+ * {@code bookingmx.storage.tiering.interval}, and one run moves at most
+ * {@code bookingmx.storage.tiering.batch-size} reservations. Needs the in-memory repository.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "bookingmx.storage.tiering", name = "enabled", havingValue = "true")
+public class TieringJob {
+
+    private static final Logger log = LoggerFactory.getLogger(TieringJob.class);
+
+    private final InMemoryReservationRepository repo;
+    private final int batchSize;
+
+    public TieringJob(InMemoryReservationRepository repo, StorageProperties storage) {
+        this.repo = repo;
+        this.batchSize = storage.getTiering().getBatchSize();
+    }
+
+    /** Runs one tiering pass; failures are logged and retried on the next run. */
+    @Scheduled(fixedDelayString = "${bookingmx.storage.tiering.interval}",
+               initialDelayString = "${bookingmx.storage.tiering.interval}")
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            int moved = repo.spillCold(LocalDate.now(), batchSize);
+            log.info("Moved {} reservations to the cold tier in {} ms ({} of {} now cold)",
+                    moved, (System.nanoTime() - start) / 1_000_000, repo.coldCount(), repo.count());
+        } catch (RuntimeException e) {
+            log.warn("Tiering failed", e);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.bookingmx.reservations.model;
 
 import java.time.LocalDate;
-import java.util.Objects;
 
 /**
  * Represents a hotel reservation made by a guest.
@@ -10,34 +9,67 @@ import java.util.Objects;
  * It encapsulates identifying information, guest details, hotel name,
  * reservation dates, and its current status.</p>
  *
+ * <p>Reservations are immutable values. A change is made by deriving a new instance with
+ * one of the {@code with...} methods and saving it in place of the old one, so a stored
+ * reservation can be handed to any number of readers, serializers and change-log consumers
+ * without copying it or holding a lock.</p>
+ *
+ * <p>The names are held as given. The repository swaps them for canonical instances when it
+ * stores a reservation (see {@link com.bookingmx.reservations.repo.NameDictionary}), so stored
+ * reservations of one hotel share a single {@code String}.</p>
+ *
+ * <p>The remaining fields are primitives: the ID is a {@code long}, the dates are
+ * {@code int} epoch days and the status is a {@code byte}, so a reservation is a single
+ * object. The boxed and {@link LocalDate} getters are views over them; code on hot paths
+ * uses {@link #getIdAsLong()}, {@link #getCheckInDay()} and {@link #getCheckOutDay()} to
+ * compare without allocating.</p>
+ *
+ * <p>Each stored reservation carries a {@link #getVersion() version}, starting at
+ * {@link #FIRST_VERSION} and raised by one on every change made through
+ * {@link com.bookingmx.reservations.repo.ReservationRepository#saveIfVersion}; the API exposes
+ * it as the entity tag of the reservation.</p>
+ *
  * <p>Instances of this class are stored and managed by the {@link com.bookingmx.reservations.repo.ReservationRepository}
  * and validated through business rules enforced in the service layer.</p>
  */
-public class Reservation {
+public final class Reservation {
+
+    /** Value of {@link #getIdAsLong()} while no ID is assigned. */
+    public static final long NO_ID = Long.MIN_VALUE;
+
+    /** Value of {@link #getCheckInDay()} and {@link #getCheckOutDay()} for a missing date. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Version of a reservation that has never been changed. */
+    public static final int FIRST_VERSION = 1;
 
-    /** Unique identifier for the reservation. Assigned by the repository. */
-    private Long id;
+    private static final ReservationStatus[] STATUSES = ReservationStatus.values();
+
+    private static final byte ACTIVE = (byte) ReservationStatus.ACTIVE.ordinal();
+
+    /** Unique identifier for the reservation, or {@link #NO_ID}. Assigned by the repository. */
+    private final long id;
 
     /** Name of the guest making the reservation. */
-    private String guestName;
+    private final String guestName;
 
     /** Name of the hotel where the reservation is made. */
-    private String hotelName;
+    private final String hotelName;
 
-    /** Date on which the guest checks into the hotel. */
-    private LocalDate checkIn;
+    /** Epoch day on which the guest checks into the hotel, or {@link #NO_DATE}. */
+    private final int checkInDay;
 
-    /** Date on which the guest checks out of the hotel. */
-    private LocalDate checkOut;
+    /** Epoch day on which the guest checks out of the hotel, or {@link #NO_DATE}. */
+    private final int checkOutDay;
 
-    /** Current status of the reservation (ACTIVE or CANCELED). */
-    private ReservationStatus status = ReservationStatus.ACTIVE;
+    /** Ordinal of the current {@link ReservationStatus} (ACTIVE or CANCELED). */
+    private final byte status;
 
-    /** Default constructor required for serialization and frameworks. */
-    public Reservation() {}
+    /** Number of the stored state this instance reflects; see {@link #getVersion()}. */
+    private final int version;
 
     /**
-     * Constructs a new reservation instance.
+     * Constructs a new, active reservation at {@link #FIRST_VERSION}.
      *
      * @param id        the reservation ID, or {@code null} if it will be assigned later
      * @param guestName the name of the guest
@@ -47,49 +79,74 @@ public class Reservation {
      */
     public Reservation(Long id, String guestName, String hotelName,
                        LocalDate checkIn, LocalDate checkOut) {
+        this(id == null ? NO_ID : id, guestName, hotelName, toDay(checkIn), toDay(checkOut),
+                ReservationStatus.ACTIVE, FIRST_VERSION);
+    }
+
+    /**
+     * Constructs a reservation from every stored field, as storage engines and codecs read
+     * them back.
+     *
+     * @param id          the reservation ID, or {@link #NO_ID}
+     * @param guestName   the name of the guest
+     * @param hotelName   the name of the hotel
+     * @param checkInDay  the check-in date as an epoch day, or {@link #NO_DATE}
+     * @param checkOutDay the check-out date as an epoch day, or {@link #NO_DATE}
+     * @param status      the reservation status
+     * @param version     the version
+     */
+    public Reservation(long id, String guestName, String hotelName, int checkInDay, int checkOutDay,
+                       ReservationStatus status, int version) {
+        this(id, guestName, hotelName, checkInDay, checkOutDay, (byte) status.ordinal(), version);
+    }
+
+    /** Field-by-field constructor for the {@code with...} methods. */
+    private Reservation(long id, String guestName, String hotelName, int checkInDay, int checkOutDay,
+                        byte status, int version) {
         this.id = id;
         this.guestName = guestName;
         this.hotelName = hotelName;
-        this.checkIn = checkIn;
-        this.checkOut = checkOut;
-        this.status = ReservationStatus.ACTIVE;
+        this.checkInDay = checkInDay;
+        this.checkOutDay = checkOutDay;
+        this.status = status;
+        this.version = version;
     }
 
-    /** @return the reservation ID */
-    public Long getId() { return id; }
+    /** @return the reservation ID, or {@code null} if none is assigned yet */
+    public Long getId() { return id == NO_ID ? null : id; }
 
-    /** @param id sets the reservation ID */
-    public void setId(Long id) { this.id = id; }
+    /** @return whether an ID is assigned */
+    public boolean hasId() { return id != NO_ID; }
+
+    /** @return the reservation ID, or {@link #NO_ID} if none is assigned yet */
+    public long getIdAsLong() { return id; }
 
     /** @return the guest name */
     public String getGuestName() { return guestName; }
 
-    /** @param guestName sets the guest name */
-    public void setGuestName(String guestName) { this.guestName = guestName; }
-
     /** @return the hotel name */
     public String getHotelName() { return hotelName; }
 
-    /** @param hotelName sets the hotel name */
-    public void setHotelName(String hotelName) { this.hotelName = hotelName; }
-
     /** @return the check-in date */
-    public LocalDate getCheckIn() { return checkIn; }
+    public LocalDate getCheckIn() { return toDate(checkInDay); }
 
-    /** @param checkIn sets the check-in date */
-    public void setCheckIn(LocalDate checkIn) { this.checkIn = checkIn; }
+    /** @return the check-in date as an epoch day, or {@link #NO_DATE} */
+    public int getCheckInDay() { return checkInDay; }
 
     /** @return the check-out date */
-    public LocalDate getCheckOut() { return checkOut; }
+    public LocalDate getCheckOut() { return toDate(checkOutDay); }
 
-    /** @param checkOut sets the check-out date */
-    public void setCheckOut(LocalDate checkOut) { this.checkOut = checkOut; }
+    /** @return the check-out date as an epoch day, or {@link #NO_DATE} */
+    public int getCheckOutDay() { return checkOutDay; }
 
     /** @return the current reservation status */
-    public ReservationStatus getStatus() { return status; }
+    public ReservationStatus getStatus() { return STATUSES[status]; }
 
-    /** @param status sets the reservation status */
-    public void setStatus(ReservationStatus status) { this.status = status; }
+    /**
+     * @return the version of the stored state this instance reflects; a stored reservation
+     *         keeps its version until it is changed again
+     */
+    public int getVersion() { return version; }
 
     /**
      * Indicates whether the reservation is still active.
@@ -97,7 +154,73 @@ public class Reservation {
      * @return {@code true} if the reservation is active, {@code false} otherwise
      */
     public boolean isActive() {
-        return this.status == ReservationStatus.ACTIVE;
+        return this.status == ACTIVE;
+    }
+
+    /**
+     * @param id the ID, or {@link #NO_ID}
+     * @return this reservation with that ID
+     */
+    public Reservation withId(long id) {
+        return new Reservation(id, guestName, hotelName, checkInDay, checkOutDay, status, version);
+    }
+
+    /**
+     * @param guestName the name of the guest
+     * @return this reservation with that guest name
+     */
+    public Reservation withGuestName(String guestName) {
+        return new Reservation(id, guestName, hotelName, checkInDay, checkOutDay, status, version);
+    }
+
+    /**
+     * @param hotelName the name of the hotel
+     * @return this reservation at that hotel
+     */
+    public Reservation withHotelName(String hotelName) {
+        return new Reservation(id, guestName, hotelName, checkInDay, checkOutDay, status, version);
+    }
+
+    /**
+     * @param checkIn  the check-in date
+     * @param checkOut the check-out date
+     * @return this reservation with those dates
+     */
+    public Reservation withStay(LocalDate checkIn, LocalDate checkOut) {
+        return new Reservation(id, guestName, hotelName, toDay(checkIn), toDay(checkOut), status, version);
+    }
+
+    /**
+     * @param status the reservation status
+     * @return this reservation in that status
+     */
+    public Reservation withStatus(ReservationStatus status) {
+        return new Reservation(id, guestName, hotelName, checkInDay, checkOutDay, (byte) status.ordinal(),
+                version);
+    }
+
+    /**
+     * @param version the version
+     * @return this reservation at that version
+     */
+    public Reservation withVersion(int version) {
+        return new Reservation(id, guestName, hotelName, checkInDay, checkOutDay, status, version);
+    }
+
+    /**
+     * @param date a date, or {@code null}
+     * @return its epoch day, or {@link #NO_DATE} for {@code null}
+     */
+    public static int toDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * @param day an epoch day, or {@link #NO_DATE}
+     * @return the date, or {@code null} for {@link #NO_DATE}
+     */
+    public static LocalDate toDate(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
     }
 
     /**
@@ -111,7 +234,7 @@ public class Reservation {
         if (this == o) return true;
         if (!(o instanceof Reservation)) return false;
         Reservation that = (Reservation) o;
-        return Objects.equals(id, that.id);
+        return id == that.id;
     }
 
     /**
@@ -121,6 +244,6 @@ public class Reservation {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Long.hashCode(id);
     }
 }
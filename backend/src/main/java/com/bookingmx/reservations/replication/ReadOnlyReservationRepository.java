@@ -0,0 +1,113 @@
+package com.bookingmx.reservations.replication;
+
+import com.bookingmx.reservations.exception.ReadOnlyReplicaException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.ReadView;
+import com.bookingmx.reservations.repo.ReservationRepository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+
+/**
+ * The repository of a follower replica as the service layer sees it: reads go to the
+ * repository the {@link ReplicationFollower} keeps in step, and writes fail with
+ * {@link ReadOnlyReplicaException}, since only the primary may change reservations.
+ */
+public class ReadOnlyReservationRepository implements ReservationRepository {
+
+    private static final String MESSAGE = "This server is a read-only replica; send writes to the primary";
+
+    private final ReservationRepository delegate;
+
+    /**
+     * @param delegate the replicated repository; it is not closed by {@link #close()}
+     */
+    public ReadOnlyReservationRepository(ReservationRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Reservation> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public ReadView openReadView() {
+        return delegate.openReadView();
+    }
+
+    @Override
+    public Spliterator<Reservation> cursor() {
+        return delegate.cursor();
+    }
+
+    @Override
+    public List<Reservation> findByHotel(String hotelName) {
+        return delegate.findByHotel(hotelName);
+    }
+
+    @Override
+    public List<Reservation> findByHotel(String hotelName, ReservationStatus status) {
+        return delegate.findByHotel(hotelName, status);
+    }
+
+    @Override
+    public List<Reservation> findByStatus(ReservationStatus status) {
+        return delegate.findByStatus(status);
+    }
+
+    @Override
+    public int countByStatus(ReservationStatus status) {
+        return delegate.countByStatus(status);
+    }
+
+    @Override
+    public List<Reservation> findOverlapping(String hotelName, LocalDate from, LocalDate to) {
+        return delegate.findOverlapping(hotelName, from, to);
+    }
+
+    @Override
+    public List<Reservation> searchByGuest(String prefix, int limit) {
+        return delegate.searchByGuest(prefix, limit);
+    }
+
+    @Override
+    public Optional<Reservation> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Reservation save(Reservation r) {
+        throw new ReadOnlyReplicaException(MESSAGE);
+    }
+
+    @Override
+    public Optional<Reservation> saveIfVersion(Reservation r, int expectedVersion) {
+        throw new ReadOnlyReplicaException(MESSAGE);
+    }
+
+    @Override
+    public void saveAll(Collection<Reservation> reservations) {
+        throw new ReadOnlyReplicaException(MESSAGE);
+    }
+
+    @Override
+    public boolean deleteIf(Long id, Predicate<? super Reservation> condition) {
+        throw new ReadOnlyReplicaException(MESSAGE);
+    }
+
+    @Override
+    public int count() {
+        return delegate.count();
+    }
+
+    /** Does nothing; the replicated repository is closed by its owner. */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,276 @@
+package com.bookingmx.reservations.replication;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.ReservationCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a repository in step with a primary's, by applying the changes a
+ * {@link ReplicationServer} ships.
+ *
+ * <p>A daemon thread connects to the primary, asks to resume after the last sequence it
+ * applied, and applies every record it receives through the repository's own
+ * {@code save} and {@code delete}, keeping the primary's IDs. When the primary sends a full
+ * copy instead, the reservations in it are saved and those the copy no longer contains are
+ * deleted afterwards, so reads never see the repository emptied. When the connection drops or
+ * the primary stays silent for longer than {@code timeout}, the thread reconnects after
+ * {@code reconnectDelay}, for as long as the follower is open.</p>
+ *
+ * <p>{@link #lag()} and {@link #lagMillis()} measure how far the repository is behind: the
+ * primary's position is learned from the records and heartbeats it sends, so the lag is
+ * accurate to within one heartbeat interval. Nothing is persisted; a follower that restarts
+ * gets a full copy.</p>
+ */
+public class ReplicationFollower implements Closeable {
+
+    /** Longest wait for the primary to accept a connection. */
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private final InMemoryReservationRepository repo;
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private final long reconnectDelayMillis;
+    private final Thread thread;
+
+    /** Epoch of the primary followed, 0 until the first copy is complete. */
+    private volatile long epoch;
+    private volatile long appliedSequence;
+    /** When the last applied record was written on the primary, or the copy completed here. */
+    private volatile long appliedTimestamp;
+    private volatile long primarySequence;
+    private volatile boolean connected;
+    private volatile long copies;
+    private volatile Exception lastFailure;
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    /**
+     * @param repo           the repository to keep in step; nothing else may write to it
+     * @param host           the primary's replication host
+     * @param port           the primary's replication port
+     * @param timeout        how long the primary may stay silent before the follower reconnects;
+     *                       longer than the primary's heartbeat interval
+     * @param reconnectDelay the pause before reconnecting
+     */
+    public ReplicationFollower(InMemoryReservationRepository repo, String host, int port, Duration timeout,
+                               Duration reconnectDelay) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.repo = repo;
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+        this.reconnectDelayMillis = Math.max(0L, reconnectDelay.toMillis());
+        this.thread = new Thread(this::run, "replication-follower");
+        this.thread.setDaemon(true);
+    }
+
+    /** Starts following the primary. */
+    public void start() {
+        thread.start();
+    }
+
+    /** @return whether the follower is connected to the primary */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** @return the sequence of the last change applied, 0 before the first copy completes */
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /** @return the sequence of the last change known to exist on the primary */
+    public long primarySequence() {
+        return primarySequence;
+    }
+
+    /** @return the number of changes made on the primary but not applied here */
+    public long lag() {
+        return Math.max(0L, primarySequence - appliedSequence);
+    }
+
+    /**
+     * @return how old the last applied change is while changes are outstanding, 0 when caught
+     *         up; this is how stale reads from the follower may be
+     */
+    public long lagMillis() {
+        if (lag() == 0) {
+            return 0L;
+        }
+        return Math.max(0L, System.currentTimeMillis() - appliedTimestamp);
+    }
+
+    /** @return the number of full copies received */
+    public long copies() {
+        return copies;
+    }
+
+    /** @return why the last connection ended, or {@code null} if none has failed */
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    /** Disconnects and stops following; the repository keeps what was applied. */
+    @Override
+    public void close() {
+        closed = true;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // the follower thread sees the closed socket
+            }
+        }
+        thread.interrupt();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(CONNECT_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                if (closed) {
+                    return;
+                }
+                s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(timeoutMillis);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeInt(ReplicationProtocol.VERSION);
+                out.writeLong(epoch);
+                out.writeLong(epoch == 0 ? 0L : appliedSequence + 1);
+                out.flush();
+                connected = true;
+                follow(new DataInputStream(new BufferedInputStream(s.getInputStream())));
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    lastFailure = e;
+                }
+            } finally {
+                connected = false;
+                socket = null;
+            }
+            try {
+                Thread.sleep(reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Applies frames until the connection fails. */
+    private void follow(DataInputStream in) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationProtocol.RESUME:
+                    if (in.readLong() != epoch) {
+                        throw new IOException("Primary resumed a different epoch");
+                    }
+                    break;
+                case ReplicationProtocol.SNAPSHOT:
+                    applyCopy(in, in.readLong());
+                    break;
+                case ReplicationProtocol.PUT: {
+                    long sequence = expect(in.readLong());
+                    long timestamp = in.readLong();
+                    repo.save(readReservation(in));
+                    applied(sequence, timestamp);
+                    break;
+                }
+                case ReplicationProtocol.DELETE: {
+                    long sequence = expect(in.readLong());
+                    long timestamp = in.readLong();
+                    repo.delete(in.readLong());
+                    applied(sequence, timestamp);
+                    break;
+                }
+                case ReplicationProtocol.HEARTBEAT:
+                    seen(in.readLong());
+                    in.readLong();
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame " + type);
+            }
+        }
+    }
+
+    /** Saves the reservations of a full copy, then deletes the ones it does not contain. */
+    private void applyCopy(DataInputStream in, long copyEpoch) throws IOException {
+        Set<Long> copied = new HashSet<>();
+        byte type;
+        while ((type = in.readByte()) == ReplicationProtocol.ROW) {
+            Reservation r = readReservation(in);
+            copied.add(r.getId());
+            repo.save(r);
+        }
+        if (type != ReplicationProtocol.SNAPSHOT_END) {
+            throw new IOException("Unexpected frame " + type + " in a copy");
+        }
+        long upTo = in.readLong();
+        List<Long> stale = new ArrayList<>();
+        repo.stream().forEach(r -> {
+            if (!copied.contains(r.getId())) {
+                stale.add(r.getId());
+            }
+        });
+        for (Long id : stale) {
+            repo.delete(id);
+        }
+        epoch = copyEpoch;
+        primarySequence = upTo;
+        applied(upTo, System.currentTimeMillis());
+        copies++;
+    }
+
+    private long expect(long sequence) throws IOException {
+        if (epoch == 0 || sequence != appliedSequence + 1) {
+            throw new IOException("Expected sequence " + (appliedSequence + 1) + " but got " + sequence);
+        }
+        return sequence;
+    }
+
+    private void applied(long sequence, long timestamp) {
+        appliedTimestamp = timestamp;
+        appliedSequence = sequence;
+        seen(sequence);
+    }
+
+    private void seen(long sequence) {
+        if (sequence > primarySequence) {
+            primarySequence = sequence;
+        }
+    }
+
+    private static Reservation readReservation(DataInputStream in) throws IOException {
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return ReservationCodec.decode(ByteBuffer.wrap(body));
+    }
+}
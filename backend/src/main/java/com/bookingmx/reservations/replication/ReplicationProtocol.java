@@ -0,0 +1,45 @@
+package com.bookingmx.reservations.replication;
+
+/**
+ * Wire format shared by {@link ReplicationServer} and {@link ReplicationFollower}.
+ *
+ * <p>All values are big-endian, as written by {@link java.io.DataOutputStream}. The follower
+ * opens with a hello: {@link #MAGIC}, {@link #VERSION}, the epoch of the primary it last
+ * followed (0 if none) and the next sequence it needs. The primary answers with either
+ * {@link #RESUME} or a full copy ({@link #SNAPSHOT}, any number of {@link #ROW}s and
+ * {@link #SNAPSHOT_END}), then ships {@link #PUT} and {@link #DELETE} records in sequence
+ * order, with a {@link #HEARTBEAT} every heartbeat interval. Reservations
+ * travel in the {@link com.bookingmx.reservations.repo.ReservationCodec} encoding, prefixed
+ * by their length.</p>
+ */
+final class ReplicationProtocol {
+
+    /** First bytes of a follower's hello. */
+    static final int MAGIC = 0x424D5852; // "BMXR"
+
+    static final int VERSION = 1;
+
+    /** {@code long epoch}: the requested sequence is retained and follows directly. */
+    static final byte RESUME = 'C';
+
+    /** {@code long epoch}: a full copy of the primary's contents follows. */
+    static final byte SNAPSHOT = 'S';
+
+    /** {@code int length, byte[] reservation}: one reservation of the copy. */
+    static final byte ROW = 'R';
+
+    /** {@code long sequence}: the copy is complete and reflects every record up to sequence. */
+    static final byte SNAPSHOT_END = 'E';
+
+    /** {@code long sequence, long timestampMillis, int length, byte[] reservation}. */
+    static final byte PUT = 'P';
+
+    /** {@code long sequence, long timestampMillis, long id}. */
+    static final byte DELETE = 'D';
+
+    /** {@code long lastSequence, long timestampMillis}: the primary's position. */
+    static final byte HEARTBEAT = 'H';
+
+    private ReplicationProtocol() {
+    }
+}
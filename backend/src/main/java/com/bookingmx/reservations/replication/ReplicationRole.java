@@ -0,0 +1,21 @@
+package com.bookingmx.reservations.replication;
+
+/**
+ * What part a process plays in log-shipping replication.
+ *
+ * <p>Configured through {@code bookingmx.storage.replication.role} in {@code application.properties}.</p>
+ */
+public enum ReplicationRole {
+
+    /** No replication; the process serves reads and writes on its own. */
+    STANDALONE,
+
+    /** Serves reads and writes and ships its changes to followers ({@link ReplicationServer}). */
+    PRIMARY,
+
+    /**
+     * Applies the changes shipped by a primary ({@link ReplicationFollower}) and serves reads
+     * only; writes are rejected by {@link ReadOnlyReservationRepository}.
+     */
+    FOLLOWER
+}
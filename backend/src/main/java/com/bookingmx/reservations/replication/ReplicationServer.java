@@ -0,0 +1,313 @@
+package com.bookingmx.reservations.replication;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.cdc.ChangeRecord;
+import com.bookingmx.reservations.cdc.ChangeSubscription;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.ReservationCodec;
+import com.bookingmx.reservations.repo.ReservationRepository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ships the changes made on a primary to {@link ReplicationFollower}s over TCP.
+ *
+ * <p>Each follower connection is served by a thread of its own. A follower that asks to
+ * resume from a sequence the {@link ChangeLog} still retains, under the current epoch, gets
+ * the records from there on. Any other follower first gets a full copy of the repository, read
+ * through its weakly consistent cursor while writes continue, followed by every record
+ * appended since the copy started; records carry the full state of one reservation, so
+ * replaying one the copy already reflects is harmless and the follower converges on the
+ * primary's contents.</p>
+ *
+ * <p>Records are shipped by a {@link ChangeSubscription} named {@code replica-<address>}, so
+ * followers show up in the log's lag reports. A follower that falls further behind than the
+ * log retains is disconnected, and gets a full copy again when it reconnects. The epoch is
+ * chosen at random when the server is created: the log's sequence starts over when the
+ * primary restarts, and a follower holding a position from an earlier epoch must not resume
+ * at a sequence that now means something else.</p>
+ */
+public class ReplicationServer implements Closeable {
+
+    /** Buffer in front of each follower's socket; flushed whenever the follower catches up. */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /** A connected follower, as seen from the primary. */
+    public static final class Link {
+        private final Socket socket;
+        private final String address;
+        private final ChangeLog changes;
+        private DataOutputStream out;
+        private volatile ChangeSubscription subscription;
+
+        Link(Socket socket, ChangeLog changes) {
+            this.socket = socket;
+            this.address = String.valueOf(socket.getRemoteSocketAddress());
+            this.changes = changes;
+        }
+
+        /** @return the follower's address */
+        public String address() {
+            return address;
+        }
+
+        /** @return whether the follower is still being sent its full copy */
+        public boolean copying() {
+            return subscription == null;
+        }
+
+        /** @return the next sequence to ship, 0 while copying */
+        public long position() {
+            ChangeSubscription s = subscription;
+            return s == null ? 0L : s.position();
+        }
+
+        /** @return the records appended but not yet shipped, 0 while copying */
+        public long lag() {
+            ChangeSubscription s = subscription;
+            return s == null ? 0L : s.lag();
+        }
+
+        /** Writes one record; runs on the subscription's thread. */
+        private void ship(ChangeRecord record) {
+            try {
+                synchronized (this) {
+                    if (record.type() == ChangeRecord.Type.PUT) {
+                        byte[] body = ReservationCodec.encode(record.reservation());
+                        out.writeByte(ReplicationProtocol.PUT);
+                        out.writeLong(record.sequence());
+                        out.writeLong(record.timestampMillis());
+                        out.writeInt(body.length);
+                        out.write(body);
+                    } else {
+                        out.writeByte(ReplicationProtocol.DELETE);
+                        out.writeLong(record.sequence());
+                        out.writeLong(record.timestampMillis());
+                        out.writeLong(record.id());
+                    }
+                    // Batch while behind; a follower that is caught up gets each record at once.
+                    if (record.sequence() >= changes.lastSequence()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized void heartbeat() throws IOException {
+            out.writeByte(ReplicationProtocol.HEARTBEAT);
+            out.writeLong(changes.lastSequence());
+            out.writeLong(System.currentTimeMillis());
+            out.flush();
+        }
+    }
+
+    private final ReservationRepository repo;
+    private final ChangeLog changes;
+    private final String bindAddress;
+    private final int requestedPort;
+    private final long heartbeatMillis;
+    private final long epoch;
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+    private final AtomicLong copies = new AtomicLong();
+
+    private volatile ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * @param repo              the primary's repository, copied to new followers
+     * @param changes           the log the repository publishes its changes to
+     * @param bindAddress       the address to listen on
+     * @param port              the port to listen on, or 0 for any free one
+     * @param heartbeatInterval how often an idle follower is told the primary's position
+     */
+    public ReplicationServer(ReservationRepository repo, ChangeLog changes, String bindAddress, int port,
+                             Duration heartbeatInterval) {
+        if (heartbeatInterval.isNegative() || heartbeatInterval.isZero()) {
+            throw new IllegalArgumentException("heartbeatInterval must be positive");
+        }
+        this.repo = repo;
+        this.changes = changes;
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+        this.heartbeatMillis = heartbeatInterval.toMillis();
+        long random = ThreadLocalRandom.current().nextLong();
+        this.epoch = random == 0 ? 1 : random;
+    }
+
+    /**
+     * Starts listening and accepting followers.
+     *
+     * @throws UncheckedIOException if the address cannot be bound
+     */
+    public synchronized void start() {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Replication server already started");
+        }
+        try {
+            ServerSocket socket = new ServerSocket();
+            socket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), requestedPort));
+            serverSocket = socket;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for followers on " + bindAddress + ":" + requestedPort, e);
+        }
+        Thread acceptor = new Thread(this::accept, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** @return the port the server listens on, once started */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** @return the epoch followers must present to resume */
+    public long epoch() {
+        return epoch;
+    }
+
+    /** @return the sequence of the last change made on the primary */
+    public long lastSequence() {
+        return changes.lastSequence();
+    }
+
+    /** @return the followers currently connected */
+    public List<Link> followers() {
+        return List.copyOf(links);
+    }
+
+    /** @return the number of full copies sent so far */
+    public long copies() {
+        return copies.get();
+    }
+
+    /** Stops accepting followers and disconnects the connected ones. */
+    @Override
+    public void close() {
+        closed = true;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+        for (Link link : links) {
+            closeQuietly(link.socket);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Closed, or a connection that failed before it was accepted.
+                continue;
+            }
+            Link link = new Link(socket, changes);
+            links.add(link);
+            Thread thread = new Thread(() -> serve(link), "replication-" + link.address);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Link link) {
+        try (Socket socket = link.socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            link.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+            if (in.readInt() != ReplicationProtocol.MAGIC || in.readInt() != ReplicationProtocol.VERSION) {
+                return;
+            }
+            long followerEpoch = in.readLong();
+            long next = in.readLong();
+            if (followerEpoch == epoch && next >= changes.firstSequence() && next <= changes.lastSequence() + 1) {
+                synchronized (link) {
+                    link.out.writeByte(ReplicationProtocol.RESUME);
+                    link.out.writeLong(epoch);
+                }
+            } else {
+                next = sendCopy(link) + 1;
+            }
+            // Throws if the copy took so long that the log moved past its start; the follower
+            // reconnects and starts over.
+            link.subscription = changes.subscribe("replica-" + link.address, next, link::ship);
+            while (!closed && link.subscription.state() == ChangeSubscription.State.RUNNING) {
+                Thread.sleep(heartbeatMillis);
+                link.heartbeat();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The follower went away or fell behind; it reconnects on its own.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ChangeSubscription subscription = link.subscription;
+            if (subscription != null) {
+                subscription.close();
+            }
+            links.remove(link);
+        }
+    }
+
+    /**
+     * Sends the whole repository.
+     *
+     * @return the last sequence the copy is guaranteed to reflect
+     */
+    private long sendCopy(Link link) throws IOException {
+        copies.incrementAndGet();
+        // Fixed before reading, so every later change is shipped again after the copy.
+        long upTo = changes.lastSequence();
+        DataOutputStream out = link.out;
+        synchronized (link) {
+            out.writeByte(ReplicationProtocol.SNAPSHOT);
+            out.writeLong(epoch);
+            Spliterator<Reservation> cursor = repo.cursor();
+            IOException[] failure = {null};
+            while (failure[0] == null && cursor.tryAdvance(r -> {
+                try {
+                    byte[] body = ReservationCodec.encode(r);
+                    out.writeByte(ReplicationProtocol.ROW);
+                    out.writeInt(body.length);
+                    out.write(body);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            })) {
+                // keep copying
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeByte(ReplicationProtocol.SNAPSHOT_END);
+            out.writeLong(upTo);
+            out.flush();
+        }
+        return upTo;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing left to release
+        }
+    }
+}
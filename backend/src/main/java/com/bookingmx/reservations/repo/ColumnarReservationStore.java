@@ -0,0 +1,425 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link ReservationStore} that keeps reservation fields column by column in off-heap
+ * memory, so that a large number of bookings does not inflate the Java heap or the work
+ * done by the garbage collector.
+ *
+ * <p>Each row occupies 29 bytes spread over seven direct buffers:
+ * <ul>
+ *   <li>{@code id} &ndash; {@code long}</li>
+ *   <li>{@code checkIn}, {@code checkOut} &ndash; {@code int} epoch days</li>
+ *   <li>{@code status} &ndash; {@code byte} ordinal of {@link ReservationStatus}</li>
+ *   <li>{@code version} &ndash; {@code int} {@link Reservation#getVersion() version}</li>
+ *   <li>{@code hotel}, {@code guest} &ndash; {@code int} codes into a {@link StringDictionary}</li>
+ * </ul>
+ * Rows are located through an open-addressed hash table (also off-heap) mapping the ID to
+ * its row number. Freed rows are recycled.</p>
+ *
+ * <p>{@link Reservation} objects are only created when a caller reads a row.</p>
+ *
+ * <p>Writers are serialized by a {@link StampedLock}. Readers use optimistic stamps and
+ * only fall back to the read lock when a write raced with them.</p>
+ */
+public class ColumnarReservationStore implements ReservationStore {
+
+    /** Status byte marking a row that is on the free list. */
+    private static final byte FREE_ROW = -1;
+
+    private static final ReservationStatus[] STATUSES = ReservationStatus.values();
+
+    /** Hash slot values: 0 is empty, -1 a removed entry, otherwise {@code row + 1}. */
+    private static final int EMPTY_SLOT = 0;
+    private static final int DELETED_SLOT = -1;
+
+    private final StampedLock lock = new StampedLock();
+    private final StringDictionary hotels = new StringDictionary();
+    private final StringDictionary guests = new StringDictionary();
+
+    private ByteBuffer ids;
+    private ByteBuffer checkIns;
+    private ByteBuffer checkOuts;
+    private ByteBuffer statuses;
+    private ByteBuffer versions;
+    private ByteBuffer hotelCodes;
+    private ByteBuffer guestCodes;
+    private int rowCapacity;
+    /** Rows handed out so far; rows at or above this index have never been used. */
+    private int rowCount;
+
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    private ByteBuffer slots;
+    private int slotMask;
+    /** Hash slots that are not empty (live or deleted). */
+    private int usedSlots;
+    private volatile int live;
+
+    /** Creates a store with room for a modest number of rows before growing. */
+    public ColumnarReservationStore() {
+        this(1024);
+    }
+
+    /**
+     * Creates a store with room for {@code initialCapacity} rows before growing.
+     *
+     * @param initialCapacity the number of rows to preallocate
+     */
+    public ColumnarReservationStore(int initialCapacity) {
+        allocateColumns(Math.max(16, initialCapacity));
+        allocateSlots(tableSizeFor(rowCapacity));
+    }
+
+    @Override
+    public Reservation get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                int row = findRow(id);
+                if (row < 0) {
+                    if (lock.validate(stamp)) {
+                        return null;
+                    }
+                } else {
+                    RowImage image = readRow(row);
+                    if (lock.validate(stamp)) {
+                        return image.toReservation();
+                    }
+                }
+            } catch (RuntimeException raced) {
+                // Buffers were swapped or rows rewritten underneath us; retry under the lock.
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int row = findRow(id);
+            return row < 0 ? null : readRow(row).toReservation();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(Reservation r) {
+        long id = r.getIdAsLong();
+        int hotel = hotels.encode(r.getHotelName());
+        int guest = guests.encode(r.getGuestName());
+        long stamp = lock.writeLock();
+        try {
+            int row = findRow(id);
+            if (row < 0) {
+                row = allocateRow();
+                insertSlot(id, row);
+                live = live + 1;
+            }
+            ids.putLong(row * 8, id);
+            checkIns.putInt(row * 4, r.getCheckInDay());
+            checkOuts.putInt(row * 4, r.getCheckOutDay());
+            statuses.put(row, (byte) r.getStatus().ordinal());
+            versions.putInt(row * 4, r.getVersion());
+            hotelCodes.putInt(row * 4, hotel);
+            guestCodes.putInt(row * 4, guest);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(id);
+            if (slot < 0) {
+                return false;
+            }
+            int row = slots.getInt(slot * 4) - 1;
+            slots.putInt(slot * 4, DELETED_SLOT);
+            statuses.put(row, FREE_ROW);
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+            live = live - 1;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Reservation> action) {
+        for (int row = 0; ; row++) {
+            RowImage image = readRowConsistently(row);
+            if (image == null) {
+                return;
+            }
+            if (image.status != FREE_ROW) {
+                action.accept(image.toReservation());
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<Reservation> spliterator() {
+        return new RowSpliterator(0, -1);
+    }
+
+    /** @return off-heap bytes currently reserved by columns and hash slots */
+    public long offHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) rowCapacity * 29 + slots.capacity();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Reads one row for iteration; returns {@code null} once {@code row} is past the last used row. */
+    private RowImage readRowConsistently(int row) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                RowImage image = row < rowCount ? readRow(row) : null;
+                if (lock.validate(stamp)) {
+                    return image;
+                }
+            } catch (RuntimeException raced) {
+                // fall through to the locked read
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return row < rowCount ? readRow(row) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private RowImage readRow(int row) {
+        return new RowImage(
+                ids.getLong(row * 8),
+                checkIns.getInt(row * 4),
+                checkOuts.getInt(row * 4),
+                statuses.get(row),
+                versions.getInt(row * 4),
+                hotelCodes.getInt(row * 4),
+                guestCodes.getInt(row * 4));
+    }
+
+    private int findRow(long id) {
+        int slot = findSlot(id);
+        return slot < 0 ? -1 : slots.getInt(slot * 4) - 1;
+    }
+
+    /** Probes the hash table; bounded by the table size so torn optimistic reads terminate. */
+    private int findSlot(long id) {
+        ByteBuffer table = slots;
+        int mask = slotMask;
+        int i = hash(id) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int v = table.getInt(i * 4);
+            if (v == EMPTY_SLOT) {
+                return -1;
+            }
+            if (v != DELETED_SLOT && ids.getLong((v - 1) * 8) == id) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(long id, int row) {
+        if ((usedSlots + 1) * 2 > slotMask + 1) {
+            rehash(live + 1 > (slotMask + 1) / 4 ? (slotMask + 1) * 2 : slotMask + 1);
+        }
+        int i = hash(id) & slotMask;
+        while (slots.getInt(i * 4) != EMPTY_SLOT) {
+            i = (i + 1) & slotMask;
+        }
+        slots.putInt(i * 4, row + 1);
+        usedSlots++;
+    }
+
+    private void rehash(int newSize) {
+        ByteBuffer old = slots;
+        int oldSize = slotMask + 1;
+        allocateSlots(newSize);
+        for (int i = 0; i < oldSize; i++) {
+            int v = old.getInt(i * 4);
+            if (v == EMPTY_SLOT || v == DELETED_SLOT) {
+                continue;
+            }
+            int j = hash(ids.getLong((v - 1) * 8)) & slotMask;
+            while (slots.getInt(j * 4) != EMPTY_SLOT) {
+                j = (j + 1) & slotMask;
+            }
+            slots.putInt(j * 4, v);
+            usedSlots++;
+        }
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rowCount == rowCapacity) {
+            growColumns(rowCapacity * 2);
+        }
+        return rowCount++;
+    }
+
+    private void allocateSlots(int size) {
+        slots = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder());
+        slotMask = size - 1;
+        usedSlots = 0;
+    }
+
+    private void allocateColumns(int capacity) {
+        ids = column(capacity, 8);
+        checkIns = column(capacity, 4);
+        checkOuts = column(capacity, 4);
+        statuses = column(capacity, 1);
+        versions = column(capacity, 4);
+        hotelCodes = column(capacity, 4);
+        guestCodes = column(capacity, 4);
+        rowCapacity = capacity;
+    }
+
+    private void growColumns(int capacity) {
+        ids = grow(ids, capacity, 8);
+        checkIns = grow(checkIns, capacity, 4);
+        checkOuts = grow(checkOuts, capacity, 4);
+        statuses = grow(statuses, capacity, 1);
+        versions = grow(versions, capacity, 4);
+        hotelCodes = grow(hotelCodes, capacity, 4);
+        guestCodes = grow(guestCodes, capacity, 4);
+        rowCapacity = capacity;
+    }
+
+    private static ByteBuffer grow(ByteBuffer old, int rows, int width) {
+        ByteBuffer fresh = column(rows, width);
+        fresh.put(0, old, 0, old.capacity());
+        return fresh;
+    }
+
+    private static ByteBuffer column(int rows, int width) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(rows, width)).order(ByteOrder.nativeOrder());
+    }
+
+    private static int tableSizeFor(int rows) {
+        return Integer.highestOneBit(Math.max(16, rows) - 1) << 2;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Walks rows {@code [row, fence)}, decoding one reservation at a time. An unbound fence
+     * ({@code -1}) is fixed at the row count the first time it is needed, so rows appended
+     * before the walk starts are included.
+     */
+    private final class RowSpliterator implements Spliterator<Reservation> {
+        private int row;
+        private int fence;
+
+        RowSpliterator(int row, int fence) {
+            this.row = row;
+            this.fence = fence;
+        }
+
+        private int fence() {
+            if (fence < 0) {
+                long stamp = lock.readLock();
+                try {
+                    fence = rowCount;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Reservation> action) {
+            int end = fence();
+            while (row < end) {
+                RowImage image = readRowConsistently(row++);
+                if (image == null) {
+                    return false;
+                }
+                if (image.status != FREE_ROW) {
+                    action.accept(image.toReservation());
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Reservation> trySplit() {
+            int end = fence();
+            int mid = (row + end) >>> 1;
+            if (end - row < 1024) {
+                return null;
+            }
+            Spliterator<Reservation> prefix = new RowSpliterator(row, mid);
+            row = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(0, fence() - row);
+        }
+
+        @Override
+        public int characteristics() {
+            return CONCURRENT | NONNULL;
+        }
+    }
+
+    /** Raw column values of one row, copied out so they can be validated before decoding. */
+    private final class RowImage {
+        final long id;
+        final int checkIn;
+        final int checkOut;
+        final byte status;
+        final int version;
+        final int hotel;
+        final int guest;
+
+        RowImage(long id, int checkIn, int checkOut, byte status, int version, int hotel, int guest) {
+            this.id = id;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.status = status;
+            this.version = version;
+            this.hotel = hotel;
+            this.guest = guest;
+        }
+
+        Reservation toReservation() {
+            return new Reservation(id, guests.decode(guest), hotels.decode(hotel), checkIn, checkOut,
+                    STATUSES[status], version);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.bookingmx.reservations.repo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Logged writes made on one thread whose durability is waited for together.
+ *
+ * <p>While a group is {@link #begin() begun} on a thread, a write of the
+ * {@link InMemoryReservationRepository} that would wait for its write-ahead log record to be
+ * durable joins the group and returns at once instead, so a thread making many writes in a
+ * row, such as a hotel's command queue running a batch, waits for the log once rather than
+ * once per write. The writes still become visible only once durable. Whoever began the group
+ * must {@link #await()} it before reporting its writes as done.</p>
+ *
+ * <p>Bookkeeping that depends on the writes committing, such as giving back the nights a
+ * failed write had taken, registers with {@link #afterCommit(Runnable, Runnable)}. Without a
+ * group every write is durable by the time it returns, so the hook for a commit runs at
+ * once.</p>
+ */
+public final class CommitGroup {
+
+    private static final ThreadLocal<CommitGroup> CURRENT = new ThreadLocal<>();
+
+    private final List<CompletableFuture<Void>> writes = new ArrayList<>();
+    private final List<Runnable> onCommit = new ArrayList<>();
+    private final List<Runnable> onFailure = new ArrayList<>();
+
+    private CommitGroup() {
+    }
+
+    /**
+     * Begins a group on the current thread.
+     *
+     * @return the group, collecting the thread's writes until {@link #end()}
+     * @throws IllegalStateException if the thread already has a group
+     */
+    public static CommitGroup begin() {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("A commit group is already open on this thread");
+        }
+        CommitGroup group = new CommitGroup();
+        CURRENT.set(group);
+        return group;
+    }
+
+    /** Stops collecting the current thread's writes into this group. */
+    public void end() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Runs {@code committed} once the writes of the current thread's group are durable, or
+     * {@code failed} if one of them fails. Without a group, runs {@code committed} at once.
+     *
+     * @param committed what to do once the writes made so far have committed
+     * @param failed    what to do if they have not
+     */
+    public static void afterCommit(Runnable committed, Runnable failed) {
+        CommitGroup group = CURRENT.get();
+        if (group == null) {
+            committed.run();
+            return;
+        }
+        group.onCommit.add(committed);
+        group.onFailure.add(failed);
+    }
+
+    /** @return whether {@code write} joined the current thread's group, so its caller must not wait */
+    static boolean defer(CompletableFuture<Void> write) {
+        CommitGroup group = CURRENT.get();
+        if (group == null) {
+            return false;
+        }
+        group.writes.add(write);
+        return true;
+    }
+
+    /**
+     * Waits until every write of the group is durable and applied, then runs the hooks for
+     * the outcome.
+     *
+     * @throws RuntimeException the first write's failure, once the failure hooks have run
+     */
+    public void await() {
+        RuntimeException failure = null;
+        for (CompletableFuture<Void> write : writes) {
+            try {
+                write.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        }
+        writes.clear();
+        if (failure != null) {
+            onFailure.forEach(Runnable::run);
+            throw failure;
+        }
+        onCommit.forEach(Runnable::run);
+    }
+}
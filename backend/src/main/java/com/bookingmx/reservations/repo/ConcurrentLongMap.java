@@ -0,0 +1,420 @@
+package com.bookingmx.reservations.repo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Concurrent hash map keyed by primitive {@code long} values.
+ *
+ * <p>Entries are kept in open-addressed tables (parallel {@code long[]} key and
+ * {@code Object[]} value arrays with linear probing), split into independently
+ * locked segments. Compared to a {@code ConcurrentHashMap<Long, V>} this avoids
+ * boxing the key on every call and allocating a node object per entry.</p>
+ *
+ * <p>Concurrency model:
+ * <ul>
+ *   <li>Reads ({@link #get(long)}, iteration) never lock. Values are published with
+ *       release/acquire semantics, so a reader always sees a fully written entry.</li>
+ *   <li>Writes lock only the segment owning the key.</li>
+ *   <li>A slot's key never changes while its table is live: removals leave a
+ *       tombstone, and tombstones are only discarded when the segment rehashes into
+ *       a new table. This is what lets readers probe without validation.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Iteration is weakly consistent, in the same sense as the {@code java.util.concurrent}
+ * collections: it never throws and never returns a torn entry, but may or may not reflect
+ * writes that happen while it runs.</p>
+ *
+ * @param <V> the type of mapped values
+ */
+public final class ConcurrentLongMap<V> {
+
+    /** Marker stored in a value slot whose entry has been removed. */
+    private static final Object TOMBSTONE = new Object();
+
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int MIN_TABLE_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /** Creates a map sized for a small number of entries. */
+    public ConcurrentLongMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a map able to hold {@code expectedSize} entries without rehashing.
+     *
+     * @param expectedSize the anticipated number of entries
+     */
+    public ConcurrentLongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Creates a map able to hold {@code expectedSize} entries without rehashing, split into
+     * at least {@code concurrencyLevel} independently locked segments. Small maps that see
+     * little write contention (e.g. per-key index postings) should use a level of 1.
+     *
+     * @param expectedSize     the anticipated number of entries
+     * @param concurrencyLevel the anticipated number of concurrent writers
+     */
+    public ConcurrentLongMap(int expectedSize, int concurrencyLevel) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(concurrencyLevel, 1 << 16)) * 2 - 1);
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = Math.max(0, expectedSize) / segmentCount + 1;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacityFor(perSegment));
+        }
+    }
+
+    /**
+     * Returns the value mapped to {@code key}, or {@code null} if there is none.
+     *
+     * @param key the key to look up
+     * @return the mapped value, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long h = mix(key);
+        return (V) segmentFor(h).get(key, h);
+    }
+
+    /**
+     * Indicates whether the map contains an entry for {@code key}.
+     *
+     * @param key the key to look up
+     * @return {@code true} if an entry exists
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps {@code key} to {@code value}, replacing any previous mapping.
+     *
+     * @param key   the key
+     * @param value the value; must not be {@code null}
+     * @return the previous value, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long h = mix(key);
+        return (V) segmentFor(h).put(key, h, value, false);
+    }
+
+    /**
+     * Maps {@code key} to {@code value} only if no mapping exists yet.
+     *
+     * @param key   the key
+     * @param value the value; must not be {@code null}
+     * @return the existing value, or {@code null} if {@code value} was inserted
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long h = mix(key);
+        return (V) segmentFor(h).put(key, h, value, true);
+    }
+
+    /**
+     * Removes the mapping for {@code key}, if present.
+     *
+     * @param key the key
+     * @return the removed value, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        long h = mix(key);
+        return (V) segmentFor(h).remove(key, h);
+    }
+
+    /**
+     * Returns the number of entries. Under concurrent writes this is an estimate.
+     *
+     * @return the number of mapped keys
+     */
+    public int size() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /** @return {@code true} if the map holds no entries */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Passes every value to {@code action}. Weakly consistent; see the class comment.
+     *
+     * @param action the callback receiving each value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Segment s : segments) {
+            Object[] vals = s.table.vals;
+            for (int i = 0; i < vals.length; i++) {
+                Object v = VALUES.getAcquire(vals, i);
+                if (v != null && v != TOMBSTONE) {
+                    action.accept((V) v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a spliterator over the values that reads the live tables in place, without
+     * copying. Weakly consistent; see the class comment. It splits by segment.
+     *
+     * @return a {@link Spliterator#CONCURRENT} and {@link Spliterator#NONNULL} spliterator
+     */
+    public Spliterator<V> valueSpliterator() {
+        return new ValueSpliterator(0, segments.length);
+    }
+
+    /** Removes every entry. */
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Passes every key to {@code action}. Weakly consistent; see the class comment.
+     *
+     * @param action the callback receiving each key
+     */
+    public void forEachKey(LongConsumer action) {
+        for (Segment s : segments) {
+            Table t = s.table;
+            for (int i = 0; i < t.vals.length; i++) {
+                Object v = VALUES.getAcquire(t.vals, i);
+                if (v != null && v != TOMBSTONE) {
+                    action.accept(t.keys[i]);
+                }
+            }
+        }
+    }
+
+    /** Walks the tables of segments {@code [segment, fence)} one slot at a time. */
+    private final class ValueSpliterator implements Spliterator<V> {
+        private int segment;
+        private final int fence;
+        /** Table of the segment being walked, taken when the walk reaches it. */
+        private Object[] vals;
+        private int slot;
+
+        ValueSpliterator(int segment, int fence) {
+            this.segment = segment;
+            this.fence = fence;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (true) {
+                if (vals == null) {
+                    if (segment >= fence) {
+                        return false;
+                    }
+                    vals = segments[segment++].table.vals;
+                    slot = 0;
+                }
+                while (slot < vals.length) {
+                    Object v = VALUES.getAcquire(vals, slot++);
+                    if (v != null && v != TOMBSTONE) {
+                        action.accept((V) v);
+                        return true;
+                    }
+                }
+                vals = null;
+            }
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            // Only split segments this spliterator has not started on.
+            int mid = (segment + fence) >>> 1;
+            if (vals != null || mid <= segment) {
+                return null;
+            }
+            Spliterator<V> prefix = new ValueSpliterator(segment, mid);
+            segment = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long total = 0;
+            for (int i = segment; i < fence; i++) {
+                total += segments[i].size;
+            }
+            return total;
+        }
+
+        @Override
+        public int characteristics() {
+            return CONCURRENT | NONNULL;
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        // With a single segment the shift is 64, which Java treats as 0; mask it explicitly.
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /** Finalizer of MurmurHash3; spreads sequential ids across segments and slots. */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int capacityFor(int entries) {
+        long needed = (long) entries * 4 / 3 + 1;
+        int cap = MIN_TABLE_CAPACITY;
+        while (cap < needed) {
+            cap <<= 1;
+        }
+        return cap;
+    }
+
+    /** Immutable-shape table; keys are written once per slot, values via {@link #VALUES}. */
+    private static final class Table {
+        final long[] keys;
+        final Object[] vals;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.vals = new Object[capacity];
+            this.mask = capacity - 1;
+            this.threshold = capacity / 4 * 3;
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table;
+        /** Live entries. Written under the segment lock. */
+        volatile int size;
+        /** Occupied slots, live plus tombstones. Guarded by the segment lock. */
+        int used;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        Object get(long key, long hash) {
+            Table t = table;
+            int i = (int) hash & t.mask;
+            while (true) {
+                Object v = VALUES.getAcquire(t.vals, i);
+                if (v == null) {
+                    return null;
+                }
+                if (v != TOMBSTONE && t.keys[i] == key) {
+                    return v;
+                }
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        synchronized Object put(long key, long hash, Object value, boolean onlyIfAbsent) {
+            Table t = table;
+            int i = (int) hash & t.mask;
+            while (true) {
+                Object v = t.vals[i];
+                if (v == null) {
+                    break;
+                }
+                if (t.keys[i] == key && v != TOMBSTONE) {
+                    if (!onlyIfAbsent) {
+                        VALUES.setRelease(t.vals, i, value);
+                    }
+                    return v;
+                }
+                i = (i + 1) & t.mask;
+            }
+            if (used + 1 > t.threshold) {
+                t = rehash(t);
+                i = (int) hash & t.mask;
+                while (t.vals[i] != null) {
+                    i = (i + 1) & t.mask;
+                }
+            }
+            t.keys[i] = key;
+            VALUES.setRelease(t.vals, i, value);
+            used++;
+            size = size + 1;
+            return null;
+        }
+
+        synchronized Object remove(long key, long hash) {
+            Table t = table;
+            int i = (int) hash & t.mask;
+            while (true) {
+                Object v = t.vals[i];
+                if (v == null) {
+                    return null;
+                }
+                if (t.keys[i] == key && v != TOMBSTONE) {
+                    VALUES.setRelease(t.vals, i, TOMBSTONE);
+                    size = size - 1;
+                    return v;
+                }
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        synchronized void clear() {
+            table = new Table(MIN_TABLE_CAPACITY);
+            used = 0;
+            size = 0;
+        }
+
+        /** Copies live entries into a fresh table, dropping tombstones, and publishes it. */
+        private Table rehash(Table old) {
+            // Double only when live entries fill more than half the threshold; otherwise the
+            // pressure came from tombstones and a same-size rebuild is enough.
+            int capacity = size + 1 > old.threshold / 2 ? old.vals.length << 1 : old.vals.length;
+            Table fresh = new Table(capacity);
+            for (int j = 0; j < old.vals.length; j++) {
+                Object v = old.vals[j];
+                if (v == null || v == TOMBSTONE) {
+                    continue;
+                }
+                long k = old.keys[j];
+                int i = (int) mix(k) & fresh.mask;
+                while (fresh.vals[i] != null) {
+                    i = (i + 1) & fresh.mask;
+                }
+                fresh.keys[i] = k;
+                fresh.vals[i] = v;
+            }
+            used = size;
+            table = fresh;
+            return fresh;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongConsumer;
+
+/**
+ * Secondary index over guest names supporting case-insensitive prefix search.
+ *
+ * <p>Names are folded to lower case and kept, together with the reservation ID, in a
+ * {@link ConcurrentSkipListSet}. A prefix search seeks to the first entry not below the
+ * prefix and walks forward until the prefix no longer matches or the limit is reached, so it
+ * costs O(log n + limit) however many reservations are stored. Searches never lock.</p>
+ *
+ * <p>As with {@link HotelIndex}, the index remembers the name each ID was last indexed under,
+ * and callers must serialize updates for the same ID.</p>
+ */
+final class GuestNameIndex {
+
+    /** Folded name plus ID, ordered by name and then ID so equal names stay distinct. */
+    private static final class Entry implements Comparable<Entry> {
+        final String name;
+        final long id;
+
+        Entry(String name, long id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = name.compareTo(o.name);
+            return c != 0 ? c : Long.compare(id, o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry e && id == e.id && name.equals(e.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + Long.hashCode(id);
+        }
+    }
+
+    /** The order search results come in, for merging the results of several indexes. */
+    static final Comparator<Reservation> ORDER = Comparator
+            .comparing((Reservation r) -> fold(r.getGuestName()))
+            .thenComparingLong(Reservation::getId);
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /** Reverse mapping: reservation ID to its entry, needed to remove it again. */
+    private final ConcurrentLongMap<Entry> entryOf = new ConcurrentLongMap<>();
+
+    /**
+     * Indexes {@code id} under {@code guestName}, replacing any previous name.
+     *
+     * @param id        the reservation ID
+     * @param guestName the guest name; {@code null} removes it from the index
+     */
+    void index(long id, String guestName) {
+        if (guestName == null) {
+            unindex(id);
+            return;
+        }
+        Entry fresh = new Entry(fold(guestName), id);
+        Entry previous = entryOf.put(id, fresh);
+        if (fresh.equals(previous)) {
+            return;
+        }
+        entries.add(fresh);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * Removes {@code id} from the index.
+     *
+     * @param id the reservation ID
+     */
+    void unindex(long id) {
+        Entry previous = entryOf.remove(id);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * Passes the IDs of up to {@code limit} reservations whose guest name starts with
+     * {@code prefix}, ignoring case, in name order.
+     *
+     * @param prefix the name prefix
+     * @param limit  the maximum number of IDs to pass
+     * @param action receives each matching ID
+     */
+    void forEachWithPrefix(String prefix, int limit, LongConsumer action) {
+        String folded = fold(prefix);
+        int passed = 0;
+        for (Entry e : entries.tailSet(new Entry(folded, Long.MIN_VALUE))) {
+            if (passed == limit || !e.name.startsWith(folded)) {
+                return;
+            }
+            action.accept(e.id);
+            passed++;
+        }
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,45 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Default {@link ReservationStore} that keeps reservation objects on the Java heap,
+ * indexed by a {@link ConcurrentLongMap}.
+ */
+public class HeapReservationStore implements ReservationStore {
+
+    private final ConcurrentLongMap<Reservation> rows = new ConcurrentLongMap<>();
+
+    @Override
+    public Reservation get(long id) {
+        return rows.get(id);
+    }
+
+    @Override
+    public void put(Reservation r) {
+        rows.put(r.getIdAsLong(), r);
+    }
+
+    @Override
+    public boolean remove(long id) {
+        return rows.remove(id) != null;
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Reservation> action) {
+        rows.forEachValue(action);
+    }
+
+    @Override
+    public Spliterator<Reservation> spliterator() {
+        return rows.valueSpliterator();
+    }
+}
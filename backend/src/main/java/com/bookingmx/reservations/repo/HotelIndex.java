@@ -0,0 +1,91 @@
+package com.bookingmx.reservations.repo;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index from hotel code (see {@link NameDictionary})
+ * to the row ordinals (see {@link RowOrdinals}) of the reservations at that hotel.
+ *
+ * <p>Each hotel's rows are a {@link RoaringBitmap}, so a hotel lookup can be intersected with
+ * the {@link StatusIndex} without visiting the reservations. The index remembers which hotel
+ * each row was last indexed under, so a reservation that moves to another hotel is removed
+ * from the old bitmap even when the caller has already changed the hotel on the shared
+ * object.</p>
+ *
+ * <p>Callers must serialize {@link #index(int, int)} and {@link #unindex(int)} per row
+ * (the repository does this with its lock stripes). Each bitmap is guarded by its own monitor,
+ * and lookups copy only the matching bitmap.</p>
+ */
+final class HotelIndex {
+
+    /** Hotel code to the rows at that hotel. */
+    private final ConcurrentHashMap<Integer, RoaringBitmap> byHotel = new ConcurrentHashMap<>();
+
+    /** Reverse mapping: row ordinal to the hotel it is currently indexed under. */
+    private final ConcurrentLongMap<Integer> hotelOf = new ConcurrentLongMap<>();
+
+    /**
+     * Indexes {@code row} under {@code hotel}, moving it away from any previous hotel.
+     *
+     * @param row   the row ordinal
+     * @param hotel the reservation's hotel code; {@link StringDictionary#NULL_CODE} removes it
+     *              from the index
+     */
+    void index(int row, int hotel) {
+        Integer previous = hotel == StringDictionary.NULL_CODE
+                ? hotelOf.remove(row)
+                : hotelOf.put(row, hotel);
+        if (previous != null && previous == hotel) {
+            return;
+        }
+        if (previous != null) {
+            removeRow(previous, row);
+        }
+        if (hotel != StringDictionary.NULL_CODE) {
+            byHotel.compute(hotel, (h, rows) -> {
+                RoaringBitmap bitmap = rows != null ? rows : new RoaringBitmap();
+                synchronized (bitmap) {
+                    bitmap.add(row);
+                }
+                return bitmap;
+            });
+        }
+    }
+
+    /**
+     * Removes {@code row} from the index.
+     *
+     * @param row the row ordinal
+     */
+    void unindex(int row) {
+        Integer previous = hotelOf.remove(row);
+        if (previous != null) {
+            removeRow(previous, row);
+        }
+    }
+
+    /**
+     * @param hotel the hotel code
+     * @return a copy of the rows at {@code hotel}, empty if there are none
+     */
+    RoaringBitmap rows(int hotel) {
+        RoaringBitmap bitmap = byHotel.get(hotel);
+        if (bitmap == null) {
+            return new RoaringBitmap();
+        }
+        synchronized (bitmap) {
+            return bitmap.copy();
+        }
+    }
+
+    private void removeRow(int hotel, int row) {
+        // compute* runs atomically per hotel, so an empty bitmap is never dropped while
+        // another writer is adding to it.
+        byHotel.computeIfPresent(hotel, (h, rows) -> {
+            synchronized (rows) {
+                rows.remove(row);
+                return rows.isEmpty() ? null : rows;
+            }
+        });
+    }
+}
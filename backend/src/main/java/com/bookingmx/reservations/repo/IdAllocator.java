@@ -0,0 +1,202 @@
+package com.bookingmx.reservations.repo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out reservation IDs in per-thread blocks so concurrent creates do not all increment
+ * one shared counter.
+ *
+ * <p>Each thread takes a block of {@code blockSize} consecutive IDs from a shared
+ * {@link AtomicLong} and then allocates from it without any shared writes, so the shared
+ * cache line is touched once per block instead of once per ID. Blocks are handed out in
+ * increasing order, and a thread drops what is left of its block once it notices the block
+ * is older than a second (it checks every {@value #AGE_CHECK_INTERVAL} IDs), so IDs are
+ * only roughly time-ordered across threads: an ID can be lower than one another thread got
+ * up to about a second before it. IDs skipped that way are never reused. Within one thread
+ * they always increase.</p>
+ *
+ * <p>Virtual threads hold no block: they take each ID from the shared counter itself. They
+ * are cheap to start and often short-lived, like the thread of a hotel command queue that is
+ * retired when idle, and every one that ended holding a block would leave its rest unused.</p>
+ *
+ * <p>With a high-water file, the allocator persists a lease before handing out any ID beyond
+ * it, reserving many blocks at a time. After a restart allocation resumes above the last
+ * lease, so IDs stay unique even if the last IDs handed out never reached the write-ahead
+ * log. The file holds one big-endian {@code long} and is replaced atomically.</p>
+ */
+public class IdAllocator {
+
+    /** Default number of IDs a thread takes at a time. */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /** Blocks reserved by one write of the high-water file. */
+    private static final int BLOCKS_PER_LEASE = 64;
+
+    private static final long DEFAULT_MAX_BLOCK_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Allocations between block age checks; a power of two. */
+    private static final int AGE_CHECK_INTERVAL = 64;
+
+    /** IDs of one thread's current block; only touched by that thread. */
+    private static final class Block {
+        long next;
+        long end;
+        long takenAt;
+        long epoch = -1L;
+    }
+
+    private final int blockSize;
+    private final long maxBlockAgeNanos;
+    private final Path highWaterFile;
+
+    /** First ID of the next block to hand out. */
+    private final AtomicLong nextBlock = new AtomicLong(1L);
+
+    /** Every ID below this is covered by the persisted lease; guarded by {@code this}. */
+    private volatile long leased;
+
+    /** Bumped by {@link #advanceTo(long)} so threads drop blocks taken before it. */
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /** Creates an in-memory allocator with the default block size. */
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Creates an allocator, resuming above the lease recorded in {@code highWaterFile} if it
+     * exists.
+     *
+     * @param blockSize     number of IDs a thread takes at a time
+     * @param highWaterFile where the lease is persisted, or {@code null} for memory only
+     */
+    public IdAllocator(int blockSize, Path highWaterFile) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.blockSize = blockSize;
+        this.maxBlockAgeNanos = DEFAULT_MAX_BLOCK_AGE_NANOS;
+        this.highWaterFile = highWaterFile;
+        long start = 1L;
+        if (highWaterFile != null) {
+            start = Math.max(start, readHighWater(highWaterFile));
+        }
+        nextBlock.set(start);
+        leased = start;
+    }
+
+    /**
+     * Allocates a new ID.
+     *
+     * @return an ID never returned before by this allocator or, with a high-water file, by
+     *         any earlier allocator on the same file
+     */
+    public long next() {
+        if (Thread.currentThread().isVirtual()) {
+            long id = nextBlock.getAndIncrement();
+            if (id >= leased) {
+                lease(id + 1);
+            }
+            return id;
+        }
+        Block b = blocks.get();
+        // The clock is only read every AGE_CHECK_INTERVAL IDs; it costs more than the rest.
+        if (b.next == b.end || b.epoch != epoch.get()
+                || ((b.next & (AGE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - b.takenAt > maxBlockAgeNanos)) {
+            refill(b);
+        }
+        return b.next++;
+    }
+
+    /**
+     * Makes sure every future ID is at least {@code minNext}, e.g. after replaying IDs from a
+     * log or snapshot. Blocks already held by threads are abandoned, since they may hold IDs
+     * below {@code minNext}.
+     *
+     * @param minNext the smallest acceptable next ID
+     */
+    public void advanceTo(long minNext) {
+        nextBlock.accumulateAndGet(minNext, Math::max);
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * @return an upper bound for every ID allocated so far; allocation continues at or above
+     *         it after a restart
+     */
+    public long highWater() {
+        return nextBlock.get();
+    }
+
+    /** @return the number of IDs each thread takes at a time */
+    public int blockSize() {
+        return blockSize;
+    }
+
+    private void refill(Block b) {
+        b.epoch = epoch.get();
+        long start = nextBlock.getAndAdd(blockSize);
+        long end = start + blockSize;
+        if (end > leased) {
+            lease(end);
+        }
+        b.next = start;
+        b.end = end;
+        b.takenAt = System.nanoTime();
+    }
+
+    private synchronized void lease(long end) {
+        if (end <= leased) {
+            return;
+        }
+        long target = Math.max(end, leased + (long) blockSize * BLOCKS_PER_LEASE);
+        if (highWaterFile != null) {
+            writeHighWater(highWaterFile, target);
+        }
+        leased = target;
+    }
+
+    private static long readHighWater(Path file) {
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length != Long.BYTES) {
+                throw new IllegalStateException("ID high-water file " + file + " is corrupt");
+            }
+            return ByteBuffer.wrap(bytes).getLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+    }
+
+    private static void writeHighWater(Path file, long value) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.allocate(Long.BYTES).putLong(0, value));
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + file, e);
+        }
+    }
+}
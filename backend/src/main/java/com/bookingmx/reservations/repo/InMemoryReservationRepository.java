@@ -0,0 +1,942 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link ReservationRepository} that keeps reservations in memory, simulating persistent
+ * storage without a database.
+ *
+ * <p>Reservations are kept in a pluggable {@link ReservationStore}. By default this is a
+ * {@link MvccReservationStore}, which keeps immutable versions in an in-memory
+ * {@link ConcurrentLongMap} keyed by the primitive {@code long} ID, making it suitable for
+ * testing environments and lightweight applications where a real database is not required.
+ * {@link #findAll()} and {@link #openReadView()} read a consistent snapshot of it. The
+ * {@link StorageEngine} setting can switch to the single-version {@link HeapReservationStore}
+ * or the off-heap {@link ColumnarReservationStore} for large datasets.</p>
+ *
+ * <p>When a {@link WriteAheadLog} is supplied, every save and delete is appended to it and
+ * only applied to the store, and published, once the record is durable; the call returns
+ * after that, or at once inside a {@link CommitGroup}, which waits for its writes together.
+ * A write whose record cannot be written changes nothing, so a caller that gets the error can
+ * undo what it did in expectation of the write. Until a logged write is applied, its ID is in
+ * flight: a later write of the same ID waits for it and is then checked against its outcome,
+ * so the log and the store see the writes of one reservation in the same order. Writes of
+ * other IDs are appended meanwhile and share the group commit. The log is replayed into the
+ * store when the repository is created, so bookings survive a restart.</p>
+ *
+ * <p>Stored reservations have their names swapped for the canonical instances kept in the
+ * repository's {@link NameDictionary}, so the bookings of one hotel share one name string. Only
+ * stored names enter the dictionary; the hotel queries look names up without adding them.</p>
+ *
+ * <p>A hotel index is kept in step with every save and delete, including saves that move a
+ * reservation to another hotel, so {@link #findByHotel(String)} does not scan the store.
+ * Hotel and status are indexed as compressed bitmaps over dense row ordinals, so
+ * {@link #findByStatus(ReservationStatus)} and {@link #findByHotel(String, ReservationStatus)}
+ * are bitmap operations rather than per-reservation status checks. A
+ * per-hotel interval index over the stays of active reservations likewise answers
+ * {@link #findOverlapping(String, LocalDate, LocalDate)} and
+ * {@link #findStayingOn(String, LocalDate)}, and a sorted guest-name index answers
+ * {@link #searchByGuest(String, int)}.</p>
+ *
+ * <p>A store that keeps its own contents on disk, such as the
+ * {@link com.bookingmx.reservations.repo.lsm.LsmReservationStore}, may already hold
+ * reservations when the repository is created; they are indexed first, then the snapshot and
+ * the log are applied on top. Such a store is closed with the repository.</p>
+ *
+ * <p>The repository can be split into shards by hash of the hotel name. Each
+ * {@link ReservationShard} has its own store, ID allocator, indexes and lock stripes, and
+ * optionally a single writer thread, so writes for different hotels share no lock and no
+ * counter. Hotel-scoped queries go to one shard; {@link #findAll()},
+ * {@link #findByStatus(ReservationStatus)}, {@link #searchByGuest(String, int)} and the other
+ * cross-hotel reads merge the results of every shard. An ID names the shard it was created
+ * in; the few reservations whose hotel later changed to one in another shard are found
+ * through a small relocation map. Since every shard allocates its own IDs, IDs are unique but
+ * not ordered by creation across hotels: a booking can get a lower ID than one made before
+ * it.</p>
+ *
+ * <p>When the stores are {@link TieredReservationStore}s, {@link #spillCold(LocalDate, int)}
+ * moves finished stays and canceled reservations out of memory; lookups fault them back in
+ * from disk.</p>
+ *
+ * <p>With a {@link ChangeLog} set, every save and delete is also published to it; see
+ * {@link #setChangeLog(ChangeLog)}.</p>
+ *
+ * <p>With a {@link SnapshotFile}, {@link #snapshot()} writes the full contents plus the ID
+ * sequence to disk and retires the log segments it covers. On startup the snapshot is mapped
+ * and loaded first, and only the log records written after it are replayed.</p>
+ *
+ * <p>The repository is responsible for:
+ * <ul>
+ *   <li>Storing reservation instances</li>
+ *   <li>Assigning unique IDs to new reservations</li>
+ *   <li>Providing CRUD-like operations on stored reservations</li>
+ * </ul>
+ * </p>
+ *
+ * <p><strong>Note:</strong> This repository is thread-safe thanks to
+ * its {@link ReservationStore} and {@link IdAllocator}, although the overall application
+ * is not designed for heavy concurrent load.</p>
+ */
+public class InMemoryReservationRepository implements ReservationRepository {
+
+    /** Shards by index; a hotel's shard is chosen by hash of its name. */
+    private final ReservationShard[] shards;
+
+    /** Shard holding each reservation that no longer lives in its home shard. */
+    private final ConcurrentLongMap<ReservationShard> relocated = new ConcurrentLongMap<>();
+
+    /** Durable log of mutations, or {@code null} when the repository is memory-only. */
+    private final WriteAheadLog wal;
+
+    /** Point-in-time image loaded on startup, or {@code null} when snapshots are off. */
+    private final SnapshotFile snapshotFile;
+
+    /** Canonical names and hotel codes of the stored reservations. */
+    private final NameDictionary names;
+
+    /** Where committed changes are published, or {@code null} when nobody listens. */
+    private volatile ChangeLog changes;
+
+    /**
+     * Outcome of the logged write of each ID that is not yet durable and applied. Entries are
+     * added and removed under the ID's home stripe; there is at most one per ID.
+     */
+    private final ConcurrentLongMap<CompletableFuture<Void>> inFlight = new ConcurrentLongMap<>();
+
+    /**
+     * Held shared by every write moving a reservation to another shard, and exclusively while
+     * the shards' read views are opened, so no view sees half of a move. Other writes never
+     * take it.
+     */
+    private final ReentrantReadWriteLock moves = new ReentrantReadWriteLock();
+
+    /** Creates a repository backed by the default multi-version on-heap store. */
+    public InMemoryReservationRepository() {
+        this(new MvccReservationStore());
+    }
+
+    /**
+     * Creates a memory-only repository backed by the given store.
+     *
+     * @param store the storage engine to keep reservations in
+     */
+    public InMemoryReservationRepository(ReservationStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Creates a repository backed by the given store and, optionally, a write-ahead log.
+     * An existing log is replayed into the store before the constructor returns.
+     *
+     * @param store the storage engine to keep reservations in
+     * @param wal   the log to make mutations durable with, or {@code null}
+     */
+    public InMemoryReservationRepository(ReservationStore store, WriteAheadLog wal) {
+        this(store, wal, null);
+    }
+
+    /**
+     * Creates a repository backed by the given store, write-ahead log and snapshot file, any
+     * of the last two may be {@code null}. An existing snapshot is loaded and the log records
+     * written after it are replayed before the constructor returns.
+     *
+     * @param store        the storage engine to keep reservations in
+     * @param wal          the log to make mutations durable with, or {@code null}
+     * @param snapshotFile the snapshot to restore from and write to, or {@code null}
+     */
+    public InMemoryReservationRepository(ReservationStore store, WriteAheadLog wal, SnapshotFile snapshotFile) {
+        this(store, wal, snapshotFile, new IdAllocator());
+    }
+
+    /**
+     * Creates a repository like {@link #InMemoryReservationRepository(ReservationStore, WriteAheadLog, SnapshotFile)}
+     * that takes new IDs from {@code ids}. The allocator is advanced past every ID restored
+     * from the snapshot and the log.
+     *
+     * @param store        the storage engine to keep reservations in
+     * @param wal          the log to make mutations durable with, or {@code null}
+     * @param snapshotFile the snapshot to restore from and write to, or {@code null}
+     * @param ids          the ID allocator
+     */
+    public InMemoryReservationRepository(ReservationStore store, WriteAheadLog wal, SnapshotFile snapshotFile,
+                                         IdAllocator ids) {
+        this(1, shard -> store, shard -> ids, false, wal, snapshotFile);
+    }
+
+    /**
+     * Creates a repository split into {@code shardCount} hotel shards. Contents already held
+     * by the stores are indexed (and moved to the right shard if the shard count changed),
+     * then an existing snapshot is loaded and the log records written after it are replayed,
+     * before the constructor returns. Every allocator is advanced past the restored IDs.
+     *
+     * @param shardCount   number of shards, at least 1
+     * @param stores       creates the store of shard {@code k}
+     * @param ids          creates the ID allocator of shard {@code k}
+     * @param singleWriter whether each shard runs its writes on one dedicated thread
+     * @param wal          the log to make mutations durable with, or {@code null}
+     * @param snapshotFile the snapshot to restore from and write to, or {@code null}
+     */
+    public InMemoryReservationRepository(int shardCount, IntFunction<ReservationStore> stores,
+                                         IntFunction<IdAllocator> ids, boolean singleWriter,
+                                         WriteAheadLog wal, SnapshotFile snapshotFile) {
+        this(shardCount, stores, ids, singleWriter, wal, snapshotFile, new NameDictionary());
+    }
+
+    /**
+     * Creates a sharded repository like
+     * {@link #InMemoryReservationRepository(int, IntFunction, IntFunction, boolean, WriteAheadLog, SnapshotFile)}
+     * that keeps the names of its reservations in {@code names}.
+     *
+     * @param shardCount   number of shards, at least 1
+     * @param stores       creates the store of shard {@code k}
+     * @param ids          creates the ID allocator of shard {@code k}
+     * @param singleWriter whether each shard runs its writes on one dedicated thread
+     * @param wal          the log to make mutations durable with, or {@code null}
+     * @param snapshotFile the snapshot to restore from and write to, or {@code null}
+     * @param names        the dictionary of stored names, owned by this repository from now on
+     */
+    public InMemoryReservationRepository(int shardCount, IntFunction<ReservationStore> stores,
+                                         IntFunction<IdAllocator> ids, boolean singleWriter,
+                                         WriteAheadLog wal, SnapshotFile snapshotFile, NameDictionary names) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        this.names = Objects.requireNonNull(names, "names");
+        this.shards = new ReservationShard[shardCount];
+        for (int k = 0; k < shardCount; k++) {
+            shards[k] = new ReservationShard(k, shardCount, names,
+                    Objects.requireNonNull(stores.apply(k), "store"),
+                    Objects.requireNonNull(ids.apply(k), "ids"), singleWriter);
+        }
+        this.wal = wal;
+        this.snapshotFile = snapshotFile;
+        long[] nextId = {1L};
+        for (ReservationShard shard : shards) {
+            if (shard.store.size() > 0) {
+                adopt(shard, r -> nextId[0] = Math.max(nextId[0], r.getId() + 1));
+            }
+        }
+        long snapshotLsn = 0L;
+        if (snapshotFile != null) {
+            SnapshotFile.Info info = snapshotFile.load(r -> {
+                place(names.intern(r), shardFor(r.getHotelName()));
+                nextId[0] = Math.max(nextId[0], r.getId() + 1);
+            });
+            if (info != null) {
+                snapshotLsn = info.lsn();
+                nextId[0] = Math.max(nextId[0], info.nextId());
+            }
+        }
+        if (wal != null) {
+            wal.replay(snapshotLsn, new WriteAheadLog.Replayer() {
+                @Override
+                public void put(long lsn, Reservation r) {
+                    place(names.intern(r), shardFor(r.getHotelName()));
+                    nextId[0] = Math.max(nextId[0], r.getId() + 1);
+                }
+
+                @Override
+                public void delete(long lsn, long id) {
+                    displace(id);
+                }
+            });
+        }
+        // Shard k allocates local * n + k, so local must reach ceil(nextId / n).
+        long localNext = (nextId[0] + shardCount - 1) / shardCount;
+        for (ReservationShard shard : shards) {
+            shard.ids.advanceTo(localNext);
+        }
+    }
+
+    /**
+     * Retrieves all stored reservations.
+     *
+     * @return a new {@link List} containing all reservations currently in storage
+     */
+    @Override
+    public List<Reservation> findAll() {
+        List<Reservation> all = new ArrayList<>(count());
+        try (ReadView view = openReadView()) {
+            view.spliterator().forEachRemaining(all::add);
+        }
+        return all;
+    }
+
+    /**
+     * Opens a read view of all reservations. On the multi-version store it is a consistent
+     * snapshot that concurrent writes do not affect; see {@link ReadView}. With several
+     * shards the view combines one such snapshot per shard, each pinning its shard's last
+     * commit without taking a lock stripe, so writers are never held up by it. They are opened
+     * while no reservation is moving between shards, so no move is half applied in the view:
+     * a moved reservation is seen exactly once, in one shard or the other. Only moves wait
+     * for the views to be opened, never for them to be read.
+     *
+     * @return a view that must be closed after use
+     */
+    @Override
+    public ReadView openReadView() {
+        if (shards.length == 1) {
+            return shards[0].store.openReadView();
+        }
+        ReadView[] views = new ReadView[shards.length];
+        moves.writeLock().lock();
+        try {
+            for (int k = 0; k < shards.length; k++) {
+                views[k] = shards[k].store.openReadView();
+            }
+        } finally {
+            moves.writeLock().unlock();
+        }
+        return new ShardedView(views);
+    }
+
+    /**
+     * Returns a cursor over all stored reservations that reads the store in place. Unlike
+     * {@link #findAll()} it does not copy the contents, so walking it needs O(1) extra memory.
+     * It is weakly consistent with concurrent saves and deletes.
+     *
+     * @return a spliterator over the stored reservations
+     */
+    @Override
+    public Spliterator<Reservation> cursor() {
+        List<Spliterator<Reservation>> parts = new ArrayList<>(shards.length);
+        for (ReservationShard shard : shards) {
+            parts.add(shard.store.spliterator());
+        }
+        return concat(parts);
+    }
+
+    /**
+     * Retrieves the reservations at one hotel using the hotel index, in time proportional to
+     * the number of matches.
+     *
+     * @param hotelName the hotel name, matched exactly
+     * @return a new {@link List} with the matching reservations
+     */
+    @Override
+    public List<Reservation> findByHotel(String hotelName) {
+        List<Reservation> matches = new ArrayList<>();
+        int hotel = names.hotelCodeOf(hotelName);
+        if (hotel > StringDictionary.NULL_CODE) {
+            shardFor(hotelName).findByHotel(hotel, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Retrieves the reservations at one hotel in one status by intersecting the hotel and
+     * status bitmaps.
+     *
+     * @param hotelName the hotel name, matched exactly
+     * @param status    the status to keep
+     * @return a new {@link List} with the matching reservations
+     */
+    @Override
+    public List<Reservation> findByHotel(String hotelName, ReservationStatus status) {
+        List<Reservation> matches = new ArrayList<>();
+        int hotel = names.hotelCodeOf(hotelName);
+        if (hotel > StringDictionary.NULL_CODE) {
+            shardFor(hotelName).findByHotel(hotel, status, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Retrieves the reservations in one status using the status bitmap.
+     *
+     * @param status the status to look up
+     * @return a new {@link List} with the matching reservations
+     */
+    @Override
+    public List<Reservation> findByStatus(ReservationStatus status) {
+        List<Reservation> matches = new ArrayList<>(countByStatus(status));
+        for (ReservationShard shard : shards) {
+            shard.findByStatus(status, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * @param status the status to count
+     * @return the number of stored reservations in {@code status}
+     */
+    @Override
+    public int countByStatus(ReservationStatus status) {
+        int count = 0;
+        for (ReservationShard shard : shards) {
+            count += shard.countByStatus(status);
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the active reservations at one hotel whose stay {@code [checkIn, checkOut)}
+     * overlaps {@code [from, to)}, in O(log n + k) for k matches.
+     *
+     * @param hotelName the hotel name, matched exactly
+     * @param from      first day of the range, inclusive
+     * @param to        end of the range, exclusive
+     * @return a new {@link List} with the matching reservations
+     */
+    @Override
+    public List<Reservation> findOverlapping(String hotelName, LocalDate from, LocalDate to) {
+        List<Reservation> matches = new ArrayList<>();
+        int hotel = names.hotelCodeOf(hotelName);
+        if (hotel <= StringDictionary.NULL_CODE || !to.isAfter(from)) {
+            return matches;
+        }
+        shardFor(hotelName).findOverlapping(hotel, from, to, matches);
+        return matches;
+    }
+
+    /**
+     * Retrieves up to {@code limit} reservations whose guest name starts with {@code prefix},
+     * ignoring case, ordered by guest name. Runs in O(log n + limit) per shard.
+     *
+     * @param prefix the guest name prefix
+     * @param limit  the maximum number of results
+     * @return a new {@link List} with the matching reservations
+     */
+    @Override
+    public List<Reservation> searchByGuest(String prefix, int limit) {
+        List<Reservation> matches = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        if (prefix == null || limit <= 0) {
+            return matches;
+        }
+        for (ReservationShard shard : shards) {
+            shard.searchByGuest(prefix, limit, matches);
+        }
+        if (shards.length > 1) {
+            // Each shard returned its first `limit` matches in order; keep the overall first.
+            matches.sort(GuestNameIndex.ORDER);
+            if (matches.size() > limit) {
+                matches.subList(limit, matches.size()).clear();
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Attempts to find a reservation by its ID.
+     *
+     * @param id the unique identifier of the reservation
+     * @return an {@link Optional} containing the reservation if found,
+     *         or an empty Optional if it does not exist
+     */
+    @Override
+    public Optional<Reservation> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(locate(id).store.get(id));
+    }
+
+    /**
+     * Saves a reservation to storage.
+     *
+     * <p>If the reservation does not yet have an ID (i.e., {@code id == null}),
+     * the repository assigns a new ID from the {@link IdAllocator} of its hotel's shard
+     * before saving.</p>
+     *
+     * @param r the reservation to save
+     * @return the stored instance, including its assigned ID if it was newly created
+     */
+    @Override
+    public Reservation save(Reservation r) {
+        ReservationShard target = shardFor(r.getHotelName());
+        if (r.hasId()) {
+            long id = r.getIdAsLong();
+            Reservation[] stored = {r};
+            write(homeOf(id), id, () -> {
+                stored[0] = names.intern(r);
+                return put(stored[0], target);
+            });
+            return stored[0];
+        }
+        // A new ID cannot be in flight.
+        Reservation[] stored = {r};
+        CompletableFuture<Void> durable = target.write(() -> {
+            Reservation s = names.intern(r.withId(target.nextId()));
+            stored[0] = s;
+            ReentrantLock stripe = target.stripeFor(s.getIdAsLong());
+            stripe.lock();
+            try {
+                return put(s, target);
+            } finally {
+                stripe.unlock();
+            }
+        });
+        awaitApplied(durable);
+        return stored[0];
+    }
+
+    /**
+     * Saves a reservation only if the stored one with its ID is still at
+     * {@code expectedVersion}, checked under the same lock as the save. Writers of other IDs
+     * are not held up.
+     *
+     * @param r               the changed reservation; its ID must be assigned
+     * @param expectedVersion the version the change was made from
+     * @return the stored instance, at {@code expectedVersion + 1}, or empty if the version
+     *         did not match
+     */
+    @Override
+    public Optional<Reservation> saveIfVersion(Reservation r, int expectedVersion) {
+        if (!r.hasId()) {
+            throw new IllegalArgumentException("Only a stored reservation can be saved conditionally");
+        }
+        long id = r.getIdAsLong();
+        ReservationShard target = shardFor(r.getHotelName());
+        Reservation[] saved = {null};
+        write(homeOf(id), id, () -> {
+            Reservation current = locate(id).store.get(id);
+            if (current == null || current.getVersion() != expectedVersion) {
+                return null;
+            }
+            saved[0] = names.intern(r.withVersion(expectedVersion + 1));
+            return put(saved[0], target);
+        });
+        return Optional.ofNullable(saved[0]);
+    }
+
+    /**
+     * Runs {@code op} on the writer of {@code home} under the stripe of {@code id}, once no
+     * earlier write of that ID is in flight, and waits until the write it made, if any, is
+     * durable and applied, unless the thread's {@link CommitGroup} waits for it. An in-flight write is waited for outside the stripe, and {@code op}
+     * then runs again against its outcome.
+     *
+     * @param op returns the pending write, or {@code null} if it made none or applied it at once
+     */
+    private void write(ReservationShard home, long id, Supplier<CompletableFuture<Void>> op) {
+        while (true) {
+            CompletableFuture<?>[] earlier = {null};
+            CompletableFuture<Void> durable = home.write(() -> {
+                ReentrantLock stripe = home.stripeFor(id);
+                stripe.lock();
+                try {
+                    earlier[0] = inFlight.get(id);
+                    return earlier[0] == null ? op.get() : null;
+                } finally {
+                    stripe.unlock();
+                }
+            });
+            if (earlier[0] == null) {
+                awaitApplied(durable);
+                return;
+            }
+            earlier[0].exceptionally(failure -> null).join();
+        }
+    }
+
+    /**
+     * Stores a saved reservation in {@code target} and publishes the change, right away without
+     * a log, otherwise once its record is durable. Callers hold the ID's home stripe.
+     *
+     * @return the pending write, or {@code null} if it was applied at once
+     */
+    private CompletableFuture<Void> put(Reservation r, ReservationShard target) {
+        Runnable apply = () -> {
+            place(r, target);
+            ChangeLog log = changes;
+            if (log != null) {
+                log.appendPut(r);
+            }
+        };
+        if (wal == null) {
+            apply.run();
+            return null;
+        }
+        return logged(r.getIdAsLong(), () -> wal.appendPut(r), apply);
+    }
+
+    /**
+     * Appends a write's record and applies the write once the record is durable, under the
+     * ID's home stripe. If the record cannot be written the write is never applied. Callers
+     * hold the ID's home stripe.
+     *
+     * @return a future completing once the write is applied, or with the log's error
+     */
+    private CompletableFuture<Void> logged(long id, Supplier<CompletableFuture<Long>> append, Runnable apply) {
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        inFlight.put(id, applied);
+        CompletableFuture<Long> appended;
+        try {
+            appended = append.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(id);
+            throw e;
+        }
+        // Usually runs on the log's flusher thread, as soon as the record's batch is on disk.
+        appended.whenComplete((lsn, failure) -> {
+            Throwable outcome = failure;
+            ReentrantLock stripe = homeOf(id).stripeFor(id);
+            stripe.lock();
+            try {
+                if (outcome == null) {
+                    apply.run();
+                }
+            } catch (RuntimeException e) {
+                outcome = e;
+            } finally {
+                inFlight.remove(id);
+                stripe.unlock();
+            }
+            if (outcome == null) {
+                applied.complete(null);
+            } else {
+                applied.completeExceptionally(outcome instanceof CompletionException c ? c.getCause() : outcome);
+            }
+        });
+        return applied;
+    }
+
+    /**
+     * Waits for a write returned by {@link #put} or {@link #logged}, unless it joins the
+     * thread's {@link CommitGroup}; {@code null} is a no-op.
+     */
+    private static void awaitApplied(CompletableFuture<Void> durable) {
+        if (durable == null || CommitGroup.defer(durable)) {
+            return;
+        }
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes a reservation only if its current state satisfies {@code condition}, checked
+     * under the same lock as the delete, so a concurrent update cannot slip in between.
+     *
+     * @param id        the unique identifier of the reservation to remove
+     * @param condition tested against the stored reservation
+     * @return {@code true} if the reservation was deleted
+     */
+    @Override
+    public boolean deleteIf(Long id, Predicate<? super Reservation> condition) {
+        if (id == null) {
+            return false;
+        }
+        boolean[] removed = {false};
+        write(homeOf(id), id, () -> {
+            Reservation current = locate(id).store.get(id);
+            removed[0] = current != null && condition.test(current);
+            if (!removed[0]) {
+                return null;
+            }
+            Runnable apply = () -> {
+                displace(id);
+                ChangeLog log = changes;
+                if (log != null) {
+                    log.appendDelete(id);
+                }
+            };
+            if (wal == null) {
+                apply.run();
+                return null;
+            }
+            return logged(id, () -> wal.appendDelete(id), apply);
+        });
+        return removed[0];
+    }
+
+    /**
+     * Writes a snapshot of the current contents and deletes the log segments it makes
+     * redundant. The snapshot's log position is fixed by starting a new segment, without
+     * pausing writers; the contents are then copied while writes continue. Records that land in the
+     * snapshot and are also replayed from the log are harmless, since every record carries
+     * the full state of one reservation.
+     *
+     * @return the header of the written snapshot
+     * @throws IllegalStateException if the repository has no snapshot file
+     */
+    public synchronized SnapshotFile.Info snapshot() {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("Snapshots are not enabled");
+        }
+        long lsn = 0L;
+        if (wal != null) {
+            // Once the new segment is open, every earlier record is durable or failed, and its
+            // write was applied by whoever completed it, unless a writer still holds the stripe
+            // it registered the write under; waiting out each stripe in turn covers those.
+            lsn = WriteAheadLog.await(wal.rollover()) - 1;
+            for (ReservationShard shard : shards) {
+                shard.awaitWriters();
+            }
+        }
+        long nextId = 1L;
+        for (ReservationShard shard : shards) {
+            nextId = Math.max(nextId, shard.ids.highWater() * shards.length);
+        }
+        SnapshotFile.Info info = snapshotFile.write(lsn, nextId,
+                shards.length == 1 ? shards[0].store : new AllShards());
+        if (wal != null) {
+            wal.deleteSegmentsBefore(lsn + 1);
+        }
+        return info;
+    }
+
+    /** @return the number of stored reservations */
+    @Override
+    public int count() {
+        int count = 0;
+        for (ReservationShard shard : shards) {
+            count += shard.store.size();
+        }
+        return count;
+    }
+
+    /**
+     * Moves reservations that are canceled or checked out before {@code today} from memory to
+     * the cold tier of every shard whose store is a {@link TieredReservationStore}. They stay
+     * indexed and readable; see that class.
+     *
+     * @param today the current date
+     * @param limit the most reservations to move in this call, across all shards
+     * @return the number of reservations moved
+     */
+    public int spillCold(LocalDate today, int limit) {
+        int moved = 0;
+        for (ReservationShard shard : shards) {
+            if (moved < limit && shard.store instanceof TieredReservationStore tiered) {
+                moved += tiered.spill(r -> TieredReservationStore.isCold(r, today), limit - moved);
+            }
+        }
+        return moved;
+    }
+
+    /** @return the number of reservations held in cold tiers rather than in memory */
+    public int coldCount() {
+        int count = 0;
+        for (ReservationShard shard : shards) {
+            if (shard.store instanceof TieredReservationStore tiered) {
+                count += tiered.coldSize();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Publishes every later save and delete to {@code changes}, under the lock of the changed
+     * ID, so the log holds the writes of each reservation in the order they were applied.
+     * Restoring from the snapshot and the log publishes nothing; consumers start from the
+     * restored contents.
+     *
+     * @param changes the change log, or {@code null} to stop publishing
+     */
+    public void setChangeLog(ChangeLog changes) {
+        this.changes = changes;
+    }
+
+    /** @return the dictionary of the stored reservations' names */
+    public NameDictionary names() {
+        return names;
+    }
+
+    /** @return the number of hotel shards */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Stops the shard writers, flushes and closes the write-ahead log, if there is one, and
+     * closes stores that hold files.
+     */
+    @Override
+    public void close() {
+        for (ReservationShard shard : shards) {
+            shard.stopWriter();
+        }
+        // Flushing the log applies the writes still in flight, so it goes before the stores.
+        if (wal != null) {
+            wal.close();
+        }
+        for (ReservationShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private ReservationShard shardFor(String hotelName) {
+        return hotelName == null ? shards[0] : shards[Math.floorMod(hotelName.hashCode(), shards.length)];
+    }
+
+    /** @return the shard the ID was allocated in, whose lock stripes guard its writes */
+    private ReservationShard homeOf(long id) {
+        return shards[(int) Math.floorMod(id, (long) shards.length)];
+    }
+
+    /** @return the shard currently holding the ID */
+    private ReservationShard locate(long id) {
+        if (shards.length == 1) {
+            return shards[0];
+        }
+        ReservationShard moved = relocated.get(id);
+        return moved != null ? moved : homeOf(id);
+    }
+
+    /**
+     * Stores a reservation in {@code target}, removing it from the shard it was in if that
+     * differs. Callers hold the ID's home stripe or are restoring.
+     */
+    private void place(Reservation r, ReservationShard target) {
+        long id = r.getIdAsLong();
+        ReservationShard previous = locate(id);
+        if (previous == target) {
+            target.apply(r);
+            return;
+        }
+        moves.readLock().lock();
+        try {
+            // Store in the new shard before unlinking the old one, so lookups never miss it.
+            target.apply(r);
+            if (target == homeOf(id)) {
+                relocated.remove(id);
+            } else {
+                relocated.put(id, target);
+            }
+            previous.unapply(id);
+        } finally {
+            moves.readLock().unlock();
+        }
+    }
+
+    /** Removes a reservation from whichever shard holds it. Same locking rule as {@link #place}. */
+    private boolean displace(long id) {
+        ReservationShard at = locate(id);
+        boolean removed = at.unapply(id);
+        if (at != homeOf(id)) {
+            relocated.remove(id);
+        }
+        return removed;
+    }
+
+    /** Indexes what a persistent store already holds, moving rows that belong to another shard. */
+    private void adopt(ReservationShard shard, Consumer<Reservation> seen) {
+        List<Reservation> misplaced = new ArrayList<>();
+        shard.store.forEach(r -> {
+            seen.accept(r);
+            if (shardFor(r.getHotelName()) != shard) {
+                misplaced.add(r);
+                return;
+            }
+            shard.index(r);
+            if (shard != homeOf(r.getId())) {
+                relocated.put(r.getId(), shard);
+            }
+        });
+        for (Reservation r : misplaced) {
+            shard.store.remove(r.getId());
+            place(r, shardFor(r.getHotelName()));
+        }
+    }
+
+    private static Spliterator<Reservation> concat(List<Spliterator<Reservation>> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        return parts.stream().flatMap(p -> StreamSupport.stream(p, false)).spliterator();
+    }
+
+    /** One read view per shard, opened between moves and read one shard after the other. */
+    private final class ShardedView implements ReadView {
+        private final ReadView[] views;
+
+        ShardedView(ReadView[] views) {
+            this.views = views;
+        }
+
+        /**
+         * @return the sum of the shards' sequences, which grows by one with every commit to any
+         *         shard, or -1 if a shard's view is live
+         */
+        @Override
+        public long sequence() {
+            long sum = 0L;
+            for (ReadView view : views) {
+                if (view.sequence() < 0) {
+                    return -1L;
+                }
+                sum += view.sequence();
+            }
+            return sum;
+        }
+
+        @Override
+        public Reservation get(long id) {
+            Reservation r = views[locate(id).index].get(id);
+            for (int k = 0; r == null && k < views.length; k++) {
+                r = views[k].get(id);
+            }
+            return r;
+        }
+
+        @Override
+        public Spliterator<Reservation> spliterator() {
+            List<Spliterator<Reservation>> parts = new ArrayList<>(views.length);
+            for (ReadView view : views) {
+                parts.add(view.spliterator());
+            }
+            return concat(parts);
+        }
+
+        @Override
+        public void close() {
+            for (ReadView view : views) {
+                view.close();
+            }
+        }
+    }
+
+    /** Read-only store over every shard, for writing snapshots. */
+    private final class AllShards implements ReservationStore {
+
+        @Override
+        public Reservation get(long id) {
+            return locate(id).store.get(id);
+        }
+
+        @Override
+        public void put(Reservation r) {
+            throw new UnsupportedOperationException("read-only");
+        }
+
+        @Override
+        public boolean remove(long id) {
+            throw new UnsupportedOperationException("read-only");
+        }
+
+        @Override
+        public int size() {
+            return count();
+        }
+
+        @Override
+        public void forEach(Consumer<? super Reservation> action) {
+            for (ReservationShard shard : shards) {
+                shard.store.forEach(action);
+            }
+        }
+
+        @Override
+        public Spliterator<Reservation> spliterator() {
+            return cursor();
+        }
+    }
+}
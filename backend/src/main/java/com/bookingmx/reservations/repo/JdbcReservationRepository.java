@@ -0,0 +1,669 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * {@link ReservationRepository} that keeps reservations in one table of a relational
+ * database reached through JDBC, such as an embedded H2 file ({@code jdbc:h2:file:...}) or
+ * in-memory ({@code jdbc:h2:mem:...}) database. The table and its indexes are created if
+ * they do not exist.
+ *
+ * <p>Connections come from a small fixed pool, and every connection keeps the statements it
+ * has prepared, so each SQL string is parsed once per connection rather than once per call.
+ * {@link #saveAll(Collection)} sends updates and inserts as JDBC batches of
+ * {@code batchSize} rows, one transaction per batch; reservations without an ID are inserted
+ * without trying an update first. Reads that can return many rows
+ * ({@link #findAll()}, {@link #cursor()}, {@link #findByStatus(ReservationStatus)} and the
+ * hotel queries) page through the table by primary key ({@code WHERE id > ? ORDER BY id
+ * LIMIT ?}), so no page costs more than the first, whatever the offset.</p>
+ *
+ * <p>IDs are assigned by the repository, continuing after the largest ID in the table, so
+ * only one application instance may write to a database at a time.
+ * {@link #saveIfVersion(Reservation, int)} is a single {@code UPDATE ... WHERE id = ? AND
+ * version = ?}, so it takes no lock beyond the row the database updates. {@link #openReadView()}
+ * reads on its own connection in a repeatable-read transaction. SQL failures are rethrown as
+ * {@link IllegalStateException}s.</p>
+ */
+public class JdbcReservationRepository implements ReservationRepository {
+
+    /** Default number of pooled connections. */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    /** Default number of rows per JDBC batch. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Default number of rows per keyset page. */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS reservations ("
+                + "id BIGINT PRIMARY KEY, "
+                + "guest_name VARCHAR(255), "
+                + "guest_key VARCHAR(255), "
+                + "hotel_name VARCHAR(255), "
+                + "check_in DATE, "
+                + "check_out DATE, "
+                + "status VARCHAR(16) NOT NULL, "
+                + "version INT DEFAULT 1 NOT NULL)",
+        // Tables created before reservations were versioned.
+        "ALTER TABLE reservations ADD COLUMN IF NOT EXISTS version INT DEFAULT 1 NOT NULL",
+        "CREATE INDEX IF NOT EXISTS reservations_hotel ON reservations (hotel_name, id)",
+        "CREATE INDEX IF NOT EXISTS reservations_status ON reservations (status, id)",
+        "CREATE INDEX IF NOT EXISTS reservations_guest ON reservations (guest_key, id)"
+    };
+
+    private static final String COLUMNS = "id, guest_name, hotel_name, check_in, check_out, status, version";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM reservations ";
+
+    private static final String FIND_BY_ID = SELECT + "WHERE id = ?";
+    private static final String LOCK_BY_ID = SELECT + "WHERE id = ? FOR UPDATE";
+    private static final String INSERT = "INSERT INTO reservations "
+            + "(guest_name, guest_key, hotel_name, check_in, check_out, status, version, id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE reservations SET "
+            + "guest_name = ?, guest_key = ?, hotel_name = ?, check_in = ?, check_out = ?, status = ?, version = ? "
+            + "WHERE id = ?";
+    private static final String UPDATE_IF_VERSION = UPDATE + " AND version = ?";
+    private static final String DELETE = "DELETE FROM reservations WHERE id = ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM reservations";
+    private static final String COUNT_BY_STATUS = "SELECT COUNT(*) FROM reservations WHERE status = ?";
+    private static final String MAX_ID = "SELECT MAX(id) FROM reservations";
+    private static final String OVERLAPPING = SELECT
+            + "WHERE hotel_name = ? AND status = ? AND check_in < ? AND check_out > ? AND check_out > check_in "
+            + "ORDER BY id";
+    private static final String BY_GUEST = SELECT
+            + "WHERE guest_key LIKE ? ESCAPE '!' ORDER BY guest_key, id LIMIT ?";
+
+    /** Keyset pages: the filter's parameters come first, then the last ID seen and the page size. */
+    private static final String PAGE_ALL = SELECT + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PAGE_BY_HOTEL = SELECT + "WHERE hotel_name = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String PAGE_BY_STATUS = SELECT + "WHERE status = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String PAGE_BY_HOTEL_STATUS = SELECT
+            + "WHERE hotel_name = ? AND status = ? AND id > ? ORDER BY id LIMIT ?";
+
+    /** A unit of work on one pooled connection. */
+    @FunctionalInterface
+    private interface Work<T> {
+        T run(Session session) throws SQLException;
+    }
+
+    /** A connection and the statements prepared on it. */
+    private static final class Session implements AutoCloseable {
+        final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Session(Connection connection) {
+            this.connection = connection;
+        }
+
+        /** @return the statement for {@code sql}, prepared on first use */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        @Override
+        public void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Closing the connection closes its statements; nothing left to release.
+            }
+        }
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int batchSize;
+    private final int pageSize;
+    private final BlockingQueue<Session> pool;
+    private final AtomicLong nextId;
+
+    /**
+     * Creates a repository with the default pool, batch and page sizes and no credentials.
+     *
+     * @param url the JDBC URL of the database
+     */
+    public JdbcReservationRepository(String url) {
+        this(url, null, null, DEFAULT_POOL_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Connects to the database and creates the table if needed.
+     *
+     * @param url       the JDBC URL of the database
+     * @param username  the database user, or {@code null}
+     * @param password  the user's password, or {@code null}
+     * @param poolSize  number of connections kept open
+     * @param batchSize rows per JDBC batch in {@link #saveAll(Collection)}
+     * @param pageSize  rows fetched per keyset page
+     */
+    public JdbcReservationRepository(String url, String username, String password,
+                                     int poolSize, int batchSize, int pageSize) {
+        if (poolSize < 1 || batchSize < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("poolSize, batchSize and pageSize must be positive");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.batchSize = batchSize;
+        this.pageSize = pageSize;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                pool.add(new Session(connect()));
+            }
+        } catch (SQLException e) {
+            closePool();
+            throw new IllegalStateException("Cannot connect to " + url, e);
+        }
+        long maxId;
+        try {
+            maxId = inSession(s -> {
+                try (Statement ddl = s.connection.createStatement()) {
+                    for (String sql : SCHEMA) {
+                        ddl.execute(sql);
+                    }
+                }
+                try (ResultSet rs = s.prepare(MAX_ID).executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            });
+        } catch (RuntimeException e) {
+            closePool();
+            throw e;
+        }
+        this.nextId = new AtomicLong(maxId + 1);
+    }
+
+    @Override
+    public List<Reservation> findAll() {
+        List<Reservation> all = new ArrayList<>();
+        cursor().forEachRemaining(all::add);
+        return all;
+    }
+
+    /**
+     * Opens a read view on a connection of its own, inside a repeatable-read transaction,
+     * so it is as consistent as the database makes that isolation level (a full snapshot on
+     * H2 and PostgreSQL). The view holds the connection until it is closed.
+     *
+     * @return a view that must be closed after use
+     */
+    @Override
+    public ReadView openReadView() {
+        Session session = null;
+        try {
+            session = new Session(connect());
+            session.connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            session.connection.setReadOnly(true);
+            // Databases fix the snapshot at the transaction's first read, so make it now.
+            count(session.prepare(COUNT));
+        } catch (SQLException e) {
+            if (session != null) {
+                session.close();
+            }
+            throw new IllegalStateException("Cannot open a read view", e);
+        }
+        Session viewSession = session;
+        return new ReadView() {
+            @Override
+            public long sequence() {
+                return -1L;
+            }
+
+            @Override
+            public Reservation get(long id) {
+                try {
+                    return findById(viewSession, id);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Cannot read reservation " + id, e);
+                }
+            }
+
+            @Override
+            public Spliterator<Reservation> spliterator() {
+                return new KeysetCursor(viewSession, PAGE_ALL);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    viewSession.connection.rollback();
+                } catch (SQLException e) {
+                    // The connection is discarded either way.
+                }
+                viewSession.close();
+            }
+        };
+    }
+
+    /**
+     * Returns a cursor that fetches the table one keyset page at a time, borrowing a pooled
+     * connection per page only. Each page reflects the table when it was fetched.
+     *
+     * @return a spliterator over the stored reservations in ID order
+     */
+    @Override
+    public Spliterator<Reservation> cursor() {
+        return new KeysetCursor(null, PAGE_ALL);
+    }
+
+    @Override
+    public List<Reservation> findByHotel(String hotelName) {
+        return hotelName == null ? new ArrayList<>() : collect(new KeysetCursor(null, PAGE_BY_HOTEL, hotelName));
+    }
+
+    @Override
+    public List<Reservation> findByHotel(String hotelName, ReservationStatus status) {
+        return hotelName == null
+                ? new ArrayList<>()
+                : collect(new KeysetCursor(null, PAGE_BY_HOTEL_STATUS, hotelName, status.name()));
+    }
+
+    @Override
+    public List<Reservation> findByStatus(ReservationStatus status) {
+        return collect(new KeysetCursor(null, PAGE_BY_STATUS, status.name()));
+    }
+
+    @Override
+    public int countByStatus(ReservationStatus status) {
+        return inSession(s -> {
+            PreparedStatement ps = s.prepare(COUNT_BY_STATUS);
+            ps.setString(1, status.name());
+            return count(ps);
+        });
+    }
+
+    @Override
+    public List<Reservation> findOverlapping(String hotelName, LocalDate from, LocalDate to) {
+        if (hotelName == null || !to.isAfter(from)) {
+            return new ArrayList<>();
+        }
+        return inSession(s -> {
+            PreparedStatement ps = s.prepare(OVERLAPPING);
+            ps.setString(1, hotelName);
+            ps.setString(2, ReservationStatus.ACTIVE.name());
+            ps.setObject(3, to);
+            ps.setObject(4, from);
+            return query(ps, Integer.MAX_VALUE);
+        });
+    }
+
+    @Override
+    public List<Reservation> searchByGuest(String prefix, int limit) {
+        if (prefix == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        String pattern = escapeLike(fold(prefix)) + "%";
+        return inSession(s -> {
+            PreparedStatement ps = s.prepare(BY_GUEST);
+            ps.setString(1, pattern);
+            ps.setInt(2, limit);
+            return query(ps, limit);
+        });
+    }
+
+    @Override
+    public Optional<Reservation> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(inSession(s -> findById(s, id)));
+    }
+
+    /**
+     * Saves a reservation in its own transaction: an insert if it is new, otherwise an update,
+     * or an insert if the ID was not there.
+     */
+    @Override
+    public Reservation save(Reservation r) {
+        boolean fresh = r.getId() == null;
+        Reservation stored = fresh ? r.withId(nextId.getAndIncrement()) : r;
+        if (!fresh) {
+            nextId.accumulateAndGet(r.getId() + 1, Math::max);
+        }
+        inSession(s -> {
+            if (fresh || update(s, stored) == 0) {
+                PreparedStatement insert = s.prepare(INSERT);
+                bind(insert, stored);
+                insert.executeUpdate();
+            }
+            return null;
+        });
+        return stored;
+    }
+
+    /** Updates the row only if its version is still {@code expectedVersion}, in one statement. */
+    @Override
+    public Optional<Reservation> saveIfVersion(Reservation r, int expectedVersion) {
+        if (!r.hasId()) {
+            throw new IllegalArgumentException("Only a stored reservation can be saved conditionally");
+        }
+        Reservation next = r.withVersion(expectedVersion + 1);
+        boolean saved = inSession(s -> {
+            PreparedStatement update = s.prepare(UPDATE_IF_VERSION);
+            bind(update, next);
+            update.setInt(9, expectedVersion);
+            return update.executeUpdate() > 0;
+        });
+        return saved ? Optional.of(next) : Optional.empty();
+    }
+
+    /**
+     * Saves the reservations in batches of {@code batchSize}, each batch in one transaction:
+     * existing IDs are updated with one JDBC batch, then new and unknown IDs are inserted with
+     * another.
+     */
+    @Override
+    public void saveAll(Collection<Reservation> reservations) {
+        List<Reservation> updates = new ArrayList<>();
+        List<Reservation> inserts = new ArrayList<>();
+        for (Reservation r : reservations) {
+            if (r.getId() == null) {
+                inserts.add(r.withId(nextId.getAndIncrement()));
+            } else {
+                nextId.accumulateAndGet(r.getId() + 1, Math::max);
+                updates.add(r);
+            }
+            if (updates.size() + inserts.size() == batchSize) {
+                writeBatch(updates, inserts);
+                updates.clear();
+                inserts.clear();
+            }
+        }
+        if (!updates.isEmpty() || !inserts.isEmpty()) {
+            writeBatch(updates, inserts);
+        }
+    }
+
+    /**
+     * Deletes the reservation after testing {@code condition} against the row locked with
+     * {@code SELECT ... FOR UPDATE}, in one transaction.
+     */
+    @Override
+    public boolean deleteIf(Long id, Predicate<? super Reservation> condition) {
+        if (id == null) {
+            return false;
+        }
+        return inSession(s -> {
+            PreparedStatement lock = s.prepare(LOCK_BY_ID);
+            lock.setLong(1, id);
+            List<Reservation> current = query(lock, 1);
+            if (current.isEmpty() || !condition.test(current.get(0))) {
+                return false;
+            }
+            PreparedStatement delete = s.prepare(DELETE);
+            delete.setLong(1, id);
+            return delete.executeUpdate() > 0;
+        });
+    }
+
+    @Override
+    public int count() {
+        return inSession(s -> count(s.prepare(COUNT)));
+    }
+
+    /** Closes the pooled connections; views still open keep theirs until closed. */
+    @Override
+    public void close() {
+        closePool();
+    }
+
+    /** Closes the pooled connections; the constructor uses it too, so it is not overridable. */
+    private void closePool() {
+        Session session;
+        while ((session = pool.poll()) != null) {
+            session.close();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    /**
+     * Runs {@code work} on a pooled connection and commits, or rolls back and rethrows. A
+     * connection that fails validation after an error is replaced.
+     */
+    private <T> T inSession(Work<T> work) {
+        Session session;
+        try {
+            session = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a database connection", e);
+        }
+        try {
+            T result = work.run(session);
+            session.connection.commit();
+            return result;
+        } catch (SQLException e) {
+            session = recover(session);
+            throw new IllegalStateException("Database operation failed", e);
+        } catch (RuntimeException | Error e) {
+            session = recover(session);
+            throw e;
+        } finally {
+            if (session != null) {
+                pool.add(session);
+            }
+        }
+    }
+
+    /** @return the session to return to the pool after a failure, or {@code null} if none */
+    private Session recover(Session session) {
+        try {
+            session.connection.rollback();
+            if (session.connection.isValid(1)) {
+                return session;
+            }
+        } catch (SQLException e) {
+            // Fall through and replace the connection.
+        }
+        session.close();
+        try {
+            return new Session(connect());
+        } catch (SQLException e) {
+            // The pool shrinks until the database is reachable again.
+            return null;
+        }
+    }
+
+    /**
+     * Writes one batch in one transaction. Reservations given an ID by this call are inserted
+     * straight away; the others are updated, and inserted if their ID was not there.
+     */
+    private void writeBatch(List<Reservation> updates, List<Reservation> inserts) {
+        inSession(s -> {
+            PreparedStatement insert = s.prepare(INSERT);
+            boolean inserting = !inserts.isEmpty();
+            for (Reservation r : inserts) {
+                bind(insert, r);
+                insert.addBatch();
+            }
+            if (!updates.isEmpty()) {
+                PreparedStatement update = s.prepare(UPDATE);
+                for (Reservation r : updates) {
+                    bind(update, r);
+                    update.addBatch();
+                }
+                int[] updated = update.executeBatch();
+                for (int i = 0; i < updated.length; i++) {
+                    // Only a count of 0 means the ID is not there yet; SUCCESS_NO_INFO counts as updated.
+                    if (updated[i] == 0) {
+                        bind(insert, updates.get(i));
+                        insert.addBatch();
+                        inserting = true;
+                    }
+                }
+            }
+            if (inserting) {
+                insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    private static int update(Session s, Reservation r) throws SQLException {
+        PreparedStatement update = s.prepare(UPDATE);
+        bind(update, r);
+        return update.executeUpdate();
+    }
+
+    private static Reservation findById(Session s, long id) throws SQLException {
+        PreparedStatement ps = s.prepare(FIND_BY_ID);
+        ps.setLong(1, id);
+        List<Reservation> found = query(ps, 1);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /** Binds the columns of {@link #INSERT} and {@link #UPDATE}, which share their order. */
+    private static void bind(PreparedStatement ps, Reservation r) throws SQLException {
+        ps.setString(1, r.getGuestName());
+        ps.setString(2, r.getGuestName() == null ? null : fold(r.getGuestName()));
+        ps.setString(3, r.getHotelName());
+        setDate(ps, 4, r.getCheckIn());
+        setDate(ps, 5, r.getCheckOut());
+        ps.setString(6, r.getStatus().name());
+        ps.setInt(7, r.getVersion());
+        ps.setLong(8, r.getId());
+    }
+
+    private static void setDate(PreparedStatement ps, int index, LocalDate date) throws SQLException {
+        if (date == null) {
+            ps.setNull(index, Types.DATE);
+        } else {
+            ps.setObject(index, date);
+        }
+    }
+
+    private static List<Reservation> query(PreparedStatement ps, int limit) throws SQLException {
+        List<Reservation> rows = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rows.size() < limit && rs.next()) {
+                rows.add(read(rs));
+            }
+        }
+        return rows;
+    }
+
+    private static int count(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static Reservation read(ResultSet rs) throws SQLException {
+        return new Reservation(rs.getLong(1), rs.getString(2), rs.getString(3),
+                Reservation.toDay(rs.getObject(4, LocalDate.class)), Reservation.toDay(rs.getObject(5, LocalDate.class)),
+                ReservationStatus.valueOf(rs.getString(6)), rs.getInt(7));
+    }
+
+    private static List<Reservation> collect(Spliterator<Reservation> cursor) {
+        List<Reservation> rows = new ArrayList<>();
+        cursor.forEachRemaining(rows::add);
+        return rows;
+    }
+
+    /** Same case folding as the in-memory guest-name index. */
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Walks the rows matching one of the {@code PAGE_*} queries in ID order, fetching a page
+     * whenever the previous one is used up.
+     */
+    private final class KeysetCursor extends Spliterators.AbstractSpliterator<Reservation> {
+        private final Session session;
+        private final String sql;
+        private final Object[] filter;
+        private final ArrayDeque<Reservation> page = new ArrayDeque<>();
+        private long lastId = Long.MIN_VALUE;
+        private boolean exhausted;
+
+        /**
+         * @param session the connection to read on, or {@code null} to borrow one per page
+         * @param sql     the page query
+         * @param filter  values for the query's leading parameters
+         */
+        KeysetCursor(Session session, String sql, Object... filter) {
+            super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL);
+            this.session = session;
+            this.sql = sql;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Reservation> action) {
+            if (page.isEmpty() && !exhausted) {
+                List<Reservation> rows = session != null ? fetch(session) : inSession(this::fetch);
+                page.addAll(rows);
+                exhausted = rows.size() < pageSize;
+                if (!rows.isEmpty()) {
+                    lastId = rows.get(rows.size() - 1).getId();
+                }
+            }
+            Reservation next = page.poll();
+            if (next == null) {
+                return false;
+            }
+            action.accept(next);
+            return true;
+        }
+
+        private List<Reservation> fetch(Session s) {
+            try {
+                PreparedStatement ps = s.prepare(sql);
+                int i = 1;
+                for (Object value : filter) {
+                    ps.setObject(i++, value);
+                }
+                ps.setLong(i++, lastId);
+                ps.setInt(i, pageSize);
+                return query(ps, pageSize);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot read reservations after ID " + lastId, e);
+            }
+        }
+    }
+}
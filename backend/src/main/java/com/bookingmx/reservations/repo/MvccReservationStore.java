@@ -0,0 +1,255 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Multi-version {@link ReservationStore} on the Java heap.
+ *
+ * <p>Every {@link #put(Reservation)} installs a new immutable version of the reservation,
+ * stamped with the next commit sequence and linked to the version it replaces; a
+ * {@link #remove(long)} installs a deletion marker the same way. Reservations are immutable,
+ * so a version holds the very instance it was given and readers get that instance back.</p>
+ *
+ * <p>{@link #get(long)}, {@link #forEach(Consumer)} and {@link #spliterator()} read the
+ * newest versions without locking. {@link #openReadView()} pins the last commit sequence and
+ * returns a view that resolves every reservation to its newest version at or before it, so
+ * a listing or report never mixes data from before and after a concurrent write, and never
+ * sees a half-applied update. Views take no locks once open.</p>
+ *
+ * <p>Commits are serialized by a short critical section that only links the new version and
+ * advances the sequence. In the same section, versions no open view can reach are unlinked
+ * from the chain being written, and a few deletion markers older than every open view are
+ * dropped from the map.</p>
+ */
+public class MvccReservationStore implements ReservationStore {
+
+    /** Deletion markers reaped per commit, bounding the extra work of one write. */
+    private static final int REAP_PER_COMMIT = 4;
+
+    /** One committed state of a reservation; {@code value} is {@code null} for a deletion. */
+    private static final class Version {
+        final Reservation value;
+        final long commitSeq;
+        volatile Version previous;
+
+        Version(Reservation value, long commitSeq, Version previous) {
+            this.value = value;
+            this.commitSeq = commitSeq;
+            this.previous = previous;
+        }
+
+        /** Returns the newest version in this chain visible at {@code seq}, or {@code null}. */
+        Version visibleAt(long seq) {
+            Version v = this;
+            while (v != null && v.commitSeq > seq) {
+                v = v.previous;
+            }
+            return v;
+        }
+    }
+
+    private final ConcurrentLongMap<Version> heads = new ConcurrentLongMap<>();
+    private final Object commitLock = new Object();
+
+    /** Sequence of the last commit; readers pin it when opening a view. */
+    private volatile long lastCommitted;
+    private volatile int live;
+
+    /** Open views by pinned sequence, with how many are open at each. Guarded by {@link #commitLock}. */
+    private final TreeMap<Long, Integer> pinned = new TreeMap<>();
+
+    /** IDs whose newest version is a deletion marker, oldest first. Guarded by {@link #commitLock}. */
+    private final ArrayDeque<Long> deleted = new ArrayDeque<>();
+
+    @Override
+    public Reservation get(long id) {
+        Version head = heads.get(id);
+        return head == null ? null : head.value;
+    }
+
+    @Override
+    public void put(Reservation r) {
+        long id = r.getIdAsLong();
+        synchronized (commitLock) {
+            Version previous = heads.get(id);
+            Version head = new Version(r, lastCommitted + 1, previous);
+            heads.put(id, head);
+            lastCommitted = head.commitSeq;
+            if (previous == null || previous.value == null) {
+                live = live + 1;
+            }
+            afterCommit(head);
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        synchronized (commitLock) {
+            Version previous = heads.get(id);
+            if (previous == null || previous.value == null) {
+                return false;
+            }
+            Version head = new Version(null, lastCommitted + 1, previous);
+            heads.put(id, head);
+            lastCommitted = head.commitSeq;
+            live = live - 1;
+            deleted.addLast(id);
+            afterCommit(head);
+            return true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Reservation> action) {
+        heads.forEachValue(head -> {
+            if (head.value != null) {
+                action.accept(head.value);
+            }
+        });
+    }
+
+    @Override
+    public Spliterator<Reservation> spliterator() {
+        return new VisibleSpliterator(heads.valueSpliterator(), Long.MAX_VALUE);
+    }
+
+    @Override
+    public ReadView openReadView() {
+        long seq;
+        synchronized (commitLock) {
+            seq = lastCommitted;
+            pinned.merge(seq, 1, Integer::sum);
+        }
+        return new SnapshotView(seq);
+    }
+
+    /** @return the sequence of the last commit */
+    public long lastCommitted() {
+        return lastCommitted;
+    }
+
+    /** @return the number of views currently open */
+    public int openViews() {
+        synchronized (commitLock) {
+            return pinned.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    /** Trims the written chain and reaps old deletion markers. Runs under {@link #commitLock}. */
+    private void afterCommit(Version head) {
+        long horizon = pinned.isEmpty() ? lastCommitted : pinned.firstKey();
+        Version keep = head.visibleAt(horizon);
+        if (keep != null) {
+            keep.previous = null;
+        }
+        for (int i = 0; i < REAP_PER_COMMIT && !deleted.isEmpty(); i++) {
+            long id = deleted.peekFirst();
+            Version v = heads.get(id);
+            if (v != null && v.value == null && v.commitSeq > horizon) {
+                return; // still visible to an open view; later markers are newer
+            }
+            deleted.pollFirst();
+            if (v != null && v.value == null) {
+                heads.remove(id);
+            }
+        }
+    }
+
+    private void unpin(long seq) {
+        synchronized (commitLock) {
+            pinned.computeIfPresent(seq, (s, n) -> n == 1 ? null : n - 1);
+        }
+    }
+
+    /** Consistent view at one commit sequence. */
+    private final class SnapshotView implements ReadView {
+        private final long seq;
+        private boolean closed;
+
+        SnapshotView(long seq) {
+            this.seq = seq;
+        }
+
+        @Override
+        public long sequence() {
+            return seq;
+        }
+
+        @Override
+        public Reservation get(long id) {
+            Version head = heads.get(id);
+            Version v = head == null ? null : head.visibleAt(seq);
+            return v == null ? null : v.value;
+        }
+
+        @Override
+        public Spliterator<Reservation> spliterator() {
+            return new VisibleSpliterator(heads.valueSpliterator(), seq);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                unpin(seq);
+            }
+        }
+    }
+
+    /** Resolves each chain from the map to its version visible at {@code seq}. */
+    private static final class VisibleSpliterator implements Spliterator<Reservation> {
+        private final Spliterator<Version> chains;
+        private final long seq;
+        private Reservation found;
+
+        VisibleSpliterator(Spliterator<Version> chains, long seq) {
+            this.chains = chains;
+            this.seq = seq;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Reservation> action) {
+            found = null;
+            while (chains.tryAdvance(this::resolve)) {
+                if (found != null) {
+                    Reservation r = found;
+                    found = null;
+                    action.accept(r);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void resolve(Version head) {
+            Version v = head.visibleAt(seq);
+            found = v == null ? null : v.value;
+        }
+
+        @Override
+        public Spliterator<Reservation> trySplit() {
+            Spliterator<Version> prefix = chains.trySplit();
+            return prefix == null ? null : new VisibleSpliterator(prefix, seq);
+        }
+
+        @Override
+        public long estimateSize() {
+            return chains.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | (seq == Long.MAX_VALUE ? CONCURRENT : IMMUTABLE);
+        }
+    }
+}
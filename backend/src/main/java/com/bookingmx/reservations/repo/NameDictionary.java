@@ -0,0 +1,101 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+/**
+ * Dictionaries of the hotel and guest names of a repository's stored reservations.
+ *
+ * <p>There are only a few thousand distinct hotel names, so the repository swaps the names of
+ * every reservation it stores for one canonical {@code String} per name: all reservations of a
+ * hotel then share a single copy instead of the one each request deserialized. Each hotel name
+ * also gets a dense {@code int} code, by which the hotel and stay indexes are keyed, so hotel
+ * filters compare codes. Guest names are mostly distinct and a dictionary never shrinks, so
+ * sharing them is opt-in, for datasets with many repeat guests.</p>
+ *
+ * <p>Only names of reservations being stored enter the dictionaries. Lookups by name, such as
+ * a hotel filter, go through {@link #hotelCodeOf(String)}, which never adds one, so names
+ * that only ever appear in requests cost nothing. Codes only live as long as the repository;
+ * everything written to disk stores the names themselves.</p>
+ */
+public class NameDictionary {
+
+    private final StringDictionary hotels = new StringDictionary();
+
+    /** Guest names, or {@code null} when they are kept as given. */
+    private final StringDictionary guests;
+
+    /** Creates a dictionary of hotel names; guest names are kept as given. */
+    public NameDictionary() {
+        this(false);
+    }
+
+    /**
+     * @param internGuestNames whether guest names are shared as well as hotel names
+     */
+    public NameDictionary(boolean internGuestNames) {
+        this.guests = internGuestNames ? new StringDictionary() : null;
+    }
+
+    /** @return whether guest names are shared as well as hotel names */
+    public boolean internsGuestNames() {
+        return guests != null;
+    }
+
+    /**
+     * Returns {@code r} with its names replaced by their canonical instances, adding names
+     * not seen before. Only call this for reservations that are being stored.
+     *
+     * @param r a reservation
+     * @return {@code r} itself if its names already are canonical, otherwise a copy
+     */
+    public Reservation intern(Reservation r) {
+        String hotel = hotelName(r.getHotelName());
+        String guest = guestName(r.getGuestName());
+        if (hotel == r.getHotelName() && guest == r.getGuestName()) {
+            return r;
+        }
+        return r.withHotelName(hotel).withGuestName(guest);
+    }
+
+    /**
+     * @param hotelName a hotel name of a reservation being stored, may be {@code null}
+     * @return the canonical instance of {@code hotelName}
+     */
+    public String hotelName(String hotelName) {
+        return hotels.decode(hotels.encode(hotelName));
+    }
+
+    /**
+     * @param guestName a guest name of a reservation being stored, may be {@code null}
+     * @return the canonical instance of {@code guestName}, or {@code guestName} itself when
+     *         guest names are not shared
+     */
+    public String guestName(String guestName) {
+        return guests == null ? guestName : guests.decode(guests.encode(guestName));
+    }
+
+    /**
+     * @param hotelName a hotel name, may be {@code null}
+     * @return its code, {@link StringDictionary#NULL_CODE} for {@code null}, or
+     *         {@link StringDictionary#NO_CODE} if no reservation at that hotel was ever stored;
+     *         this never grows the dictionary, so lookups of arbitrary names are safe
+     */
+    public int hotelCodeOf(String hotelName) {
+        return hotels.codeOf(hotelName);
+    }
+
+    /** @return the number of distinct hotel names */
+    public int hotelCount() {
+        return hotels.size();
+    }
+
+    /** @return the number of distinct guest names, 0 when they are not shared */
+    public int guestCount() {
+        return guests == null ? 0 : guests.size();
+    }
+
+    /** Adds a hotel name of a reservation being stored and returns its code. */
+    int hotelCode(String hotelName) {
+        return hotels.encode(hotelName);
+    }
+}
@@ -0,0 +1,64 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.util.Spliterator;
+
+/**
+ * Read-only view of a {@link ReservationStore} opened with {@link ReservationStore#openReadView()}.
+ *
+ * <p>On a multi-version store ({@link MvccReservationStore}) the view is a consistent
+ * snapshot: every read sees exactly the writes committed up to {@link #sequence()}, however
+ * long the view stays open, and opening or reading it never blocks writers. Other stores
+ * return a view over their live, weakly consistent contents.</p>
+ *
+ * <p>A view must be closed, since open snapshots keep the versions they need from being
+ * discarded.</p>
+ */
+public interface ReadView extends AutoCloseable {
+
+    /** @return the commit sequence the view reads at, or -1 for a live view */
+    long sequence();
+
+    /**
+     * @param id the reservation ID
+     * @return the reservation as of the view, or {@code null} if there was none
+     */
+    Reservation get(long id);
+
+    /** @return a cursor over the reservations as of the view */
+    Spliterator<Reservation> spliterator();
+
+    /** Releases the view. */
+    @Override
+    void close();
+
+    /**
+     * Wraps the live contents of a store that keeps no versions.
+     *
+     * @param store the store to read
+     * @return a view whose reads go straight to {@code store}
+     */
+    static ReadView live(ReservationStore store) {
+        return new ReadView() {
+            @Override
+            public long sequence() {
+                return -1L;
+            }
+
+            @Override
+            public Reservation get(long id) {
+                return store.get(id);
+            }
+
+            @Override
+            public Spliterator<Reservation> spliterator() {
+                return store.spliterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
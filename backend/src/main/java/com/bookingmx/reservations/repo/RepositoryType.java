@@ -0,0 +1,18 @@
+package com.bookingmx.reservations.repo;
+
+/**
+ * Selects the {@link ReservationRepository} implementation.
+ *
+ * <p>Configured through {@code bookingmx.storage.repository} in {@code application.properties}.</p>
+ */
+public enum RepositoryType {
+
+    /**
+     * Reservations in process memory, in the {@link StorageEngine} selected by
+     * {@code bookingmx.storage.engine} ({@link InMemoryReservationRepository}).
+     */
+    MEMORY,
+
+    /** Reservations in a relational database ({@link JdbcReservationRepository}). */
+    JDBC
+}
@@ -0,0 +1,116 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of reservations removed from the repository by the retention engine.
+ *
+ * <p>Records are framed like snapshot records: a big-endian {@code int} length followed by
+ * the {@link ReservationCodec} bytes. Each {@link #append(List)} writes one batch and forces
+ * it to disk before returning, so a batch can be deleted from the repository once it is
+ * archived. A torn final record, left by a crash during an append, is skipped by
+ * {@link #read(Consumer)}.</p>
+ */
+public class ReservationArchive {
+
+    private final Path file;
+
+    /**
+     * @param file where the archive lives; it and its directory are created on first append
+     */
+    public ReservationArchive(Path file) {
+        this.file = file;
+    }
+
+    /** @return the archive file */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Appends a batch of reservations and forces it to disk.
+     *
+     * @param batch the reservations to archive
+     * @return the number of bytes written
+     */
+    public synchronized long append(List<Reservation> batch) {
+        if (batch.isEmpty()) {
+            return 0L;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+                long written = 0;
+                for (Reservation r : batch) {
+                    byte[] bytes = ReservationCodec.encode(r);
+                    if (buf.remaining() < 4 + bytes.length) {
+                        written += drain(ch, buf);
+                        if (buf.capacity() < 4 + bytes.length) {
+                            buf = ByteBuffer.allocate(4 + bytes.length);
+                        }
+                    }
+                    buf.putInt(bytes.length).put(bytes);
+                }
+                written += drain(ch, buf);
+                ch.force(false);
+                return written;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to archive " + file, e);
+        }
+    }
+
+    /**
+     * Passes every archived reservation to {@code sink}, oldest first.
+     *
+     * @param sink receives the reservations
+     * @return the number of reservations read
+     */
+    public synchronized long read(Consumer<Reservation> sink) {
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            long count = 0;
+            while (in.remaining() >= 4) {
+                int length = in.getInt();
+                if (length < 0 || length > in.remaining()) {
+                    break;
+                }
+                ByteBuffer record = in.slice(in.position(), length);
+                in.position(in.position() + length);
+                sink.accept(ReservationCodec.decode(record));
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read archive " + file, e);
+        }
+    }
+
+    private static long drain(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        long written = 0;
+        while (buf.hasRemaining()) {
+            written += ch.write(buf);
+        }
+        buf.clear();
+        return written;
+    }
+}
@@ -0,0 +1,105 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of a {@link Reservation}, shared by every on-disk format
+ * (write-ahead log, snapshots, ...).
+ *
+ * <p>Layout, big-endian:
+ * <pre>
+ * long   id
+ * int    checkIn   epoch day, {@link Reservation#NO_DATE} for null
+ * int    checkOut  epoch day, {@link Reservation#NO_DATE} for null
+ * byte   status    {@link ReservationStatus} ordinal
+ * int    guestName UTF-8 length (-1 for null), followed by the bytes
+ * int    hotelName UTF-8 length (-1 for null), followed by the bytes
+ * int    version
+ * </pre>
+ * The version comes last so that records written before reservations had one still decode,
+ * at {@link Reservation#FIRST_VERSION}; a record must therefore be decoded from a buffer that
+ * ends with it.</p>
+ */
+public final class ReservationCodec {
+
+    private static final ReservationStatus[] STATUSES = ReservationStatus.values();
+
+    private ReservationCodec() {}
+
+    /**
+     * Encodes a reservation. Its ID must already be assigned.
+     *
+     * @param r the reservation to encode
+     * @return the encoded bytes
+     */
+    public static byte[] encode(Reservation r) {
+        byte[] guest = utf8(r.getGuestName());
+        byte[] hotel = utf8(r.getHotelName());
+        ByteBuffer out = ByteBuffer.allocate(8 + 4 + 4 + 1 + 4 + len(guest) + 4 + len(hotel) + 4);
+        out.putLong(r.getIdAsLong());
+        out.putInt(r.getCheckInDay());
+        out.putInt(r.getCheckOutDay());
+        out.put((byte) r.getStatus().ordinal());
+        putBytes(out, guest);
+        putBytes(out, hotel);
+        out.putInt(r.getVersion());
+        return out.array();
+    }
+
+    /**
+     * Decodes a reservation from the buffer's position to its limit.
+     *
+     * @param in the buffer to read from
+     * @return the decoded reservation
+     * @throws IllegalArgumentException if the bytes do not form a valid reservation
+     */
+    public static Reservation decode(ByteBuffer in) {
+        try {
+            long id = in.getLong();
+            int checkIn = in.getInt();
+            int checkOut = in.getInt();
+            int status = in.get();
+            String guest = getString(in);
+            String hotel = getString(in);
+            int version = in.remaining() >= 4 ? in.getInt() : Reservation.FIRST_VERSION;
+            return new Reservation(id, guest, hotel, checkIn, checkOut, STATUSES[status], version);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed reservation record", e);
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] b) {
+        return b == null ? 0 : b.length;
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] b) {
+        if (b == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(b.length);
+            out.put(b);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int n = in.getInt();
+        if (n < 0) {
+            return null;
+        }
+        if (n > in.remaining()) {
+            throw new IndexOutOfBoundsException("string length " + n);
+        }
+        byte[] bytes = new byte[n];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,46 +1,118 @@
 package com.bookingmx.reservations.repo;
 
 import com.bookingmx.reservations.model.Reservation;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Repository class that simulates persistent storage for reservations.
- * 
- * <p>This implementation uses an in-memory {@link ConcurrentHashMap} as a storage mechanism,
- * making it suitable for testing environments and lightweight applications where
- * a real database is not required.</p>
+ * Storage of reservations as seen by the service layer.
  *
- * <p>The repository is responsible for:
- * <ul>
- *   <li>Storing reservation instances</li>
- *   <li>Assigning incremental IDs to new reservations</li>
- *   <li>Providing CRUD-like operations on stored reservations</li>
- * </ul>
- * </p>
+ * <p>{@link InMemoryReservationRepository} keeps reservations in process memory, optionally
+ * made durable by a write-ahead log; {@link JdbcReservationRepository} keeps them in a
+ * relational database. {@code bookingmx.storage.repository} selects one of them.</p>
  *
- * <p><strong>Note:</strong> This repository is thread-safe thanks to 
- * {@link ConcurrentHashMap} and {@link AtomicLong}, although the overall application
- * is not designed for heavy concurrent load.</p>
+ * <p>Implementations are thread-safe. Lists returned by the queries are new and owned by the
+ * caller, but the reservations in them may be shared with the repository and must be copied
+ * before they are changed.</p>
  */
-public class ReservationRepository {
-
-    /** Internal storage of reservations mapped by their unique ID. */
-    private final Map<Long, Reservation> store = new ConcurrentHashMap<>();
-
-    /** Sequence generator used to assign unique incremental IDs to new reservations. */
-    private final AtomicLong seq = new AtomicLong(1L);
+public interface ReservationRepository extends Closeable {
 
     /**
      * Retrieves all stored reservations.
      *
      * @return a new {@link List} containing all reservations currently in storage
      */
-    public List<Reservation> findAll() {
-        return new ArrayList<>(store.values());
+    List<Reservation> findAll();
+
+    /**
+     * Opens a read view of all reservations; whether it is a consistent snapshot depends on
+     * the implementation, see {@link ReadView}.
+     *
+     * @return a view that must be closed after use
+     */
+    ReadView openReadView();
+
+    /**
+     * Returns a cursor over all stored reservations that does not copy the whole contents
+     * up front. It is weakly consistent with concurrent saves and deletes.
+     *
+     * @return a spliterator over the stored reservations
+     */
+    Spliterator<Reservation> cursor();
+
+    /**
+     * @return a sequential stream over {@link #cursor()}
+     */
+    default Stream<Reservation> stream() {
+        return StreamSupport.stream(cursor(), false);
     }
 
+    /**
+     * @param hotelName the hotel name, matched exactly
+     * @return a new {@link List} with the reservations at that hotel
+     */
+    List<Reservation> findByHotel(String hotelName);
+
+    /**
+     * @param hotelName the hotel name, matched exactly
+     * @param status    the status to keep
+     * @return a new {@link List} with the reservations at that hotel in {@code status}
+     */
+    List<Reservation> findByHotel(String hotelName, ReservationStatus status);
+
+    /**
+     * @param status the status to look up
+     * @return a new {@link List} with the reservations in {@code status}
+     */
+    List<Reservation> findByStatus(ReservationStatus status);
+
+    /**
+     * @param status the status to count
+     * @return the number of stored reservations in {@code status}
+     */
+    int countByStatus(ReservationStatus status);
+
+    /**
+     * Retrieves the active reservations at one hotel whose stay {@code [checkIn, checkOut)}
+     * overlaps {@code [from, to)}.
+     *
+     * @param hotelName the hotel name, matched exactly
+     * @param from      first day of the range, inclusive
+     * @param to        end of the range, exclusive
+     * @return a new {@link List} with the matching reservations
+     */
+    List<Reservation> findOverlapping(String hotelName, LocalDate from, LocalDate to);
+
+    /**
+     * Retrieves the active reservations at one hotel whose guest stays the night of {@code date}.
+     *
+     * @param hotelName the hotel name, matched exactly
+     * @param date      the night to look up
+     * @return a new {@link List} with the matching reservations
+     */
+    default List<Reservation> findStayingOn(String hotelName, LocalDate date) {
+        return findOverlapping(hotelName, date, date.plusDays(1));
+    }
+
+    /**
+     * Retrieves up to {@code limit} reservations whose guest name starts with {@code prefix},
+     * ignoring case, ordered by lower-cased guest name and then ID.
+     *
+     * @param prefix the guest name prefix
+     * @param limit  the maximum number of results
+     * @return a new {@link List} with the matching reservations
+     */
+    List<Reservation> searchByGuest(String prefix, int limit);
+
     /**
      * Attempts to find a reservation by its ID.
      *
@@ -48,25 +120,41 @@ public class ReservationRepository {
      * @return an {@link Optional} containing the reservation if found,
      *         or an empty Optional if it does not exist
      */
-    public Optional<Reservation> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
-    }
+    Optional<Reservation> findById(Long id);
 
     /**
-     * Saves a reservation to storage.
-     *
-     * <p>If the reservation does not yet have an ID (i.e., {@code id == null}),
-     * the repository assigns a new sequential ID before saving.</p>
+     * Saves a reservation, assigning a new ID first if it has none.
      *
      * @param r the reservation to save
-     * @return the saved reservation instance, including its assigned ID if it was newly created
+     * @return the stored instance: {@code r} itself, or a copy of it with the assigned ID if it
+     *         was newly created
      */
-    public Reservation save(Reservation r) {
-        if (r.getId() == null) {
-            r.setId(seq.getAndIncrement());
+    Reservation save(Reservation r);
+
+    /**
+     * Saves a changed reservation only if the stored reservation with the same ID is still at
+     * {@code expectedVersion}, checked atomically with the save: a compare-and-set on the
+     * version. On success a copy of {@code r} at {@code expectedVersion + 1} replaces the
+     * stored one; otherwise nothing changes. Unlike {@link #save(Reservation)}, which stores
+     * the version it is given, this is how reservations change once created.
+     *
+     * @param r               the changed reservation; its ID must be assigned
+     * @param expectedVersion the version the change was made from
+     * @return the stored instance, or empty if the reservation no longer exists or another
+     *         change was saved first
+     */
+    Optional<Reservation> saveIfVersion(Reservation r, int expectedVersion);
+
+    /**
+     * Saves several reservations, as if by {@link #save(Reservation)} for each. Implementations
+     * that can write them in fewer round trips do so; the writes are not atomic as a whole.
+     *
+     * @param reservations the reservations to save
+     */
+    default void saveAll(Collection<Reservation> reservations) {
+        for (Reservation r : reservations) {
+            save(r);
         }
-        store.put(r.getId(), r);
-        return r;
     }
 
     /**
@@ -74,7 +162,24 @@ public class ReservationRepository {
      *
      * @param id the unique identifier of the reservation to remove
      */
-    public void delete(Long id) {
-        store.remove(id);
+    default void delete(Long id) {
+        deleteIf(id, r -> true);
     }
+
+    /**
+     * Deletes a reservation only if its current state satisfies {@code condition}, checked
+     * atomically with the delete, so a concurrent update cannot slip in between.
+     *
+     * @param id        the unique identifier of the reservation to remove
+     * @param condition tested against the stored reservation
+     * @return {@code true} if the reservation was deleted
+     */
+    boolean deleteIf(Long id, Predicate<? super Reservation> condition);
+
+    /** @return the number of stored reservations */
+    int count();
+
+    /** Releases the files, threads or connections the repository holds. */
+    @Override
+    void close();
 }
@@ -0,0 +1,216 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * One hotel shard of a {@link InMemoryReservationRepository}: a store, an ID allocator, the row
+ * ordinals with the secondary indexes built over them, and the lock stripes serializing
+ * writers, none of which is shared with another shard.
+ *
+ * <p>IDs allocated by shard {@code k} of {@code n} are {@code local * n + k}, so the shard an ID
+ * was created in (its home) can be computed from the ID alone. The repository takes the home
+ * shard's stripe for every write of that ID, even when the reservation has since moved to
+ * another hotel's shard.</p>
+ *
+ * <p>With a single writer, {@link #write(Supplier)} runs every write homed in this shard on
+ * one dedicated thread; the stripes are then never contended, and IDs come from that thread's
+ * block of the allocator.</p>
+ */
+final class ReservationShard {
+
+    /** Number of lock stripes serializing writers of the same ID. */
+    private static final int LOCK_STRIPES = 64;
+
+    final int index;
+    final ReservationStore store;
+    final IdAllocator ids;
+
+    private final int shardCount;
+    private final NameDictionary names;
+    private final RowOrdinals rows = new RowOrdinals();
+    private final HotelIndex hotelIndex = new HotelIndex();
+    private final StatusIndex statusIndex = new StatusIndex();
+    private final StayIntervalIndex stayIndex = new StayIntervalIndex();
+    private final GuestNameIndex guestIndex = new GuestNameIndex();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    /** Thread running this shard's writes, or {@code null} when callers write directly. */
+    private final ExecutorService writer;
+
+    ReservationShard(int index, int shardCount, NameDictionary names, ReservationStore store, IdAllocator ids,
+                     boolean singleWriter) {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.names = names;
+        this.store = store;
+        this.ids = ids;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.writer = !singleWriter ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "shard-writer-" + index);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns a new ID homed in this shard. The shard's own allocator keeps it apart from every
+     * other shard's IDs, but not in order with them: shards allocating at different rates hand
+     * out interleaved IDs.
+     *
+     * @return a new ID homed in this shard
+     */
+    long nextId() {
+        return ids.next() * shardCount + index;
+    }
+
+    /**
+     * Runs a write on this shard's writer thread, or on the calling thread when there is none.
+     *
+     * @param op the write
+     * @return what {@code op} returned
+     */
+    <T> T write(Supplier<T> op) {
+        if (writer == null) {
+            return op.get();
+        }
+        try {
+            return CompletableFuture.supplyAsync(op, writer).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    ReentrantLock stripeFor(long id) {
+        return stripes[(int) (id ^ (id >>> 32)) & (LOCK_STRIPES - 1)];
+    }
+
+    /** Waits for every writer holding one of the stripes now to let go of it, one stripe at a time. */
+    void awaitWriters() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+            stripe.unlock();
+        }
+    }
+
+    /** Stores a reservation and updates the indexes. */
+    void apply(Reservation r) {
+        store.put(r);
+        index(r);
+    }
+
+    /** Adds or refreshes the index entries of a stored reservation. */
+    void index(Reservation r) {
+        int row = rows.acquire(r.getIdAsLong());
+        int hotel = names.hotelCode(r.getHotelName());
+        hotelIndex.index(row, hotel);
+        statusIndex.index(row, r.getStatus());
+        stayIndex.index(r.getIdAsLong(), hotel, r.getCheckInDay(), r.getCheckOutDay(), r.isActive());
+        guestIndex.index(r.getIdAsLong(), r.getGuestName());
+    }
+
+    /** Removes a reservation and its index entries. */
+    boolean unapply(long id) {
+        boolean removed = store.remove(id);
+        int row = rows.ordinalOf(id);
+        if (row >= 0) {
+            // Clear the bitmaps before the ordinal can be handed to another row.
+            hotelIndex.unindex(row);
+            statusIndex.unindex(row);
+            rows.release(id);
+        }
+        stayIndex.unindex(id);
+        guestIndex.unindex(id);
+        return removed;
+    }
+
+    void findByHotel(int hotel, List<Reservation> out) {
+        resolve(hotelIndex.rows(hotel), out);
+    }
+
+    void findByHotel(int hotel, ReservationStatus status, List<Reservation> out) {
+        resolve(statusIndex.retain(hotelIndex.rows(hotel), status), out);
+    }
+
+    void findByStatus(ReservationStatus status, List<Reservation> out) {
+        resolve(statusIndex.rows(status), out);
+    }
+
+    int countByStatus(ReservationStatus status) {
+        return statusIndex.count(status);
+    }
+
+    void findOverlapping(int hotel, LocalDate from, LocalDate to, List<Reservation> out) {
+        stayIndex.forEachOverlapping(hotel, from, to, id -> {
+            Reservation r = store.get(id);
+            if (r != null) {
+                out.add(r);
+            }
+        });
+    }
+
+    void searchByGuest(String prefix, int limit, List<Reservation> out) {
+        guestIndex.forEachWithPrefix(prefix, limit, id -> {
+            Reservation r = store.get(id);
+            if (r != null) {
+                out.add(r);
+            }
+        });
+    }
+
+    /** Lets the writer thread finish the writes it was given and stops it. */
+    void stopWriter() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Stops the writer thread and closes a store that holds files. */
+    void close() {
+        stopWriter();
+        if (store instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Looks up the reservation behind every row ordinal in {@code hits}. */
+    private void resolve(RoaringBitmap hits, List<Reservation> out) {
+        hits.forEach(row -> {
+            long id = rows.idAt(row);
+            Reservation r = id == RowOrdinals.NO_ID ? null : store.get(id);
+            if (r != null) {
+                out.add(r);
+            }
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine behind {@link InMemoryReservationRepository}.
+ *
+ * <p>The repository owns ID assignment and the public CRUD contract; a store only keeps
+ * reservations addressable by their primitive {@code long} ID. Implementations must be
+ * safe for concurrent use.</p>
+ *
+ * <p>Stores are free to keep reservations in a different shape than the model class.
+ * Callers must therefore not rely on {@link #get(long)} returning the same instance that
+ * was passed to {@link #put(Reservation)}; changes to a reservation only become visible
+ * once it is stored again.</p>
+ */
+public interface ReservationStore {
+
+    /**
+     * Looks up a reservation.
+     *
+     * @param id the reservation ID
+     * @return the stored reservation, or {@code null} if there is none
+     */
+    Reservation get(long id);
+
+    /**
+     * Inserts or replaces a reservation. Its ID must already be assigned.
+     *
+     * @param r the reservation to store
+     */
+    void put(Reservation r);
+
+    /**
+     * Removes a reservation.
+     *
+     * @param id the reservation ID
+     * @return {@code true} if a reservation was removed
+     */
+    boolean remove(long id);
+
+    /** @return the number of stored reservations */
+    int size();
+
+    /**
+     * Passes every stored reservation to {@code action}. Iteration is weakly consistent
+     * with concurrent writes.
+     *
+     * @param action the callback receiving each reservation
+     */
+    void forEach(Consumer<? super Reservation> action);
+
+    /**
+     * Returns a cursor over the stored reservations that reads the store in place instead of
+     * copying it. Like {@link #forEach(Consumer)} it is weakly consistent with concurrent
+     * writes: it never fails and may or may not see writes made after it was created.
+     *
+     * @return a {@link Spliterator#CONCURRENT} spliterator
+     */
+    Spliterator<Reservation> spliterator();
+
+    /**
+     * Opens a read view of the store. Multi-version stores return a consistent snapshot; the
+     * default is a view over the live contents. See {@link ReadView}.
+     *
+     * @return a view that must be closed after use
+     */
+    default ReadView openReadView() {
+        return ReadView.live(this);
+    }
+}
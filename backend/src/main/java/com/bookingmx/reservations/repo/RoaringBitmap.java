@@ -0,0 +1,423 @@
+package com.bookingmx.reservations.repo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative {@code int} values in the style of Roaring bitmaps.
+ *
+ * <p>Values are split into chunks of 65536 by their high 16 bits. A sparse chunk is stored as
+ * a sorted {@code char[]} of its low 16 bits; once it holds more than
+ * {@value #ARRAY_MAX} values it switches to a plain 8 KB bitmap, and back again when it shrinks.
+ * Intersections and differences work chunk by chunk and pick the cheapest algorithm for each
+ * pair of container kinds, so filtering one index by another never touches individual
+ * reservations.</p>
+ *
+ * <p>Not thread-safe; owners guard each instance themselves.</p>
+ */
+final class RoaringBitmap {
+
+    /** Largest array container; beyond this a bitmap container is smaller. */
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Adds a value.
+     *
+     * @param value a non-negative value
+     */
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = indexOf(high);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) value);
+        } else {
+            insertAt(-i - 1, high, new ArrayContainer().add((char) value));
+        }
+    }
+
+    /**
+     * Removes a value if present.
+     *
+     * @param value a non-negative value
+     */
+    void remove(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) {
+            return;
+        }
+        Container c = containers[i].remove((char) value);
+        if (c.cardinality() == 0) {
+            removeAt(i);
+        } else {
+            containers[i] = c;
+        }
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return whether the value is in the set
+     */
+    boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /** @return the number of values in the set */
+    int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n += containers[i].cardinality();
+        }
+        return n;
+    }
+
+    /** @return whether the set is empty */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes every value to {@code action} in ascending order.
+     *
+     * @param action receives each value
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /** @return an independent copy of this set */
+    RoaringBitmap copy() {
+        RoaringBitmap out = new RoaringBitmap();
+        out.keys = Arrays.copyOf(keys, Math.max(size, 4));
+        out.containers = new Container[out.keys.length];
+        for (int i = 0; i < size; i++) {
+            out.containers[i] = containers[i].copy();
+        }
+        out.size = size;
+        return out;
+    }
+
+    /**
+     * @param other the set to intersect with
+     * @return a new set holding the values present in both sets
+     */
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality() > 0) {
+                    out.insertAt(out.size, keys[i], c);
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param other the set to subtract
+     * @return a new set holding the values of this set that are not in {@code other}
+     */
+    RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container c = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (c.cardinality() > 0) {
+                out.insertAt(out.size, keys[i], c);
+            }
+        }
+        return out;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insertAt(int i, char high, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = high;
+        containers[i] = c;
+        size++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /** The low 16 bits of the values sharing one high 16-bit key. */
+    private abstract static class Container {
+        /** Returns this container or its replacement after adding {@code v}. */
+        abstract Container add(char v);
+
+        /** Returns this container or its replacement after removing {@code v}. */
+        abstract Container remove(char v);
+
+        abstract boolean contains(char v);
+
+        abstract int cardinality();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract Container and(Container other);
+
+        abstract Container andNot(Container other);
+    }
+
+    /** Sorted array of up to {@link #ARRAY_MAX} values. */
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, v);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(v);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = v;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            int i = Arrays.binarySearch(values, 0, cardinality, v);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(values, 0, cardinality, v) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[Math.min(cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer a) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < a.cardinality) {
+                    if (values[i] < a.values[j]) {
+                        i++;
+                    } else if (values[i] > a.values[j]) {
+                        j++;
+                    } else {
+                        out[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        out[n++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    out[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                b.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            b.cardinality = cardinality;
+            return b;
+        }
+    }
+
+    /** 65536-bit bitmap, used once a chunk holds more than {@link #ARRAY_MAX} values. */
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char v) {
+            long bit = 1L << v;
+            if ((words[v >>> 6] & bit) == 0) {
+                words[v >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char v) {
+            long bit = 1L << v;
+            if ((words[v >>> 6] & bit) != 0) {
+                words[v >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return (words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] theirs = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int n = 0;
+            for (int w = 0; w < out.length; w++) {
+                out[w] = words[w] & theirs[w];
+                n += Long.bitCount(out[w]);
+            }
+            return shrink(new BitmapContainer(out, n));
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            int n = cardinality;
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0; i < a.cardinality; i++) {
+                    char v = a.values[i];
+                    long bit = 1L << v;
+                    if ((out[v >>> 6] & bit) != 0) {
+                        out[v >>> 6] &= ~bit;
+                        n--;
+                    }
+                }
+            } else {
+                long[] theirs = ((BitmapContainer) other).words;
+                n = 0;
+                for (int w = 0; w < out.length; w++) {
+                    out[w] &= ~theirs[w];
+                    n += Long.bitCount(out[w]);
+                }
+            }
+            return shrink(new BitmapContainer(out, n));
+        }
+
+        private static Container shrink(BitmapContainer b) {
+            return b.cardinality <= ARRAY_MAX ? b.toArray() : b;
+        }
+
+        ArrayContainer toArray() {
+            char[] out = new char[Math.max(cardinality, 4)];
+            int[] n = {0};
+            forEach(0, v -> out[n[0]++] = (char) v);
+            return new ArrayContainer(out, cardinality);
+        }
+    }
+}
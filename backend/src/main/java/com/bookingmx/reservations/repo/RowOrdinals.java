@@ -0,0 +1,100 @@
+package com.bookingmx.reservations.repo;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every stored reservation a dense internal row ordinal for the bitmap indexes.
+ *
+ * <p>Reservation IDs are sparse longs once rows are deleted (and are not guaranteed to start
+ * near zero), which would spread bitmap indexes over many half-empty chunks. Ordinals instead
+ * count up from zero and freed ones are reused first, so the ordinal space stays as small as
+ * the live row count.</p>
+ *
+ * <p>Assignment and release are serialized by the instance monitor. {@link #idAt(int)} and
+ * {@link #ordinalOf(long)} do not lock. A freed ordinal may be handed to a new row while a
+ * reader still holds a bitmap naming it, so readers resolving ordinals see the newer row:
+ * bitmap queries are weakly consistent, like the rest of the repository's reads.</p>
+ */
+final class RowOrdinals {
+
+    /** Marks an ordinal that is not assigned to any row. */
+    static final long NO_ID = Long.MIN_VALUE;
+
+    private final ConcurrentLongMap<Integer> ordinalOf = new ConcurrentLongMap<>();
+
+    /** Row ordinal to reservation ID; replaced, never resized in place, when it grows. */
+    private volatile long[] ids = filled(new long[1024]);
+
+    private int[] free = new int[16];
+    private int freeCount;
+    private int next;
+
+    /**
+     * Returns the ordinal of {@code id}, assigning one if it has none yet.
+     *
+     * @param id the reservation ID
+     * @return the row ordinal
+     */
+    synchronized int acquire(long id) {
+        Integer existing = ordinalOf.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = free[--freeCount];
+        } else {
+            ordinal = next++;
+            if (ordinal == ids.length) {
+                ids = filled(Arrays.copyOf(ids, ordinal * 2), ordinal);
+            }
+        }
+        ids[ordinal] = id;
+        ordinalOf.put(id, ordinal);
+        return ordinal;
+    }
+
+    /**
+     * Frees the ordinal of {@code id} for reuse.
+     *
+     * @param id the reservation ID
+     */
+    synchronized void release(long id) {
+        Integer ordinal = ordinalOf.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        ids[ordinal] = NO_ID;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    /**
+     * @param id the reservation ID
+     * @return its ordinal, or -1 if it has none
+     */
+    int ordinalOf(long id) {
+        Integer ordinal = ordinalOf.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @param ordinal a row ordinal
+     * @return the reservation ID at that ordinal, or {@link #NO_ID} if it is free
+     */
+    long idAt(int ordinal) {
+        long[] snapshot = ids;
+        return ordinal < snapshot.length ? snapshot[ordinal] : NO_ID;
+    }
+
+    private static long[] filled(long[] a) {
+        return filled(a, 0);
+    }
+
+    private static long[] filled(long[] a, int from) {
+        Arrays.fill(a, from, a.length, NO_ID);
+        return a;
+    }
+}
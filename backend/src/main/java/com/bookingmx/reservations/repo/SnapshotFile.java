@@ -0,0 +1,229 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary point-in-time image of the repository, written and read through memory-mapped
+ * windows of the file.
+ *
+ * <p>Layout, big-endian:
+ * <pre>
+ * int    magic    "BMXS"
+ * int    version
+ * long   lsn      last write-ahead log record reflected in the image
+ * long   nextId   value of the ID sequence when the image was taken
+ * long   count    number of records
+ * int    crc32    over all record bytes
+ * int    reserved
+ * count x { int length, {@link ReservationCodec} bytes }
+ * </pre>
+ * Bytes after the last record, if any, are ignored. A snapshot is written to a temporary file,
+ * forced to disk and then atomically renamed over the previous one, so a crash while
+ * writing leaves the older snapshot intact.</p>
+ */
+public class SnapshotFile {
+
+    /** Values read from a snapshot header. */
+    public static final class Info {
+        private final long lsn;
+        private final long nextId;
+        private final long count;
+
+        Info(long lsn, long nextId, long count) {
+            this.lsn = lsn;
+            this.nextId = nextId;
+            this.count = count;
+        }
+
+        /** @return the last log sequence number included in the snapshot */
+        public long lsn() { return lsn; }
+
+        /** @return the ID sequence value at snapshot time */
+        public long nextId() { return nextId; }
+
+        /** @return the number of reservations in the snapshot */
+        public long count() { return count; }
+    }
+
+    private static final int MAGIC = 0x424D5853;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int CRC_OFFSET = 32;
+
+    /** Size of each mapped window; records never straddle two windows. */
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final Path file;
+
+    /**
+     * @param file where the snapshot lives; its directory is created on first write
+     */
+    public SnapshotFile(Path file) {
+        this.file = file;
+    }
+
+    /** @return the snapshot file */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Writes every reservation in {@code store} as a new snapshot.
+     *
+     * @param lsn    the last log sequence number whose effect is guaranteed to be included
+     * @param nextId the current value of the ID sequence
+     * @param store  the reservations to write
+     * @return the header of the written snapshot
+     */
+    public Info write(long lsn, long nextId, ReservationStore store) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.deleteIfExists(tmp);
+            Info info;
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedWriter out = new MappedWriter(ch, windowSizeFor(store.size()));
+                CRC32 crc = new CRC32();
+                long[] count = {0};
+                store.forEach(r -> {
+                    byte[] bytes = ReservationCodec.encode(r);
+                    out.record(bytes);
+                    crc.update(bytes);
+                    count[0]++;
+                });
+                long end = out.finish();
+                MappedByteBuffer header = out.first;
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putLong(8, lsn);
+                header.putLong(16, nextId);
+                header.putLong(24, count[0]);
+                header.putInt(CRC_OFFSET, (int) crc.getValue());
+                header.force();
+                try {
+                    ch.truncate(end);
+                } catch (IOException mappedFileCannotShrink) {
+                    // Some platforms refuse to shrink a mapped file; trailing bytes are ignored on load.
+                }
+                info = new Info(lsn, nextId, count[0]);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return info;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Maps the snapshot and passes every reservation in it to {@code sink}.
+     *
+     * @param sink receives the reservations
+     * @return the snapshot header, or {@code null} if there is no snapshot file
+     * @throws IllegalStateException if the file is not a valid snapshot
+     */
+    public Info load(Consumer<Reservation> sink) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) {
+                throw new IllegalStateException("Snapshot " + file + " is truncated");
+            }
+            MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_BYTES));
+            if (window.getInt(0) != MAGIC || window.getInt(4) != VERSION) {
+                throw new IllegalStateException("Snapshot " + file + " has an unknown format");
+            }
+            Info info = new Info(window.getLong(8), window.getLong(16), window.getLong(24));
+            int expectedCrc = window.getInt(CRC_OFFSET);
+            CRC32 crc = new CRC32();
+            long windowStart = 0;
+            window.position(HEADER_BYTES);
+            for (long i = 0; i < info.count(); i++) {
+                if (window.remaining() < 4 || window.remaining() < 4 + window.getInt(window.position())) {
+                    windowStart += window.position();
+                    if (windowStart >= size) {
+                        throw new IllegalStateException("Snapshot " + file + " is truncated");
+                    }
+                    window = ch.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, WINDOW_BYTES));
+                }
+                int length = window.getInt();
+                ByteBuffer record = window.slice().limit(length);
+                crc.update(record.duplicate());
+                sink.accept(ReservationCodec.decode(record));
+                window.position(window.position() + length);
+            }
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IllegalStateException("Snapshot " + file + " failed its checksum");
+            }
+            return info;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + file, e);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Snapshot " + file + " is corrupt", e);
+        }
+    }
+
+    /** Sizes write windows from the row count so small stores do not map 64 MB. */
+    private static long windowSizeFor(int rows) {
+        long estimate = HEADER_BYTES + (long) rows * 64;
+        return Math.max(64L << 10, Math.min(WINDOW_BYTES, estimate));
+    }
+
+    /** Appends length-prefixed records through consecutive mapped windows. */
+    private static final class MappedWriter {
+        private final FileChannel ch;
+        private final long windowBytes;
+        final MappedByteBuffer first;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedWriter(FileChannel ch, long windowBytes) throws IOException {
+            this.ch = ch;
+            this.windowBytes = windowBytes;
+            this.first = ch.map(FileChannel.MapMode.READ_WRITE, 0, windowBytes);
+            this.window = first;
+            window.position(HEADER_BYTES);
+        }
+
+        void record(byte[] bytes) {
+            try {
+                if (window.remaining() < 4 + bytes.length) {
+                    if (window != first) {
+                        window.force();
+                    }
+                    windowStart += window.position();
+                    window = ch.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                            Math.max(windowBytes, 4L + bytes.length));
+                }
+                window.putInt(bytes.length).put(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Forces the last window and returns the end offset of the records. */
+        long finish() {
+            if (window != first) {
+                window.force();
+            }
+            return windowStart + window.position();
+        }
+    }
+}
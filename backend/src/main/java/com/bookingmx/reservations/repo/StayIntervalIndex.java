@@ -0,0 +1,252 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Per-hotel interval index over the half-open stay {@code [checkIn, checkOut)} of active
+ * reservations, keyed by hotel code (see {@link NameDictionary}).
+ *
+ * <p>Each hotel has an interval tree: a treap ordered by {@code (checkIn, id)} in which every
+ * node also stores the latest check-out in its subtree. An overlap query prunes every subtree
+ * whose latest check-out is not after the range start, which bounds it to
+ * O(log n + k) for k matches. "Who is staying on date D" is the overlap query for
+ * {@code [D, D + 1)}.</p>
+ *
+ * <p>Only {@code ACTIVE} reservations with both dates set are indexed; canceling a
+ * reservation removes it. As with {@link HotelIndex}, the index remembers what it last stored
+ * per ID, and callers must serialize updates for the same ID. Each tree has its own
+ * read-write lock, so queries on one hotel only wait for writers of that hotel.</p>
+ */
+final class StayIntervalIndex {
+
+    /** What an ID is currently indexed as, needed to find its node again. */
+    private static final class Stay {
+        final int hotel;
+        final int checkIn;
+        final int checkOut;
+
+        Stay(int hotel, int checkIn, int checkOut) {
+            this.hotel = hotel;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+
+        boolean sameAs(int hotel, int checkIn, int checkOut) {
+            return this.hotel == hotel && this.checkIn == checkIn && this.checkOut == checkOut;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, IntervalTree> trees = new ConcurrentHashMap<>();
+    private final ConcurrentLongMap<Stay> stays = new ConcurrentLongMap<>();
+
+    /**
+     * Indexes (or re-indexes) one reservation.
+     *
+     * @param id       the reservation ID
+     * @param hotel    the hotel code
+     * @param in       epoch day of the first night of the stay, or {@link Reservation#NO_DATE}
+     * @param out      epoch day of departure, exclusive, or {@link Reservation#NO_DATE}
+     * @param active   whether the reservation is active; inactive ones are removed
+     */
+    void index(long id, int hotel, int in, int out, boolean active) {
+        if (!active || hotel == StringDictionary.NULL_CODE
+                || in == Reservation.NO_DATE || out == Reservation.NO_DATE || out <= in) {
+            unindex(id);
+            return;
+        }
+        Stay previous = stays.get(id);
+        if (previous != null && previous.sameAs(hotel, in, out)) {
+            return;
+        }
+        if (previous != null) {
+            trees.get(previous.hotel).remove(previous.checkIn, id);
+        }
+        stays.put(id, new Stay(hotel, in, out));
+        trees.computeIfAbsent(hotel, h -> new IntervalTree()).insert(in, out, id);
+    }
+
+    /**
+     * Removes one reservation from the index.
+     *
+     * @param id the reservation ID
+     */
+    void unindex(long id) {
+        Stay previous = stays.remove(id);
+        if (previous != null) {
+            trees.get(previous.hotel).remove(previous.checkIn, id);
+        }
+    }
+
+    /**
+     * Passes the ID of every indexed stay at {@code hotel} that overlaps {@code [from, to)}.
+     *
+     * @param hotel  the hotel code
+     * @param from   first day of the range, inclusive
+     * @param to     last day of the range, exclusive
+     * @param action receives each matching ID
+     */
+    void forEachOverlapping(int hotel, LocalDate from, LocalDate to, LongConsumer action) {
+        IntervalTree tree = trees.get(hotel);
+        if (tree != null) {
+            tree.overlapping(Math.toIntExact(from.toEpochDay()), Math.toIntExact(to.toEpochDay()), action);
+        }
+    }
+
+    /**
+     * Treap keyed by {@code (start, id)}, augmented with the maximum end in each subtree.
+     * Empty trees are kept: hotels are few and come back.
+     */
+    private static final class IntervalTree {
+
+        private static final class Node {
+            final int start;
+            final int end;
+            final long id;
+            final int priority;
+            int maxEnd;
+            Node left;
+            Node right;
+
+            Node(int start, int end, long id) {
+                this.start = start;
+                this.end = end;
+                this.id = id;
+                this.priority = ThreadLocalRandom.current().nextInt();
+                this.maxEnd = end;
+            }
+        }
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private Node root;
+
+        void insert(int start, int end, long id) {
+            lock.writeLock().lock();
+            try {
+                root = insert(root, new Node(start, end, id));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(int start, long id) {
+            lock.writeLock().lock();
+            try {
+                root = remove(root, start, id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void overlapping(int from, int to, LongConsumer action) {
+            lock.readLock().lock();
+            try {
+                overlapping(root, from, to, action);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static void overlapping(Node n, int from, int to, LongConsumer action) {
+            // Nothing in this subtree ends after the range starts.
+            if (n == null || n.maxEnd <= from) {
+                return;
+            }
+            overlapping(n.left, from, to, action);
+            // Right subtree and this node start at or after n.start; prune once past the range.
+            if (n.start >= to) {
+                return;
+            }
+            if (n.end > from) {
+                action.accept(n.id);
+            }
+            overlapping(n.right, from, to, action);
+        }
+
+        private static Node insert(Node n, Node fresh) {
+            if (n == null) {
+                return fresh;
+            }
+            if (compare(fresh.start, fresh.id, n) < 0) {
+                n.left = insert(n.left, fresh);
+                if (n.left.priority > n.priority) {
+                    n = rotateRight(n);
+                }
+            } else {
+                n.right = insert(n.right, fresh);
+                if (n.right.priority > n.priority) {
+                    n = rotateLeft(n);
+                }
+            }
+            update(n);
+            return n;
+        }
+
+        private static Node remove(Node n, int start, long id) {
+            if (n == null) {
+                return null;
+            }
+            int c = compare(start, id, n);
+            if (c < 0) {
+                n.left = remove(n.left, start, id);
+            } else if (c > 0) {
+                n.right = remove(n.right, start, id);
+            } else {
+                if (n.left == null) {
+                    return n.right;
+                }
+                if (n.right == null) {
+                    return n.left;
+                }
+                if (n.left.priority > n.right.priority) {
+                    n = rotateRight(n);
+                    n.right = remove(n.right, start, id);
+                } else {
+                    n = rotateLeft(n);
+                    n.left = remove(n.left, start, id);
+                }
+            }
+            update(n);
+            return n;
+        }
+
+        private static int compare(int start, long id, Node n) {
+            int c = Integer.compare(start, n.start);
+            return c != 0 ? c : Long.compare(id, n.id);
+        }
+
+        private static Node rotateRight(Node n) {
+            Node l = n.left;
+            n.left = l.right;
+            l.right = n;
+            update(n);
+            update(l);
+            return l;
+        }
+
+        private static Node rotateLeft(Node n) {
+            Node r = n.right;
+            n.right = r.left;
+            r.left = n;
+            update(n);
+            update(r);
+            return r;
+        }
+
+        private static void update(Node n) {
+            int max = n.end;
+            if (n.left != null && n.left.maxEnd > max) {
+                max = n.left.maxEnd;
+            }
+            if (n.right != null && n.right.maxEnd > max) {
+                max = n.right.maxEnd;
+            }
+            n.maxEnd = max;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bookingmx.reservations.repo;
+
+/**
+ * Selects the {@link ReservationStore} implementation used by the repository.
+ *
+ * <p>Configured through {@code bookingmx.storage.engine} in {@code application.properties}.</p>
+ */
+public enum StorageEngine {
+
+    /** Reservation objects on the Java heap ({@link HeapReservationStore}). */
+    HEAP,
+
+    /**
+     * Immutable reservation versions on the Java heap with snapshot reads
+     * ({@link MvccReservationStore}).
+     */
+    MVCC,
+
+    /** Column-oriented rows in off-heap memory ({@link ColumnarReservationStore}). */
+    COLUMNAR,
+
+    /**
+     * Log-structured merge-tree of sorted segment files on local disk, for datasets larger
+     * than the heap ({@link com.bookingmx.reservations.repo.lsm.LsmReservationStore}).
+     */
+    LSM
+}
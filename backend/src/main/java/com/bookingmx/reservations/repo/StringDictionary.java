@@ -0,0 +1,89 @@
+package com.bookingmx.reservations.repo;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent, append-only mapping between strings and dense {@code int} codes.
+ *
+ * <p>Code {@code 0} is reserved for {@code null}; real strings are numbered from 1 in
+ * first-seen order. Codes are never reused, so a code handed out once decodes to the same
+ * string for the lifetime of the dictionary.</p>
+ *
+ * <p>{@link #decode(int)} is lock-free. {@link #encode(String)} is lock-free for strings
+ * already present and takes the dictionary lock only to add a new one.</p>
+ */
+public final class StringDictionary {
+
+    /** Code used for {@code null}. */
+    public static final int NULL_CODE = 0;
+
+    /** Returned by {@link #codeOf(String)} when the string has never been encoded. */
+    public static final int NO_CODE = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /** Canonical strings indexed by code; replaced (never mutated below {@code next}) on growth. */
+    private volatile String[] strings = new String[64];
+
+    private int next = 1;
+
+    /**
+     * Returns the code for {@code s}, adding it to the dictionary if necessary.
+     *
+     * @param s the string to encode, may be {@code null}
+     * @return the code of {@code s}
+     */
+    public int encode(String s) {
+        if (s == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(s);
+        return code != null ? code : add(s);
+    }
+
+    /**
+     * Returns the code for {@code s} without adding it.
+     *
+     * @param s the string to look up, may be {@code null}
+     * @return the code, or {@link #NO_CODE} if {@code s} was never encoded
+     */
+    public int codeOf(String s) {
+        if (s == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(s);
+        return code != null ? code : NO_CODE;
+    }
+
+    /**
+     * Returns the canonical string for a code.
+     *
+     * @param code a code previously returned by {@link #encode(String)}
+     * @return the string, or {@code null} for {@link #NULL_CODE}
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : strings[code];
+    }
+
+    /** @return the number of distinct non-null strings */
+    public int size() {
+        return codes.size();
+    }
+
+    private synchronized int add(String s) {
+        Integer existing = codes.get(s);
+        if (existing != null) {
+            return existing;
+        }
+        int code = next++;
+        String[] table = strings;
+        if (code >= table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[code] = s;
+        strings = table;
+        codes.put(s, code);
+        return code;
+    }
+}
@@ -0,0 +1,256 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link ReservationStore} with a hot tier in memory and a cold tier on disk.
+ *
+ * <p>Writes always go to the hot tier. {@link #spill(Predicate, int)}, run periodically by
+ * the tiering job, moves reservations that are no longer expected to be read (see
+ * {@link #isCold(Reservation, LocalDate)}) to the cold tier, normally a
+ * {@link com.bookingmx.reservations.repo.lsm.LsmReservationStore}, so the heap holds the
+ * working set of current and future stays only. {@link #get(long)} falls back to the cold
+ * tier transparently, reading the record from disk on demand; a faulted-in record is not
+ * kept in memory, but saving it again brings it back to the hot tier.</p>
+ *
+ * <p>Moves between tiers and writes of the same ID are serialized by lock stripes, so a
+ * spill never overwrites a concurrent update. Iteration visits the hot tier and then the
+ * cold tier; a reservation being moved at that moment may be seen twice or not at all.
+ * {@link #openReadView()} wraps the hot tier's view, so it keeps the hot tier's snapshot
+ * semantics, and adds the live cold tier minus anything the hot view still holds.</p>
+ */
+public class TieredReservationStore implements ReservationStore, Closeable {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReservationStore hot;
+    private final ReservationStore cold;
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    private final LongAdder faults = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+
+    /**
+     * @param hot  the in-memory tier every write goes to
+     * @param cold the on-disk tier finished reservations are moved to
+     */
+    public TieredReservationStore(ReservationStore hot, ReservationStore cold) {
+        this.hot = hot;
+        this.cold = cold;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The default tiering rule: a reservation is cold once it is canceled or its guest has
+     * checked out.
+     *
+     * @param r     the reservation
+     * @param today the current date
+     * @return whether {@code r} belongs in the cold tier
+     */
+    public static boolean isCold(Reservation r, LocalDate today) {
+        int checkOut = r.getCheckOutDay();
+        return !r.isActive() || (checkOut != Reservation.NO_DATE && checkOut < today.toEpochDay());
+    }
+
+    @Override
+    public Reservation get(long id) {
+        Reservation r = hot.get(id);
+        if (r == null && cold.size() > 0) {
+            r = cold.get(id);
+            if (r != null) {
+                faults.increment();
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public void put(Reservation r) {
+        long id = r.getIdAsLong();
+        ReentrantLock stripe = stripeFor(id);
+        stripe.lock();
+        try {
+            hot.put(r);
+            if (cold.size() > 0) {
+                cold.remove(id);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        ReentrantLock stripe = stripeFor(id);
+        stripe.lock();
+        try {
+            boolean removed = hot.remove(id);
+            return (cold.size() > 0 && cold.remove(id)) || removed;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return hot.size() + cold.size();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Reservation> action) {
+        hot.forEach(action);
+        cold.forEach(action);
+    }
+
+    @Override
+    public Spliterator<Reservation> spliterator() {
+        return concat(hot.spliterator(), cold.spliterator());
+    }
+
+    @Override
+    public ReadView openReadView() {
+        ReadView hotView = hot.openReadView();
+        return new ReadView() {
+            @Override
+            public long sequence() {
+                return hotView.sequence();
+            }
+
+            @Override
+            public Reservation get(long id) {
+                Reservation r = hotView.get(id);
+                return r != null ? r : cold.get(id);
+            }
+
+            @Override
+            public Spliterator<Reservation> spliterator() {
+                Spliterator<Reservation> coldOnly = StreamSupport.stream(cold.spliterator(), false)
+                        .filter(r -> hotView.get(r.getIdAsLong()) == null)
+                        .spliterator();
+                return concat(hotView.spliterator(), coldOnly);
+            }
+
+            @Override
+            public void close() {
+                hotView.close();
+            }
+        };
+    }
+
+    /**
+     * Moves up to {@code limit} hot reservations matching {@code isCold} to the cold tier.
+     * Each move re-checks the reservation under its stripe, so one updated in the meantime is
+     * judged by its new state.
+     *
+     * @param isCold which reservations to move
+     * @param limit  the most reservations to move in this call
+     * @return the number of reservations moved
+     */
+    public int spill(Predicate<Reservation> isCold, int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
+        long[] batch = new long[Math.min(limit, 4096)];
+        Spliterator<Reservation> it = hot.spliterator();
+        int moved = 0;
+        while (moved < limit) {
+            int n = collect(it, isCold, batch, Math.min(batch.length, limit - moved));
+            if (n == 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (demote(batch[i], isCold)) {
+                    moved++;
+                }
+            }
+        }
+        spilled.add(moved);
+        return moved;
+    }
+
+    /** @return the number of reservations in the hot tier */
+    public int hotSize() {
+        return hot.size();
+    }
+
+    /** @return the number of reservations in the cold tier */
+    public int coldSize() {
+        return cold.size();
+    }
+
+    /** @return lookups answered from the cold tier so far */
+    public long faults() {
+        return faults.sum();
+    }
+
+    /** @return reservations moved to the cold tier so far */
+    public long spilled() {
+        return spilled.sum();
+    }
+
+    /** Closes whichever tiers hold files. */
+    @Override
+    public void close() {
+        for (ReservationStore tier : new ReservationStore[] {hot, cold}) {
+            if (tier instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /** Fills {@code ids} with up to {@code max} further IDs from {@code it} matching {@code isCold}. */
+    private static int collect(Spliterator<Reservation> it, Predicate<Reservation> isCold, long[] ids, int max) {
+        int[] n = {0};
+        while (n[0] < max && it.tryAdvance(r -> {
+            if (isCold.test(r)) {
+                ids[n[0]++] = r.getIdAsLong();
+            }
+        })) {
+            // keep scanning
+        }
+        return n[0];
+    }
+
+    private boolean demote(long id, Predicate<Reservation> isCold) {
+        ReentrantLock stripe = stripeFor(id);
+        stripe.lock();
+        try {
+            Reservation r = hot.get(id);
+            if (r == null || !isCold.test(r)) {
+                return false;
+            }
+            // Copy before removing, so a reader always finds it in one tier or the other.
+            cold.put(r);
+            hot.remove(id);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(long id) {
+        return stripes[(int) (id ^ (id >>> 32)) & (LOCK_STRIPES - 1)];
+    }
+
+    private static Spliterator<Reservation> concat(Spliterator<Reservation> first, Spliterator<Reservation> second) {
+        return Stream.concat(StreamSupport.stream(first, false), StreamSupport.stream(second, false)).spliterator();
+    }
+}
@@ -0,0 +1,572 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, checksummed log of repository mutations with group commit.
+ *
+ * <p>Every record gets a log sequence number (LSN) when it is appended; LSNs increase by one
+ * and match the order of records on disk. A background flusher thread collects the
+ * records appended by concurrent writers, waits up to the configured group-commit window for
+ * more to arrive, writes the whole batch and issues a single {@code fsync} for it. Writers
+ * block in {@link #await(CompletableFuture)} until their batch is durable, so durability
+ * costs one disk flush per batch instead of one per request.</p>
+ *
+ * <p>Record layout, big-endian:
+ * <pre>
+ * int    length   number of bytes following the checksum
+ * int    crc32    over the following {@code length} bytes
+ * long   lsn
+ * byte   op       {@link #OP_PUT} or {@link #OP_DELETE}
+ * ...    body     {@link ReservationCodec} bytes for a put, a {@code long} ID for a delete
+ * </pre>
+ * {@link #replay(Replayer)} stops at the first record that is incomplete or fails its
+ * checksum and truncates the file there, so a crash in the middle of a write loses only the
+ * unacknowledged tail. A batch whose write or {@code fsync} fails while the process keeps
+ * running is cut off the same way straight away, so later batches are never appended behind a
+ * torn record that replay would stop at. If even that fails, the log refuses every further
+ * append until it is reopened.</p>
+ *
+ * <p>The log is a directory of segment files named after the LSN of their first record
+ * ({@code wal-<firstLsn>.log}). {@link #rollover()} starts a new segment; once a snapshot
+ * covers every record of the older segments, {@link #deleteSegmentsBefore(long)} drops them,
+ * which keeps both disk use and replay time bounded.</p>
+ */
+public class WriteAheadLog implements Closeable {
+
+    /** Callback receiving replayed records in log order. */
+    public interface Replayer {
+        /**
+         * Called for a stored or updated reservation.
+         *
+         * @param lsn the record's log sequence number
+         * @param r   the reservation as it was saved
+         */
+        void put(long lsn, Reservation r);
+
+        /**
+         * Called for a removed reservation.
+         *
+         * @param lsn the record's log sequence number
+         * @param id  the removed reservation's ID
+         */
+        void delete(long lsn, long id);
+    }
+
+    static final byte OP_PUT = 1;
+    static final byte OP_DELETE = 2;
+
+    /** Queue marker asking the flusher to start a new segment; never written to disk. */
+    private static final byte OP_ROLLOVER = 0;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final long windowNanos;
+    private final boolean fsync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+    private FileChannel channel;
+    private Thread flusher;
+    private long nextLsn = 1;
+    private boolean closed;
+
+    /** Why the log stopped taking appends, or {@code null} while it is healthy. Guarded by {@link #lock}. */
+    private UncheckedIOException failed;
+
+    /**
+     * Creates a log kept in {@code directory}. Nothing is opened until {@link #replay(Replayer)}.
+     *
+     * @param directory         the directory holding the segment files; created if missing
+     * @param groupCommitWindow how long the flusher waits for more records before syncing a batch
+     * @param fsync             whether each batch is forced to the storage device
+     */
+    public WriteAheadLog(Path directory, Duration groupCommitWindow, boolean fsync) {
+        this.directory = directory;
+        this.windowNanos = groupCommitWindow.toNanos();
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replays every intact record into {@code replayer}, cuts off a torn tail and opens the
+     * log for appending. Must be called exactly once, before any append.
+     *
+     * @param replayer receives the records in log order
+     * @return the LSN of the last replayed record, or 0 if the log was empty
+     */
+    public long replay(Replayer replayer) {
+        return replay(0L, replayer);
+    }
+
+    /**
+     * Same as {@link #replay(Replayer)}, but skips records whose LSN is not greater than
+     * {@code afterLsn}, e.g. because they are already covered by a snapshot.
+     *
+     * @param afterLsn records up to and including this LSN are not handed to {@code replayer}
+     * @param replayer receives the remaining records in log order
+     * @return the LSN of the last intact record, or {@code afterLsn} if there is none after it
+     */
+    public long replay(long afterLsn, Replayer replayer) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments();
+            long lastLsn = afterLsn;
+            for (int i = 0; i < segments.size(); i++) {
+                // Skip segments whose records all precede afterLsn without reading them.
+                if (i + 1 < segments.size() && firstLsn(segments.get(i + 1)) <= afterLsn + 1) {
+                    continue;
+                }
+                lastLsn = Math.max(lastLsn, replaySegment(segments.get(i), afterLsn, replayer));
+            }
+            Path active = segments.isEmpty() ? segmentFile(lastLsn + 1) : segments.get(segments.size() - 1);
+            // A freshly rolled segment may still be empty; its name fixes where numbering resumes.
+            lastLsn = Math.max(lastLsn, firstLsn(active) - 1);
+            channel = openSegment(active);
+            channel.position(channel.size());
+            nextLsn = lastLsn + 1;
+            flusher = new Thread(this::flushLoop, "bookingmx-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            return lastLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay write-ahead log in " + directory, e);
+        }
+    }
+
+    /** Replays one segment and truncates any torn tail; returns the last intact LSN or 0. */
+    private long replaySegment(Path segment, long afterLsn, Replayer replayer) throws IOException {
+        long lastLsn = 0;
+        long validEnd = 0;
+        try (InputStream raw = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            while (true) {
+                byte[] body = readRecord(in);
+                if (body == null) {
+                    break;
+                }
+                ByteBuffer buf = ByteBuffer.wrap(body);
+                long lsn = buf.getLong();
+                byte op = buf.get();
+                if (op != OP_PUT && op != OP_DELETE) {
+                    break;
+                }
+                if (lsn > afterLsn) {
+                    if (op == OP_PUT) {
+                        replayer.put(lsn, ReservationCodec.decode(buf));
+                    } else {
+                        replayer.delete(lsn, buf.getLong());
+                    }
+                }
+                lastLsn = lsn;
+                validEnd += HEADER_BYTES + body.length;
+            }
+        }
+        if (validEnd < Files.size(segment)) {
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                ch.truncate(validEnd);
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Appends a put record. The record is durable once the returned future completes.
+     *
+     * @param r the reservation being saved; its ID must be assigned
+     * @return a future completing with the record's LSN when its batch is on disk
+     */
+    public CompletableFuture<Long> appendPut(Reservation r) {
+        byte[] body = ReservationCodec.encode(r);
+        return enqueue(OP_PUT, body);
+    }
+
+    /**
+     * Appends a delete record. The record is durable once the returned future completes.
+     *
+     * @param id the ID of the reservation being removed
+     * @return a future completing with the record's LSN when its batch is on disk
+     */
+    public CompletableFuture<Long> appendDelete(long id) {
+        return enqueue(OP_DELETE, ByteBuffer.allocate(8).putLong(id).array());
+    }
+
+    /**
+     * Blocks until the given append is durable.
+     *
+     * @param append a future returned by one of the append methods
+     * @return the LSN of the record
+     * @throws UncheckedIOException if the batch could not be written
+     */
+    public static long await(CompletableFuture<Long> append) {
+        try {
+            return append.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /** @return the LSN that the next appended record will receive */
+    public long nextLsn() {
+        lock.lock();
+        try {
+            return nextLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current segment after all records appended so far and starts a new one.
+     *
+     * @return a future completing with the first LSN of the new segment once it is open
+     * @throws UncheckedIOException if an earlier write failed and could not be undone
+     */
+    public CompletableFuture<Long> rollover() {
+        lock.lock();
+        try {
+            checkWritable();
+            Pending marker = new Pending(nextLsn, OP_ROLLOVER, null);
+            pending.add(marker);
+            if (pending.size() == 1) {
+                pendingAvailable.signal();
+            }
+            return marker.done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes segments that only contain records with an LSN lower than {@code lsn}. The
+     * segment currently being written is never deleted.
+     *
+     * @param lsn the first LSN that must remain replayable
+     */
+    public void deleteSegmentsBefore(long lsn) {
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (firstLsn(segments.get(i + 1)) <= lsn) {
+                    Files.deleteIfExists(segments.get(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete old write-ahead log segments", e);
+        }
+    }
+
+    /** @return the directory holding the segment files */
+    public Path directory() {
+        return directory;
+    }
+
+    /** Flushes outstanding records and closes the current segment. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<Long> enqueue(byte op, byte[] body) {
+        lock.lock();
+        try {
+            checkWritable();
+            Pending p = new Pending(nextLsn++, op, body);
+            pending.add(p);
+            if (pending.size() == 1) {
+                pendingAvailable.signal();
+            }
+            return p.done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds {@link #lock}. */
+    private void checkWritable() {
+        if (closed || channel == null) {
+            throw new IllegalStateException("Write-ahead log is not open");
+        }
+        if (failed != null) {
+            throw failedError();
+        }
+    }
+
+    /** Stops the log taking appends after a write it could not undo. */
+    private void fail(UncheckedIOException failure) {
+        lock.lock();
+        try {
+            if (failed == null) {
+                failed = failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the error for an append made after the log failed, or {@code null} while it is healthy */
+    private UncheckedIOException failure() {
+        lock.lock();
+        try {
+            return failed == null ? null : failedError();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds {@link #lock} and has seen {@link #failed} set. */
+    private UncheckedIOException failedError() {
+        return new UncheckedIOException("Write-ahead log is failed; reopen it to recover", failed.getCause());
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // Group commit: give concurrent writers one window to join this batch.
+                long remaining = windowNanos;
+                while (remaining > 0 && !closed) {
+                    try {
+                        remaining = pendingAvailable.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                batch.addAll(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            if (p.op == OP_ROLLOVER) {
+                writeRecords(batch.subList(from, i));
+                roll(p);
+                from = i + 1;
+            }
+        }
+        writeRecords(batch.subList(from, batch.size()));
+    }
+
+    private void roll(Pending marker) {
+        UncheckedIOException earlier = failure();
+        if (earlier != null) {
+            marker.done.completeExceptionally(earlier);
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+            channel = openSegment(segmentFile(marker.lsn));
+            channel.position(channel.size());
+            marker.done.complete(marker.lsn);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Write-ahead log rollover failed", e);
+            // Without an open segment there is nowhere to append to.
+            fail(failure);
+            marker.done.completeExceptionally(failure);
+        }
+    }
+
+    private void writeRecords(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int bytes = 0;
+        for (Pending p : batch) {
+            bytes += HEADER_BYTES + 9 + p.body.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(bytes);
+        CRC32 crc = new CRC32();
+        for (Pending p : batch) {
+            int start = out.position();
+            out.position(start + HEADER_BYTES);
+            out.putLong(p.lsn).put(p.op).put(p.body);
+            crc.reset();
+            crc.update(out.array(), start + HEADER_BYTES, 9 + p.body.length);
+            out.putInt(start, 9 + p.body.length);
+            out.putInt(start + 4, (int) crc.getValue());
+        }
+        out.flip();
+        UncheckedIOException earlier = failure();
+        if (earlier != null) {
+            // Appended before the failure was recorded; the file may end in a torn record.
+            for (Pending p : batch) {
+                p.done.completeExceptionally(earlier);
+            }
+            return;
+        }
+        long start = -1L;
+        try {
+            start = channel.position();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            for (Pending p : batch) {
+                p.done.complete(p.lsn);
+            }
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Write-ahead log append failed", e);
+            if (!rewind(start, e)) {
+                fail(failure);
+            }
+            for (Pending p : batch) {
+                p.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Cuts the segment back to where a failed batch started, so the next batch follows the
+     * last intact record.
+     *
+     * @return whether the segment is intact again
+     */
+    private boolean rewind(long start, IOException cause) {
+        if (start < 0) {
+            return false;
+        }
+        try {
+            channel.truncate(start);
+            channel.position(start);
+            if (fsync) {
+                channel.force(false);
+            }
+            return true;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            return false;
+        }
+    }
+
+    /** Opens a segment file for appending. */
+    FileChannel openSegment(Path segment) throws IOException {
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+        segments.sort(Comparator.comparingLong(WriteAheadLog::firstLsn));
+        return segments;
+    }
+
+    private Path segmentFile(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Reads one framed record; returns {@code null} at a clean end, a torn tail or a bad checksum. */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        byte[] body;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length < 9 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            body = new byte[length];
+            in.readFully(body);
+        } catch (EOFException torn) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == checksum ? body : null;
+    }
+
+    private static final class Pending {
+        final long lsn;
+        final byte op;
+        final byte[] body;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        Pending(long lsn, byte op, byte[] body) {
+            this.lsn = lsn;
+            this.op = op;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.bookingmx.reservations.repo.lsm;
+
+/**
+ * Bloom filter over {@code long} keys, one per segment file.
+ *
+ * <p>A negative answer is exact, so a lookup of an ID that a segment does not hold skips the
+ * segment without touching the disk. With the default ten bits per key and seven hash
+ * functions the false-positive rate is about 1%. The {@code k} bit positions are derived from
+ * one 64-bit hash by double hashing.</p>
+ */
+final class BloomFilter {
+
+    /** Bits per key used when writing segments. */
+    static final int DEFAULT_BITS_PER_KEY = 10;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashes;
+
+    private BloomFilter(long[] words, int hashes) {
+        this.words = words;
+        this.bitCount = (long) words.length * 64;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Creates an empty filter sized for {@code expectedKeys}.
+     *
+     * @param expectedKeys number of keys that will be added
+     * @param bitsPerKey   filter bits to spend per key
+     * @return the filter
+     */
+    static BloomFilter create(long expectedKeys, int bitsPerKey) {
+        long bits = Math.max(64, expectedKeys * bitsPerKey);
+        int words = Math.toIntExact((bits + 63) / 64);
+        int hashes = Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * Math.log(2))));
+        return new BloomFilter(new long[words], hashes);
+    }
+
+    /**
+     * Rebuilds a filter read back from a segment file.
+     *
+     * @param words  the filter bits
+     * @param hashes the number of hash functions
+     * @return the filter
+     */
+    static BloomFilter of(long[] words, int hashes) {
+        return new BloomFilter(words, hashes);
+    }
+
+    void add(long key) {
+        long h = mix(key);
+        long h1 = h & 0xffffffffL;
+        long h2 = h >>> 32;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long key) {
+        long h = mix(key);
+        long h1 = h & 0xffffffffL;
+        long h2 = h >>> 32;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    /** Finalizer of MurmurHash3, as in the repository's long-keyed map. */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
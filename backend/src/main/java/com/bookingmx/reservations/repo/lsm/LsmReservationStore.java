@@ -0,0 +1,637 @@
+package com.bookingmx.reservations.repo.lsm;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.ReservationCodec;
+import com.bookingmx.reservations.repo.ReservationStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log-structured merge-tree {@link ReservationStore} for datasets larger than the heap.
+ *
+ * <p>Writes go to an in-memory memtable (a {@link ConcurrentSkipListMap} of encoded
+ * reservations, with a marker for deletions). When the memtable reaches its size limit it is
+ * frozen and a background thread writes it out as an immutable, sorted {@link Segment} file
+ * with a sparse index and a {@link BloomFilter}. Reads look at the memtable, the memtable
+ * being flushed and then the segments from newest to oldest; the bloom filters let a lookup
+ * skip almost every segment that does not hold the ID.</p>
+ *
+ * <p>Compaction is size-tiered: once {@code fanout} segments of the same size tier sit next
+ * to each other in age order, the background thread merges them into one, keeping the newest
+ * value per ID. Deletion markers are dropped when the merge includes the oldest segment, since
+ * nothing older is left for them to hide. Segment files are named after the range of memtable
+ * generations they contain ({@code seg-<min>-<max>.sst}); on startup, files whose range is
+ * covered by another file are leftovers of an interrupted compaction and are deleted.</p>
+ *
+ * <p>The memtable is not logged by the store itself: {@link #close()} flushes it, and crash
+ * durability comes from the repository's write-ahead log, whose records are idempotent
+ * puts. {@link #size()} is exact as long as writers of the same ID are serialized, as the
+ * repository does with its lock stripes. Iteration merges all sources in ID order and is
+ * weakly consistent.</p>
+ */
+public class LsmReservationStore implements ReservationStore, Closeable {
+
+    /** Default memtable size before it is flushed to a segment. */
+    public static final long DEFAULT_MEMTABLE_BYTES = 4L << 20;
+
+    /** Default number of same-tier segments merged by one compaction. */
+    public static final int DEFAULT_FANOUT = 4;
+
+    /** Rough heap cost of one memtable entry beyond its encoded bytes (node, boxed key). */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("seg-(\\d{20})-(\\d{20})\\.sst");
+
+    /** Counters for the benchmarks and for monitoring read and write amplification. */
+    public static final class Stats {
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder segmentReads = new LongAdder();
+        private final LongAdder bloomSkips = new LongAdder();
+        private final LongAdder userBytes = new LongAdder();
+        private final LongAdder flushedBytes = new LongAdder();
+        private final LongAdder compactedBytes = new LongAdder();
+        private final LongAdder flushes = new LongAdder();
+        private final LongAdder compactions = new LongAdder();
+
+        /** @return calls to {@link LsmReservationStore#get(long)} */
+        public long lookups() { return lookups.sum(); }
+
+        /** @return segment blocks read from disk by lookups */
+        public long segmentReads() { return segmentReads.sum(); }
+
+        /** @return segments skipped by lookups thanks to their bloom filter */
+        public long bloomSkips() { return bloomSkips.sum(); }
+
+        /** @return encoded bytes handed to the store by puts and removes */
+        public long userBytes() { return userBytes.sum(); }
+
+        /** @return bytes written by memtable flushes */
+        public long flushedBytes() { return flushedBytes.sum(); }
+
+        /** @return bytes written by compactions */
+        public long compactedBytes() { return compactedBytes.sum(); }
+
+        /** @return completed memtable flushes */
+        public long flushes() { return flushes.sum(); }
+
+        /** @return completed compactions */
+        public long compactions() { return compactions.sum(); }
+
+        /** @return bytes written to disk per byte written by users */
+        public double writeAmplification() {
+            long user = userBytes();
+            return user == 0 ? 0 : (double) (flushedBytes() + compactedBytes()) / user;
+        }
+
+        /** @return segment blocks read from disk per lookup */
+        public double readAmplification() {
+            long n = lookups();
+            return n == 0 ? 0 : (double) segmentReads() / n;
+        }
+    }
+
+    private final Path directory;
+    private final long memtableLimit;
+    private final int fanout;
+    private final Stats stats = new Stats();
+
+    /** Guards memtable rotation, the segment list and {@link #nextGeneration}. */
+    private final Object lock = new Object();
+
+    /** Writers hold the read side while inserting, so a frozen memtable receives no more writes. */
+    private final ReentrantReadWriteLock rotation = new ReentrantReadWriteLock();
+
+    private volatile ConcurrentSkipListMap<Long, byte[]> memtable = new ConcurrentSkipListMap<>();
+    /** Memtable being written to a segment, or {@code null}. */
+    private volatile ConcurrentSkipListMap<Long, byte[]> flushing;
+    /** Segments from newest to oldest; replaced, never modified. */
+    private volatile List<Segment> segments;
+
+    private final AtomicLong memtableBytes = new AtomicLong();
+    private final AtomicInteger live = new AtomicInteger();
+    private long nextGeneration;
+
+    private final ExecutorService background;
+    private volatile RuntimeException backgroundFailure;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or creates) a store in {@code directory} with the default settings.
+     *
+     * @param directory where segment files live
+     */
+    public LsmReservationStore(Path directory) {
+        this(directory, DEFAULT_MEMTABLE_BYTES, DEFAULT_FANOUT);
+    }
+
+    /**
+     * Opens (or creates) a store in {@code directory}.
+     *
+     * @param directory     where segment files live
+     * @param memtableBytes memtable size, in estimated heap bytes, that triggers a flush
+     * @param fanout        number of same-tier segments merged by one compaction (at least 2)
+     */
+    public LsmReservationStore(Path directory, long memtableBytes, int fanout) {
+        if (fanout < 2) {
+            throw new IllegalArgumentException("fanout must be at least 2");
+        }
+        this.directory = directory;
+        this.memtableLimit = Math.max(1024, memtableBytes);
+        this.fanout = fanout;
+        this.segments = openSegments(directory);
+        long maxGeneration = 0;
+        for (Segment s : segments) {
+            maxGeneration = Math.max(maxGeneration, s.maxGeneration);
+        }
+        this.nextGeneration = maxGeneration + 1;
+        Iterator<Segment.Entry> all = merge(sources(), true);
+        int count = 0;
+        while (all.hasNext()) {
+            all.next();
+            count++;
+        }
+        live.set(count);
+        this.background = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lsm-background");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public Reservation get(long id) {
+        stats.lookups.increment();
+        byte[] value = raw(id, true);
+        return value == null || value == Segment.TOMBSTONE ? null : decode(value);
+    }
+
+    @Override
+    public void put(Reservation r) {
+        byte[] bytes = ReservationCodec.encode(r);
+        long id = r.getIdAsLong();
+        byte[] previous = raw(id, false);
+        insert(id, bytes);
+        if (previous == null || previous == Segment.TOMBSTONE) {
+            live.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        byte[] previous = raw(id, false);
+        if (previous == null || previous == Segment.TOMBSTONE) {
+            return false;
+        }
+        insert(id, Segment.TOMBSTONE);
+        live.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return live.get();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Reservation> action) {
+        Iterator<Segment.Entry> it = merge(sources(), true);
+        while (it.hasNext()) {
+            action.accept(decode(it.next().value));
+        }
+    }
+
+    @Override
+    public Spliterator<Reservation> spliterator() {
+        Iterator<Segment.Entry> it = merge(sources(), true);
+        Iterator<Reservation> decoded = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Reservation next() {
+                return decode(it.next().value);
+            }
+        };
+        return Spliterators.spliteratorUnknownSize(decoded, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /** @return read and write amplification counters */
+    public Stats stats() {
+        return stats;
+    }
+
+    /** @return the number of segment files */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /** @return the total size of the segment files in bytes */
+    public long segmentBytes() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the memtable to a segment and waits until that and any compaction it triggers
+     * have finished.
+     */
+    public void flush() {
+        synchronized (lock) {
+            awaitFlushSlot();
+            if (!memtable.isEmpty()) {
+                rotate();
+            }
+        }
+        awaitBackground();
+    }
+
+    /** Flushes the memtable, stops the background thread and closes the segment files. */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment s : segments) {
+            s.close();
+        }
+    }
+
+    private void insert(long id, byte[] value) {
+        RuntimeException failure = backgroundFailure;
+        if (failure != null) {
+            throw new IllegalStateException("LSM background work failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+        rotation.readLock().lock();
+        try {
+            memtable.put(id, value);
+        } finally {
+            rotation.readLock().unlock();
+        }
+        stats.userBytes.add(12L + value.length);
+        if (memtableBytes.addAndGet(value.length + ENTRY_OVERHEAD) >= memtableLimit) {
+            synchronized (lock) {
+                // Let the memtable grow to twice its limit while the previous one is still
+                // being flushed; past that, writers wait for the flush.
+                while (flushing != null && memtableBytes.get() >= 2 * memtableLimit) {
+                    awaitFlushSlot();
+                }
+                if (flushing == null && memtableBytes.get() >= memtableLimit) {
+                    rotate();
+                }
+            }
+        }
+    }
+
+    /** Finds the newest value for {@code id}: memtable, frozen memtable, then segments. */
+    private byte[] raw(long id, boolean count) {
+        // Read order matters: rotation publishes the frozen memtable before the new one, and
+        // a flush publishes its segment before clearing the frozen memtable.
+        byte[] value = memtable.get(id);
+        if (value != null) {
+            return value;
+        }
+        ConcurrentSkipListMap<Long, byte[]> frozen = flushing;
+        if (frozen != null && (value = frozen.get(id)) != null) {
+            return value;
+        }
+        for (Segment s : segments) {
+            if (!s.mightContain(id)) {
+                if (count) {
+                    stats.bloomSkips.increment();
+                }
+                continue;
+            }
+            if (count) {
+                stats.segmentReads.increment();
+            }
+            value = s.get(id);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /** Freezes the memtable and schedules its flush. Caller holds {@link #lock}, no flush is pending. */
+    private void rotate() {
+        ConcurrentSkipListMap<Long, byte[]> frozen;
+        rotation.writeLock().lock();
+        try {
+            frozen = memtable;
+            flushing = frozen;
+            memtable = new ConcurrentSkipListMap<>();
+            memtableBytes.set(0);
+        } finally {
+            rotation.writeLock().unlock();
+        }
+        long generation = nextGeneration++;
+        background.execute(() -> {
+            try {
+                flushSegment(frozen, generation);
+                compactWhileNeeded();
+            } catch (RuntimeException e) {
+                backgroundFailure = e;
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        });
+    }
+
+    private void flushSegment(ConcurrentSkipListMap<Long, byte[]> frozen, long generation) {
+        Iterator<Map.Entry<Long, byte[]>> it = frozen.entrySet().iterator();
+        Segment segment = Segment.write(segmentFile(generation, generation), generation, generation,
+                entries(it), frozen.size());
+        synchronized (lock) {
+            List<Segment> next = new ArrayList<>(segments.size() + 1);
+            next.add(segment);
+            next.addAll(segments);
+            segments = Collections.unmodifiableList(next);
+            flushing = null;
+            lock.notifyAll();
+        }
+        stats.flushedBytes.add(segment.bytes);
+        stats.flushes.increment();
+    }
+
+    /** Runs on the background thread, the only one that removes segments. */
+    private void compactWhileNeeded() {
+        while (true) {
+            List<Segment> current = segments;
+            int[] run = pickRun(current);
+            if (run == null) {
+                return;
+            }
+            List<Segment> group = current.subList(run[0], run[1]);
+            boolean includesOldest = run[1] == current.size();
+            List<Iterator<Segment.Entry>> inputs = new ArrayList<>(group.size());
+            long expected = 0;
+            for (Segment s : group) {
+                inputs.add(s.iterator());
+                expected += s.records;
+            }
+            long min = group.get(group.size() - 1).minGeneration;
+            long max = group.get(0).maxGeneration;
+            Segment merged = Segment.write(segmentFile(min, max), min, max,
+                    merge(inputs, includesOldest), expected);
+            synchronized (lock) {
+                // Flushes may have added segments at the front meanwhile; the group is intact.
+                List<Segment> next = new ArrayList<>(segments);
+                int from = next.indexOf(group.get(0));
+                next.subList(from, from + group.size()).clear();
+                next.add(from, merged);
+                segments = Collections.unmodifiableList(next);
+            }
+            for (Segment s : group) {
+                s.delete();
+            }
+            stats.compactedBytes.add(merged.bytes);
+            stats.compactions.increment();
+        }
+    }
+
+    /**
+     * Finds consecutive segments (by age) in the same size tier, at least {@link #fanout} of
+     * them; returns {@code [from, to)} indexes into the newest-first list, or {@code null}.
+     */
+    private int[] pickRun(List<Segment> current) {
+        int start = 0;
+        for (int i = 1; i <= current.size(); i++) {
+            if (i == current.size() || tier(current.get(i)) != tier(current.get(start))) {
+                if (i - start >= fanout) {
+                    return new int[] {start, i};
+                }
+                start = i;
+            }
+        }
+        return null;
+    }
+
+    private int tier(Segment s) {
+        long base = Math.max(1, memtableLimit / 4);
+        int tier = 0;
+        for (long size = s.bytes / base; size >= fanout; size /= fanout) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /** Waits until no flush is pending. Caller holds {@link #lock}. */
+    private void awaitFlushSlot() {
+        while (flushing != null && backgroundFailure == null) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a memtable flush", e);
+            }
+        }
+        if (backgroundFailure != null) {
+            throw new IllegalStateException("LSM background work failed", backgroundFailure);
+        }
+    }
+
+    /** Waits for everything queued on the background thread so far. */
+    private void awaitBackground() {
+        try {
+            background.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Memtable, frozen memtable and segments, newest first, in the order {@link #raw} reads them. */
+    private List<Iterator<Segment.Entry>> sources() {
+        ConcurrentSkipListMap<Long, byte[]> active = memtable;
+        ConcurrentSkipListMap<Long, byte[]> frozen = flushing;
+        List<Segment> onDisk = segments;
+        List<Iterator<Segment.Entry>> sources = new ArrayList<>(onDisk.size() + 2);
+        sources.add(entries(active.entrySet().iterator()));
+        if (frozen != null) {
+            sources.add(entries(frozen.entrySet().iterator()));
+        }
+        for (Segment s : onDisk) {
+            sources.add(s.iterator());
+        }
+        return sources;
+    }
+
+    private Path segmentFile(long minGeneration, long maxGeneration) {
+        return directory.resolve(String.format("seg-%020d-%020d.sst", minGeneration, maxGeneration));
+    }
+
+    private static Reservation decode(byte[] value) {
+        return ReservationCodec.decode(ByteBuffer.wrap(value));
+    }
+
+    private static Iterator<Segment.Entry> entries(Iterator<Map.Entry<Long, byte[]>> it) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Segment.Entry next() {
+                Map.Entry<Long, byte[]> e = it.next();
+                return new Segment.Entry(e.getKey(), e.getValue());
+            }
+        };
+    }
+
+    /**
+     * Merges sorted sources, given newest first, into one sorted sequence holding the newest
+     * entry per ID.
+     */
+    private static Iterator<Segment.Entry> merge(List<Iterator<Segment.Entry>> sources, boolean dropTombstones) {
+        final class Head {
+            final Iterator<Segment.Entry> source;
+            final int rank;
+            Segment.Entry entry;
+
+            Head(Iterator<Segment.Entry> source, int rank) {
+                this.source = source;
+                this.rank = rank;
+            }
+        }
+        PriorityQueue<Head> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                Comparator.<Head>comparingLong(h -> h.entry.id).thenComparingInt(h -> h.rank));
+        for (int i = 0; i < sources.size(); i++) {
+            Head h = new Head(sources.get(i), i);
+            if (h.source.hasNext()) {
+                h.entry = h.source.next();
+                queue.add(h);
+            }
+        }
+        return new Iterator<>() {
+            private Segment.Entry next = advance();
+
+            private Segment.Entry advance() {
+                while (!queue.isEmpty()) {
+                    Head newest = queue.poll();
+                    Segment.Entry e = newest.entry;
+                    refill(newest);
+                    while (!queue.isEmpty() && queue.peek().entry.id == e.id) {
+                        refill(queue.poll());
+                    }
+                    if (!(dropTombstones && e.value == Segment.TOMBSTONE)) {
+                        return e;
+                    }
+                }
+                return null;
+            }
+
+            private void refill(Head h) {
+                if (h.source.hasNext()) {
+                    h.entry = h.source.next();
+                    queue.add(h);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Segment.Entry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Segment.Entry e = next;
+                next = advance();
+                return e;
+            }
+        };
+    }
+
+    /** Opens the segment files in {@code directory}, dropping leftovers of interrupted work. */
+    private static List<Segment> openSegments(Path directory) {
+        List<long[]> ranges = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory)) {
+                for (Path p : dir) {
+                    String name = p.getFileName().toString();
+                    Matcher m = SEGMENT_NAME.matcher(name);
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(p);
+                    } else if (m.matches()) {
+                        ranges.add(new long[] {Long.parseLong(m.group(1)), Long.parseLong(m.group(2))});
+                        files.add(p);
+                    }
+                }
+            }
+            List<Segment> opened = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (coveredByAnother(ranges, i)) {
+                    Files.deleteIfExists(files.get(i));
+                } else {
+                    opened.add(Segment.open(files.get(i), ranges.get(i)[0], ranges.get(i)[1]));
+                }
+            }
+            opened.sort(Comparator.comparingLong((Segment s) -> s.maxGeneration).reversed());
+            return Collections.unmodifiableList(opened);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open LSM store in " + directory, e);
+        }
+    }
+
+    private static boolean coveredByAnother(List<long[]> ranges, int i) {
+        long[] r = ranges.get(i);
+        for (int j = 0; j < ranges.size(); j++) {
+            long[] o = ranges.get(j);
+            if (j != i && o[0] <= r[0] && r[1] <= o[1] && (o[1] - o[0]) > (r[1] - r[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
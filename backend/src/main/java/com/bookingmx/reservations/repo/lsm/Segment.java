@@ -0,0 +1,386 @@
+package com.bookingmx.reservations.repo.lsm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, sorted segment file of the LSM store.
+ *
+ * <p>Layout, big-endian:
+ * <pre>
+ * records  sorted by ID: long id, int length (-1 for a deletion), length bytes
+ * index    every {@value #INDEX_INTERVAL}th record: long id, long offset
+ * bloom    long words of the {@link BloomFilter}
+ * footer   long indexOffset, int indexEntries, long bloomOffset, int bloomWords,
+ *          int bloomHashes, long records, int magic "BMXL"
+ * </pre>
+ * The sparse index and the bloom filter are loaded into memory when the segment is opened;
+ * the records stay on disk and are read with positional reads, so a point lookup costs at
+ * most one read of {@value #INDEX_INTERVAL} records, and none when the bloom filter rules the
+ * ID out.</p>
+ *
+ * <p>A segment is written to a temporary file, forced and renamed into place, so a crash
+ * never leaves a half-written segment under its final name. Its file channel is closed by
+ * {@link #close()}, or once the segment becomes unreachable after a compaction replaced it,
+ * so readers still walking a retired segment are not cut off.</p>
+ */
+final class Segment {
+
+    /** Value standing for a deletion, in memtables and in iteration. */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    static final int INDEX_INTERVAL = 16;
+
+    private static final int MAGIC = 0x424D584C;
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 4 + 4 + 8 + 4;
+    private static final int READ_CHUNK = 64 << 10;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** One ID and its value, or {@link #TOMBSTONE}. */
+    static final class Entry {
+        final long id;
+        final byte[] value;
+
+        Entry(long id, byte[] value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    final Path file;
+    /** Oldest and newest memtable generation merged into this segment. */
+    final long minGeneration;
+    final long maxGeneration;
+    final long records;
+    final long bytes;
+
+    private final FileChannel channel;
+    private final Cleaner.Cleanable cleanable;
+    private final long[] indexIds;
+    private final long[] indexOffsets;
+    private final long dataEnd;
+    private final BloomFilter bloom;
+
+    private Segment(Path file, long minGeneration, long maxGeneration, FileChannel channel) throws IOException {
+        this.file = file;
+        this.minGeneration = minGeneration;
+        this.maxGeneration = maxGeneration;
+        this.channel = channel;
+        this.cleanable = CLEANER.register(this, closer(channel));
+        this.bytes = channel.size();
+        if (bytes < FOOTER_BYTES) {
+            throw new IllegalStateException("Segment " + file + " is truncated");
+        }
+        ByteBuffer footer = read(bytes - FOOTER_BYTES, FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        int indexEntries = footer.getInt();
+        long bloomOffset = footer.getLong();
+        int bloomWords = footer.getInt();
+        int bloomHashes = footer.getInt();
+        this.records = footer.getLong();
+        if (footer.getInt() != MAGIC) {
+            throw new IllegalStateException("Segment " + file + " has an unknown format");
+        }
+        this.dataEnd = indexOffset;
+        ByteBuffer index = read(indexOffset, indexEntries * 16);
+        this.indexIds = new long[indexEntries];
+        this.indexOffsets = new long[indexEntries];
+        for (int i = 0; i < indexEntries; i++) {
+            indexIds[i] = index.getLong();
+            indexOffsets[i] = index.getLong();
+        }
+        long[] words = new long[bloomWords];
+        read(bloomOffset, bloomWords * 8).asLongBuffer().get(words);
+        this.bloom = BloomFilter.of(words, bloomHashes);
+    }
+
+    /**
+     * Writes entries, which must be sorted by ascending ID without duplicates, as a new
+     * segment and opens it.
+     *
+     * @param file          the final segment path
+     * @param minGeneration oldest generation included
+     * @param maxGeneration newest generation included
+     * @param entries       the sorted entries
+     * @param expected      approximate number of entries, for sizing the bloom filter
+     * @return the opened segment
+     */
+    static Segment write(Path file, long minGeneration, long maxGeneration,
+                         Iterator<Entry> entries, long expected) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            BloomFilter bloom = BloomFilter.create(expected, BloomFilter.DEFAULT_BITS_PER_KEY);
+            long[] ids = new long[16];
+            long[] offsets = new long[16];
+            int indexEntries = 0;
+            long count = 0;
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ChannelWriter out = new ChannelWriter(ch);
+                while (entries.hasNext()) {
+                    Entry e = entries.next();
+                    if (count % INDEX_INTERVAL == 0) {
+                        if (indexEntries == ids.length) {
+                            ids = Arrays.copyOf(ids, indexEntries * 2);
+                            offsets = Arrays.copyOf(offsets, indexEntries * 2);
+                        }
+                        ids[indexEntries] = e.id;
+                        offsets[indexEntries] = out.position();
+                        indexEntries++;
+                    }
+                    out.putLong(e.id);
+                    if (e.value == TOMBSTONE) {
+                        out.putInt(-1);
+                    } else {
+                        out.putInt(e.value.length);
+                        out.put(e.value);
+                    }
+                    bloom.add(e.id);
+                    count++;
+                }
+                long indexOffset = out.position();
+                for (int i = 0; i < indexEntries; i++) {
+                    out.putLong(ids[i]);
+                    out.putLong(offsets[i]);
+                }
+                long bloomOffset = out.position();
+                for (long w : bloom.words()) {
+                    out.putLong(w);
+                }
+                out.putLong(indexOffset);
+                out.putInt(indexEntries);
+                out.putLong(bloomOffset);
+                out.putInt(bloom.words().length);
+                out.putInt(bloom.hashes());
+                out.putLong(count);
+                out.putInt(MAGIC);
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file, minGeneration, maxGeneration);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write segment " + file, e);
+        }
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param file          the segment path
+     * @param minGeneration oldest generation included
+     * @param maxGeneration newest generation included
+     * @return the opened segment
+     */
+    static Segment open(Path file, long minGeneration, long maxGeneration) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new Segment(file, minGeneration, maxGeneration, channel);
+        } catch (IOException e) {
+            closer(channel).run();
+            throw new UncheckedIOException("Cannot open segment " + file, e);
+        } catch (RuntimeException e) {
+            closer(channel).run();
+            throw e;
+        }
+    }
+
+    /** @return whether the bloom filter admits {@code id} */
+    boolean mightContain(long id) {
+        return bloom.mightContain(id);
+    }
+
+    /**
+     * Looks up one ID on disk. Callers check {@link #mightContain(long)} first.
+     *
+     * @param id the reservation ID
+     * @return the encoded reservation, {@link #TOMBSTONE}, or {@code null} if absent
+     */
+    byte[] get(long id) {
+        int block = Arrays.binarySearch(indexIds, id);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        long from = indexOffsets[block];
+        long to = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buf = read(from, Math.toIntExact(to - from));
+        while (buf.hasRemaining()) {
+            long key = buf.getLong();
+            int length = buf.getInt();
+            if (key == id) {
+                return value(buf, length);
+            }
+            if (key > id) {
+                return null;
+            }
+            if (length > 0) {
+                buf.position(buf.position() + length);
+            }
+        }
+        return null;
+    }
+
+    /** @return every entry in ID order, read sequentially in large chunks */
+    Iterator<Entry> iterator() {
+        return new Iterator<>() {
+            private long position;
+            private ByteBuffer buf = ByteBuffer.allocate(0);
+            private Entry next = advance();
+
+            private Entry advance() {
+                if (position + buf.position() >= dataEnd) {
+                    return null;
+                }
+                ensure(12);
+                long id = buf.getLong();
+                int length = buf.getInt();
+                if (length > 0) {
+                    ensure(length);
+                }
+                return new Entry(id, value(buf, length));
+            }
+
+            /** Makes at least {@code n} unread bytes available in {@code buf}. */
+            private void ensure(int n) {
+                if (buf.remaining() >= n) {
+                    return;
+                }
+                long start = position + buf.position();
+                int size = Math.toIntExact(Math.min(Math.max(n, READ_CHUNK), dataEnd - start));
+                buf = read(start, size);
+                position = start;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry e = next;
+                next = advance();
+                return e;
+            }
+        };
+    }
+
+    /** Closes the file channel now instead of when the segment is collected. */
+    void close() {
+        cleanable.clean();
+    }
+
+    /** Closes and deletes the file. Readers holding the segment can still finish on POSIX systems. */
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete segment " + file, e);
+        }
+    }
+
+    private static byte[] value(ByteBuffer buf, int length) {
+        if (length < 0) {
+            return TOMBSTONE;
+        }
+        byte[] value = new byte[length];
+        buf.get(value);
+        return value;
+    }
+
+    private ByteBuffer read(long position, int length) {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        try {
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) {
+                    throw new IllegalStateException("Segment " + file + " is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read segment " + file, e);
+        }
+        return buf.flip();
+    }
+
+    /** Must not capture the segment, or the cleaner would never run. */
+    private static Runnable closer(FileChannel channel) {
+        return () -> {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // nothing left to release
+                }
+            }
+        };
+    }
+
+    /** Buffered sequential writer tracking a {@code long} file position. */
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(READ_CHUNK);
+        private long flushed;
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return flushed + buf.position();
+        }
+
+        void putLong(long v) throws IOException {
+            room(8);
+            buf.putLong(v);
+        }
+
+        void putInt(int v) throws IOException {
+            room(4);
+            buf.putInt(v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes.length > buf.capacity()) {
+                flush();
+                ByteBuffer whole = ByteBuffer.wrap(bytes);
+                while (whole.hasRemaining()) {
+                    flushed += channel.write(whole);
+                }
+                return;
+            }
+            room(bytes.length);
+            buf.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                flushed += channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        private void room(int n) throws IOException {
+            if (buf.remaining() < n) {
+                flush();
+            }
+        }
+    }
+}
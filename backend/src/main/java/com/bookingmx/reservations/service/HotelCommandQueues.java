@@ -0,0 +1,576 @@
+package com.bookingmx.reservations.service;
+
+import com.bookingmx.reservations.exception.ServiceUnavailableException;
+import com.bookingmx.reservations.repo.CommitGroup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer command queues, one per hotel, for the changes the {@link ReservationService}
+ * makes.
+ *
+ * <p>When enabled, every create, update and cancellation for a hotel is queued to that
+ * hotel's {@link Queue} and run by the queue's own virtual thread, one at a time and in
+ * arrival order. The thread drains whatever has queued up and runs it as one batch, so during
+ * a rush on one hotel its writers wait their turn in the queue instead of retrying
+ * compare-and-sets against each other: the hotel's capacity counters and stored reservations
+ * have one writer and are never contended. Changes to different hotels run in parallel.</p>
+ *
+ * <p>Each command runs in its own {@link CommitGroup}, so its logged writes do not wait for
+ * the write-ahead log one by one. Once the batch has run the thread waits for the groups, and
+ * only then completes the callers' results, with the log's error for a command whose writes
+ * failed: a batch waits for the log once, not once per command.</p>
+ *
+ * <p>The caller waits for its command with a bounded wait. A command that has not started
+ * when the wait runs out is dropped and the caller gets {@link ServiceUnavailableException}.
+ * For one already running the caller waits up to the timeout once more; if it still has not
+ * finished, or the caller is interrupted, the caller gets the same exception while the command
+ * finishes in the background, so the change may yet be applied. A queue holds at most
+ * {@code maxDepth} commands; further ones are turned away at once with the same
+ * exception.</p>
+ *
+ * <p>When disabled, the default, {@link #call(String, Supplier)} runs the command on the
+ * calling thread. Queues are created on first use and report their depth and counters through
+ * {@link #queues()}. A queue that has had nothing to run for {@code idleTimeout} is retired and
+ * its thread ends, so only hotels with recent changes hold a queue, and at most
+ * {@code maxQueues} exist at once: a change for another hotel beyond that is turned away with
+ * {@link ServiceUnavailableException} too.</p>
+ */
+public class HotelCommandQueues implements AutoCloseable {
+
+    /** Most commands a queue thread runs before it looks at the queue again. */
+    static final int MAX_BATCH = 256;
+
+    /** Default for the most queues that exist at once. */
+    public static final int DEFAULT_MAX_QUEUES = 1024;
+
+    /** Default for how long a queue waits for work before it is retired. */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final boolean enabled;
+    private final long timeoutNanos;
+    private final int maxDepth;
+    private final int maxQueues;
+    private final long idleNanos;
+    private final Map<String, Queue> queues = new ConcurrentHashMap<>();
+    /** Queues created and not yet retired; may briefly exceed the map's size while one is being added. */
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicLong retired = new AtomicLong();
+    private volatile boolean closed;
+
+    /** Creates disabled queues: every command runs on its caller's thread. */
+    public HotelCommandQueues() {
+        this.enabled = false;
+        this.timeoutNanos = 0;
+        this.maxDepth = 0;
+        this.maxQueues = 0;
+        this.idleNanos = 0;
+    }
+
+    /**
+     * Creates enabled queues with the default {@link #DEFAULT_MAX_QUEUES limit} and
+     * {@link #DEFAULT_IDLE_TIMEOUT idle timeout}.
+     *
+     * @param timeout  how long a caller waits for its command
+     * @param maxDepth most commands waiting in one hotel's queue
+     */
+    public HotelCommandQueues(Duration timeout, int maxDepth) {
+        this(timeout, maxDepth, DEFAULT_MAX_QUEUES, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param timeout     how long a caller waits for its command
+     * @param maxDepth    most commands waiting in one hotel's queue
+     * @param maxQueues   most hotels with a queue at once
+     * @param idleTimeout how long a queue waits for work before it is retired
+     */
+    public HotelCommandQueues(Duration timeout, int maxDepth, int maxQueues, Duration idleTimeout) {
+        if (timeout.isNegative() || timeout.isZero() || idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("timeout and idleTimeout must be positive");
+        }
+        if (maxDepth < 1 || maxQueues < 1) {
+            throw new IllegalArgumentException("maxDepth and maxQueues must be at least 1");
+        }
+        this.enabled = true;
+        this.timeoutNanos = timeout.toNanos();
+        this.maxDepth = maxDepth;
+        this.maxQueues = maxQueues;
+        this.idleNanos = idleTimeout.toNanos();
+    }
+
+    /** @return whether commands are queued, rather than run by their callers */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code command} on the queue of {@code hotel} and waits for its result.
+     *
+     * @param hotel   the name of the hotel the command changes
+     * @param command the change
+     * @return what {@code command} returned
+     * @throws ServiceUnavailableException if the queue is full, closed, too many hotels have a
+     *                                     queue, or the command did not start within the timeout
+     */
+    public <T> T call(String hotel, Supplier<T> command) {
+        if (!enabled) {
+            return command.get();
+        }
+        Command<T> pending = new Command<>(command);
+        Queue queue;
+        do {
+            queue = queueFor(hotel);
+            if (Thread.currentThread() == queue.thread) {
+                return command.get();
+            }
+            // A queue retired between the lookup and the submit takes nothing; look again.
+        } while (!queue.submit(pending));
+        try {
+            return pending.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            boolean interrupted = e instanceof InterruptedException;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (pending.claim()) {
+                queue.timedOut.incrementAndGet();
+                throw new ServiceUnavailableException("Timed out waiting for earlier changes to "
+                        + queue.hotelName());
+            }
+            // Already running: wait for it once more, unless interrupted.
+            if (!interrupted) {
+                try {
+                    return pending.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (ExecutionException x) {
+                    throw rethrow(x.getCause());
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                } catch (TimeoutException x) {
+                    // give up below
+                }
+            }
+            queue.abandoned.incrementAndGet();
+            throw new ServiceUnavailableException("A change to " + queue.hotelName()
+                    + " is still running and may yet be applied");
+        }
+    }
+
+    /**
+     * Runs {@code command} on the queues of both {@code hotel} and {@code other}, such as a
+     * change moving a reservation from one hotel to the other, and waits for its result.
+     *
+     * <p>The command is queued to the hotel whose name sorts first. When its turn comes, that
+     * queue's thread asks the other hotel's queue to pause at its next command boundary, runs
+     * the command once it has, and lets it go on: neither hotel runs another change meanwhile,
+     * and the other queue is held only for the command itself, never for the commands queued
+     * behind it. A queue's thread only ever asks one whose hotel sorts after its own to pause,
+     * so two moves in opposite directions cannot wait for each other. If the other queue does not pause
+     * within the timeout the command fails with {@link ServiceUnavailableException} without
+     * running. For the same hotel twice this is {@link #call(String, Supplier)}.</p>
+     *
+     * @param hotel   the name of one hotel the command changes
+     * @param other   the name of the other hotel the command changes
+     * @param command the change
+     * @return what {@code command} returned
+     * @throws ServiceUnavailableException as {@link #call(String, Supplier)} does, for either queue
+     */
+    public <T> T call(String hotel, String other, Supplier<T> command) {
+        String first = Objects.requireNonNullElse(hotel, "");
+        String second = Objects.requireNonNullElse(other, "");
+        if (!enabled || first.equals(second)) {
+            return call(first, command);
+        }
+        if (first.compareTo(second) > 0) {
+            String swap = first;
+            first = second;
+            second = swap;
+        }
+        String last = second;
+        return call(first, () -> whilePaused(last, command));
+    }
+
+    /** Runs {@code command} while the queue of {@code hotel} is paused; runs on another queue's thread. */
+    private <T> T whilePaused(String hotel, Supplier<T> command) {
+        Pause pause = new Pause();
+        Queue queue;
+        do {
+            queue = queueFor(hotel);
+            if (Thread.currentThread() == queue.thread) {
+                return command.get();
+            }
+            // As for a submit, a retired queue takes no pause; look again.
+        } while (!queue.requestPause(pause));
+        boolean held;
+        try {
+            held = pause.held.await(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            held = false;
+        }
+        if (!held && pause.withdraw()) {
+            queue.timedOut.incrementAndGet();
+            throw new ServiceUnavailableException("Timed out waiting for earlier changes to "
+                    + queue.hotelName());
+        }
+        try {
+            return command.get();
+        } finally {
+            pause.released.countDown();
+        }
+    }
+
+    /** @return the queues that exist now */
+    public Collection<Queue> queues() {
+        return List.copyOf(queues.values());
+    }
+
+    /** @return the queues retired because they were idle */
+    public long retired() {
+        return retired.get();
+    }
+
+    /**
+     * Stops the queue threads. Commands still waiting are dropped and their callers get
+     * {@link ServiceUnavailableException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Queue queue : queues.values()) {
+            queue.thread.interrupt();
+        }
+        for (Queue queue : queues.values()) {
+            try {
+                queue.thread.join(TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.dropPending();
+        }
+    }
+
+    private Queue queueFor(String hotel) {
+        if (closed) {
+            throw new ServiceUnavailableException("Reservation changes are shutting down");
+        }
+        String key = Objects.requireNonNullElse(hotel, "");
+        Queue queue = queues.get(key);
+        return queue != null ? queue : queues.computeIfAbsent(key, this::newQueue);
+    }
+
+    private Queue newQueue(String hotel) {
+        if (live.incrementAndGet() > maxQueues) {
+            live.decrementAndGet();
+            throw new ServiceUnavailableException("Too many hotels have changes in progress");
+        }
+        return new Queue(hotel);
+    }
+
+    /** Queued to wake an idle queue thread for a {@link Pause}; never run. */
+    private static final Command<Void> WAKE = new Command<>(() -> null);
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * A queued change and the future its caller waits on. Whichever of the queue thread and a
+     * caller giving up {@link #claim() claims} it first decides whether it runs.
+     */
+    private static final class Command<T> {
+        final Supplier<T> change;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        /** Set by {@link #run()} and read by {@link #commit()}, both on the queue thread. */
+        private CommitGroup group;
+        private T value;
+        private Throwable failure;
+
+        Command(Supplier<T> change) {
+            this.change = change;
+        }
+
+        /** @return whether this call claimed the command; it then never runs */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Runs the change, once it has been {@link #claim() claimed} for running, in a group of
+         * its own; the caller's result waits for {@link #commit()}.
+         */
+        void run() {
+            group = CommitGroup.begin();
+            try {
+                value = change.get();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                group.end();
+            }
+        }
+
+        /** Waits for the writes of the change and completes its result. */
+        void commit() {
+            try {
+                group.await();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * A request from a command running on another queue's thread for a queue to stop between
+     * two commands. Whichever of the queue thread {@link #stop() stopping} for it and the requester
+     * {@link #withdraw() withdrawing} it comes first decides whether the queue stops.
+     */
+    private static final class Pause {
+        private static final int REQUESTED = 0;
+        private static final int HELD = 1;
+        private static final int WITHDRAWN = 2;
+
+        private final AtomicInteger state = new AtomicInteger(REQUESTED);
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        /** @return whether the requester gave up before the queue stopped */
+        boolean withdraw() {
+            return state.compareAndSet(REQUESTED, WITHDRAWN);
+        }
+
+        /**
+         * Called by the queue thread; it then counts down {@link #held} and waits for
+         * {@link #released}.
+         *
+         * @return whether the requester is still waiting, so the queue stops
+         */
+        boolean stop() {
+            return state.compareAndSet(REQUESTED, HELD);
+        }
+    }
+
+    /** The command queue of one hotel and the virtual thread draining it. */
+    public final class Queue {
+        private final String hotel;
+        private final BlockingQueue<Command<?>> pending = new LinkedBlockingQueue<>(maxDepth);
+        private final ConcurrentLinkedQueue<Pause> pauses = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private final AtomicInteger peakDepth = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong abandoned = new AtomicLong();
+        private final AtomicLong paused = new AtomicLong();
+        /** Set once the queue is retired; it then takes no more commands. Guarded by {@code this}. */
+        private boolean done;
+
+        Queue(String hotel) {
+            this.hotel = hotel;
+            this.thread = Thread.ofVirtual().name("hotel-queue-" + hotel).start(this::drain);
+        }
+
+        /** @return the hotel's name */
+        public String hotelName() {
+            return hotel;
+        }
+
+        /** @return the commands waiting to run */
+        public int depth() {
+            return pending.size();
+        }
+
+        /** @return the most commands that have waited at once */
+        public int peakDepth() {
+            return peakDepth.get();
+        }
+
+        /** @return the commands run, including those that failed */
+        public long processed() {
+            return processed.get();
+        }
+
+        /** @return the batches run; {@link #processed()} over this is the mean batch size */
+        public long batches() {
+            return batches.get();
+        }
+
+        /** @return the commands turned away because the queue was full */
+        public long rejected() {
+            return rejected.get();
+        }
+
+        /** @return the commands dropped because their caller stopped waiting */
+        public long timedOut() {
+            return timedOut.get();
+        }
+
+        /** @return the commands whose caller stopped waiting after they had started */
+        public long abandoned() {
+            return abandoned.get();
+        }
+
+        /** @return {@code false} if the queue has been retired and took nothing */
+        private boolean submit(Command<?> command) {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                if (!pending.offer(command)) {
+                    rejected.incrementAndGet();
+                    throw new ServiceUnavailableException("Too many changes are waiting for " + hotelName());
+                }
+            }
+            peakDepth.accumulateAndGet(pending.size(), Math::max);
+            return true;
+        }
+
+        /** @return the times a change of this and another hotel, run by the other's queue, paused this one */
+        public long paused() {
+            return paused.get();
+        }
+
+        /** @return {@code false} if the queue has been retired and will not pause */
+        private boolean requestPause(Pause pause) {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                pauses.add(pause);
+            }
+            // Wakes an idle thread; a busy one pauses after its command anyway.
+            if (pending.isEmpty()) {
+                pending.offer(WAKE);
+            }
+            return true;
+        }
+
+        /** Retires the queue if nothing was submitted or asked of it since it went idle. */
+        private boolean retire() {
+            synchronized (this) {
+                if (!pending.isEmpty() || !pauses.isEmpty()) {
+                    return false;
+                }
+                done = true;
+                queues.remove(hotel, this);
+            }
+            live.decrementAndGet();
+            retired.incrementAndGet();
+            return true;
+        }
+
+        private void drain() {
+            List<Command<?>> batch = new ArrayList<>(MAX_BATCH);
+            List<Command<?>> ran = new ArrayList<>(MAX_BATCH);
+            try {
+                while (!closed) {
+                    holdPauses(ran);
+                    Command<?> first = pending.poll(idleNanos, TimeUnit.NANOSECONDS);
+                    if (first == null) {
+                        if (retire()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                    batch.removeIf(command -> command == WAKE);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                    batches.incrementAndGet();
+                    for (Command<?> command : batch) {
+                        holdPauses(ran);
+                        // A command whose caller has given up is skipped.
+                        if (command.claim()) {
+                            processed.incrementAndGet();
+                            command.run();
+                            ran.add(command);
+                        }
+                    }
+                    batch.clear();
+                    commit(ran);
+                }
+            } catch (InterruptedException e) {
+                // Closing, possibly part-way through a batch: what did not run is dropped.
+                batch.forEach(this::drop);
+            } finally {
+                commit(ran);
+            }
+        }
+
+        /**
+         * Pauses for the requests of other queues' commands, once the commands run so far are
+         * committed, so a command holding this queue sees their writes.
+         */
+        private void holdPauses(List<Command<?>> ran) throws InterruptedException {
+            if (pauses.isEmpty()) {
+                return;
+            }
+            commit(ran);
+            for (Pause pause; (pause = pauses.poll()) != null; ) {
+                if (pause.stop()) {
+                    paused.incrementAndGet();
+                    pause.held.countDown();
+                    // Interrupted only when the queues close.
+                    pause.released.await();
+                }
+            }
+        }
+
+        private void commit(List<Command<?>> ran) {
+            for (Command<?> command : ran) {
+                command.commit();
+            }
+            ran.clear();
+        }
+
+        private void dropPending() {
+            for (Command<?> command; (command = pending.poll()) != null; ) {
+                drop(command);
+            }
+        }
+
+        private void drop(Command<?> command) {
+            if (command != WAKE && command.claim()) {
+                command.result.completeExceptionally(
+                        new ServiceUnavailableException("Reservation changes are shutting down"));
+            }
+        }
+    }
+}
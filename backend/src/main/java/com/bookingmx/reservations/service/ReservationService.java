@@ -1,16 +1,28 @@
 package com.bookingmx.reservations.service;
 
+import com.bookingmx.reservations.capacity.HotelCapacity;
 import com.bookingmx.reservations.dto.ReservationRequest;
 import com.bookingmx.reservations.model.Reservation;
 import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.CommitGroup;
+import com.bookingmx.reservations.repo.ReadView;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
 import com.bookingmx.reservations.repo.ReservationRepository;
 import com.bookingmx.reservations.exception.BadRequestException;
+import com.bookingmx.reservations.exception.ConflictException;
 import com.bookingmx.reservations.exception.NotFoundException;
+import com.bookingmx.reservations.exception.PreconditionFailedException;
+import com.bookingmx.reservations.exception.ServiceUnavailableException;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * Service class that manages the business logic for hotel reservations.
@@ -24,15 +36,78 @@ import java.util.List;
  *   <li>Validate reservation dates</li>
  *   <li>Prevent updates to canceled reservations</li>
  *   <li>Ensure that only future reservations are allowed</li>
+ *   <li>Reject stays at a hotel that is fully booked on any of their nights</li>
  *   <li>Provide CRUD-like interaction through the repository</li>
  * </ul>
  * </p>
+ *
+ * <p>Updates and cancellations are optimistic: each is made from the stored version of the
+ * reservation and saved with {@link ReservationRepository#saveIfVersion}, so of two concurrent
+ * changes exactly one is saved from that version. Without an expected version the other one
+ * is reapplied to the newly stored reservation; with one, it fails with
+ * {@link PreconditionFailedException}. No lock is held across a change.</p>
+ *
+ * <p>With {@link HotelCommandQueues} enabled, creates, updates and cancellations run on the
+ * queue of the hotel they book (for a cancellation, the hotel it is at; for an update moving a
+ * reservation, on the queues of both hotels), so each hotel's changes are made one at a time
+ * by a single writer; the caller gets {@link ServiceUnavailableException} if its change did
+ * not start within the queue timeout, or is still running a timeout after that, in which case
+ * it may yet be applied.</p>
  */
 @Service
 public class ReservationService {
 
+    /** Largest result page a guest-name search may ask for. */
+    public static final int MAX_SEARCH_RESULTS = 100;
+
     /** Internal repository for storing and retrieving reservations. */
-    private final ReservationRepository repo = new ReservationRepository();
+    private final ReservationRepository repo;
+
+    /** Rooms of each hotel and the nights already taken. */
+    private final HotelCapacity capacity;
+
+    /** Queues serializing each hotel's changes, when enabled. */
+    private final HotelCommandQueues queues;
+
+    /** Creates a service backed by a default in-memory repository. */
+    public ReservationService() {
+        this(new InMemoryReservationRepository());
+    }
+
+    /**
+     * Creates a service backed by the given repository, with no limit on bookings.
+     *
+     * @param repo the repository configured for the application
+     */
+    public ReservationService(ReservationRepository repo) {
+        this(repo, new HotelCapacity());
+    }
+
+    /**
+     * Creates a service backed by the given repository that keeps each hotel within its
+     * capacity.
+     *
+     * @param repo     the repository configured for the application
+     * @param capacity the hotels' capacity, with counters matching {@code repo}
+     */
+    public ReservationService(ReservationRepository repo, HotelCapacity capacity) {
+        this(repo, capacity, new HotelCommandQueues());
+    }
+
+    /**
+     * Creates a service that keeps each hotel within its capacity and makes each hotel's
+     * changes on its command queue.
+     *
+     * @param repo     the repository configured for the application
+     * @param capacity the hotels' capacity, with counters matching {@code repo}
+     * @param queues   the hotels' command queues
+     */
+    @Autowired
+    public ReservationService(ReservationRepository repo, HotelCapacity capacity, HotelCommandQueues queues) {
+        this.repo = repo;
+        this.capacity = capacity;
+        this.queues = queues;
+    }
 
     /**
      * Retrieves a list of all current reservations.
@@ -43,6 +118,84 @@ public class ReservationService {
         return repo.findAll();
     }
 
+    /**
+     * Opens a consistent snapshot of all current reservations, for callers that process them
+     * one at a time without copying the repository.
+     *
+     * @return a read view that must be closed after use
+     */
+    public ReadView snapshot() {
+        return repo.openReadView();
+    }
+
+    /**
+     * Retrieves the reservations at one hotel.
+     *
+     * @param hotelName the exact hotel name to filter by
+     * @return a list containing the hotel's reservations
+     */
+    public List<Reservation> listByHotel(String hotelName) {
+        return repo.findByHotel(hotelName);
+    }
+
+    /**
+     * Retrieves the reservations in one status.
+     *
+     * @param status the status to filter by
+     * @return a list containing the matching reservations
+     */
+    public List<Reservation> listByStatus(ReservationStatus status) {
+        return repo.findByStatus(status);
+    }
+
+    /**
+     * Retrieves the reservations at one hotel in one status.
+     *
+     * @param hotelName the exact hotel name to filter by
+     * @param status    the status to filter by
+     * @return a list containing the matching reservations
+     */
+    public List<Reservation> listByHotel(String hotelName, ReservationStatus status) {
+        return repo.findByHotel(hotelName, status);
+    }
+
+    /**
+     * Searches reservations by the start of the guest name, ignoring case.
+     *
+     * @param guestPrefix the beginning of the guest name
+     * @param limit       the maximum number of results, between 1 and {@link #MAX_SEARCH_RESULTS}
+     * @return a list of at most {@code limit} matching reservations, ordered by guest name
+     * @throws BadRequestException if the prefix is blank or the limit is out of range
+     */
+    public List<Reservation> searchByGuest(String guestPrefix, int limit) {
+        if (guestPrefix == null || guestPrefix.isBlank()) {
+            throw new BadRequestException("Guest name prefix is required");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        return repo.searchByGuest(guestPrefix.strip(), limit);
+    }
+
+    /**
+     * Retrieves the active reservations at one hotel whose stay overlaps a date range.
+     *
+     * @param hotelName the exact hotel name to filter by
+     * @param from      first day of the range, inclusive
+     * @param to        end of the range, exclusive; {@code null} means the single night of {@code from}
+     * @return a list containing the overlapping reservations
+     * @throws BadRequestException if {@code to} is not after {@code from}
+     */
+    public List<Reservation> listOverlapping(String hotelName, LocalDate from, LocalDate to) {
+        if (to == null) {
+            return repo.findStayingOn(hotelName, from);
+        }
+        if (!to.isAfter(from)) {
+            throw new BadRequestException("Range end must be after range start");
+        }
+        return repo.findOverlapping(hotelName, from, to);
+    }
+
     /**
      * Creates a new reservation after validating the incoming data.
      *
@@ -51,12 +204,15 @@ public class ReservationService {
      *   <li>Both dates are provided</li>
      *   <li>The check-out date is after the check-in date</li>
      *   <li>The dates are not in the past</li>
+     *   <li>The hotel has a room free on every night of the stay</li>
      * </ul>
      * </p>
      *
      * @param req the reservation details provided by the client
      * @return the stored {@link Reservation} instance
      * @throws BadRequestException if the dates are invalid or incomplete
+     * @throws ConflictException if the hotel is fully booked on one of the nights
+     * @throws ServiceUnavailableException if the hotel's command queue did not run it in time
      */
     public Reservation create(ReservationRequest req) {
         validateDates(req.getCheckIn(), req.getCheckOut());
@@ -67,7 +223,39 @@ public class ReservationService {
             req.getCheckIn(),
             req.getCheckOut()
         );
-        return repo.save(r);
+        return queues.call(r.getHotelName(), () -> {
+            capacity.reserve(null, r);
+            Reservation saved;
+            try {
+                saved = repo.save(r);
+            } catch (RuntimeException e) {
+                capacity.release(r, null);
+                throw e;
+            }
+            CommitGroup.afterCommit(() -> { }, () -> capacity.release(r, null));
+            return saved;
+        });
+    }
+
+    /**
+     * Retrieves one reservation.
+     *
+     * @param id the ID of the reservation
+     * @return the stored reservation
+     * @throws NotFoundException if the reservation does not exist
+     */
+    public Reservation get(Long id) {
+        return repo.findById(id)
+            .orElseThrow(() -> new NotFoundException("Reservation not found"));
+    }
+
+    /**
+     * Updates an existing reservation, whatever its current version.
+     *
+     * @see #update(Long, ReservationRequest, Integer)
+     */
+    public Reservation update(Long id, ReservationRequest req) {
+        return update(id, req, null);
     }
 
     /**
@@ -76,48 +264,132 @@ public class ReservationService {
      * <p>The update will only succeed if:
      * <ul>
      *   <li>The reservation exists</li>
+     *   <li>The reservation is still at {@code expectedVersion}, when one is given</li>
      *   <li>The reservation is still active (not canceled)</li>
      *   <li>New dates pass validation checks</li>
+     *   <li>The hotel has a room free on every night the reservation did not already hold</li>
      * </ul>
      * </p>
      *
      * @param id the ID of the reservation to update
      * @param req the updated reservation data
+     * @param expectedVersion the version the client last saw, or {@code null} for any
      * @return the updated and saved {@link Reservation} instance
      * @throws NotFoundException if the reservation does not exist
+     * @throws PreconditionFailedException if the reservation is no longer at {@code expectedVersion}
      * @throws BadRequestException if the reservation is canceled or dates are invalid
+     * @throws ConflictException if the hotel is fully booked on one of the new nights
+     * @throws ServiceUnavailableException if the hotel's command queue did not run it in time
      */
-    public Reservation update(Long id, ReservationRequest req) {
-        Reservation existing = repo.findById(id)
-            .orElseThrow(() -> new NotFoundException("Reservation not found"));
-
-        if (!existing.isActive()) {
-            throw new BadRequestException("Cannot update a canceled reservation");
-        }
+    public Reservation update(Long id, ReservationRequest req, Integer expectedVersion) {
+        return routed(id, stored -> req.getHotelName(), hotel -> change(id, hotel, expectedVersion, existing -> {
+            if (!existing.isActive()) {
+                throw new BadRequestException("Cannot update a canceled reservation");
+            }
 
-        validateDates(req.getCheckIn(), req.getCheckOut());
+            validateDates(req.getCheckIn(), req.getCheckOut());
 
-        existing.setGuestName(req.getGuestName());
-        existing.setHotelName(req.getHotelName());
-        existing.setCheckIn(req.getCheckIn());
-        existing.setCheckOut(req.getCheckOut());
+            return existing.withGuestName(req.getGuestName())
+                    .withHotelName(req.getHotelName())
+                    .withStay(req.getCheckIn(), req.getCheckOut());
+        }));
+    }
 
-        return repo.save(existing);
+    /**
+     * Cancels a reservation, whatever its current version.
+     *
+     * @see #cancel(Long, Integer)
+     */
+    public Reservation cancel(Long id) {
+        return cancel(id, null);
     }
 
     /**
      * Cancels an active reservation, marking its status as {@link ReservationStatus#CANCELED}.
+     * Cancelling a reservation that is already canceled changes nothing: it is returned at its
+     * current version.
      *
      * @param id the ID of the reservation to cancel
-     * @return the updated reservation with status set to CANCELED
+     * @param expectedVersion the version the client last saw, or {@code null} for any
+     * @return the reservation with status set to CANCELED
      * @throws NotFoundException if no reservation exists with the given ID
+     * @throws PreconditionFailedException if the reservation is no longer at {@code expectedVersion}
+     * @throws ServiceUnavailableException if the hotel's command queue did not run it in time
      */
-    public Reservation cancel(Long id) {
-        Reservation existing = repo.findById(id)
-            .orElseThrow(() -> new NotFoundException("Reservation not found"));
+    public Reservation cancel(Long id, Integer expectedVersion) {
+        return routed(id, stored -> stored, hotel -> change(id, hotel, expectedVersion,
+                existing -> existing.isActive() ? existing.withStatus(ReservationStatus.CANCELED) : existing));
+    }
 
-        existing.setStatus(ReservationStatus.CANCELED);
-        return repo.save(existing);
+    /**
+     * Runs {@code change} of reservation {@code id} on the queues of the hotel it is stored at
+     * and of {@code target}, the hotel it will be at. The stored hotel is looked up first, so a
+     * change of an unknown ID fails without creating a queue, and checked again once the change
+     * is running: {@code change} is given the hotel whose queue it runs on and returns
+     * {@code null} if the reservation is no longer there, and a reservation moved to another
+     * hotel in the meantime is routed again, to the queue that now owns it. Every change of a
+     * hotel's reservations runs on its queue, so the hotel cannot change between that check and
+     * the save it guards.
+     */
+    private Reservation routed(Long id, UnaryOperator<String> target, Function<String, Reservation> change) {
+        if (!queues.isEnabled()) {
+            return change.apply(null);
+        }
+        while (true) {
+            String hotel = get(id).getHotelName();
+            Optional<Reservation> done = queues.call(hotel, target.apply(hotel),
+                    () -> Optional.ofNullable(change.apply(hotel)));
+            if (done.isPresent()) {
+                return done.get();
+            }
+        }
+    }
+
+    /**
+     * Derives a new reservation from the stored one with {@code edit} and saves it in its place
+     * if no other change was saved in the meantime, taking the nights it newly holds before the save and giving
+     * back the ones it no longer holds after it. When another change wins, its nights are
+     * given back and, without an expected version, the edit is retried on the new state. An
+     * edit that returns the stored reservation itself saves nothing. The nights the stored
+     * reservation held but the new one does not are given back once the save has committed,
+     * the new ones if it fails.
+     *
+     * <p>With a {@code hotel} from {@link #routed}, returns {@code null} if the stored
+     * reservation is not at it: it was moved, possibly by a change saved just before on the same
+     * queue, and this change must run on its new hotel's queue.</p>
+     */
+    private Reservation change(Long id, String hotel, Integer expectedVersion, UnaryOperator<Reservation> edit) {
+        while (true) {
+            Reservation existing = get(id);
+            if (queues.isEnabled() && !Objects.equals(existing.getHotelName(), hotel)) {
+                return null;
+            }
+            if (expectedVersion != null && existing.getVersion() != expectedVersion) {
+                throw new PreconditionFailedException("Reservation " + id + " is at version "
+                        + existing.getVersion() + ", not " + expectedVersion);
+            }
+            Reservation changed = edit.apply(existing);
+            if (changed == existing) {
+                return existing;
+            }
+            capacity.reserve(existing, changed);
+            Optional<Reservation> saved;
+            try {
+                saved = repo.saveIfVersion(changed, existing.getVersion());
+            } catch (RuntimeException e) {
+                capacity.release(changed, existing);
+                throw e;
+            }
+            if (saved.isPresent()) {
+                CommitGroup.afterCommit(() -> capacity.release(existing, changed),
+                        () -> capacity.release(changed, existing));
+                return saved.get();
+            }
+            capacity.release(changed, existing);
+            if (expectedVersion != null) {
+                throw new PreconditionFailedException("Reservation " + id + " was changed concurrently");
+            }
+        }
     }
 
     /**
@@ -131,21 +403,27 @@ public class ReservationService {
      * </ul>
      * </p>
      *
+     * <p>Shared with {@link com.bookingmx.reservations.importer.ReservationImporter}, so bulk
+     * imports accept exactly the dates a single create does.</p>
+     *
      * @param in the check-in date
      * @param out the check-out date
      * @throws BadRequestException if any validation rule is violated
      */
-    private void validateDates(LocalDate in, LocalDate out) {
+    public static void validateDates(LocalDate in, LocalDate out) {
         if (in == null || out == null) {
             throw new BadRequestException("Dates cannot be null");
         }
-        if (!out.isAfter(in)) {
+        long inDay = in.toEpochDay();
+        long outDay = out.toEpochDay();
+        long today = LocalDate.now().toEpochDay();
+        if (outDay <= inDay) {
             throw new BadRequestException("Check-out must be after check-in");
         }
-        if (in.isBefore(LocalDate.now())) {
+        if (inDay < today) {
             throw new BadRequestException("Check-in must be in the future");
         }
-        if (out.isBefore(LocalDate.now())) {
+        if (outDay < today) {
             throw new BadRequestException("Check-out must be in the future");
         }
     }
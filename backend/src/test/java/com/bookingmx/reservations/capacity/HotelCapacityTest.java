@@ -0,0 +1,153 @@
+package com.bookingmx.reservations.capacity;
+
+import com.bookingmx.reservations.exception.ConflictException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotelCapacityTest {
+
+    private static final LocalDate IN = LocalDate.now().plusDays(10);
+
+    private static Reservation stay(String hotel, int fromDay, int nights) {
+        return new Reservation(null, "Guest", hotel, IN.plusDays(fromDay), IN.plusDays(fromDay + nights));
+    }
+
+    private static int occupied(HotelCapacity capacity, String hotel, int day) {
+        return capacity.occupied(hotel, (int) IN.plusDays(day).toEpochDay());
+    }
+
+    @Test
+    void fullNight_rejectsTheWholeStay_andGivesBackTheNightsItTook() {
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Azul", 2));
+        capacity.reserve(null, stay("Azul", 2, 1));
+        capacity.reserve(null, stay("Azul", 2, 1));
+
+        ConflictException e = assertThrows(ConflictException.class, () -> capacity.reserve(null, stay("Azul", 0, 4)));
+        assertTrue(e.getMessage().contains(IN.plusDays(2).toString()));
+        assertEquals(0, occupied(capacity, "Azul", 0));
+        assertEquals(0, occupied(capacity, "Azul", 1));
+        assertEquals(2, occupied(capacity, "Azul", 2));
+        assertEquals(0, occupied(capacity, "Azul", 3));
+
+        // Other hotels are unlimited by default and not counted.
+        for (int i = 0; i < 10; i++) {
+            capacity.reserve(null, stay("Roja", 2, 1));
+        }
+        assertEquals(0, occupied(capacity, "Roja", 2));
+    }
+
+    @Test
+    void change_movesOnlyTheNightsThatDiffer_andCancelReleasesThem() {
+        HotelCapacity capacity = new HotelCapacity(1, Map.of());
+        Reservation booked = stay("Azul", 0, 3);
+        capacity.reserve(null, booked);
+
+        // Extending by one night needs only the new night, though the others are full.
+        Reservation extended = stay("Azul", 1, 3);
+        capacity.reserve(booked, extended);
+        capacity.release(booked, extended);
+        assertEquals(0, occupied(capacity, "Azul", 0));
+        assertEquals(1, occupied(capacity, "Azul", 1));
+        assertEquals(1, occupied(capacity, "Azul", 3));
+
+        Reservation canceled = extended.withStatus(ReservationStatus.CANCELED);
+        capacity.reserve(extended, canceled);
+        capacity.release(extended, canceled);
+        for (int day = 0; day < 5; day++) {
+            assertEquals(0, occupied(capacity, "Azul", day));
+        }
+    }
+
+    @Test
+    void rebuild_countsFutureNightsOfActiveReservations() {
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        repo.save(stay("Azul", 0, 2));
+        repo.save(stay("Azul", 1, 2));
+        Reservation canceled = repo.save(stay("Azul", 0, 5));
+        canceled = canceled.withStatus(ReservationStatus.CANCELED);
+        repo.save(canceled);
+
+        HotelCapacity capacity = new HotelCapacity(2, Map.of());
+        capacity.rebuild(repo.cursor(), IN.plusDays(1));
+        assertEquals(0, occupied(capacity, "Azul", 0));
+        assertEquals(2, occupied(capacity, "Azul", 1));
+        assertEquals(1, occupied(capacity, "Azul", 2));
+        assertEquals(0, occupied(capacity, "Azul", 3));
+        assertThrows(ConflictException.class, () -> capacity.reserve(null, stay("Azul", 1, 1)));
+    }
+
+    @Test
+    void afterRebuild_changingAStayThatBeganEarlier_leavesUncountedNightsAlone() {
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        Reservation started = repo.save(stay("Azul", 0, 4));
+        HotelCapacity capacity = new HotelCapacity(2, Map.of());
+        capacity.rebuild(repo.cursor(), IN.plusDays(2));
+
+        Reservation shortened = started.withStay(IN, IN.plusDays(3));
+        capacity.reserve(started, shortened);
+        capacity.release(started, shortened);
+        assertEquals(0, occupied(capacity, "Azul", 0));
+        assertEquals(1, occupied(capacity, "Azul", 2));
+        assertEquals(0, occupied(capacity, "Azul", 3));
+
+        Reservation moved = shortened.withHotelName("Roja");
+        capacity.reserve(shortened, moved);
+        capacity.release(shortened, moved);
+        assertEquals(0, occupied(capacity, "Azul", 1));
+        assertEquals(0, occupied(capacity, "Azul", 2));
+        assertEquals(0, occupied(capacity, "Roja", 1));
+        assertEquals(1, occupied(capacity, "Roja", 2));
+
+        capacity.release(moved, moved.withStatus(ReservationStatus.CANCELED));
+        assertEquals(0, occupied(capacity, "Roja", 1));
+        assertEquals(0, occupied(capacity, "Roja", 2));
+    }
+
+    @Test
+    void concurrentBookings_neverExceedTheCapacity() throws Exception {
+        int rooms = 7;
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Azul", rooms));
+        AtomicInteger booked = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        capacity.reserve(null, stay("Azul", 0, 3));
+                        booked.incrementAndGet();
+                    } catch (ConflictException full) {
+                        // expected once the rooms are gone
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(rooms, booked.get());
+        for (int day = 0; day < 3; day++) {
+            assertEquals(rooms, occupied(capacity, "Azul", day));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.bookingmx.reservations.cdc;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogTest {
+
+    private static Reservation reservation(String guest) {
+        return new Reservation(null, guest, "Azul", LocalDate.now().plusDays(1), LocalDate.now().plusDays(3));
+    }
+
+    /** Polls until {@code done} holds, failing after five seconds. */
+    private static void await(BooleanSupplier done) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!done.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void repositoryWrites_arePublishedInOrder() throws InterruptedException {
+        ChangeLog changes = new ChangeLog(64);
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        repo.save(reservation("Before"));
+        repo.setChangeLog(changes);
+
+        List<ChangeRecord> seen = new CopyOnWriteArrayList<>();
+        ChangeSubscription sub = changes.subscribe("test", changes.lastSequence() + 1, seen::add);
+        Reservation ana = repo.save(reservation("Ana"));
+        Reservation canceled = ana.withStatus(ReservationStatus.CANCELED);
+        repo.save(canceled);
+        repo.delete(ana.getId());
+        repo.delete(ana.getId());
+
+        await(() -> seen.size() == 3);
+        assertEquals(List.of(1L, 2L, 3L), seen.stream().map(ChangeRecord::sequence).toList());
+        assertEquals(List.of(ChangeRecord.Type.PUT, ChangeRecord.Type.PUT, ChangeRecord.Type.DELETE),
+                seen.stream().map(ChangeRecord::type).toList());
+        assertEquals(ReservationStatus.ACTIVE, seen.get(0).reservation().getStatus());
+        assertEquals(ReservationStatus.CANCELED, seen.get(1).reservation().getStatus());
+        assertNull(seen.get(2).reservation());
+        await(() -> sub.lag() == 0);
+        assertEquals(4, sub.position());
+        changes.close();
+        assertEquals(ChangeSubscription.State.CLOSED, sub.state());
+    }
+
+    @Test
+    void subscribeFromOffset_replaysRetainedRecords_andRejectsOverwrittenOnes() throws InterruptedException {
+        ChangeLog changes = new ChangeLog(8);
+        for (long id = 1; id <= 12; id++) {
+            changes.appendDelete(id);
+        }
+        assertEquals(5, changes.firstSequence());
+        assertThrows(IllegalArgumentException.class, () -> changes.subscribe("old", 4, r -> { }));
+        assertThrows(IllegalArgumentException.class, () -> changes.subscribe("future", 14, r -> { }));
+
+        List<Long> ids = new CopyOnWriteArrayList<>();
+        changes.subscribe("replay", 10, r -> ids.add(r.id()));
+        await(() -> ids.size() == 3);
+        changes.appendDelete(13);
+        await(() -> ids.size() == 4);
+        assertEquals(List.of(10L, 11L, 12L, 13L), ids);
+        changes.close();
+    }
+
+    @Test
+    void slowOrFailingConsumers_stopAndReportWhere() throws InterruptedException {
+        ChangeLog changes = new ChangeLog(4);
+        Object gate = new Object();
+        ChangeSubscription slow = changes.subscribe("slow", 1, r -> {
+            synchronized (gate) {
+                // Blocks on the first record until the log has wrapped past it.
+            }
+        });
+        ChangeSubscription failing = changes.subscribe("failing", 1, r -> {
+            if (r.id() == 2) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        synchronized (gate) {
+            changes.appendDelete(1);
+            changes.appendDelete(2);
+            // Fail before the ring wraps, or the failing consumer could be overrun instead.
+            await(() -> failing.state() == ChangeSubscription.State.FAILED);
+            for (long id = 3; id <= 20; id++) {
+                changes.appendDelete(id);
+            }
+        }
+        await(() -> slow.state() == ChangeSubscription.State.OVERRUN);
+
+        assertEquals("boom", failing.failure().getMessage());
+        assertEquals(2, failing.position());
+        assertEquals(19, failing.lag());
+        assertTrue(slow.position() < changes.firstSequence());
+        changes.close();
+    }
+}
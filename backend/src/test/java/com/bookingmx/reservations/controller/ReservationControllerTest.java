@@ -0,0 +1,53 @@
+package com.bookingmx.reservations.controller;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.exception.ApiExceptionHandler;
+import com.bookingmx.reservations.importer.ReservationImporter;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+import com.bookingmx.reservations.service.ReservationService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ReservationControllerTest {
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        HotelCapacity capacity = new HotelCapacity();
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        ReservationController controller = new ReservationController(new ReservationService(repo, capacity),
+                new ReservationImporter(repo, capacity, new HotelCommandQueues(), objectMapper), objectMapper);
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new ApiExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void nonNumericId_isABadRequest() throws Exception {
+        mvc.perform(get("/api/reservations/abc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.message").value("Invalid value for 'id'"));
+        mvc.perform(delete("/api/reservations/abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void unknownNumericId_isNotFound() throws Exception {
+        mvc.perform(get("/api/reservations/12345"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404));
+    }
+}
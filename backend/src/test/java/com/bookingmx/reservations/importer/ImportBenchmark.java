@@ -0,0 +1,93 @@
+package com.bookingmx.reservations.importer;
+
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.JdbcReservationRepository;
+import com.bookingmx.reservations.repo.ReservationRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Imports the same NDJSON and CSV input into the in-memory repository and into the JDBC
+ * repository on an embedded H2 file database, once row by row (one worker, one-row chunks,
+ * like a {@code POST} per booking) and once with the default chunking on every processor.
+ *
+ * <p>Not part of the unit test run. Run it with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.importer.ImportBenchmark \
+ *     -Dexec.args="200000"
+ * </pre>
+ * <p>Argument: rows per import (default 200,000).</p>
+ */
+public class ImportBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        LocalDate in = LocalDate.now().plusDays(1);
+        StringBuilder ndjson = new StringBuilder();
+        StringBuilder csv = new StringBuilder("guestName,hotelName,checkIn,checkOut\n");
+        for (int i = 0; i < rows; i++) {
+            String hotel = "Hotel " + (i % 500);
+            ndjson.append("{\"guestName\":\"Guest ").append(i).append("\",\"hotelName\":\"").append(hotel)
+                    .append("\",\"checkIn\":\"").append(in).append("\",\"checkOut\":\"").append(in.plusDays(2))
+                    .append("\"}\n");
+            csv.append("Guest ").append(i).append(',').append(hotel).append(',').append(in).append(',')
+                    .append(in.plusDays(2)).append('\n');
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        Path dir = Files.createTempDirectory("bookingmx-import");
+        try {
+            System.out.printf("%,d rows, %d processors (rows/s)%n", rows, cores);
+            System.out.printf("%-8s %-7s %14s %14s%n", "repo", "format", "row by row", "chunked");
+            int[] databases = {0};
+            Supplier<ReservationRepository> jdbc = () -> new JdbcReservationRepository("jdbc:h2:file:"
+                    + dir.resolve("reservations" + databases[0]++).toAbsolutePath());
+            for (ImportFormat format : ImportFormat.values()) {
+                String input = format == ImportFormat.CSV ? csv.toString() : ndjson.toString();
+                run("memory", format, input, InMemoryReservationRepository::new, cores);
+                run("jdbc", format, input, jdbc, cores);
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void run(String name, ImportFormat format, String input,
+                            Supplier<ReservationRepository> factory, int cores) throws IOException {
+        double single;
+        try (ReservationRepository repo = factory.get()) {
+            single = rate(new ReservationImporter(repo, MAPPER, 1, 1, 0), format, input);
+        }
+        double chunked;
+        try (ReservationRepository repo = factory.get()) {
+            chunked = rate(new ReservationImporter(repo, MAPPER, cores, ReservationImporter.DEFAULT_CHUNK_SIZE, 0),
+                    format, input);
+        }
+        System.out.printf("%-8s %-7s %,14.0f %,14.0f%n", name, format, single, chunked);
+    }
+
+    private static double rate(ReservationImporter importer, ImportFormat format, String input) throws IOException {
+        long start = System.nanoTime();
+        ImportResult result = importer.importFrom(new StringReader(input), format);
+        return result.getImported() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
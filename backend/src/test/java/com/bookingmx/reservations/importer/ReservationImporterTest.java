@@ -0,0 +1,176 @@
+package com.bookingmx.reservations.importer;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.exception.BadRequestException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationImporterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final LocalDate IN = LocalDate.now().plusDays(1);
+    private static final LocalDate OUT = IN.plusDays(2);
+
+    /** Small chunks on several workers, so rows cross chunk boundaries. */
+    private static ReservationImporter importer(InMemoryReservationRepository repo) {
+        return new ReservationImporter(repo, MAPPER, 3, 4, 5);
+    }
+
+    @Test
+    void ndjson_importsValidRows_andReportsTheRestByLine() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            input.append("{\"guestName\":\"Guest ").append(i).append("\",\"hotelName\":\"Azul\",\"checkIn\":\"")
+                    .append(IN).append("\",\"checkOut\":\"").append(OUT).append("\"}\n");
+        }
+        input.append('\n');
+        input.append("{\"guestName\":\"Late\",\"hotelName\":\"Azul\",\"checkIn\":\"").append(OUT)
+                .append("\",\"checkOut\":\"").append(IN).append("\"}\n");
+        input.append("{not json\n");
+        input.append("{\"guestName\":\" \",\"hotelName\":\"Azul\",\"checkIn\":\"").append(IN)
+                .append("\",\"checkOut\":\"").append(OUT).append("\"}\n");
+
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        ImportResult result = importer(repo).importFrom(new StringReader(input.toString()), ImportFormat.NDJSON);
+
+        assertEquals(23, result.getRows());
+        assertEquals(20, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(22L, 23L, 24L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+        assertEquals("Check-out must be after check-in", result.getErrors().get(0).getMessage());
+        assertTrue(result.getErrors().get(1).getMessage().startsWith("Malformed JSON"));
+        assertEquals(20, repo.count());
+        // Saved in input order, so IDs follow the file.
+        List<String> guests = repo.findAll().stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .map(Reservation::getGuestName).toList();
+        assertEquals("Guest 1", guests.get(0));
+        assertEquals("Guest 20", guests.get(19));
+    }
+
+    @Test
+    void csv_readsHeaderInAnyOrder_quotedFields_andCapsReportedErrors() throws IOException {
+        StringBuilder input = new StringBuilder("check_in,hotel_name,guest_name,check_out\r\n");
+        input.append(IN).append(",\"Hotel, Azul\",\"Ana \"\"La\"\" Ruiz\",").append(OUT).append("\r\n");
+        for (int i = 0; i < 7; i++) {
+            input.append("2020-01-0").append(i + 1).append(",Azul,Past ").append(i).append(",2020-01-09\n");
+        }
+        input.append("yesterday,Azul,Bob,").append(OUT).append('\n');
+        input.append(IN).append(",Azul,Cy\n");
+
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        ImportResult result = importer(repo).importFrom(new StringReader(input.toString()), ImportFormat.CSV);
+
+        assertEquals(10, result.getRows());
+        assertEquals(1, result.getImported());
+        assertEquals(9, result.getFailed());
+        assertEquals(5, result.getErrors().size());
+        assertEquals(3, result.getErrors().get(0).getLine());
+        Reservation ana = repo.findAll().get(0);
+        assertEquals("Ana \"La\" Ruiz", ana.getGuestName());
+        assertEquals("Hotel, Azul", ana.getHotelName());
+        assertEquals(IN, ana.getCheckIn());
+    }
+
+    @Test
+    void csv_withoutHeader_usesTheDefaultColumnOrder_andRejectsIncompleteHeaders() throws IOException {
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        String rows = "\nAna,Azul," + IN + "," + OUT + "\nBob,Azul,soon," + OUT + "\n";
+        ImportResult result = importer(repo).importFrom(new StringReader(rows), ImportFormat.CSV);
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getErrors().get(0).getLine());
+        assertEquals("checkIn is not an ISO date: soon", result.getErrors().get(0).getMessage());
+
+        assertThrows(BadRequestException.class, () -> importer(repo)
+                .importFrom(new StringReader("guestName,hotelName,checkIn\n"), ImportFormat.CSV));
+    }
+
+    @Test
+    void rowsBeyondAHotelsCapacity_areRejectedInLineOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            input.append("Guest ").append(i).append(',').append(i % 2 == 0 ? "Roja" : "Azul").append(',')
+                    .append(IN).append(',').append(OUT).append('\n');
+        }
+        input.append("Late,Azul,").append(OUT).append(',').append(IN).append('\n');
+        input.append("Last,Azul,").append(IN).append(',').append(OUT).append('\n');
+
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Azul", 2));
+        ImportResult result = new ReservationImporter(repo, capacity, MAPPER, 3, 4, 10)
+                .importFrom(new StringReader(input.toString()), ImportFormat.CSV);
+
+        assertEquals(5, result.getImported());
+        assertEquals(List.of(5L, 7L, 8L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+        assertTrue(result.getErrors().get(0).getMessage().contains("fully booked"));
+        assertEquals(2, repo.findByHotel("Azul").size());
+    }
+
+    @Test
+    void withCommandQueues_eachHotelsRowsAreSavedOnItsQueue() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            input.append("Guest ").append(i).append(',').append(i % 2 == 0 ? "Roja" : "Azul").append(',')
+                    .append(IN).append(',').append(OUT).append('\n');
+        }
+
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Azul", 2));
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 100)) {
+            ImportResult result = new ReservationImporter(repo, capacity, queues, MAPPER, 3, 4, 10)
+                    .importFrom(new StringReader(input.toString()), ImportFormat.CSV);
+
+            assertEquals(5, result.getImported());
+            assertEquals(List.of(5L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+            assertEquals(List.of("Guest 1", "Guest 3"),
+                    repo.findByHotel("Azul").stream().map(Reservation::getGuestName).sorted().toList());
+            Map<String, Long> processed = new HashMap<>();
+            queues.queues().forEach(q -> processed.put(q.hotelName(), q.processed()));
+            // one group per hotel and chunk of four lines
+            assertEquals(Map.of("Azul", 2L, "Roja", 2L), processed);
+        }
+    }
+
+    @Test
+    void withCommandQueues_aGroupTurnedAwayIsReported_andTheImportGoesOn() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            input.append("Guest ").append(i).append(',').append(i % 2 == 0 ? "Roja" : "Azul").append(',')
+                    .append(IN).append(',').append(OUT).append('\n');
+        }
+
+        InMemoryReservationRepository repo = new InMemoryReservationRepository();
+        // room for one queue: Azul's, so every Roja group is turned away
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 100, 1,
+                Duration.ofMinutes(1))) {
+            ImportResult result = new ReservationImporter(repo, new HotelCapacity(), queues, MAPPER, 3, 4, 10)
+                    .importFrom(new StringReader(input.toString()), ImportFormat.CSV);
+
+            assertEquals(6, result.getRows());
+            assertEquals(3, result.getImported());
+            assertEquals(3, result.getFailed());
+            assertEquals(List.of(2L, 4L, 6L), result.getErrors().stream().map(ImportResult.RowError::getLine).toList());
+            assertTrue(result.getErrors().stream()
+                    .allMatch(e -> e.getMessage().equals("Too many hotels have changes in progress")));
+            assertEquals(3, repo.findByHotel("Azul").size());
+            assertTrue(repo.findByHotel("Roja").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bookingmx.reservations.maintenance;
+
+import com.bookingmx.reservations.capacity.HotelCapacity;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.ReservationArchive;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.service.HotelCommandQueues;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionEngineTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate TODAY = LocalDate.of(2030, 6, 1);
+
+    private static Reservation checkedOut(ReservationRepository repo, String guest, int daysAgo, boolean canceled) {
+        Reservation r = new Reservation(null, guest, "Hotel Azul",
+                TODAY.minusDays(daysAgo + 2L), TODAY.minusDays(daysAgo));
+        if (canceled) {
+            r = r.withStatus(ReservationStatus.CANCELED);
+        }
+        return repo.save(r);
+    }
+
+    @Test
+    void runOnce_removesOnlyReservationsPastTheirPeriod() {
+        ReservationRepository repo = new InMemoryReservationRepository();
+        checkedOut(repo, "old canceled", 31, true);
+        checkedOut(repo, "recent canceled", 29, true);
+        checkedOut(repo, "old stay", 400, false);
+        checkedOut(repo, "recent stay", 100, false);
+        checkedOut(repo, "future", -10, false);
+        RetentionEngine engine = new RetentionEngine(repo, null, 30, 365, 10, 100);
+
+        RetentionEngine.Result result = engine.runOnce(TODAY);
+
+        assertEquals(1, result.canceledRemoved());
+        assertEquals(1, result.completedRemoved());
+        assertEquals(5, result.scanned());
+        assertTrue(result.complete());
+        assertTrue(result.reclaimedBytes() > 0);
+        assertEquals(List.of("future", "recent canceled", "recent stay"), guests(repo));
+        assertSame(result, engine.lastRun());
+    }
+
+    @Test
+    void runOnce_isBoundedByMaxPerRun_andCatchesUpOnLaterRuns() {
+        ReservationRepository repo = new InMemoryReservationRepository();
+        for (int i = 0; i < 25; i++) {
+            checkedOut(repo, "guest " + i, 40, true);
+        }
+        RetentionEngine engine = new RetentionEngine(repo, null, 30, 365, 4, 10);
+
+        RetentionEngine.Result first = engine.runOnce(TODAY);
+        assertEquals(10, first.removed());
+        assertFalse(first.complete());
+        assertEquals(15, repo.count());
+
+        engine.runOnce(TODAY);
+        RetentionEngine.Result last = engine.runOnce(TODAY);
+        assertEquals(5, last.removed());
+        assertTrue(last.complete());
+        assertEquals(0, repo.count());
+        assertEquals(25, engine.totalRemoved());
+    }
+
+    @Test
+    void archiveMode_keepsRemovedReservationsOnDisk() {
+        ReservationRepository repo = new InMemoryReservationRepository();
+        Reservation old = checkedOut(repo, "old canceled", 60, true);
+        checkedOut(repo, "recent stay", 1, false);
+        ReservationArchive archive = new ReservationArchive(dir.resolve("reservations.archive"));
+        RetentionEngine engine = new RetentionEngine(repo, archive, 30, 365, 10, 100);
+
+        RetentionEngine.Result result = engine.runOnce(TODAY);
+
+        assertEquals(1, result.removed());
+        assertTrue(result.archivedBytes() > 0);
+        List<Reservation> archived = new ArrayList<>();
+        assertEquals(1, archive.read(archived::add));
+        assertEquals(old.getId(), archived.get(0).getId());
+        assertEquals(ReservationStatus.CANCELED, archived.get(0).getStatus());
+        assertTrue(repo.findById(old.getId()).isEmpty());
+    }
+
+    private static List<String> guests(ReservationRepository repo) {
+        return repo.findAll().stream().map(Reservation::getGuestName).sorted().toList();
+    }
+
+    @Test
+    void runOnce_deletesOnTheHotelsQueue_andGivesBackTheNightsStillCounted() {
+        ReservationRepository repo = new InMemoryReservationRepository();
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Hotel Azul", 1));
+        Reservation stay = checkedOut(repo, "old stay", 1, false);
+        capacity.reserve(null, stay);
+        assertEquals(1, capacity.occupied("Hotel Azul", stay.getCheckInDay()));
+
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 100)) {
+            RetentionEngine engine = new RetentionEngine(repo, capacity, queues, null, 0, 0, 10, 100);
+
+            RetentionEngine.Result result = engine.runOnce(TODAY);
+
+            assertEquals(1, result.completedRemoved());
+            assertTrue(repo.findById(stay.getId()).isEmpty());
+            assertEquals(0, capacity.occupied("Hotel Azul", stay.getCheckInDay()));
+            assertEquals(0, capacity.occupied("Hotel Azul", stay.getCheckInDay() + 1));
+            assertEquals(1, queues.queues().stream()
+                    .filter(q -> q.hotelName().equals("Hotel Azul"))
+                    .mapToLong(HotelCommandQueues.Queue::processed).sum());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bookingmx.reservations.model;
+
+import com.bookingmx.reservations.repo.NameDictionary;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the heap retained by a million bookings with names held as given against the same
+ * bookings after the repository's {@link NameDictionary} has swapped in canonical names, with
+ * and without guest names.
+ *
+ * <p>Every name is built as a fresh {@code String}, the way request deserialization produces
+ * them, so without the dictionary a booking keeps its own copy of its hotel name. Retained heap is read
+ * from the {@link MemoryMXBean} after repeated full collections; give the JVM enough heap
+ * ({@code -Xmx2g}) and use a collector that returns memory eagerly for stable numbers.</p>
+ *
+ * <p>Not part of the unit test run. Run it from the IDE or with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.model.NameEncodingFootprint \
+ *     -Dexec.args="1000000 2000 200000"
+ * </pre>
+ * <p>Arguments: bookings (default 1,000,000), distinct hotels (default 2,000) and distinct
+ * guests (default 200,000).</p>
+ */
+public class NameEncodingFootprint {
+
+    private static final LocalDate[] DATES = new LocalDate[400];
+
+    static {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < DATES.length; i++) {
+            DATES[i] = start.plusDays(i);
+        }
+    }
+
+    public static void main(String[] args) {
+        int bookings = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int hotels = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int guests = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        long plain = measure(bookings, i -> booking(i, hotels, guests));
+        NameDictionary hotelNames = new NameDictionary(false);
+        long hotelShared = measure(bookings, i -> hotelNames.intern(booking(i, hotels, guests)));
+        NameDictionary allNames = new NameDictionary(true);
+        long allShared = measure(bookings, i -> allNames.intern(booking(i, hotels, guests)));
+
+        System.out.printf("%,d bookings, %,d hotels, %,d guests%n", bookings, hotels, guests);
+        System.out.printf("%-26s %10s %12s %10s%n", "layout", "heap MB", "bytes/row", "saving");
+        print("names as given", plain, plain, bookings);
+        print("shared hotel names", hotelShared, plain, bookings);
+        print("shared hotel and guest", allShared, plain, bookings);
+    }
+
+    private static Reservation booking(int i, int hotels, int guests) {
+        return new Reservation((long) i, guest(i, guests), hotel(i, hotels), DATES[i % 300], DATES[i % 300 + 1 + i % 7]);
+    }
+
+    /** Fresh copy, as a JSON parser would produce for every request. */
+    private static String hotel(int i, int hotels) {
+        return new StringBuilder("Hotel ").append(i % hotels).append(" Centro").toString();
+    }
+
+    private static String guest(int i, int guests) {
+        return new StringBuilder("Guest ").append(i % guests).append(" Example").toString();
+    }
+
+    /** @return heap bytes retained by {@code bookings} objects made by {@code factory} */
+    static long measure(int bookings, IntFunction<Object> factory) {
+        long before = usedAfterGc();
+        Object[] rows = new Object[bookings];
+        for (int i = 0; i < bookings; i++) {
+            rows[i] = factory.apply(i);
+        }
+        long after = usedAfterGc();
+        // Keep the rows reachable until the second reading.
+        if (rows[bookings - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    static void print(String layout, long bytes, long plain, int bookings) {
+        System.out.printf("%-26s %10.1f %12.1f %9.1f%%%n", layout, bytes / (1024.0 * 1024.0),
+                (double) bytes / bookings, 100.0 * (plain - bytes) / plain);
+    }
+}
@@ -0,0 +1,60 @@
+package com.bookingmx.reservations.model;
+
+import java.time.LocalDate;
+
+/**
+ * Measures the heap retained by a million reservations in the field layout {@link Reservation}
+ * had before its primitive fields (a boxed {@code Long} ID, two {@link LocalDate}s and an enum
+ * reference) against the current one ({@code long}, two {@code int} epoch days and a
+ * {@code byte}).
+ *
+ * <p>Every ID and date is a fresh object, as the codec, the JDBC driver and request
+ * deserialization produce them; names are shared so that only the layout differs. Retained
+ * heap is read the same way as in {@link NameEncodingFootprint}.</p>
+ *
+ * <p>Not part of the unit test run. Run it from the IDE or with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.model.ReservationLayoutFootprint \
+ *     -Dexec.args="1000000"
+ * </pre>
+ * <p>Argument: reservations (default 1,000,000).</p>
+ */
+public class ReservationLayoutFootprint {
+
+    /** The layout before primitive fields. */
+    private static final class BoxedReservation {
+        final Long id;
+        final String guestName;
+        final String hotelName;
+        final LocalDate checkIn;
+        final LocalDate checkOut;
+        final ReservationStatus status = ReservationStatus.ACTIVE;
+
+        BoxedReservation(Long id, String guestName, String hotelName, LocalDate checkIn, LocalDate checkOut) {
+            this.id = id;
+            this.guestName = guestName;
+            this.hotelName = hotelName;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+    }
+
+    private static final int FIRST_DAY = Math.toIntExact(LocalDate.of(2025, 1, 1).toEpochDay());
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String guest = "Guest Example";
+        String hotel = "Hotel Centro";
+
+        long boxed = NameEncodingFootprint.measure(rows, i -> new BoxedReservation(1_000L + i, guest, hotel,
+                LocalDate.ofEpochDay(FIRST_DAY + i % 300), LocalDate.ofEpochDay(FIRST_DAY + i % 300 + 1 + i % 7)));
+        long compact = NameEncodingFootprint.measure(rows, i -> new Reservation(1_000L + i, guest, hotel,
+                LocalDate.ofEpochDay(FIRST_DAY + i % 300), LocalDate.ofEpochDay(FIRST_DAY + i % 300 + 1 + i % 7)));
+
+        System.out.printf("%,d reservations%n", rows);
+        System.out.printf("%-26s %10s %12s %10s%n", "layout", "heap MB", "bytes/row", "saving");
+        NameEncodingFootprint.print("boxed id, dates, status", boxed, boxed, rows);
+        NameEncodingFootprint.print("primitive fields", compact, boxed, rows);
+    }
+}
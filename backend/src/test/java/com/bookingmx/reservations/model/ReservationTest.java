@@ -0,0 +1,66 @@
+package com.bookingmx.reservations.model;
+
+import com.bookingmx.reservations.repo.ReservationCodec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationTest {
+
+    @Test
+    void gettersAreViewsOverThePrimitiveFields() {
+        LocalDate in = LocalDate.of(2026, 3, 1);
+        Reservation r = new Reservation(null, "Ana", "Azul", in, in.plusDays(2));
+
+        assertNull(r.getId());
+        assertFalse(r.hasId());
+        assertEquals(Reservation.NO_ID, r.getIdAsLong());
+        assertEquals(in, r.getCheckIn());
+        assertEquals(in.toEpochDay(), r.getCheckInDay());
+        assertEquals(in.toEpochDay() + 2, r.getCheckOutDay());
+        assertTrue(r.isActive());
+
+        Reservation changed = r.withId(42L)
+                .withStay(in, in.plusDays(3))
+                .withStatus(ReservationStatus.CANCELED)
+                .withVersion(2);
+        assertEquals(42L, changed.getId());
+        assertEquals(42L, changed.getIdAsLong());
+        assertEquals(in.plusDays(3), changed.getCheckOut());
+        assertEquals(ReservationStatus.CANCELED, changed.getStatus());
+        assertFalse(changed.isActive());
+        assertEquals(2, changed.getVersion());
+        assertEquals("Ana", changed.getGuestName());
+        assertEquals("Azul", changed.getHotelName());
+
+        assertFalse(r.hasId());
+        assertEquals(in.plusDays(2), r.getCheckOut());
+        assertTrue(r.isActive());
+        assertEquals(Reservation.FIRST_VERSION, r.getVersion());
+
+        Reservation same = new Reservation(42L, "Bob", "Roja", Reservation.NO_DATE, Reservation.NO_DATE,
+                ReservationStatus.ACTIVE, 5);
+        assertEquals(changed, same);
+        assertEquals(changed.hashCode(), same.hashCode());
+    }
+
+    @Test
+    void missingDates_survivePrimitiveStorageAndTheCodec() {
+        Reservation r = new Reservation(7L, "Ana", "Azul", null, null);
+        assertNull(r.getCheckIn());
+        assertEquals(Reservation.NO_DATE, r.getCheckOutDay());
+
+        Reservation decoded = ReservationCodec.decode(ByteBuffer.wrap(ReservationCodec.encode(r)));
+        assertEquals(7L, decoded.getId());
+        assertNull(decoded.getCheckIn());
+        assertNull(decoded.getCheckOut());
+
+        Reservation unsaved = r.withId(Reservation.NO_ID);
+        assertFalse(unsaved.hasId());
+        assertNotEquals(decoded, unsaved);
+    }
+}
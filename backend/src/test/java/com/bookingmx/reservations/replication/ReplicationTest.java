@@ -0,0 +1,145 @@
+package com.bookingmx.reservations.replication;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.exception.ReadOnlyReplicaException;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    private static final Duration HEARTBEAT = Duration.ofMillis(50);
+
+    private static Reservation reservation(String guest, String hotel) {
+        LocalDate in = LocalDate.now().plusDays(1);
+        return new Reservation(null, guest, hotel, in, in.plusDays(2));
+    }
+
+    private static ReplicationFollower follower(InMemoryReservationRepository repo, ReplicationServer primary) {
+        ReplicationFollower follower = new ReplicationFollower(repo, "127.0.0.1", primary.port(),
+                Duration.ofSeconds(5), Duration.ofMillis(20));
+        follower.start();
+        return follower;
+    }
+
+    @Test
+    void follower_copiesThePrimary_thenAppliesItsChangesInOrder() {
+        ChangeLog changes = new ChangeLog(1024);
+        InMemoryReservationRepository primary = new InMemoryReservationRepository();
+        primary.setChangeLog(changes);
+        Reservation ana = primary.save(reservation("Ana", "Azul"));
+        primary.save(reservation("Bob", "Roja"));
+
+        InMemoryReservationRepository replica = new InMemoryReservationRepository();
+        try (ReplicationServer server = new ReplicationServer(primary, changes, "127.0.0.1", 0, HEARTBEAT);
+             ReplicationFollower follower = startAfter(server, replica)) {
+            await(() -> follower.copies() == 1 && follower.lag() == 0);
+            assertEquals(contents(primary), contents(replica));
+
+            Reservation canceled = ana.withStatus(ReservationStatus.CANCELED);
+            primary.save(canceled);
+            Reservation cy = primary.save(reservation("Cy", "Azul"));
+            primary.delete(cy.getId());
+            for (int i = 0; i < 200; i++) {
+                primary.save(reservation("Guest " + i, "Hotel " + (i % 5)));
+            }
+
+            await(() -> follower.appliedSequence() == changes.lastSequence());
+            assertEquals(contents(primary), contents(replica));
+            assertEquals(ReservationStatus.CANCELED, replica.findById(ana.getId()).orElseThrow().getStatus());
+            assertTrue(replica.findById(cy.getId()).isEmpty());
+            await(() -> follower.primarySequence() == changes.lastSequence());
+            assertEquals(0, follower.lag());
+            assertEquals(0, follower.lagMillis());
+            assertEquals(1, follower.copies());
+            assertTrue(follower.isConnected());
+            assertEquals(1, server.followers().size());
+        }
+    }
+
+    @Test
+    void restartedPrimary_sendsAFreshCopy_thatDropsWhatItNoLongerHas() {
+        InMemoryReservationRepository primary = new InMemoryReservationRepository();
+        ChangeLog changes = new ChangeLog(1024);
+        primary.setChangeLog(changes);
+        Reservation kept = primary.save(reservation("Ana", "Azul"));
+        Reservation dropped = primary.save(reservation("Bob", "Azul"));
+
+        InMemoryReservationRepository replica = new InMemoryReservationRepository();
+        ReplicationServer first = new ReplicationServer(primary, changes, "127.0.0.1", 0, HEARTBEAT);
+        first.start();
+        int port = first.port();
+        try (ReplicationFollower follower = follower(replica, first)) {
+            await(() -> follower.copies() == 1 && replica.count() == 2);
+
+            // The primary goes down; while it is away a change is lost with its log.
+            first.close();
+            await(() -> !follower.isConnected());
+            ChangeLog restarted = new ChangeLog(1024);
+            primary.setChangeLog(restarted);
+            primary.delete(dropped.getId());
+
+            try (ReplicationServer second = new ReplicationServer(primary, restarted, "127.0.0.1", port, HEARTBEAT)) {
+                second.start();
+                await(() -> follower.copies() == 2 && follower.isConnected());
+                assertEquals(List.of(kept.getId()), replica.findAll().stream().map(Reservation::getId).toList());
+                assertEquals(1, second.copies());
+
+                primary.save(reservation("Cy", "Roja"));
+                await(() -> replica.count() == 2);
+                assertEquals(contents(primary), contents(replica));
+            }
+        }
+    }
+
+    @Test
+    void readOnlyRepository_servesReads_andRejectsWrites() {
+        InMemoryReservationRepository replica = new InMemoryReservationRepository();
+        Reservation ana = replica.save(reservation("Ana", "Azul"));
+        ReadOnlyReservationRepository readOnly = new ReadOnlyReservationRepository(replica);
+
+        assertEquals("Ana", readOnly.findById(ana.getId()).orElseThrow().getGuestName());
+        assertEquals(1, readOnly.findByHotel("Azul").size());
+        assertThrows(ReadOnlyReplicaException.class, () -> readOnly.save(reservation("Bob", "Azul")));
+        assertThrows(ReadOnlyReplicaException.class, () -> readOnly.delete(ana.getId()));
+        assertEquals(1, replica.count());
+    }
+
+    private static ReplicationFollower startAfter(ReplicationServer server, InMemoryReservationRepository replica) {
+        server.start();
+        return follower(replica, server);
+    }
+
+    /** The repository's reservations by ID, as comparable strings of their fields. */
+    private static List<String> contents(InMemoryReservationRepository repo) {
+        return repo.findAll().stream()
+                .sorted(Comparator.comparing(Reservation::getId))
+                .map(r -> r.getId() + " " + r.getGuestName() + " " + r.getHotelName() + " " + r.getStatus()
+                        + " " + r.getCheckIn() + " " + r.getCheckOut())
+                .toList();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for the follower");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
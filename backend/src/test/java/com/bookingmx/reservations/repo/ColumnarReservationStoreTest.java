@@ -0,0 +1,128 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarReservationStoreTest {
+
+    private static Reservation reservation(long id, String guest, String hotel) {
+        return new Reservation(id, guest, hotel, LocalDate.now().plusDays(1), LocalDate.now().plusDays(4));
+    }
+
+    @Test
+    void put_thenGet_materializesAllFields() {
+        ColumnarReservationStore store = new ColumnarReservationStore();
+        Reservation r = reservation(42L, "Scarlett", "Hotel Azul");
+        r = r.withStatus(ReservationStatus.CANCELED);
+
+        store.put(r);
+        Reservation read = store.get(42L);
+
+        assertNotSame(r, read); // rows are materialized on demand
+        assertEquals(42L, read.getId());
+        assertEquals("Scarlett", read.getGuestName());
+        assertEquals("Hotel Azul", read.getHotelName());
+        assertEquals(r.getCheckIn(), read.getCheckIn());
+        assertEquals(r.getCheckOut(), read.getCheckOut());
+        assertEquals(ReservationStatus.CANCELED, read.getStatus());
+    }
+
+    @Test
+    void put_existingId_overwritesRow() {
+        ColumnarReservationStore store = new ColumnarReservationStore();
+        store.put(reservation(1L, "A", "H1"));
+        store.put(reservation(1L, "B", "H2"));
+
+        assertEquals(1, store.size());
+        assertEquals("B", store.get(1L).getGuestName());
+        assertEquals("H2", store.get(1L).getHotelName());
+    }
+
+    @Test
+    void nullDatesAndNames_roundTrip() {
+        ColumnarReservationStore store = new ColumnarReservationStore();
+        store.put(new Reservation(5L, null, null, null, null));
+
+        Reservation read = store.get(5L);
+        assertNull(read.getGuestName());
+        assertNull(read.getHotelName());
+        assertNull(read.getCheckIn());
+        assertNull(read.getCheckOut());
+    }
+
+    @Test
+    void remove_freesRowForReuse_andHidesItFromIteration() {
+        ColumnarReservationStore store = new ColumnarReservationStore(16);
+        for (long id = 1; id <= 10; id++) {
+            store.put(reservation(id, "G" + id, "H"));
+        }
+
+        assertTrue(store.remove(3L));
+        assertFalse(store.remove(3L));
+        assertNull(store.get(3L));
+        store.put(reservation(11L, "G11", "H"));
+
+        List<Long> ids = new ArrayList<>();
+        store.forEach(r -> ids.add(r.getId()));
+        assertEquals(10, ids.size());
+        assertFalse(ids.contains(3L));
+        assertTrue(ids.contains(11L));
+    }
+
+    @Test
+    void grows_beyondInitialCapacity() {
+        ColumnarReservationStore store = new ColumnarReservationStore(16);
+        for (long id = 1; id <= 5_000; id++) {
+            store.put(reservation(id, "G" + id, "Hotel " + (id % 7)));
+        }
+        for (long id = 1; id <= 5_000; id += 3) {
+            store.remove(id);
+        }
+
+        assertEquals(5_000 - 1_667, store.size());
+        assertNull(store.get(1L));
+        assertEquals("G2", store.get(2L).getGuestName());
+        assertEquals("Hotel 2", store.get(5_000L).getHotelName());
+    }
+
+    @Test
+    void repository_onColumnarStore_assignsIdsAndFindsRows() {
+        InMemoryReservationRepository repo = new InMemoryReservationRepository(new ColumnarReservationStore());
+        Reservation saved = repo.save(new Reservation(null, "Scarlett", "Hotel Azul",
+                LocalDate.now().plusDays(1), LocalDate.now().plusDays(2)));
+
+        assertNotNull(saved.getId());
+        assertEquals("Scarlett", repo.findById(saved.getId()).orElseThrow().getGuestName());
+        assertEquals(1, repo.findAll().size());
+    }
+
+    @Test
+    void spliterator_skipsFreedRows_andSplitsWithoutOverlap() {
+        ColumnarReservationStore store = new ColumnarReservationStore(16);
+        for (long id = 1; id <= 3_000; id++) {
+            store.put(reservation(id, "G" + id, "Hotel"));
+        }
+        store.remove(7L);
+
+        Spliterator<Reservation> rest = store.spliterator();
+        Spliterator<Reservation> prefix = rest.trySplit();
+        assertNotNull(prefix);
+        Set<Long> ids = new HashSet<>();
+        prefix.forEachRemaining(r -> assertTrue(ids.add(r.getId())));
+        rest.forEachRemaining(r -> assertTrue(ids.add(r.getId())));
+
+        assertEquals(2_999, ids.size());
+        assertFalse(ids.contains(7L));
+    }
+}
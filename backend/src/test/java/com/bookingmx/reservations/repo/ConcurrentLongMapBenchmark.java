@@ -0,0 +1,111 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+
+/**
+ * Compares {@link ConcurrentLongMap} with the {@code ConcurrentHashMap<Long, Reservation>}
+ * the repository used before, on retained heap and multi-threaded lookup throughput.
+ *
+ * <p>Not part of the unit test run (the class name does not end in {@code Test}). Run it
+ * from the IDE or with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.ConcurrentLongMapBenchmark \
+ *     -Dexec.args="2000000 4"
+ * </pre>
+ * <p>Arguments: number of reservations (default 1,000,000) and reader threads
+ * (default: available processors). Use a fixed heap, e.g. {@code -Xms4g -Xmx4g}, so the
+ * heap figures are comparable between runs.</p>
+ */
+public class ConcurrentLongMapBenchmark {
+
+    private static final int LOOKUP_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Reservation[] rows = new Reservation[entries];
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < entries; i++) {
+            rows[i] = new Reservation((long) i + 1, "Guest " + i, "Hotel " + (i % 500),
+                    today.plusDays(1), today.plusDays(3));
+        }
+
+        System.out.printf("entries=%,d threads=%d%n", entries, threads);
+
+        long baseline = usedHeap();
+        Map<Long, Reservation> chm = new ConcurrentHashMap<>();
+        for (Reservation r : rows) {
+            chm.put(r.getId(), r);
+        }
+        long chmBytes = usedHeap() - baseline;
+        report("ConcurrentHashMap<Long,Reservation>", chmBytes, entries, lookups(threads, entries, chm::get));
+        chm = null;
+
+        baseline = usedHeap();
+        ConcurrentLongMap<Reservation> clm = new ConcurrentLongMap<>();
+        for (Reservation r : rows) {
+            clm.put(r.getId(), r);
+        }
+        long clmBytes = usedHeap() - baseline;
+        report("ConcurrentLongMap<Reservation>", clmBytes, entries, lookups(threads, entries, clm::get));
+
+        if (clm.size() != entries) {
+            throw new IllegalStateException("map lost entries");
+        }
+    }
+
+    /** Runs {@link #LOOKUP_ROUNDS} timed rounds of random hits on {@code threads} threads; returns ops/s of the best round. */
+    private static double lookups(int threads, int entries, LongFunction<Reservation> lookup) throws InterruptedException {
+        int perThread = 2_000_000;
+        double best = 0;
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            Thread[] workers = new Thread[threads];
+            long[] sink = new long[threads];
+            for (int t = 0; t < threads; t++) {
+                int slot = t;
+                workers[t] = new Thread(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    long found = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        if (lookup.apply(1 + rnd.nextInt(entries)) != null) {
+                            found++;
+                        }
+                    }
+                    sink[slot] = found;
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread w : workers) {
+                w.start();
+            }
+            for (Thread w : workers) {
+                w.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            best = Math.max(best, (double) perThread * threads / (elapsed / 1e9));
+        }
+        return best;
+    }
+
+    private static void report(String name, long bytes, int entries, double opsPerSec) {
+        System.out.printf("%-38s heap=%,d KB (%.1f B/entry)  lookups=%,.0f ops/s%n",
+                name, bytes / 1024, (double) bytes / Math.max(1, entries), opsPerSec);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
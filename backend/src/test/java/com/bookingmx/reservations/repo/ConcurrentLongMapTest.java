@@ -0,0 +1,124 @@
+package com.bookingmx.reservations.repo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongMapTest {
+
+    @Test
+    void putAndGet_returnsStoredValue() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+
+        assertNull(map.put(7L, "seven"));
+        assertEquals("seven", map.get(7L));
+        assertEquals("seven", map.put(7L, "SEVEN")); // replace returns previous
+        assertEquals("SEVEN", map.get(7L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void remove_thenReinsert_sameKeyIsVisibleAgain() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(1L, "a");
+
+        assertEquals("a", map.remove(1L));
+        assertNull(map.get(1L));
+        assertNull(map.remove(1L));
+
+        map.put(1L, "b"); // lands behind the tombstone
+        assertEquals("b", map.get(1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void growsPastInitialCapacity_withoutLosingEntries() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long i = 0; i < 50_000; i++) {
+            map.put(i, i * 10);
+        }
+        for (long i = 0; i < 50_000; i += 2) {
+            map.remove(i);
+        }
+
+        assertEquals(25_000, map.size());
+        for (long i = 0; i < 50_000; i++) {
+            assertEquals(i % 2 == 0 ? null : i * 10, map.get(i));
+        }
+    }
+
+    @Test
+    void negativeAndZeroKeys_areSupported() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(0L, "zero");
+        map.put(-1L, "minus");
+        map.put(Long.MIN_VALUE, "min");
+
+        assertEquals("zero", map.get(0L));
+        assertEquals("minus", map.get(-1L));
+        assertEquals("min", map.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    void forEachValue_visitsEveryLiveEntry() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+        map.remove(50L);
+
+        Set<Long> seen = new HashSet<>();
+        map.forEachValue(seen::add);
+
+        assertEquals(99, seen.size());
+        assertFalse(seen.contains(50L));
+    }
+
+    @Test
+    void concurrentWriters_allEntriesEndUpStored() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        int threads = 4;
+        int perThread = 20_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * perThread;
+            workers.add(new Thread(() -> {
+                for (long i = base; i < base + perThread; i++) {
+                    map.put(i, i);
+                    assertEquals(i, map.get(i));
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        assertEquals(threads * perThread, map.size());
+    }
+
+    @Test
+    void valueSpliterator_visitsEveryLiveValueOnce_acrossSplits() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for (long k = 1; k <= 10_000; k++) {
+            map.put(k, k);
+        }
+        map.remove(42L);
+
+        Spliterator<Long> rest = map.valueSpliterator();
+        Spliterator<Long> prefix = rest.trySplit();
+        assertNotNull(prefix);
+        Set<Long> seen = new HashSet<>();
+        prefix.forEachRemaining(v -> assertTrue(seen.add(v)));
+        rest.forEachRemaining(v -> assertTrue(seen.add(v)));
+
+        assertEquals(9_999, seen.size());
+        assertFalse(seen.contains(42L));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures how ID allocation and repository creates scale from one thread to N.
+ *
+ * <p>For each thread count it reports three figures: a single shared {@link AtomicLong} (what
+ * the repository used before), the block {@link IdAllocator}, and end-to-end
+ * {@link InMemoryReservationRepository#save(Reservation)} of new reservations on the heap store.</p>
+ *
+ * <p>Not part of the unit test run. Run it with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.CreateScalingBenchmark \
+ *     -Dexec.args="200000 8"
+ * </pre>
+ * <p>Arguments: creates per thread (default 200,000) and the largest thread count
+ * (default: available processors). Thread counts double from 1 up to that maximum.</p>
+ */
+public class CreateScalingBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("creates/thread=%,d max threads=%d%n", perThread, maxThreads);
+        System.out.printf("%8s %18s %18s %18s%n", "threads", "AtomicLong ids/s", "IdAllocator ids/s", "save() ops/s");
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            int n = threads;
+            double shared = best(() -> {
+                AtomicLong seq = new AtomicLong(1);
+                return run(n, perThread * 10, seq::getAndIncrement);
+            });
+            double blocks = best(() -> {
+                IdAllocator ids = new IdAllocator();
+                return run(n, perThread * 10, ids::next);
+            });
+            double saves = best(() -> {
+                InMemoryReservationRepository repo = new InMemoryReservationRepository();
+                LocalDate in = LocalDate.now().plusDays(1);
+                LocalDate out = in.plusDays(2);
+                return run(n, perThread, () -> repo.save(new Reservation(null, "Guest", "Hotel", in, out)).getId());
+            });
+            System.out.printf("%8d %,18.0f %,18.0f %,18.0f%n", threads, shared, blocks, saves);
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        return threads == maxThreads ? maxThreads + 1 : Math.min(threads * 2, maxThreads);
+    }
+
+    private interface Round {
+        double run() throws InterruptedException;
+    }
+
+    private static double best(Round round) throws InterruptedException {
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            best = Math.max(best, round.run());
+        }
+        return best;
+    }
+
+    /** Calls {@code op} {@code perThread} times on each of {@code threads} threads; returns calls/s. */
+    private static double run(int threads, int perThread, LongSupplier op) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        long[] sink = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            workers[t] = new Thread(() -> {
+                long acc = 0;
+                for (int i = 0; i < perThread; i++) {
+                    acc += op.getAsLong();
+                }
+                sink[slot] = acc;
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (double) perThread * threads / (elapsed / 1e9);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bookingmx.reservations.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdAllocatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void next_isSequentialWithinOneThread() {
+        IdAllocator ids = new IdAllocator(4, null);
+
+        for (long expected = 1; expected <= 10; expected++) {
+            assertEquals(expected, ids.next());
+        }
+    }
+
+    @Test
+    void concurrentThreads_neverShareAnId() throws InterruptedException {
+        IdAllocator ids = new IdAllocator(16, null);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        Thread[] workers = new Thread[8];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    assertTrue(seen.add(ids.next()));
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        assertEquals(80_000, seen.size());
+    }
+
+    @Test
+    void restart_resumesAboveEveryIdHandedOut() {
+        Path hwm = dir.resolve("ids.hwm");
+        IdAllocator first = new IdAllocator(8, hwm);
+        long last = 0;
+        for (int i = 0; i < 1_000; i++) {
+            last = first.next();
+        }
+
+        // nothing reached a log: the persisted lease alone must keep IDs unique
+        IdAllocator second = new IdAllocator(8, hwm);
+        assertTrue(second.next() > last);
+    }
+
+    @Test
+    void advanceTo_dropsHeldBlocks() {
+        IdAllocator ids = new IdAllocator(100, null);
+        assertEquals(1, ids.next()); // this thread now holds 1..100
+
+        ids.advanceTo(50);
+
+        assertTrue(ids.next() >= 50);
+    }
+
+    @Test
+    void virtualThreads_holdNoBlock() throws InterruptedException {
+        IdAllocator ids = new IdAllocator(100, null);
+        long[] seen = new long[10];
+        for (int i = 0; i < seen.length; i++) {
+            int at = i;
+            Thread.ofVirtual().start(() -> seen[at] = ids.next()).join();
+        }
+
+        // no thread kept the rest of a block when it ended
+        assertArrayEquals(new long[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, seen);
+    }
+}
@@ -0,0 +1,142 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcReservationRepositoryTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @TempDir
+    Path dir;
+
+    /** A fresh in-memory H2 database with small batches and pages, so both are exercised. */
+    private static JdbcReservationRepository memory() {
+        return new JdbcReservationRepository("jdbc:h2:mem:reservations" + DATABASES.incrementAndGet()
+                + ";DB_CLOSE_DELAY=-1", "sa", "", 2, 4, 7);
+    }
+
+    private static Reservation reservation(String guest, String hotel, int inDays, int nights) {
+        LocalDate in = LocalDate.now().plusDays(inDays);
+        return new Reservation(null, guest, hotel, in, in.plusDays(nights));
+    }
+
+    @Test
+    void queries_matchTheInMemoryRepository() {
+        try (JdbcReservationRepository repo = memory()) {
+            Reservation ana = repo.save(reservation("Ana", "Azul", 1, 3));
+            Reservation bob = repo.save(reservation("bob", "Azul", 2, 2));
+            repo.save(reservation("Beto", "Roja", 1, 1));
+            Reservation canceled = bob.withStatus(ReservationStatus.CANCELED);
+            repo.save(canceled);
+
+            assertEquals(3, repo.count());
+            assertEquals("Ana", repo.findById(ana.getId()).orElseThrow().getGuestName());
+            assertEquals(List.of(ana.getId(), bob.getId()), ids(repo.findByHotel("Azul")));
+            assertEquals(List.of(bob.getId()), ids(repo.findByHotel("Azul", ReservationStatus.CANCELED)));
+            assertEquals(2, repo.countByStatus(ReservationStatus.ACTIVE));
+            assertEquals(1, repo.findByStatus(ReservationStatus.CANCELED).size());
+            // Only active stays count as overlapping.
+            assertEquals(List.of(ana.getId()), ids(repo.findStayingOn("Azul", LocalDate.now().plusDays(2))));
+            assertEquals(List.of("Beto", "bob"),
+                    repo.searchByGuest("B", 5).stream().map(Reservation::getGuestName).toList());
+            assertTrue(repo.searchByGuest("%", 5).isEmpty());
+
+            assertFalse(repo.deleteIf(ana.getId(), r -> !r.isActive()));
+            assertTrue(repo.deleteIf(ana.getId(), Reservation::isActive));
+            assertTrue(repo.findById(ana.getId()).isEmpty());
+            assertEquals(2, repo.count());
+        }
+    }
+
+    @Test
+    void saveAll_batchesInsertsAndUpdates_andCursorPagesInIdOrder() {
+        try (JdbcReservationRepository repo = memory()) {
+            List<Reservation> batch = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                batch.add(reservation("Guest " + i, "Hotel " + (i % 3), 1, 2));
+            }
+            repo.saveAll(batch);
+
+            List<Reservation> saved = repo.findAll();
+            List<Reservation> changed = new ArrayList<>();
+            for (int i = 0; i < 30; i += 2) {
+                changed.add(saved.get(i).withStatus(ReservationStatus.CANCELED));
+            }
+            changed.add(reservation("Late", "Hotel 0", 1, 2));
+            repo.saveAll(changed);
+
+            assertEquals(31, repo.count());
+            assertEquals(15, repo.countByStatus(ReservationStatus.CANCELED));
+            List<Long> all = ids(repo.findAll());
+            assertEquals(31, all.size());
+            assertEquals(all.stream().sorted().toList(), all);
+            assertEquals(11, repo.findByHotel("Hotel 0").size());
+
+            Spliterator<Reservation> cursor = repo.cursor();
+            long[] seen = {0};
+            while (cursor.tryAdvance(r -> seen[0]++)) {
+                // page through
+            }
+            assertEquals(31, seen[0]);
+        }
+    }
+
+    @Test
+    void fileDatabase_keepsContentsAndContinuesIds() {
+        String url = "jdbc:h2:file:" + dir.resolve("reservations").toAbsolutePath();
+        long first;
+        try (JdbcReservationRepository repo = new JdbcReservationRepository(url)) {
+            first = repo.save(reservation("Ana", "Azul", 1, 3)).getId();
+            repo.save(reservation("Bob", "Azul", 1, 3));
+        }
+
+        try (JdbcReservationRepository reopened = new JdbcReservationRepository(url)) {
+            assertEquals(2, reopened.count());
+            assertEquals("Ana", reopened.findById(first).orElseThrow().getGuestName());
+            long next = reopened.save(reservation("Cy", "Azul", 1, 3)).getId();
+            assertEquals(first + 2, next);
+            try (ReadView view = reopened.openReadView()) {
+                reopened.delete(first);
+                assertNotNull(view.get(first));
+                long[] inView = {0};
+                view.spliterator().forEachRemaining(r -> inView[0]++);
+                assertEquals(3, inView[0]);
+            }
+            assertEquals(2, reopened.count());
+        }
+    }
+
+    @Test
+    void saveIfVersion_updatesOnlyTheExpectedVersion() {
+        try (JdbcReservationRepository repo = memory()) {
+            Reservation ana = repo.save(reservation("Ana", "Azul", 1, 3));
+
+            Reservation first = ana.withGuestName("Ana Ruiz");
+            Reservation second = ana.withStatus(ReservationStatus.CANCELED);
+            assertEquals(2, repo.saveIfVersion(first, Reservation.FIRST_VERSION).orElseThrow().getVersion());
+            assertTrue(repo.saveIfVersion(second, Reservation.FIRST_VERSION).isEmpty());
+
+            Reservation stored = repo.findById(ana.getId()).orElseThrow();
+            assertEquals(2, stored.getVersion());
+            assertEquals("Ana Ruiz", stored.getGuestName());
+            assertTrue(stored.isActive());
+        }
+    }
+
+    private static List<Long> ids(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getId).toList();
+    }
+}
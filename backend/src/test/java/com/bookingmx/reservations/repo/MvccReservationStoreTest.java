@@ -0,0 +1,122 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MvccReservationStoreTest {
+
+    private static Reservation reservation(long id, String guest) {
+        return new Reservation(id, guest, "Hotel Azul", LocalDate.now().plusDays(1), LocalDate.now().plusDays(2));
+    }
+
+    @Test
+    void readView_keepsSeeingItsSnapshot_whileWritesContinue() {
+        MvccReservationStore store = new MvccReservationStore();
+        store.put(reservation(1, "Ana"));
+        store.put(reservation(2, "Bob"));
+
+        try (ReadView view = store.openReadView()) {
+            Reservation renamed = reservation(1, "Ana M");
+            renamed = renamed.withStatus(ReservationStatus.CANCELED);
+            store.put(renamed);
+            store.remove(2);
+            store.put(reservation(3, "Cy"));
+
+            assertEquals("Ana", view.get(1).getGuestName());
+            assertTrue(view.get(1).isActive());
+            assertEquals("Bob", view.get(2).getGuestName());
+            assertNull(view.get(3));
+            assertEquals(2, count(view));
+        }
+
+        assertEquals("Ana M", store.get(1).getGuestName());
+        assertNull(store.get(2));
+        assertEquals(2, store.size());
+        assertEquals(0, store.openViews());
+    }
+
+    @Test
+    void put_storesTheInstance_andDerivedChangesOnlyLandWhenPut() {
+        MvccReservationStore store = new MvccReservationStore();
+        Reservation r = reservation(1, "Ana");
+        store.put(r);
+        assertSame(r, store.get(1));
+
+        Reservation renamed = r.withGuestName("changed after put");
+        assertEquals("Ana", store.get(1).getGuestName());
+
+        store.put(renamed);
+        assertSame(renamed, store.get(1));
+    }
+
+    @Test
+    void removedIds_areReaped_onceNoViewNeedsThem() {
+        MvccReservationStore store = new MvccReservationStore();
+        for (long id = 1; id <= 100; id++) {
+            store.put(reservation(id, "G" + id));
+        }
+        for (long id = 1; id <= 100; id++) {
+            store.remove(id);
+        }
+        // later commits reap the deletion markers a few at a time
+        for (long id = 101; id <= 200; id++) {
+            store.put(reservation(id, "G" + id));
+        }
+
+        assertEquals(100, store.size());
+        List<Long> ids = new ArrayList<>();
+        store.spliterator().forEachRemaining(r -> ids.add(r.getId()));
+        assertEquals(100, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > 100));
+    }
+
+    @Test
+    void concurrentWriter_neverExposesALaterCommitWithoutAnEarlierOne() throws Exception {
+        MvccReservationStore store = new MvccReservationStore();
+        store.put(reservation(1, "0"));
+        store.put(reservation(2, "0"));
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // the writer always commits 1 before 2, so no snapshot may show 2 ahead of 1
+        Thread writer = new Thread(() -> {
+            for (int i = 1; !stop.get(); i++) {
+                store.put(reservation(1, Integer.toString(i)));
+                store.put(reservation(2, Integer.toString(i)));
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 20_000 && failure.get() == null; i++) {
+                try (ReadView view = store.openReadView()) {
+                    int first = Integer.parseInt(view.get(1).getGuestName());
+                    int second = Integer.parseInt(view.get(2).getGuestName());
+                    if (second > first || first - second > 1) {
+                        failure.set("saw " + first + "/" + second);
+                    }
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(0, store.openViews());
+    }
+
+    private static int count(ReadView view) {
+        int[] n = {0};
+        view.spliterator().forEachRemaining(r -> n[0]++);
+        return n[0];
+    }
+}
@@ -0,0 +1,65 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameDictionaryTest {
+
+    private static Reservation reservation(String guest, String hotel) {
+        return new Reservation(null, guest, hotel, LocalDate.now().plusDays(1), LocalDate.now().plusDays(2));
+    }
+
+    @Test
+    void storedReservationsOfOneHotel_shareTheCanonicalName() {
+        NameDictionary names = new NameDictionary();
+        InMemoryReservationRepository repo = new InMemoryReservationRepository(1, k -> new MvccReservationStore(),
+                k -> new IdAllocator(), false, null, null, names);
+
+        Reservation a = repo.save(reservation("Ana", new String("Hotel A")));
+        Reservation b = repo.save(reservation("Bob", new String("Hotel A")));
+        repo.save(reservation("Cy", "Hotel B"));
+
+        assertSame(a.getHotelName(), b.getHotelName());
+        assertSame(a.getHotelName(), repo.findById(b.getId()).orElseThrow().getHotelName());
+        assertEquals(2, names.hotelCount());
+        assertNotEquals(names.hotelCodeOf("Hotel A"), names.hotelCodeOf("Hotel B"));
+        assertEquals(0, names.guestCount());
+    }
+
+    @Test
+    void namesOnlySeenInRequests_neverEnterTheDictionary() {
+        NameDictionary names = new NameDictionary(true);
+        InMemoryReservationRepository repo = new InMemoryReservationRepository(1, k -> new MvccReservationStore(),
+                k -> new IdAllocator(), false, null, null, names);
+        Reservation stored = repo.save(reservation("Ana", "Hotel A"));
+
+        reservation("Junk guest", "Junk 1").withHotelName("Junk 2");
+        assertTrue(repo.findByHotel("Junk 3").isEmpty());
+        assertTrue(repo.findOverlapping("Junk 4", LocalDate.now(), LocalDate.now().plusDays(9)).isEmpty());
+        assertTrue(repo.saveIfVersion(stored.withHotelName("Junk 5"), stored.getVersion() + 1).isEmpty());
+
+        assertEquals(StringDictionary.NO_CODE, names.hotelCodeOf("Junk 3"));
+        assertEquals(1, names.hotelCount());
+        assertEquals(1, names.guestCount());
+    }
+
+    @Test
+    void guestNames_areSharedOnlyWhenEnabled() {
+        NameDictionary hotelsOnly = new NameDictionary();
+        NameDictionary both = new NameDictionary(true);
+
+        Reservation plain = hotelsOnly.intern(reservation(new String("Ana"), "Hotel A"));
+        Reservation first = both.intern(reservation(new String("Ana"), "Hotel A"));
+        Reservation again = both.intern(reservation(new String("Ana"), "Hotel A"));
+
+        assertEquals("Ana", plain.getGuestName());
+        assertSame(first.getGuestName(), again.getGuestName());
+        assertSame(again, both.intern(again));
+        assertEquals(1, both.guestCount());
+    }
+}
@@ -0,0 +1,103 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same workload against the in-memory repository and the JDBC repository on an
+ * embedded H2 file database: single saves, batched saves, updates, hotel lookups and a full
+ * keyset-paged scan.
+ *
+ * <p>Not part of the unit test run. Run it with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.RepositoryComparisonBenchmark \
+ *     -Dexec.args="100000"
+ * </pre>
+ * <p>Argument: reservations per phase (default 100,000).</p>
+ */
+public class RepositoryComparisonBenchmark {
+
+    private static final int HOTELS = 500;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path dir = Files.createTempDirectory("bookingmx-jdbc");
+        try {
+            String url = "jdbc:h2:file:" + dir.resolve("reservations").toAbsolutePath();
+            System.out.printf("%,d reservations per phase, %d hotels (ops/s)%n", size, HOTELS);
+            System.out.printf("%-8s %12s %12s %12s %12s %12s%n",
+                    "repo", "save", "saveAll", "update", "byHotel", "scan");
+            run("memory", InMemoryReservationRepository::new, size);
+            run("jdbc", () -> new JdbcReservationRepository(url), size);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void run(String name, Supplier<ReservationRepository> factory, int size) {
+        LocalDate in = LocalDate.now().plusDays(1);
+        try (ReservationRepository repo = factory.get()) {
+            long start = System.nanoTime();
+            List<Reservation> saved = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                saved.add(repo.save(new Reservation(null, "Guest " + i, "Hotel " + (i % HOTELS), in, in.plusDays(2))));
+            }
+            double save = rate(size, start);
+
+            List<Reservation> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(new Reservation(null, "Batch " + i, "Hotel " + (i % HOTELS), in, in.plusDays(3)));
+            }
+            start = System.nanoTime();
+            repo.saveAll(batch);
+            double saveAll = rate(size, start);
+
+            start = System.nanoTime();
+            for (Reservation r : saved) {
+                Reservation updated = r.withStay(r.getCheckIn(), in.plusDays(4));
+                repo.save(updated);
+            }
+            double update = rate(size, start);
+
+            int lookups = Math.max(1, size / 100);
+            start = System.nanoTime();
+            long found = 0;
+            for (int i = 0; i < lookups; i++) {
+                found += repo.findByHotel("Hotel " + (i % HOTELS)).size();
+            }
+            double byHotel = rate(lookups, start);
+
+            start = System.nanoTime();
+            long scanned = repo.stream().count();
+            double scan = rate(scanned, start);
+
+            if (found == 0 || scanned != 2L * size) {
+                throw new IllegalStateException("unexpected contents");
+            }
+            System.out.printf("%-8s %,12.0f %,12.0f %,12.0f %,12.0f %,12.0f%n",
+                    name, save, saveAll, update, byHotel, scan);
+        }
+    }
+
+    private static double rate(long ops, long startNanos) {
+        return ops / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.bookingmx.reservations.repo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+
+    @Test
+    void addRemoveContains_acrossArrayAndBitmapContainers() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        // 0..9999 forces the first chunk past the array limit, 70000 lives in a second chunk
+        for (int i = 0; i < 10_000; i++) {
+            bitmap.add(i);
+        }
+        bitmap.add(70_000);
+        assertEquals(10_001, bitmap.cardinality());
+        assertTrue(bitmap.contains(9_999));
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(10_000));
+
+        // shrinking back below the limit keeps the contents
+        for (int i = 0; i < 10_000; i += 2) {
+            bitmap.remove(i);
+        }
+        assertEquals(5_001, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(1));
+
+        bitmap.remove(70_000);
+        bitmap.remove(70_000); // absent: no-op
+        assertEquals(5_000, bitmap.cardinality());
+    }
+
+    @Test
+    void andAndAndNot_matchBitSet_onRandomData() {
+        Random rnd = new Random(42);
+        BitSet a = new BitSet();
+        BitSet b = new BitSet();
+        RoaringBitmap ra = new RoaringBitmap();
+        RoaringBitmap rb = new RoaringBitmap();
+        // dense range in chunk 0, sparse values over chunks 0..7
+        for (int i = 0; i < 30_000; i++) {
+            int v = rnd.nextInt(20_000);
+            a.set(v);
+            ra.add(v);
+        }
+        for (int i = 0; i < 3_000; i++) {
+            int v = rnd.nextInt(8 << 16);
+            b.set(v);
+            rb.add(v);
+            v = rnd.nextInt(8 << 16);
+            a.set(v);
+            ra.add(v);
+        }
+
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+
+        assertEquals(toList(and), toList(ra.and(rb)));
+        assertEquals(toList(and), toList(rb.and(ra)));
+        assertEquals(toList(andNot), toList(ra.andNot(rb)));
+        assertEquals(a.cardinality(), ra.cardinality());
+    }
+
+    @Test
+    void copy_isIndependent() {
+        RoaringBitmap original = new RoaringBitmap();
+        original.add(5);
+        RoaringBitmap copy = original.copy();
+        copy.add(6);
+        original.remove(5);
+
+        assertTrue(original.isEmpty());
+        assertEquals(List.of(5, 6), toList(copy));
+    }
+
+    private static List<Integer> toList(BitSet bits) {
+        List<Integer> out = new ArrayList<>();
+        bits.stream().forEach(out::add);
+        return out;
+    }
+
+    private static List<Integer> toList(RoaringBitmap bitmap) {
+        List<Integer> out = new ArrayList<>();
+        bitmap.forEach(out::add);
+        return out;
+    }
+}
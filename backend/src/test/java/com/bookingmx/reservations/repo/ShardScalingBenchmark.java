@@ -0,0 +1,89 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+/**
+ * Measures repository write throughput against the number of hotel shards, with callers
+ * writing directly and with one writer thread per shard.
+ *
+ * <p>Every thread creates reservations spread over many hotels and then updates each one
+ * once, so both the create path (ID allocation, store insert, index updates) and the update
+ * path are measured. Stores are {@link MvccReservationStore}s, whose commit lock is the
+ * contention point a single shard has.</p>
+ *
+ * <p>Not part of the unit test run. Run it with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.ShardScalingBenchmark \
+ *     -Dexec.args="100000 8 1 2 4 8 16"
+ * </pre>
+ * <p>Arguments: creates per thread (default 100,000), writer threads (default: available
+ * processors), then the shard counts to compare (default 1, 2, 4, 8 and 16).</p>
+ */
+public class ShardScalingBenchmark {
+
+    private static final int HOTELS = 500;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int[] shardCounts = args.length > 2
+                ? Stream.of(args).skip(2).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 2, 4, 8, 16};
+
+        System.out.printf("writes/thread=%,d threads=%d hotels=%d%n", perThread * 2, threads, HOTELS);
+        System.out.printf("%8s %20s %20s%n", "shards", "direct writes/s", "single-writer writes/s");
+        for (int shards : shardCounts) {
+            double direct = best(shards, false, threads, perThread);
+            double single = best(shards, true, threads, perThread);
+            System.out.printf("%8d %,20.0f %,20.0f%n", shards, direct, single);
+        }
+    }
+
+    private static double best(int shards, boolean singleWriter, int threads, int perThread)
+            throws InterruptedException {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            InMemoryReservationRepository repo = new InMemoryReservationRepository(shards,
+                    k -> new MvccReservationStore(), k -> new IdAllocator(), singleWriter, null, null);
+            best = Math.max(best, run(repo, threads, perThread));
+            repo.close();
+        }
+        return best;
+    }
+
+    /** Runs the workload on {@code threads} threads; returns writes/s. */
+    private static double run(InMemoryReservationRepository repo, int threads, int perThread)
+            throws InterruptedException {
+        LocalDate in = LocalDate.now().plusDays(1);
+        LocalDate out = in.plusDays(2);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            workers[t] = new Thread(() -> {
+                Reservation[] created = new Reservation[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    String hotel = "Hotel " + ((i + offset) % HOTELS);
+                    created[i] = repo.save(new Reservation(null, "Guest " + i, hotel, in, out));
+                }
+                for (Reservation r : created) {
+                    Reservation updated = r.withStay(r.getCheckIn(), out.plusDays(1));
+                    repo.save(updated);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return 2.0 * perThread * threads / (elapsed / 1e9);
+    }
+}
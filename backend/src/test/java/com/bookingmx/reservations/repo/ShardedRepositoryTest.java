@@ -0,0 +1,266 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static InMemoryReservationRepository sharded(int shards, boolean singleWriter, WriteAheadLog wal) {
+        return new InMemoryReservationRepository(shards, k -> new MvccReservationStore(), k -> new IdAllocator(),
+                singleWriter, wal, null);
+    }
+
+    private static Reservation reservation(String guest, String hotel) {
+        return new Reservation(null, guest, hotel, LocalDate.now().plusDays(1), LocalDate.now().plusDays(3));
+    }
+
+    /** Returns the first of "Hotel 0", "Hotel 1", ... that hashes to {@code shard} of {@code n}. */
+    private static String hotelInShard(int shard, int n) {
+        for (int i = 0; ; i++) {
+            String hotel = "Hotel " + i;
+            if (Math.floorMod(hotel.hashCode(), n) == shard) {
+                return hotel;
+            }
+        }
+    }
+
+    @Test
+    void crossShardReads_mergeEveryShard() {
+        InMemoryReservationRepository repo = sharded(4, false, null);
+        for (int shard = 0; shard < 4; shard++) {
+            String hotel = hotelInShard(shard, 4);
+            repo.save(reservation("Ana " + shard, hotel));
+            Reservation canceled = repo.save(reservation("Bob " + shard, hotel));
+            canceled = canceled.withStatus(ReservationStatus.CANCELED);
+            repo.save(canceled);
+        }
+
+        assertEquals(8, repo.count());
+        assertEquals(8, repo.findAll().size());
+        assertEquals(8, repo.stream().count());
+        assertEquals(4, repo.findByStatus(ReservationStatus.CANCELED).size());
+        assertEquals(4, repo.countByStatus(ReservationStatus.ACTIVE));
+        assertEquals(2, repo.findByHotel(hotelInShard(2, 4)).size());
+
+        List<Reservation> anas = repo.searchByGuest("ana", 3);
+        assertEquals(List.of("Ana 0", "Ana 1", "Ana 2"), anas.stream().map(Reservation::getGuestName).toList());
+    }
+
+    @Test
+    void changingHotel_movesTheReservationToAnotherShard() {
+        InMemoryReservationRepository repo = sharded(4, false, null);
+        String from = hotelInShard(0, 4);
+        String to = hotelInShard(3, 4);
+        Reservation r = repo.save(reservation("Ana", from));
+
+        r = r.withHotelName(to);
+        repo.save(r);
+
+        assertEquals(to, repo.findById(r.getId()).orElseThrow().getHotelName());
+        assertTrue(repo.findByHotel(from).isEmpty());
+        assertEquals(1, repo.findByHotel(to).size());
+        assertEquals(1, repo.count());
+        try (ReadView view = repo.openReadView()) {
+            assertEquals(to, view.get(r.getId()).getHotelName());
+        }
+
+        repo.delete(r.getId());
+        assertTrue(repo.findById(r.getId()).isEmpty());
+        assertEquals(0, repo.count());
+    }
+
+    @Test
+    void readView_seesEveryReservationOnce_whileReservationsMoveBetweenShards() throws InterruptedException {
+        InMemoryReservationRepository repo = sharded(4, false, null);
+        String[] hotels = {hotelInShard(0, 4), hotelInShard(3, 4)};
+        List<Reservation> saved = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            saved.add(repo.save(reservation("Guest " + i, hotels[0])));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread mover = new Thread(() -> {
+            for (int round = 1; !done.get(); round++) {
+                for (Reservation r : saved) {
+                    repo.save(r.withHotelName(hotels[round % 2]));
+                }
+            }
+        });
+        mover.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                try (ReadView view = repo.openReadView()) {
+                    List<Long> ids = StreamSupport.stream(view.spliterator(), false)
+                            .map(Reservation::getId).toList();
+                    assertEquals(50, ids.size());
+                    assertEquals(50, new HashSet<>(ids).size());
+                    assertTrue(view.sequence() >= 0);
+                }
+            }
+        } finally {
+            done.set(true);
+            mover.join();
+        }
+    }
+
+    @Test
+    void readView_opensWithoutWaitingForWriters() throws Exception {
+        InMemoryReservationRepository repo = sharded(4, false, null);
+        for (int i = 0; i < 40; i++) {
+            repo.save(reservation("Guest " + i, "Hotel " + i));
+        }
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        repo.setChangeLog(new ChangeLog() {
+            @Override
+            public long appendPut(Reservation r) {
+                if (r.getGuestName().equals("Stuck")) {
+                    inside.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.appendPut(r);
+            }
+        });
+        Thread stuck = new Thread(() -> repo.save(reservation("Stuck", hotelInShard(0, 4))));
+        stuck.start();
+        assertTrue(inside.await(10, TimeUnit.SECONDS));
+
+        // a writer is half-way through a save, holding its stripe, while views open and others write
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        for (int t = 0; t < 2; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 0; !done.get(); i++) {
+                    // shard 0 is left alone: a writer there could draw the stuck writer's stripe
+                    repo.save(reservation("Writer " + thread, hotelInShard(1 + i % 3, 4)));
+                    written.incrementAndGet();
+                }
+            });
+        }
+        Future<Integer> views = pool.submit(() -> {
+            int opened = 0;
+            for (; opened < 200; opened++) {
+                try (ReadView view = repo.openReadView()) {
+                    assertTrue(StreamSupport.stream(view.spliterator(), false).count() >= 40);
+                }
+            }
+            return opened;
+        });
+        assertEquals(200, views.get(10, TimeUnit.SECONDS));
+        int before = written.get();
+        try (ReadView open = repo.openReadView()) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (written.get() < before + 100 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(written.get() >= before + 100);
+        }
+        done.set(true);
+        release.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        stuck.join();
+        assertEquals(41 + written.get(), repo.count());
+    }
+
+    @Test
+    void restart_withAnotherShardCount_keepsContentsAndUniqueIds() {
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false);
+        InMemoryReservationRepository repo = sharded(4, false, wal);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            ids.add(repo.save(reservation("Guest " + i, "Hotel " + (i % 7))).getId());
+        }
+        repo.close();
+
+        WriteAheadLog reopenedWal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false);
+        InMemoryReservationRepository reopened = sharded(3, false, reopenedWal);
+        assertEquals(40, reopened.count());
+        for (long id : ids) {
+            assertTrue(reopened.findById(id).isPresent());
+        }
+        for (int i = 0; i < 20; i++) {
+            assertTrue(ids.add(reopened.save(reservation("New " + i, "Hotel " + i)).getId()));
+        }
+        // Six restored stays (i % 7 == 3) plus the new one.
+        assertEquals(7, reopened.findByHotel("Hotel 3").size());
+        reopened.close();
+    }
+
+    @Test
+    void saveIfVersion_onlySavesFromTheStoredVersion_andVersionsSurviveReplay() {
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false);
+        InMemoryReservationRepository repo = sharded(4, false, wal);
+        Reservation r = repo.save(reservation("Ana", hotelInShard(0, 4)));
+        assertEquals(Reservation.FIRST_VERSION, r.getVersion());
+
+        Reservation moved = repo.saveIfVersion(r.withHotelName(hotelInShard(2, 4)), 1).orElseThrow();
+        assertEquals(2, moved.getVersion());
+        assertSame(moved, repo.findById(r.getId()).orElseThrow());
+        assertEquals(1, r.getVersion());
+
+        assertTrue(repo.saveIfVersion(r.withStatus(ReservationStatus.CANCELED), 1).isEmpty());
+        assertTrue(repo.findById(r.getId()).orElseThrow().isActive());
+
+        Reservation missing = reservation("Bob", "Azul").withId(12_345L);
+        assertTrue(repo.saveIfVersion(missing, 1).isEmpty());
+        repo.close();
+
+        InMemoryReservationRepository reopened = sharded(4, false,
+                new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false));
+        Reservation replayed = reopened.findById(r.getId()).orElseThrow();
+        assertEquals(2, replayed.getVersion());
+        assertEquals(hotelInShard(2, 4), replayed.getHotelName());
+        reopened.close();
+    }
+
+    @Test
+    void singleWriters_serializeConcurrentSaves() throws InterruptedException {
+        InMemoryReservationRepository repo = sharded(4, true, null);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    repo.save(reservation("Guest " + thread, "Hotel " + (i % 13)));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(2_000, repo.count());
+        assertEquals(2_000, repo.findAll().stream().map(Reservation::getId).distinct().count());
+        repo.close();
+    }
+}
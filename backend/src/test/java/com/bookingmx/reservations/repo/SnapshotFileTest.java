@@ -0,0 +1,98 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private InMemoryReservationRepository open() {
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ZERO, false);
+        return new InMemoryReservationRepository(new HeapReservationStore(), wal,
+                new SnapshotFile(dir.resolve("reservations.snapshot")));
+    }
+
+    private static Reservation reservation(String guest) {
+        return new Reservation(null, guest, "Hotel Azul",
+                LocalDate.now().plusDays(1), LocalDate.now().plusDays(3));
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir.resolve("wal"))) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void restart_loadsSnapshotThenReplaysLogTail() throws Exception {
+        InMemoryReservationRepository repo = open();
+        Reservation a = repo.save(reservation("A"));
+        Reservation b = repo.save(reservation("B"));
+        SnapshotFile.Info info = repo.snapshot();
+        assertEquals(2, info.count());
+        assertEquals(1, segmentCount()); // segment covered by the snapshot was retired
+
+        // tail written after the snapshot
+        a = a.withStatus(ReservationStatus.CANCELED);
+        repo.save(a);
+        repo.delete(b.getId());
+        Reservation c = repo.save(reservation("C"));
+        repo.close();
+
+        InMemoryReservationRepository reopened = open();
+        assertEquals(2, reopened.count());
+        assertEquals(ReservationStatus.CANCELED, reopened.findById(a.getId()).orElseThrow().getStatus());
+        assertTrue(reopened.findById(b.getId()).isEmpty());
+        assertEquals("C", reopened.findById(c.getId()).orElseThrow().getGuestName());
+        assertTrue(reopened.save(reservation("D")).getId() > c.getId());
+        reopened.close();
+    }
+
+    @Test
+    void snapshotWithoutLaterWrites_restoresIdSequence() {
+        InMemoryReservationRepository repo = open();
+        repo.save(reservation("A"));
+        Reservation b = repo.save(reservation("B"));
+        repo.delete(b.getId());
+        repo.snapshot();
+        repo.close();
+
+        InMemoryReservationRepository reopened = open();
+        assertEquals(1, reopened.count());
+        // B's id must not be handed out again even though B is gone
+        assertTrue(reopened.save(reservation("C")).getId() > b.getId());
+        reopened.close();
+    }
+
+    @Test
+    void corruptSnapshot_isRejected() throws Exception {
+        InMemoryReservationRepository repo = open();
+        repo.save(reservation("A"));
+        repo.snapshot();
+        repo.close();
+
+        Path file = dir.resolve("reservations.snapshot");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{'X'}), ch.size() - 1);
+        }
+
+        SnapshotFile snapshot = new SnapshotFile(file);
+        assertThrows(IllegalStateException.class, () -> snapshot.load(r -> { }));
+    }
+}
@@ -0,0 +1,83 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures time-to-ready of a {@link InMemoryReservationRepository} against store size, restoring
+ * either from the write-ahead log alone or from a snapshot plus an empty log tail.
+ *
+ * <p>Not part of the unit test run. Run it from the IDE or with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.StartupBenchmark \
+ *     -Dexec.args="100000 500000 1000000"
+ * </pre>
+ * <p>Arguments: the store sizes to measure (default 100,000, 500,000 and 1,000,000).</p>
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0
+                ? new int[]{100_000, 500_000, 1_000_000}
+                : Stream.of(args).mapToInt(Integer::parseInt).toArray();
+
+        System.out.printf("%12s %14s %14s %14s%n", "reservations", "log replay ms", "snapshot ms", "snapshot MB");
+        for (int size : sizes) {
+            Path dir = Files.createTempDirectory("bookingmx-startup");
+            try {
+                populate(dir, size);
+                long replayMs = timeToReady(dir, false);
+
+                InMemoryReservationRepository repo = open(dir, true);
+                repo.snapshot();
+                repo.close();
+                long snapshotMs = timeToReady(dir, true);
+                double snapshotMb = Files.size(dir.resolve("reservations.snapshot")) / (1024.0 * 1024.0);
+
+                System.out.printf("%,12d %14d %14d %14.1f%n", size, replayMs, snapshotMs, snapshotMb);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    private static void populate(Path dir, int size) {
+        InMemoryReservationRepository repo = open(dir, false);
+        LocalDate in = LocalDate.now().plusDays(1);
+        for (int i = 0; i < size; i++) {
+            repo.save(new Reservation(null, "Guest " + i, "Hotel " + (i % 500), in, in.plusDays(1 + i % 7)));
+        }
+        repo.close();
+    }
+
+    /** Opens the repository, forcing a full restore, and returns the elapsed milliseconds. */
+    private static long timeToReady(Path dir, boolean withSnapshot) {
+        System.gc();
+        long start = System.nanoTime();
+        InMemoryReservationRepository repo = open(dir, withSnapshot);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        repo.close();
+        return elapsed;
+    }
+
+    private static InMemoryReservationRepository open(Path dir, boolean withSnapshot) {
+        // fsync off: the benchmark measures restore time, not disk flush latency.
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ZERO, false);
+        SnapshotFile snapshot = withSnapshot ? new SnapshotFile(dir.resolve("reservations.snapshot")) : null;
+        return new InMemoryReservationRepository(new HeapReservationStore(), wal, snapshot);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.lsm.LsmReservationStore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredReservationStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private static Reservation stay(long id, int fromDaysAgo, int toDaysAgo) {
+        return new Reservation(id, "Guest " + id, "Hotel Azul",
+                TODAY.minusDays(fromDaysAgo), TODAY.minusDays(toDaysAgo));
+    }
+
+    @Test
+    void spill_movesFinishedAndCanceled_andGetFaultsThemBackIn() {
+        try (TieredReservationStore store = new TieredReservationStore(new MvccReservationStore(),
+                new LsmReservationStore(dir))) {
+            store.put(stay(1, 5, 2));          // checked out two days ago
+            store.put(stay(2, 1, -2));         // in house
+            Reservation canceled = stay(3, -10, -12);
+            canceled = canceled.withStatus(ReservationStatus.CANCELED);
+            store.put(canceled);
+            store.put(stay(4, -3, -5));        // future
+
+            int moved = store.spill(r -> TieredReservationStore.isCold(r, TODAY), 100);
+
+            assertEquals(2, moved);
+            assertEquals(2, store.hotSize());
+            assertEquals(2, store.coldSize());
+            assertEquals(4, store.size());
+            assertEquals("Guest 1", store.get(1).getGuestName());
+            assertEquals(ReservationStatus.CANCELED, store.get(3).getStatus());
+            assertEquals(2, store.faults());
+            assertEquals(4, ids(store).size());
+        }
+    }
+
+    @Test
+    void writes_promoteColdRecords_andRemoveReachesBothTiers() {
+        try (TieredReservationStore store = new TieredReservationStore(new MvccReservationStore(),
+                new LsmReservationStore(dir))) {
+            store.put(stay(1, 5, 2));
+            store.put(stay(2, 5, 2));
+            store.spill(r -> TieredReservationStore.isCold(r, TODAY), 100);
+
+            Reservation extended = stay(1, 5, -3);
+            store.put(extended);
+            assertEquals(1, store.hotSize());
+            assertEquals(1, store.coldSize());
+            assertEquals(TODAY.plusDays(3), store.get(1).getCheckOut());
+
+            assertTrue(store.remove(2));
+            assertNull(store.get(2));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void spill_isBoundedByLimit_andReadViewsSeeEachRecordOnce() {
+        try (TieredReservationStore store = new TieredReservationStore(new MvccReservationStore(),
+                new LsmReservationStore(dir))) {
+            for (long id = 1; id <= 50; id++) {
+                store.put(stay(id, 5, 2));
+            }
+            try (ReadView view = store.openReadView()) {
+                assertEquals(20, store.spill(r -> TieredReservationStore.isCold(r, TODAY), 20));
+                assertEquals(30, store.hotSize());
+
+                List<Long> seen = new ArrayList<>();
+                view.spliterator().forEachRemaining(r -> seen.add(r.getId()));
+                assertEquals(50, seen.size());
+                assertEquals(50, seen.stream().distinct().count());
+            }
+        }
+    }
+
+    private static List<Long> ids(ReservationStore store) {
+        List<Long> ids = new ArrayList<>();
+        store.spliterator().forEachRemaining(r -> ids.add(r.getId()));
+        return ids;
+    }
+}
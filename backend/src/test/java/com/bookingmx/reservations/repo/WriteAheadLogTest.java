@@ -0,0 +1,311 @@
+package com.bookingmx.reservations.repo;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private InMemoryReservationRepository open() {
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false);
+        return new InMemoryReservationRepository(new HeapReservationStore(), wal);
+    }
+
+    private static Reservation reservation(String guest) {
+        return new Reservation(null, guest, "Hotel Azul",
+                LocalDate.now().plusDays(1), LocalDate.now().plusDays(3));
+    }
+
+    @Test
+    void restart_replaysSavesUpdatesAndDeletes() {
+        InMemoryReservationRepository repo = open();
+        Reservation a = repo.save(reservation("A"));
+        Reservation b = repo.save(reservation("B"));
+        a = a.withStatus(ReservationStatus.CANCELED);
+        repo.save(a);
+        repo.delete(b.getId());
+        repo.close();
+
+        InMemoryReservationRepository reopened = open();
+        assertEquals(1, reopened.findAll().size());
+        assertEquals(ReservationStatus.CANCELED, reopened.findById(a.getId()).orElseThrow().getStatus());
+        assertTrue(reopened.findById(b.getId()).isEmpty());
+
+        // IDs keep increasing after replay
+        Reservation c = reopened.save(reservation("C"));
+        assertTrue(c.getId() > b.getId());
+        reopened.close();
+    }
+
+    @Test
+    void truncatedFinalRecord_isDroppedOnReplay() throws Exception {
+        InMemoryReservationRepository repo = open();
+        repo.save(reservation("A"));
+        repo.save(reservation("B"));
+        repo.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir.resolve("wal"))) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 5); // simulate a crash in the middle of the last write
+        }
+
+        InMemoryReservationRepository reopened = open();
+        List<String> guests = new ArrayList<>();
+        reopened.findAll().forEach(r -> guests.add(r.getGuestName()));
+        assertEquals(List.of("A"), guests);
+
+        // the torn tail was cut off, so new appends replay cleanly
+        reopened.save(reservation("C"));
+        reopened.close();
+        assertEquals(2, open().findAll().size());
+    }
+
+    @Test
+    void concurrentWriters_allRecordsAreDurable() throws Exception {
+        InMemoryReservationRepository repo = open();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    repo.save(reservation("G"));
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread w : writers) {
+            w.join();
+        }
+        repo.close();
+
+        assertEquals(400, open().findAll().size());
+    }
+
+    @Test
+    void failedWrite_isCutOff_soLaterRecordsReplay() {
+        FlakyLog wal = new FlakyLog(dir.resolve("wal"));
+        wal.replay(collect(new ArrayList<>()));
+        WriteAheadLog.await(wal.appendPut(reservation("A").withId(1L)));
+
+        wal.channel.failNextWrite = true;
+        assertThrows(UncheckedIOException.class, () -> WriteAheadLog.await(wal.appendPut(reservation("B").withId(2L))));
+        WriteAheadLog.await(wal.appendPut(reservation("C").withId(3L)));
+        wal.close();
+
+        assertEquals(List.of("A", "C"), replayedGuests());
+    }
+
+    @Test
+    void failedWrite_thatCannotBeCutOff_failsTheLog() {
+        FlakyLog wal = new FlakyLog(dir.resolve("wal"));
+        wal.replay(collect(new ArrayList<>()));
+        WriteAheadLog.await(wal.appendPut(reservation("A").withId(1L)));
+
+        wal.channel.failNextWrite = true;
+        wal.channel.failTruncate = true;
+        assertThrows(UncheckedIOException.class, () -> WriteAheadLog.await(wal.appendPut(reservation("B").withId(2L))));
+        assertThrows(UncheckedIOException.class, () -> wal.appendPut(reservation("C").withId(3L)));
+        wal.close();
+
+        // replay cuts off the torn record and the log takes appends again
+        assertEquals(List.of("A"), replayedGuests());
+    }
+
+    @Test
+    void failedAppend_changesNeitherTheRepositoryNorTheChangeLog() {
+        FlakyLog wal = new FlakyLog(dir.resolve("wal"));
+        InMemoryReservationRepository repo = new InMemoryReservationRepository(new MvccReservationStore(), wal);
+        ChangeLog changes = new ChangeLog(16);
+        repo.setChangeLog(changes);
+        Reservation a = repo.save(reservation("A"));
+
+        wal.channel.failNextWrite = true;
+        assertThrows(UncheckedIOException.class, () -> repo.saveIfVersion(a.withGuestName("A2"), a.getVersion()));
+        wal.channel.failNextWrite = true;
+        assertThrows(UncheckedIOException.class, () -> repo.save(reservation("B")));
+        wal.channel.failNextWrite = true;
+        assertThrows(UncheckedIOException.class, () -> repo.delete(a.getId()));
+
+        assertEquals(List.of("A"), repo.findAll().stream().map(Reservation::getGuestName).toList());
+        assertEquals(a.getVersion(), repo.findById(a.getId()).orElseThrow().getVersion());
+        assertEquals(1, repo.findByHotel("Hotel Azul").size());
+        assertEquals(1, changes.lastSequence());
+
+        // the log carries on, and the failed change can be made again
+        assertTrue(repo.saveIfVersion(a.withGuestName("A2"), a.getVersion()).isPresent());
+        assertEquals(2, changes.lastSequence());
+        repo.close();
+        assertEquals(List.of("A", "A2"), replayedGuests());
+    }
+
+    private List<String> replayedGuests() {
+        List<String> guests = new ArrayList<>();
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(1), false);
+        wal.replay(collect(guests));
+        wal.close();
+        return guests;
+    }
+
+    /** @return a replayer adding the guest of every replayed put to {@code guests} */
+    private static WriteAheadLog.Replayer collect(List<String> guests) {
+        return new WriteAheadLog.Replayer() {
+            @Override
+            public void put(long lsn, Reservation r) {
+                guests.add(r.getGuestName());
+            }
+
+            @Override
+            public void delete(long lsn, long id) {
+            }
+        };
+    }
+
+    /** Log whose segment can be told to fail its next write half-way, and its truncation. */
+    private static final class FlakyLog extends WriteAheadLog {
+        FlakyChannel channel;
+
+        FlakyLog(Path directory) {
+            super(directory, Duration.ofMillis(1), true);
+        }
+
+        @Override
+        FileChannel openSegment(Path segment) throws IOException {
+            channel = new FlakyChannel(super.openSegment(segment));
+            return channel;
+        }
+    }
+
+    private static final class FlakyChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failNextWrite;
+        volatile boolean failTruncate;
+
+        FlakyChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                ByteBuffer half = src.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("disk full");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("device gone");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
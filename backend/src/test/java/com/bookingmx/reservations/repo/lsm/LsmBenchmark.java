@@ -0,0 +1,93 @@
+package com.bookingmx.reservations.repo.lsm;
+
+import com.bookingmx.reservations.model.Reservation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of compaction and the read amplification of the {@link LsmReservationStore}
+ * for several compaction fanouts: load time and write amplification for a batch of inserts
+ * and updates, then segment blocks read per point lookup, for IDs that exist and for IDs that
+ * do not (answered by the bloom filters).
+ *
+ * <p>Not part of the unit test run. Run it from the IDE or with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.repo.lsm.LsmBenchmark \
+ *     -Dexec.args="1000000 4 8 16"
+ * </pre>
+ * <p>Arguments: the number of reservations (default 500,000) followed by the fanouts to
+ * compare (default 2, 4 and 8).</p>
+ */
+public class LsmBenchmark {
+
+    private static final long MEMTABLE_BYTES = 1L << 20;
+    private static final int LOOKUPS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int[] fanouts = args.length > 1
+                ? Stream.of(args).skip(1).mapToInt(Integer::parseInt).toArray()
+                : new int[]{2, 4, 8};
+
+        System.out.printf("%6s %9s %9s %9s %11s %9s %12s %12s%n", "fanout", "load ms", "segments",
+                "compacts", "write amp", "disk MB", "hit reads", "miss reads");
+        for (int fanout : fanouts) {
+            Path dir = Files.createTempDirectory("bookingmx-lsm");
+            try (LsmReservationStore store = new LsmReservationStore(dir, MEMTABLE_BYTES, fanout)) {
+                long start = System.nanoTime();
+                load(store, size);
+                store.flush();
+                long loadMs = (System.nanoTime() - start) / 1_000_000;
+                LsmReservationStore.Stats stats = store.stats();
+                long compactions = stats.compactions();
+                double writeAmp = stats.writeAmplification();
+
+                double hitReads = readAmplification(store, 1, size);
+                double missReads = readAmplification(store, size + 1L, size + 1L + size);
+                System.out.printf("%6d %9d %9d %9d %11.2f %9.1f %12.3f %12.3f%n", fanout, loadMs,
+                        store.segmentCount(), compactions, writeAmp, store.segmentBytes() / 1e6,
+                        hitReads, missReads);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    /** Inserts {@code size} reservations, then rewrites a random tenth of them. */
+    private static void load(LsmReservationStore store, int size) {
+        LocalDate base = LocalDate.now().plusDays(1);
+        for (long id = 1; id <= size; id++) {
+            store.put(new Reservation(id, "Guest " + id, "Hotel " + (id % 50), base, base.plusDays(2)));
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < size / 10; i++) {
+            long id = random.nextLong(1, size + 1L);
+            store.put(new Reservation(id, "Guest " + id + " (updated)", "Hotel " + (id % 50), base, base.plusDays(3)));
+        }
+    }
+
+    /** @return segment blocks read per lookup of random IDs in {@code [from, to)} */
+    private static double readAmplification(LsmReservationStore store, long from, long to) {
+        LsmReservationStore.Stats stats = store.stats();
+        long lookups = stats.lookups();
+        long reads = stats.segmentReads();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < LOOKUPS; i++) {
+            store.get(random.nextLong(from, to));
+        }
+        return (double) (stats.segmentReads() - reads) / (stats.lookups() - lookups);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.bookingmx.reservations.repo.lsm;
+
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.model.ReservationStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmReservationStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static Reservation reservation(long id, String guest) {
+        return new Reservation(id, guest, "Hotel Azul", LocalDate.now().plusDays(1), LocalDate.now().plusDays(2));
+    }
+
+    @Test
+    void getPutRemove_seeNewestValue_acrossMemtableAndSegments() {
+        try (LsmReservationStore store = new LsmReservationStore(dir, 1024, 4)) {
+            store.put(reservation(1, "Ana"));
+            store.put(reservation(2, "Bob"));
+            store.flush();
+
+            Reservation canceled = reservation(1, "Ana M");
+            canceled = canceled.withStatus(ReservationStatus.CANCELED);
+            store.put(canceled);
+            assertTrue(store.remove(2));
+            assertFalse(store.remove(2));
+            store.flush();
+
+            assertEquals("Ana M", store.get(1).getGuestName());
+            assertFalse(store.get(1).isActive());
+            assertNull(store.get(2));
+            assertNull(store.get(3));
+            assertEquals(1, store.size());
+            assertEquals(List.of(1L), ids(store));
+        }
+    }
+
+    @Test
+    void compaction_mergesSegments_andKeepsEveryLiveRow() {
+        try (LsmReservationStore store = new LsmReservationStore(dir, 4096, 2)) {
+            for (long id = 1; id <= 2_000; id++) {
+                store.put(reservation(id, "Guest " + id));
+            }
+            for (long id = 1; id <= 2_000; id += 2) {
+                store.remove(id);
+            }
+            store.flush();
+
+            assertTrue(store.stats().compactions() > 0);
+            assertTrue(store.segmentCount() < store.stats().flushes());
+            assertEquals(1_000, store.size());
+            List<Long> ids = ids(store);
+            assertEquals(1_000, ids.size());
+            assertEquals(2L, ids.get(0));
+            assertEquals(2_000L, ids.get(ids.size() - 1));
+            assertNull(store.get(1_001));
+            assertEquals("Guest 1000", store.get(1_000).getGuestName());
+        }
+    }
+
+    @Test
+    void reopen_restoresFlushedContents_andIgnoresLeftoverFiles() throws IOException {
+        try (LsmReservationStore store = new LsmReservationStore(dir, 1024, 8)) {
+            for (long id = 1; id <= 100; id++) {
+                store.put(reservation(id, "Guest " + id));
+            }
+            store.remove(50);
+        }
+        Files.write(dir.resolve("seg-00000000000000000099-00000000000000000099.sst.tmp"), new byte[] {1, 2, 3});
+
+        try (LsmReservationStore store = new LsmReservationStore(dir, 1024, 8)) {
+            assertEquals(99, store.size());
+            assertNull(store.get(50));
+            assertEquals("Guest 99", store.get(99).getGuestName());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void lookupsOfMissingIds_areMostlyAnsweredByBloomFilters() {
+        try (LsmReservationStore store = new LsmReservationStore(dir, 2048, 16)) {
+            for (long id = 1; id <= 500; id++) {
+                store.put(reservation(id, "Guest " + id));
+            }
+            store.flush();
+            int segments = store.segmentCount();
+            assertTrue(segments > 1);
+
+            for (long id = 1_000_000; id < 1_001_000; id++) {
+                assertNull(store.get(id));
+            }
+
+            LsmReservationStore.Stats stats = store.stats();
+            assertTrue(stats.segmentReads() < stats.bloomSkips() / 10,
+                    "reads " + stats.segmentReads() + ", skips " + stats.bloomSkips());
+        }
+    }
+
+    @Test
+    void bloomFilter_hasNoFalseNegatives() {
+        BloomFilter bloom = BloomFilter.create(1_000, BloomFilter.DEFAULT_BITS_PER_KEY);
+        for (long id = 0; id < 1_000; id++) {
+            bloom.add(id * 7919);
+        }
+        for (long id = 0; id < 1_000; id++) {
+            assertTrue(bloom.mightContain(id * 7919));
+        }
+    }
+
+    private static List<Long> ids(LsmReservationStore store) {
+        List<Long> ids = new ArrayList<>();
+        store.spliterator().forEachRemaining(r -> ids.add(r.getId()));
+        return ids;
+    }
+}
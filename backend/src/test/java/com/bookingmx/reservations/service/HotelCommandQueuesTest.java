@@ -0,0 +1,295 @@
+package com.bookingmx.reservations.service;
+
+import com.bookingmx.reservations.exception.ConflictException;
+import com.bookingmx.reservations.exception.ServiceUnavailableException;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotelCommandQueuesTest {
+
+    private static final String AZUL = "Queue Azul";
+    private static final String ROJA = "Queue Roja";
+
+    @Test
+    void disabled_runsCommandsOnTheCallingThread() {
+        HotelCommandQueues queues = new HotelCommandQueues();
+        Thread caller = Thread.currentThread();
+
+        assertSame(caller, queues.call(AZUL, Thread::currentThread));
+        assertTrue(queues.queues().isEmpty());
+    }
+
+    @Test
+    void commandsOfOneHotel_runOneAtATime_onItsVirtualThread() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 1000)) {
+            int[] unguarded = {0};
+            List<Thread> runners = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                pool.execute(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        Thread runner = queues.call(AZUL, () -> {
+                            unguarded[0]++;
+                            return Thread.currentThread();
+                        });
+                        synchronized (runners) {
+                            runners.add(runner);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+            // no increment was lost, though the counter has no lock
+            assertEquals(2000, unguarded[0]);
+            assertEquals(1, runners.stream().distinct().count());
+            assertTrue(runners.get(0).isVirtual());
+            assertNotSame(runners.get(0), queues.call(ROJA, Thread::currentThread));
+
+            HotelCommandQueues.Queue azul = queues.queues().stream()
+                    .filter(q -> q.hotelName().equals("Queue Azul")).findFirst().orElseThrow();
+            assertEquals(2000, azul.processed());
+            assertTrue(azul.batches() <= 2000);
+            assertEquals(0, azul.depth());
+            assertEquals(2, queues.queues().size());
+        }
+    }
+
+    @Test
+    void commandsOfTwoHotels_holdBothQueues_inEitherOrder() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 1000)) {
+            int[] azul = {0};
+            int[] roja = {0};
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                pool.execute(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        switch ((thread + i) % 4) {
+                            case 0 -> queues.call(AZUL, ROJA, () -> azul[0]++ + roja[0]++);
+                            case 1 -> queues.call(ROJA, AZUL, () -> azul[0]++ + roja[0]++);
+                            case 2 -> queues.call(AZUL, () -> azul[0]++);
+                            default -> queues.call(ROJA, () -> roja[0]++);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            // moves in opposite directions never wait for each other
+            assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+            // no increment was lost: a change of both hotels ran while neither ran anything else
+            assertEquals(1500, azul[0]);
+            assertEquals(1500, roja[0]);
+            assertEquals(2, queues.queues().size());
+            assertEquals(7, (int) queues.call(AZUL, AZUL, () -> 7));
+        }
+    }
+
+    @Test
+    void commandOfTwoHotels_waitsForTheOtherQueuesRunningCommand_notItsBacklog() throws Exception {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 100)) {
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(5);
+            pool.execute(() -> queues.call(ROJA, () -> {
+                running.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return ran.add("blocker");
+            }));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            HotelCommandQueues.Queue roja = queues.queues().iterator().next();
+            List<Future<Boolean>> calls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String name = "Roja " + i;
+                calls.add(pool.submit(() -> queues.call(ROJA, () -> ran.add(name))));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (roja.depth() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // the move runs on Azul's queue and waits there for Roja to pause
+            calls.add(pool.submit(() -> queues.call(ROJA, AZUL, () -> ran.add("move"))));
+            while (queues.queues().stream().noneMatch(q -> q.hotelName().equals(AZUL) && q.processed() == 1)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<Boolean> call : calls) {
+                assertTrue(call.get(10, TimeUnit.SECONDS));
+            }
+            pool.shutdown();
+
+            // Roja pauses after the command it was running, ahead of the ones queued behind it
+            assertEquals(List.of("blocker", "move"), ran.subList(0, 2));
+            assertEquals(5, ran.size());
+            assertEquals(1, roja.paused());
+            assertEquals(4, roja.processed());
+        }
+    }
+
+    @Test
+    void failures_reachTheCaller_andTheQueueCarriesOn() {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 10)) {
+            assertThrows(ConflictException.class, () -> queues.call(AZUL, () -> {
+                throw new ConflictException("full");
+            }));
+            assertEquals("next", queues.call(AZUL, () -> "next"));
+        }
+    }
+
+    @Test
+    void commandNotStartedInTime_isDropped_andAFullQueueTurnsCommandsAway() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofMillis(100), 1)) {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread blocker = new Thread(() -> {
+                try {
+                    queues.call(AZUL, () -> {
+                        running.countDown();
+                        try {
+                            return release.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                } catch (ServiceUnavailableException stillRunning) {
+                    // its caller gives up; the command runs on
+                }
+            });
+            blocker.start();
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+
+            // the blocker's wait runs out too, but a command already running is not dropped
+            AtomicBoolean ran = new AtomicBoolean();
+            assertThrows(ServiceUnavailableException.class, () -> queues.call(AZUL, () -> ran.getAndSet(true)));
+            HotelCommandQueues.Queue azul = queues.queues().iterator().next();
+            assertEquals(1, azul.timedOut());
+            assertEquals(1, azul.peakDepth());
+
+            // the dropped command still holds the only slot until the queue thread gets to it
+            assertThrows(ServiceUnavailableException.class, () -> queues.call(AZUL, () -> true));
+            assertEquals(1, azul.rejected());
+
+            release.countDown();
+            blocker.join();
+            // the slot is free once the queue thread has skipped the dropped command
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (azul.depth() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(queues.call(AZUL, () -> true));
+            assertFalse(ran.get());
+            assertEquals(2, azul.processed());
+        }
+    }
+
+    @Test
+    void callerOfARunningCommand_waitsAtMostTwice_andTheCommandFinishes() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofMillis(100), 10)) {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicBoolean finished = new AtomicBoolean();
+            Supplier<Boolean> slow = () -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                finished.set(true);
+                return true;
+            };
+
+            long start = System.nanoTime();
+            ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                    () -> queues.call(AZUL, slow));
+            assertTrue(e.getMessage().contains("still running"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertFalse(finished.get());
+
+            release.countDown();
+            // the next command runs once the abandoned one has finished
+            assertTrue(queues.call(AZUL, finished::get));
+            HotelCommandQueues.Queue azul = queues.queues().iterator().next();
+            assertEquals(1, azul.abandoned());
+            assertEquals(0, azul.timedOut());
+        }
+    }
+
+    @Test
+    void interruptedCaller_stopsWaitingAtOnce_andKeepsItsInterrupt() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 10)) {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicBoolean interrupted = new AtomicBoolean();
+            AtomicBoolean gaveUp = new AtomicBoolean();
+            Thread caller = new Thread(() -> {
+                try {
+                    queues.call(AZUL, () -> {
+                        running.countDown();
+                        try {
+                            return release.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                } catch (ServiceUnavailableException e) {
+                    gaveUp.set(true);
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            caller.start();
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+
+            caller.interrupt();
+            caller.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(caller.isAlive());
+            assertTrue(gaveUp.get());
+            assertTrue(interrupted.get());
+
+            release.countDown();
+            assertEquals("next", queues.call(AZUL, () -> "next"));
+        }
+    }
+
+    @Test
+    void idleQueues_areRetired_andAtMostMaxQueuesExist() throws InterruptedException {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(10), 10, 2,
+                Duration.ofMillis(50))) {
+            assertEquals(1, (int) queues.call(AZUL, () -> 1));
+            assertEquals(2, (int) queues.call(ROJA, () -> 2));
+            assertThrows(ServiceUnavailableException.class, () -> queues.call("Queue Verde", () -> 3));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!queues.queues().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(queues.queues().isEmpty());
+            assertEquals(2, queues.retired());
+
+            // a retired hotel gets a new queue on its next change
+            assertEquals(3, (int) queues.call("Queue Verde", () -> 3));
+            assertEquals(1, queues.queues().size());
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package com.bookingmx.reservations.service;
 
+import com.bookingmx.reservations.capacity.HotelCapacity;
 import com.bookingmx.reservations.dto.ReservationRequest;
 import com.bookingmx.reservations.exception.BadRequestException;
+import com.bookingmx.reservations.exception.ConflictException;
 import com.bookingmx.reservations.exception.NotFoundException;
+import com.bookingmx.reservations.exception.PreconditionFailedException;
 import com.bookingmx.reservations.model.Reservation;
 import com.bookingmx.reservations.model.ReservationStatus;
+import com.bookingmx.reservations.repo.HeapReservationStore;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
 import com.bookingmx.reservations.repo.ReservationRepository;
+import com.bookingmx.reservations.repo.WriteAheadLog;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,9 +39,12 @@ class ReservationServiceTest {
     private ReservationRepository repo;   // real in-memory repo
     private ReservationService service;   // SUT
 
+    @TempDir
+    Path dir;
+
     @BeforeEach
     void setUp() throws Exception {
-        repo = new ReservationRepository();
+        repo = new InMemoryReservationRepository();
         service = new ReservationService();
 
         // inject real repo into private field
@@ -65,12 +87,11 @@ class ReservationServiceTest {
     @Test
     void update_existingActiveReservation_updatesSuccessfully() {
         // store initial reservation
-        Reservation existing = new Reservation(
+        Reservation existing = repo.save(new Reservation(
                 null, "Old Name", "Old Hotel",
                 LocalDate.now().plusDays(2),
                 LocalDate.now().plusDays(4)
-        );
-        repo.save(existing);
+        ));
 
         // update request
         ReservationRequest req = new ReservationRequest();
@@ -99,13 +120,11 @@ class ReservationServiceTest {
 
     @Test
     void update_canceledReservation_throwsBadRequest() {
-        Reservation r = new Reservation(
+        Reservation r = repo.save(new Reservation(
                 null, "G", "H",
                 LocalDate.now().plusDays(2),
                 LocalDate.now().plusDays(4)
-        );
-        r.setStatus(ReservationStatus.CANCELED);
-        repo.save(r);
+        ).withStatus(ReservationStatus.CANCELED));
 
         ReservationRequest req = new ReservationRequest();
         req.setGuestName("New");
@@ -121,18 +140,33 @@ class ReservationServiceTest {
 
     @Test
     void cancel_existingReservation_setsStatusToCanceled() {
-        Reservation r = new Reservation(
+        Reservation r = repo.save(new Reservation(
                 null, "A", "B",
                 LocalDate.now().plusDays(1),
                 LocalDate.now().plusDays(3)
-        );
-        repo.save(r);
+        ));
 
         Reservation result = service.cancel(r.getId());
 
         assertEquals(ReservationStatus.CANCELED, result.getStatus());
     }
 
+    @Test
+    void cancel_alreadyCanceledReservation_changesNothing() {
+        Reservation r = repo.save(new Reservation(
+                null, "A", "B",
+                LocalDate.now().plusDays(1),
+                LocalDate.now().plusDays(3)
+        ));
+        Reservation canceled = service.cancel(r.getId());
+
+        Reservation again = service.cancel(r.getId(), canceled.getVersion());
+
+        assertEquals(ReservationStatus.CANCELED, again.getStatus());
+        assertEquals(canceled.getVersion(), again.getVersion());
+        assertEquals(canceled.getVersion(), repo.findById(r.getId()).orElseThrow().getVersion());
+    }
+
     @Test
     void cancel_nonExistingReservation_throwsNotFound() {
         assertThrows(NotFoundException.class, () -> service.cancel(555L));
@@ -162,4 +196,372 @@ class ReservationServiceTest {
 
         assertThrows(BadRequestException.class, () -> service.create(req));
     }
+
+
+    // HOTEL FILTER
+
+    @Test
+    void listByHotel_returnsOnlyThatHotel_andFollowsHotelChanges() {
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        Reservation moved = service.create(req);
+        service.create(req);
+
+        req.setHotelName("Hotel Rojo");
+        service.create(req);
+
+        assertEquals(2, service.listByHotel("Hotel Azul").size());
+        assertEquals(1, service.listByHotel("Hotel Rojo").size());
+
+        // update changes the hotel: index entry must move with it
+        service.update(moved.getId(), req);
+
+        assertEquals(1, service.listByHotel("Hotel Azul").size());
+        assertEquals(2, service.listByHotel("Hotel Rojo").size());
+        assertTrue(service.listByHotel("Nowhere").isEmpty());
+    }
+
+    @Test
+    void listOverlapping_findsStaysInRange_andDropsCanceled() {
+        LocalDate base = LocalDate.now().plusDays(10);
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(base);
+        req.setCheckOut(base.plusDays(3));
+        Reservation early = service.create(req);
+        req.setCheckIn(base.plusDays(3));
+        req.setCheckOut(base.plusDays(5));
+        Reservation late = service.create(req);
+        req.setHotelName("Hotel Rojo");
+        service.create(req);
+
+        // check-out day is exclusive: the night of base+3 belongs only to the later stay
+        assertEquals(List.of(late.getId()), ids(service.listOverlapping("Hotel Azul", base.plusDays(3), null)));
+        assertEquals(List.of(early.getId()), ids(service.listOverlapping("Hotel Azul", base.plusDays(2), null)));
+        assertEquals(2, service.listOverlapping("Hotel Azul", base.plusDays(2), base.plusDays(4)).size());
+        assertTrue(service.listOverlapping("Hotel Azul", base.plusDays(5), base.plusDays(9)).isEmpty());
+        assertThrows(BadRequestException.class,
+                () -> service.listOverlapping("Hotel Azul", base.plusDays(4), base.plusDays(4)));
+
+        service.cancel(early.getId());
+        assertTrue(service.listOverlapping("Hotel Azul", base, base.plusDays(3)).isEmpty());
+    }
+
+    private static List<Long> ids(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getId).toList();
+    }
+
+    @Test
+    void searchByGuest_matchesPrefixIgnoringCase_andRespectsLimit() {
+        ReservationRequest req = new ReservationRequest();
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        for (String name : new String[] {"Scarlett", "scott", "SCOTT", "Sam", "Ana"}) {
+            req.setGuestName(name);
+            service.create(req);
+        }
+
+        assertEquals(List.of("Scarlett", "scott", "SCOTT"), guests(service.searchByGuest("sC", 10)));
+        assertEquals(2, service.searchByGuest("SC", 2).size());
+        assertTrue(service.searchByGuest("Zed", 10).isEmpty());
+
+        // renaming moves the entry
+        Reservation sam = service.searchByGuest("sam", 1).get(0);
+        req.setGuestName("Scully");
+        service.update(sam.getId(), req);
+        assertTrue(service.searchByGuest("sam", 10).isEmpty());
+        assertEquals(4, service.searchByGuest("s", 10).size());
+
+        assertThrows(BadRequestException.class, () -> service.searchByGuest("  ", 10));
+        assertThrows(BadRequestException.class, () -> service.searchByGuest("s", 0));
+    }
+
+    private static List<String> guests(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getGuestName).toList();
+    }
+
+    @Test
+    void listByStatus_followsCancel_andIntersectsWithHotel() {
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        Reservation azul = service.create(req);
+        service.create(req);
+        req.setHotelName("Hotel Rojo");
+        Reservation rojo = service.create(req);
+
+        service.cancel(azul.getId());
+        service.cancel(rojo.getId());
+
+        assertEquals(1, service.listByStatus(ReservationStatus.ACTIVE).size());
+        assertEquals(2, service.listByStatus(ReservationStatus.CANCELED).size());
+        assertEquals(List.of(azul.getId()), ids(service.listByHotel("Hotel Azul", ReservationStatus.CANCELED)));
+        assertTrue(service.listByHotel("Hotel Rojo", ReservationStatus.ACTIVE).isEmpty());
+    }
+
+    // CAPACITY
+
+    @Test
+    void create_fullyBookedNight_throwsConflict_untilARoomIsFreed() {
+        service = new ReservationService(repo, new HotelCapacity(0, Map.of("Hotel Azul", 1)));
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        Reservation first = service.create(req);
+
+        req.setCheckIn(LocalDate.now().plusDays(2));
+        req.setCheckOut(LocalDate.now().plusDays(4));
+        assertThrows(ConflictException.class, () -> service.create(req));
+        assertEquals(1, repo.count());
+
+        // moving the first stay off the shared night makes room
+        ReservationRequest moved = new ReservationRequest();
+        moved.setGuestName("Scarlett");
+        moved.setHotelName("Hotel Azul");
+        moved.setCheckIn(LocalDate.now().plusDays(5));
+        moved.setCheckOut(LocalDate.now().plusDays(6));
+        service.update(first.getId(), moved);
+        Reservation second = service.create(req);
+
+        assertThrows(ConflictException.class, () -> service.update(first.getId(), req));
+        service.cancel(second.getId());
+        assertEquals(LocalDate.now().plusDays(2), service.update(first.getId(), req).getCheckIn());
+    }
+
+    // VERSIONS
+
+    @Test
+    void update_withStaleVersion_throwsPreconditionFailed() {
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        Reservation r = service.create(req);
+        assertEquals(1, r.getVersion());
+
+        req.setGuestName("Scarlett O.");
+        assertEquals(2, service.update(r.getId(), req, 1).getVersion());
+        assertThrows(PreconditionFailedException.class, () -> service.update(r.getId(), req, 1));
+        assertThrows(PreconditionFailedException.class, () -> service.cancel(r.getId(), 1));
+        assertTrue(repo.findById(r.getId()).orElseThrow().isActive());
+        assertEquals(ReservationStatus.CANCELED, service.cancel(r.getId(), 2).getStatus());
+    }
+
+    @Test
+    void concurrentUpdates_areAllApplied_oneVersionEach() throws InterruptedException {
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Scarlett");
+        req.setHotelName("Hotel Azul");
+        req.setCheckIn(LocalDate.now().plusDays(1));
+        req.setCheckOut(LocalDate.now().plusDays(3));
+        Long id = service.create(req).getId();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                ReservationRequest change = new ReservationRequest();
+                change.setGuestName("Guest " + thread);
+                change.setHotelName("Hotel Azul");
+                change.setCheckIn(LocalDate.now().plusDays(1));
+                change.setCheckOut(LocalDate.now().plusDays(3));
+                for (int i = 0; i < 100; i++) {
+                    service.update(id, change);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        // no update was lost: each one was saved from the version before it
+        assertEquals(401, service.get(id).getVersion());
+    }
+
+    // COMMAND QUEUES
+
+    @Test
+    void commandQueues_keepAHotelWithinCapacity_underConcurrentCreates() throws InterruptedException {
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Hotel Azul", 5));
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 1000)) {
+            ReservationService queued = new ReservationService(repo, capacity, queues);
+            AtomicInteger booked = new AtomicInteger();
+            AtomicInteger full = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                pool.execute(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        ReservationRequest req = new ReservationRequest();
+                        req.setGuestName("Guest");
+                        req.setHotelName("Hotel Azul");
+                        req.setCheckIn(LocalDate.now().plusDays(1));
+                        req.setCheckOut(LocalDate.now().plusDays(3));
+                        try {
+                            queued.create(req);
+                            booked.incrementAndGet();
+                        } catch (ConflictException e) {
+                            full.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+            assertEquals(5, booked.get());
+            assertEquals(35, full.get());
+            assertEquals(5, repo.count());
+
+            Reservation first = repo.findAll().get(0);
+            assertEquals(ReservationStatus.CANCELED, queued.cancel(first.getId()).getStatus());
+            assertEquals(41, queues.queues().iterator().next().processed());
+        }
+    }
+
+    @Test
+    void commandQueues_updateOfAnUnknownId_createsNoQueue() {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 1000)) {
+            ReservationService queued = new ReservationService(repo, new HotelCapacity(), queues);
+            ReservationRequest req = new ReservationRequest();
+            req.setGuestName("Guest");
+            req.setCheckIn(LocalDate.now().plusDays(1));
+            req.setCheckOut(LocalDate.now().plusDays(3));
+            for (int i = 1; i <= 3; i++) {
+                req.setHotelName("junk" + i);
+                assertThrows(NotFoundException.class, () -> queued.update(99_999L, req));
+            }
+            assertThrows(NotFoundException.class, () -> queued.cancel(99_999L));
+
+            assertTrue(queues.queues().isEmpty());
+        }
+    }
+
+    @Test
+    void commandQueues_moveBetweenHotels_runsOnBothQueues() {
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 1000)) {
+            ReservationService queued = new ReservationService(repo, new HotelCapacity(), queues);
+            ReservationRequest req = new ReservationRequest();
+            req.setGuestName("Guest");
+            req.setHotelName("Hotel Azul");
+            req.setCheckIn(LocalDate.now().plusDays(1));
+            req.setCheckOut(LocalDate.now().plusDays(3));
+            Reservation created = queued.create(req);
+
+            req.setHotelName("Hotel Roja");
+            assertEquals("Hotel Roja", queued.update(created.getId(), req).getHotelName());
+            queued.cancel(created.getId());
+
+            Map<String, Long> processed = new HashMap<>();
+            Map<String, Long> paused = new HashMap<>();
+            queues.queues().forEach(q -> {
+                processed.put(q.hotelName(), q.processed());
+                paused.put(q.hotelName(), q.paused());
+            });
+            // create and move on Azul, with Roja paused for the move; cancel on Roja
+            assertEquals(Map.of("Hotel Azul", 2L, "Hotel Roja", 1L), processed);
+            assertEquals(Map.of("Hotel Azul", 0L, "Hotel Roja", 1L), paused);
+        }
+    }
+
+    @Test
+    void commandQueues_keepCapacityExact_whileAReservationMovesAndIsCanceled() throws InterruptedException {
+        HotelCapacity capacity = new HotelCapacity(0, Map.of("Hotel Azul", 1, "Hotel Roja", 1));
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 1000)) {
+            ReservationService queued = new ReservationService(repo, capacity, queues);
+            LocalDate in = LocalDate.now().plusDays(1);
+            ReservationRequest req = new ReservationRequest();
+            req.setGuestName("Guest");
+            req.setHotelName("Hotel Azul");
+            req.setCheckIn(in);
+            req.setCheckOut(in.plusDays(2));
+            long id = queued.create(req).getId();
+
+            ExecutorService pool = Executors.newFixedThreadPool(3);
+            for (String hotel : List.of("Hotel Azul", "Hotel Roja")) {
+                pool.execute(() -> {
+                    ReservationRequest move = new ReservationRequest();
+                    move.setGuestName("Guest");
+                    move.setHotelName(hotel);
+                    move.setCheckIn(in);
+                    move.setCheckOut(in.plusDays(2));
+                    for (int i = 0; i < 200; i++) {
+                        try {
+                            queued.update(id, move);
+                        } catch (BadRequestException canceled) {
+                            return;
+                        }
+                    }
+                });
+            }
+            pool.execute(() -> queued.cancel(id));
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+            queued.cancel(id);
+            int night = (int) in.toEpochDay();
+            assertEquals(0, capacity.occupied("Hotel Azul", night));
+            assertEquals(0, capacity.occupied("Hotel Roja", night));
+        }
+    }
+
+    @Test
+    void commandQueues_waitForTheLogOncePerBatch() throws Exception {
+        // each save alone would wait a whole group-commit window for its record
+        WriteAheadLog wal = new WriteAheadLog(dir.resolve("wal"), Duration.ofMillis(300), false);
+        InMemoryReservationRepository logged = new InMemoryReservationRepository(new HeapReservationStore(), wal);
+        ExecutorService pool = Executors.newFixedThreadPool(11);
+        try (HotelCommandQueues queues = new HotelCommandQueues(Duration.ofSeconds(30), 1000)) {
+            ReservationService queued = new ReservationService(logged, new HotelCapacity(), queues);
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            pool.execute(() -> queues.call("Hotel Azul", () -> {
+                running.countDown();
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+
+            // ten creates queue up behind the blocker, to run as one batch
+            List<Future<Reservation>> created = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                ReservationRequest req = new ReservationRequest();
+                req.setGuestName("Guest " + i);
+                req.setHotelName("Hotel Azul");
+                req.setCheckIn(LocalDate.now().plusDays(1));
+                req.setCheckOut(LocalDate.now().plusDays(3));
+                created.add(pool.submit(() -> queued.create(req)));
+            }
+            HotelCommandQueues.Queue azul = queues.queues().iterator().next();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (azul.depth() < 10 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(10, azul.depth());
+
+            long start = System.nanoTime();
+            release.countDown();
+            for (Future<Reservation> f : created) {
+                assertNotNull(f.get(10, TimeUnit.SECONDS).getId());
+            }
+            // well under the three seconds of ten windows one after the other
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(10, logged.count());
+            assertEquals(2, azul.batches());
+        } finally {
+            pool.shutdown();
+            logged.close();
+        }
+    }
 }
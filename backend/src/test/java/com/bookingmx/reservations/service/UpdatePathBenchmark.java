@@ -0,0 +1,126 @@
+package com.bookingmx.reservations.service;
+
+import com.bookingmx.reservations.cdc.ChangeLog;
+import com.bookingmx.reservations.dto.ReservationRequest;
+import com.bookingmx.reservations.model.Reservation;
+import com.bookingmx.reservations.repo.HeapReservationStore;
+import com.bookingmx.reservations.repo.InMemoryReservationRepository;
+import com.bookingmx.reservations.repo.MvccReservationStore;
+import com.bookingmx.reservations.repo.ReservationStore;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Measures the update path as the API drives it: each operation updates a reservation
+ * through {@link ReservationService#update} and reads it back with
+ * {@link ReservationService#get}, touching every field a response serializer reads. Reports
+ * throughput and the bytes each operation allocates, with a {@link ChangeLog} attached as in
+ * a replication primary.
+ *
+ * <p>Not part of the unit test run. Run it with:</p>
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.bookingmx.reservations.service.UpdatePathBenchmark \
+ *     -Dexec.args="200000 4"
+ * </pre>
+ * <p>Arguments: operations per thread (default 200,000) and threads (default: available
+ * processors). Each thread updates its own reservations, so no update has to be retried.</p>
+ */
+public class UpdatePathBenchmark {
+
+    private static final int RESERVATIONS_PER_THREAD = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.printf("%,d operations per thread, %d threads%n", ops, threads);
+        System.out.printf("%-6s %14s %10s%n", "store", "ops/s", "B/op");
+        for (int round = 0; round < 2; round++) {
+            // The first round warms up the JIT; only the second is reported.
+            boolean report = round == 1;
+            run("mvcc", MvccReservationStore::new, ops, threads, report);
+            run("heap", HeapReservationStore::new, ops, threads, report);
+        }
+    }
+
+    private static void run(String name, Supplier<ReservationStore> store, int ops, int threads, boolean report)
+            throws InterruptedException {
+        try (InMemoryReservationRepository repo = new InMemoryReservationRepository(store.get())) {
+            ChangeLog changes = new ChangeLog(1 << 16);
+            repo.setChangeLog(changes);
+            ReservationService service = new ReservationService(repo);
+            LocalDate in = LocalDate.now().plusDays(1);
+            List<long[]> owned = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long[] ids = new long[RESERVATIONS_PER_THREAD];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = repo.save(new Reservation(null, "Guest " + t + "-" + i, "Hotel " + (i % 50),
+                            in, in.plusDays(2))).getId();
+                }
+                owned.add(ids);
+            }
+
+            AtomicLong allocated = new AtomicLong();
+            AtomicLong checksum = new AtomicLong();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long[] ids = owned.get(t);
+                Thread worker = new Thread(() -> {
+                    ReservationRequest[] requests = {request(in, 2), request(in, 3)};
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long before = threadAllocatedBytes();
+                    long sum = 0;
+                    for (int i = 0; i < ops; i++) {
+                        long id = ids[i % ids.length];
+                        service.update(id, requests[(i / ids.length) & 1]);
+                        Reservation r = service.get(id);
+                        sum += r.getId() + r.getGuestName().length() + r.getHotelName().length()
+                                + r.getCheckIn().getDayOfMonth() + r.getCheckOut().getDayOfMonth()
+                                + r.getStatus().ordinal();
+                    }
+                    allocated.addAndGet(threadAllocatedBytes() - before);
+                    checksum.addAndGet(sum);
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            long total = (long) ops * threads;
+            if (checksum.get() == 0) {
+                throw new IllegalStateException("nothing was read");
+            }
+            if (report) {
+                System.out.printf("%-6s %,14.0f %,10d%n", name, total / seconds, allocated.get() / total);
+            }
+        }
+    }
+
+    private static ReservationRequest request(LocalDate in, int nights) {
+        ReservationRequest req = new ReservationRequest();
+        req.setGuestName("Updated guest");
+        req.setHotelName("Hotel 7");
+        req.setCheckIn(in);
+        req.setCheckOut(in.plusDays(nights));
+        return req;
+    }
+
+    private static long threadAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}